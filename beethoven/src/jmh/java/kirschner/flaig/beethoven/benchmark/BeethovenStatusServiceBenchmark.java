@@ -0,0 +1,170 @@
+package kirschner.flaig.beethoven.benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kirschner.flaig.beethoven.config.Ablaufverfolgung;
+import kirschner.flaig.beethoven.config.Spanspeicher;
+import kirschner.flaig.beethoven.config.StatusNachrichtenKonverter;
+import kirschner.flaig.beethoven.config.Tracekontext;
+import kirschner.flaig.beethoven.entity.OrderStatus;
+import kirschner.flaig.beethoven.repository.BeethovenMockRepo;
+import kirschner.flaig.beethoven.repository.BestellabwicklungBuilder;
+import kirschner.flaig.beethoven.service.BeethovenStatusService;
+import kirschner.flaig.beethoven.service.Nachrichtenversand;
+
+/**
+ * Misst die Statusaktualisierungen des {@link BeethovenStatusService}: {@link #sendeStatusAktualisierung()} den ganzen
+ * Weg über den {@link Nachrichtenversand} bis zur Übergabe an das {@link RabbitTemplate}, {@link #validiereStatus()} und
+ * {@link #mappeErpStatusZuECommerceStatus()} die beiden privaten Prüfungen für sich, aufgerufen über
+ * {@link MethodHandle}s, die der JIT wie direkte Aufrufe behandelt.
+ * <p>
+ * Das {@link BestaetigendesRabbitTemplate} konvertiert jede Nachricht wie das Template der Anwendung mit dem
+ * {@link StatusNachrichtenKonverter} und bestätigt sie sofort, statt sie an einen Broker zu senden. Die Aktualisierungen
+ * betreffen reihum {@value #BESTELLUNGEN} vorab angelegte Bestellabwicklungen; mit {@code mitTraceparent} tragen diese
+ * den Kontext ihrer Anlage, sodass jede Aktualisierung einen Span in diesem Trace erfasst und den Header mitsendet.
+ * Die Status wechseln in Groß- und Kleinschreibung, die Validierung sieht zusätzlich einen ungültigen Status.
+ * Das Logging übernimmt die {@link StilleProtokollierung}. Mit {@code -prof gc} ausführen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BeethovenStatusServiceBenchmark {
+
+    private static final int BESTELLUNGEN = 1024;
+
+    private static final String[] STATUS = {"SHIPPED", "Processed", "cancelled", "shipped"};
+
+    private static final String[] STATUS_MIT_UNGUELTIGEM = {"SHIPPED", "Processed", "cancelled", "Unterwegs"};
+
+    private static final MethodHandle VALIDIERE_STATUS;
+
+    private static final MethodHandle MAPPE_STATUS;
+
+    static {
+        try {
+            MethodHandles.Lookup zugriff = MethodHandles.privateLookupIn(BeethovenStatusService.class, MethodHandles.lookup());
+            VALIDIERE_STATUS = zugriff.findVirtual(BeethovenStatusService.class, "validiereStatus",
+                    MethodType.methodType(boolean.class, String.class));
+            MAPPE_STATUS = zugriff.findVirtual(BeethovenStatusService.class, "mappeErpStatusZuECommerceStatus",
+                    MethodType.methodType(String.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Ob die Bestellabwicklungen einen Tracekontext tragen.
+     */
+    @Param({"false", "true"})
+    public boolean mitTraceparent;
+
+    private LoggerContext logkontext;
+    private BestaetigendesRabbitTemplate rabbitTemplate;
+    private BeethovenStatusService statusService;
+    private String[] bestellIds;
+    private int naechste;
+
+    /**
+     * Legt die Bestellabwicklungen an und baut den Service auf dem bestätigenden Template auf.
+     */
+    @Setup(Level.Trial)
+    public void vorbereiten() {
+        logkontext = StilleProtokollierung.konfiguriere();
+        rabbitTemplate = new BestaetigendesRabbitTemplate();
+        rabbitTemplate.setMessageConverter(new StatusNachrichtenKonverter(new Jackson2JsonMessageConverter()));
+        rabbitTemplate.setMandatory(true);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        statusService = new BeethovenStatusService(new Nachrichtenversand(rabbitTemplate, registry, 1000, 5000),
+                new Ablaufverfolgung(new Spanspeicher(16384)), registry);
+
+        String traceparent = mitTraceparent ? new Tracekontext("4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902b7").alsTraceparent() : null;
+        bestellIds = new String[BESTELLUNGEN];
+        for (int i = 0; i < BESTELLUNGEN; i++) {
+            bestellIds[i] = "ORD-BENCH-STATUS-" + Thread.currentThread().threadId() + "-" + i;
+            BeethovenMockRepo.bestellabwicklung.put(bestellIds[i], BestellabwicklungBuilder.erhalteInstanz()
+                    .mitBestellId(bestellIds[i])
+                    .mitKundenId("CUST-BENCH")
+                    .mitProduktId("PROD-MOCK-001")
+                    .mitBestellStatus(OrderStatus.PROCESSED)
+                    .mitVersanddatum(LocalDateTime.of(2025, 5, 15, 10, 30))
+                    .mitTraceparent(traceparent)
+                    .erstellen());
+        }
+    }
+
+    /**
+     * Entfernt die Bestellabwicklungen und gibt die Anzahl der übergebenen Nachrichten aus.
+     */
+    @TearDown(Level.Trial)
+    public void aufraeumen() {
+        for (String bestellId : bestellIds) {
+            BeethovenMockRepo.bestellabwicklung.remove(bestellId);
+        }
+        System.out.printf("%nNachrichten übergeben: %d%n", rabbitTemplate.gesendet.sum());
+        Configurator.shutdown(logkontext);
+    }
+
+    @Benchmark
+    public void sendeStatusAktualisierung() {
+        naechste++;
+        statusService.sendeStatusAktualisierung(bestellIds[naechste & (BESTELLUNGEN - 1)], STATUS[naechste & (STATUS.length - 1)]);
+    }
+
+    @Benchmark
+    public boolean validiereStatus() throws Throwable {
+        naechste++;
+        return (boolean) VALIDIERE_STATUS.invokeExact(statusService, STATUS_MIT_UNGUELTIGEM[naechste & (STATUS_MIT_UNGUELTIGEM.length - 1)]);
+    }
+
+    @Benchmark
+    public String mappeErpStatusZuECommerceStatus() throws Throwable {
+        naechste++;
+        return (String) MAPPE_STATUS.invokeExact(statusService, STATUS[naechste & (STATUS.length - 1)]);
+    }
+
+    /**
+     * Ersetzt die Verbindung zum Broker: Nachrichten werden konvertiert, gezählt und sofort bestätigt.
+     */
+    static final class BestaetigendesRabbitTemplate extends RabbitTemplate {
+
+        private final LongAdder gesendet = new LongAdder();
+
+        @Override
+        public void send(String exchange, String routingKey, Message message, CorrelationData correlationData) {
+            gesendet.increment();
+            if (correlationData != null) {
+                correlationData.getFuture().complete(new CorrelationData.Confirm(true, null));
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package kirschner.flaig.beethoven.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import kirschner.flaig.beethoven.config.Ablaufverfolgung;
+import kirschner.flaig.beethoven.config.GrpcTraceServerInterceptor;
+import kirschner.flaig.beethoven.config.Spanspeicher;
+import kirschner.flaig.beethoven.entity.Geldbetrag;
+import kirschner.flaig.beethoven.grpc.BestellungRequest;
+import kirschner.flaig.beethoven.grpc.BestellungResponse;
+import kirschner.flaig.beethoven.grpc.ErpOrderServiceGrpc;
+import kirschner.flaig.beethoven.repository.BeethovenMockRepo;
+import kirschner.flaig.beethoven.repository.ProduktverwaltungBuilder;
+import kirschner.flaig.beethoven.service.ErpOrderService;
+
+/**
+ * Misst {@link ErpOrderService#bestellungOrder} über einen In-Process-gRPC-Server, der wie in der Anwendung auf
+ * virtuellen Threads läuft und den {@link GrpcTraceServerInterceptor} vorschaltet. {@link #latenz()} ruft mit einem
+ * Thread blockierend auf und liefert die Verteilung der Antwortzeit eines einzelnen Aufrufs, {@link #durchsatz()}
+ * ruft mit acht Threads gleichzeitig auf. Serialisierung und Netzwerk fallen In-Process weg; gemessen werden
+ * gRPC-Aufrufpfad, Lagerprüfung, Anlage der Bestellabwicklung und Logging.
+ * <p>
+ * Bestellt wird ein eigenes Produkt mit unbegrenztem Bestand. Die angelegten Bestellabwicklungen werden nach jeder
+ * Iteration aus dem {@link BeethovenMockRepo} entfernt, damit die Map nicht über die Messung wächst. Das Logging
+ * übernimmt die {@link StilleProtokollierung}. Mit {@code -prof gc} ausführen.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErpOrderServiceBenchmark {
+
+    private static final String PRODUKT_ID = "PROD-BENCH-ERP";
+
+    private LoggerContext logkontext;
+    private ExecutorService serverExecutor;
+    private Server server;
+    private ManagedChannel kanal;
+    private ErpOrderServiceGrpc.ErpOrderServiceBlockingStub stub;
+    private BestellungRequest anfrage;
+
+    /**
+     * Legt das Benchmark-Produkt an und startet den In-Process-Server.
+     *
+     * @throws Exception Wenn der Server nicht gestartet werden kann.
+     */
+    @Setup(Level.Trial)
+    public void vorbereiten() throws Exception {
+        logkontext = StilleProtokollierung.konfiguriere();
+        BeethovenMockRepo.produktverwaltung.put(PRODUKT_ID, ProduktverwaltungBuilder.erhalteInstanz()
+                .mitProduktId(PRODUKT_ID)
+                .mitProduktName("Benchmark-Produkt")
+                .mitLieferant("Benchmark")
+                .mitEinkaufspreis(Geldbetrag.parse("1.00"))
+                .mitVerkaufspreis(Geldbetrag.parse("2.00"))
+                .mitLagerbestand(Integer.MAX_VALUE)
+                .erstellen());
+
+        String name = InProcessServerBuilder.generateName();
+        serverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        ErpOrderService erpOrderService = new ErpOrderService(100_000, 86_400);
+        server = InProcessServerBuilder.forName(name)
+                .executor(serverExecutor)
+                .addService(ServerInterceptors.intercept(erpOrderService,
+                        new GrpcTraceServerInterceptor(new Ablaufverfolgung(new Spanspeicher(16384)))))
+                .build()
+                .start();
+        kanal = InProcessChannelBuilder.forName(name).build();
+        stub = ErpOrderServiceGrpc.newBlockingStub(kanal);
+        anfrage = BestellungRequest.newBuilder()
+                .setCustomerId("CUST-BENCH")
+                .setProductId(PRODUKT_ID)
+                .setQuantity(1)
+                .build();
+    }
+
+    /**
+     * Füllt den Bestand wieder auf und entfernt die angelegten Bestellabwicklungen.
+     */
+    @TearDown(Level.Iteration)
+    public void raeumeIterationAuf() {
+        BeethovenMockRepo.produktverwaltung.get(PRODUKT_ID).setLagerbestand(Integer.MAX_VALUE);
+        BeethovenMockRepo.bestellabwicklung.values().removeIf(bestellabwicklung -> PRODUKT_ID.equals(bestellabwicklung.getProduktId()));
+    }
+
+    /**
+     * Fährt Kanal, Server und Executor herunter.
+     *
+     * @throws InterruptedException Wenn das Warten auf das Herunterfahren unterbrochen wird.
+     */
+    @TearDown(Level.Trial)
+    public void aufraeumen() throws InterruptedException {
+        kanal.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        serverExecutor.shutdownNow();
+        BeethovenMockRepo.produktverwaltung.remove(PRODUKT_ID);
+        Configurator.shutdown(logkontext);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public BestellungResponse latenz() {
+        return stub.bestellungOrder(anfrage);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(8)
+    public BestellungResponse durchsatz() {
+        return stub.bestellungOrder(anfrage);
+    }
+}
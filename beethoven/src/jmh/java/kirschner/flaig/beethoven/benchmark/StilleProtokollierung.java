@@ -0,0 +1,47 @@
+package kirschner.flaig.beethoven.benchmark;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.OutputStreamAppender;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.core.util.NullOutputStream;
+
+/**
+ * Stellt Log4j für Benchmarks der Services ein: Die Konsole aus {@code log4j2.xml} mit demselben Muster schreibt in einen
+ * {@link NullOutputStream}, der {@code RabbitMQAppender} entfällt. So bleibt der Aufwand für Formatierung und
+ * Kontextdaten in der Messung, ohne dass ein Broker erreichbar sein muss oder die Ausgabe die Konsole flutet.
+ */
+final class StilleProtokollierung {
+
+    private StilleProtokollierung() {
+    }
+
+    /**
+     * Initialisiert Log4j mit der stillen Konsole auf Stufe INFO. Muss vor dem ersten Logger der Fork laufen.
+     *
+     * @return Der Logger-Kontext, der mit {@link Configurator#shutdown(LoggerContext)} beendet wird.
+     */
+    static LoggerContext konfiguriere() {
+        ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.setStatusLevel(Level.WARN);
+        builder.add(builder.newRootLogger(Level.INFO));
+        LoggerContext kontext = Configurator.initialize(builder.build());
+        Configuration konfiguration = kontext.getConfiguration();
+        Appender konsole = OutputStreamAppender.newBuilder().setName("Console").setTarget(NullOutputStream.getInstance())
+                .setLayout(PatternLayout.newBuilder().withConfiguration(konfiguration)
+                        .withPattern("%d{HH:mm:ss.SSS} [%t] %-5level %logger{36} - %equals{[%X{traceId},%X{spanId}] }{[,] }{}%msg%n")
+                        .build())
+                .build();
+        konsole.start();
+        konfiguration.addAppender(konsole);
+        konfiguration.getRootLogger().addAppender(konsole, null, null);
+        kontext.updateLoggers();
+        return kontext;
+    }
+}
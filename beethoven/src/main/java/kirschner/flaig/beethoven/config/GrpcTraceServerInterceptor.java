@@ -0,0 +1,102 @@
+package kirschner.flaig.beethoven.config;
+
+import io.grpc.ForwardingServerCall.SimpleForwardingServerCall;
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import kirschner.flaig.beethoven.config.Ablaufverfolgung.Bereich;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+
+/**
+ * Übernimmt den {@link Tracekontext} aus den Metadaten eingehender gRPC-Aufrufe.
+ * Für jeden Aufruf wird ein Server-{@link Span} mit dem vollständigen Methodennamen als Kind des {@code traceparent}
+ * von Mozart begonnen, ohne ihn als Wurzel eines neuen Traces. Sein Kontext ist in allen Callbacks des
+ * Aufrufs aktiv, sodass die Logzeilen des {@code ErpOrderService} die IDs tragen und angelegte Bestellabwicklungen
+ * ihn übernehmen können. Beendet wird der Span mit dem Abschluss oder Abbruch des Aufrufs.
+ */
+@GrpcGlobalServerInterceptor
+public class GrpcTraceServerInterceptor implements ServerInterceptor {
+
+    /**
+     * Der Metadaten-Schlüssel des Kontexts.
+     */
+    private static final Metadata.Key<String> TRACEPARENT = Metadata.Key.of(Tracekontext.HEADER, Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * Beginnt und beendet die Server-Spans.
+     */
+    private final Ablaufverfolgung ablaufverfolgung;
+
+    /**
+     * Konstruktor für den {@code GrpcTraceServerInterceptor}.
+     *
+     * @param ablaufverfolgung Die {@link Ablaufverfolgung}.
+     */
+    public GrpcTraceServerInterceptor(Ablaufverfolgung ablaufverfolgung) {
+        this.ablaufverfolgung = ablaufverfolgung;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> aufruf, Metadata metadaten,
+                                                                 ServerCallHandler<ReqT, RespT> weiter) {
+        Span span = ablaufverfolgung.starte(aufruf.getMethodDescriptor().getFullMethodName(),
+                Tracekontext.ausTraceparent(metadaten.get(TRACEPARENT)));
+        Tracekontext kontext = span.kontext();
+        ServerCall<ReqT, RespT> beendend = new SimpleForwardingServerCall<>(aufruf) {
+            @Override
+            public void close(Status status, Metadata trailer) {
+                if (!status.isOk()) {
+                    span.setzeFehler(status.getCode().name());
+                }
+                ablaufverfolgung.beende(span);
+                super.close(status, trailer);
+            }
+        };
+
+        ServerCall.Listener<ReqT> empfaenger;
+        try (Bereich bereich = Ablaufverfolgung.aktiviere(kontext)) {
+            empfaenger = weiter.startCall(beendend, metadaten);
+        }
+        return new SimpleForwardingServerCallListener<>(empfaenger) {
+            @Override
+            public void onMessage(ReqT nachricht) {
+                try (Bereich bereich = Ablaufverfolgung.aktiviere(kontext)) {
+                    super.onMessage(nachricht);
+                }
+            }
+
+            @Override
+            public void onHalfClose() {
+                try (Bereich bereich = Ablaufverfolgung.aktiviere(kontext)) {
+                    super.onHalfClose();
+                }
+            }
+
+            @Override
+            public void onCancel() {
+                span.setzeFehler(Status.Code.CANCELLED.name());
+                ablaufverfolgung.beende(span);
+                try (Bereich bereich = Ablaufverfolgung.aktiviere(kontext)) {
+                    super.onCancel();
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                try (Bereich bereich = Ablaufverfolgung.aktiviere(kontext)) {
+                    super.onComplete();
+                }
+            }
+
+            @Override
+            public void onReady() {
+                try (Bereich bereich = Ablaufverfolgung.aktiviere(kontext)) {
+                    super.onReady();
+                }
+            }
+        };
+    }
+}
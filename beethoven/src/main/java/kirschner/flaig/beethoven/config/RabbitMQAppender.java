@@ -1,8 +1,17 @@
 package kirschner.flaig.beethoven.config;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.logging.log4j.core.Appender;
 import org.apache.logging.log4j.core.Core;
@@ -16,6 +25,7 @@ import org.apache.logging.log4j.core.config.plugins.PluginElement;
 import org.apache.logging.log4j.core.config.plugins.PluginFactory;
 import org.apache.logging.log4j.core.layout.PatternLayout;
 
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
@@ -25,25 +35,229 @@ import com.rabbitmq.client.MessageProperties;
  * Ein Log4j Appender, der Log-Nachrichten an einen RabbitMQ Exchange sendet.
  * Dieser Appender verbindet sich mit einem RabbitMQ-Server, deklariert einen Exchange sowie eine Queue
  * und leitet formatierte Log-Ereignisse an diesen Exchange weiter.
+ * <p>
+ * Im synchronen Modus wird jedes Ereignis auf dem loggenden Thread gesendet; der Kanal ist dabei durch eine Sperre
+ * geschützt, da ein {@link Channel} nicht threadsicher ist. Im asynchronen Modus ({@code async="true"}) legt der
+ * loggende Thread das Ereignis nur in einen Platz des {@link LogRingpuffer}; das Layout kodiert es dabei direkt in den
+ * wiederverwendeten Byte-Puffer des Platzes, sodass das Anhängen nach dem Aufwärmen keinen Müll erzeugt. Ein einzelner
+ * Versandthread fasst bis zu
+ * {@code batchSize} Ereignisse oder alle innerhalb von {@code lingerMs} angefallenen Ereignisse zu einer Nachricht
+ * zusammen, optional mit gzip komprimiert ({@code compression="gzip"}). Die Nachricht enthält die Ereignisse
+ * hintereinander im Format des Layouts, ihre Anzahl steht im Header {@value #HEADER_ANZAHL}. Ist der Puffer voll,
+ * wird das Ereignis bei {@code overflow="drop"} verworfen und gezählt, bei {@code overflow="block"} wartet der
+ * loggende Thread auf freien Platz.
+ * <p>
+ * Ist der Broker nicht erreichbar, baut der Appender die Verbindung mit exponentiell wachsendem Abstand
+ * ({@code reconnectMinMs} bis {@code reconnectMaxMs}) neu auf. Mit {@code spoolFile} schreibt der Versandthread die
+ * Nachrichten in dieser Zeit in einen {@link LogSpool} von {@code spoolSizeMb} MB und sendet sie nach dem
+ * Wiederverbinden in ihrer Reihenfolge vor allen neuen Nachrichten; ist der Spool voll, werden die Ereignisse verworfen
+ * und gezählt. Der Spool erfordert den asynchronen Modus. Im synchronen Modus gehen die Ereignisse während des Ausfalls
+ * verloren; der Verbindungsaufbau läuft dann auf einem eigenen Thread, damit kein loggender Thread auf den Timeout
+ * des Brokers wartet.
  */
 @Plugin(name = "RabbitMQ", category = Core.CATEGORY_NAME, elementType = Appender.ELEMENT_TYPE, printObject = true)
 public class RabbitMQAppender extends AbstractAppender {
 
+    /**
+     * Der Header mit der Anzahl der Log-Ereignisse in einer gebündelten Nachricht.
+     */
+    public static final String HEADER_ANZAHL = "x-log-anzahl";
+
+    /**
+     * Die Wartezeit eines blockierten loggenden Threads, bevor er erneut freien Platz sucht.
+     */
+    private static final long BLOCKIER_WARTEZEIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * Die minimale Ruhezeit des Versandthreads bei leerem Puffer, damit er auch ohne Verweilzeit nicht aktiv wartet.
+     */
+    private static final long MINIMALE_RUHEZEIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Der Timeout für einen Verbindungsaufbau; so lange wartet der Versandthread höchstens auf einen nicht erreichbaren
+     * Broker.
+     */
+    private static final int VERBINDUNGS_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Die Wartezeit auf den Versand der restlichen Ereignisse beim Stoppen, wenn Log4j keine vorgibt.
+     */
+    private static final long STANDARD_STOPP_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Die Strategie, wenn der Ringpuffer voll ist.
+     */
+    public enum Ueberlaufstrategie {
+        /**
+         * Das Ereignis wird verworfen und gezählt.
+         */
+        VERWERFEN,
+        /**
+         * Der loggende Thread wartet, bis Platz frei ist.
+         */
+        BLOCKIEREN;
+
+        /**
+         * Bestimmt die Strategie aus dem Wert des Attributs {@code overflow}.
+         *
+         * @param wert {@code drop} oder {@code block}.
+         * @return Die Strategie.
+         * @throws IllegalArgumentException Wenn der Wert unbekannt ist.
+         */
+        public static Ueberlaufstrategie von(String wert) {
+            return switch (wert.toLowerCase()) {
+                case "drop" -> VERWERFEN;
+                case "block" -> BLOCKIEREN;
+                default -> throw new IllegalArgumentException("Unbekannte Überlaufstrategie: " + wert);
+            };
+        }
+    }
+
+    /**
+     * Die Einstellungen für den Versand der Log-Ereignisse.
+     *
+     * @param asynchron Ob über Ringpuffer und Versandthread gesendet wird.
+     * @param puffergroesse Die Kapazität des Ringpuffers.
+     * @param batchGroesse Die maximale Anzahl von Ereignissen pro Nachricht.
+     * @param verweilzeitMillis Die maximale Zeit, die ein Ereignis auf weitere Ereignisse für seine Nachricht wartet.
+     * @param komprimieren Ob gebündelte Nachrichten mit gzip komprimiert werden.
+     * @param ueberlauf Die Strategie bei vollem Ringpuffer.
+     * @param spoolDatei Die Datei des Spools für Broker-Ausfälle oder {@code null} ohne Spool.
+     * @param spoolGroesse Die Größe des Spools in Bytes.
+     * @param wiederverbindungMinMillis Der Abstand des ersten Verbindungsversuchs nach einem Verbindungsverlust.
+     * @param wiederverbindungMaxMillis Der maximale Abstand zwischen zwei Verbindungsversuchen.
+     */
+    public record Versandeinstellungen(boolean asynchron, int puffergroesse, int batchGroesse, long verweilzeitMillis,
+                                       boolean komprimieren, Ueberlaufstrategie ueberlauf, Path spoolDatei, int spoolGroesse,
+                                       long wiederverbindungMinMillis, long wiederverbindungMaxMillis) {
+
+        /**
+         * Prüft die Einstellungen.
+         *
+         * @throws IllegalArgumentException Wenn eine Größe oder ein Abstand nicht positiv, die Verweilzeit negativ oder
+         * der Spool ohne asynchronen Modus konfiguriert ist.
+         */
+        public Versandeinstellungen {
+            if (puffergroesse <= 0 || batchGroesse <= 0 || verweilzeitMillis < 0) {
+                throw new IllegalArgumentException("Ungültige Versandeinstellungen: puffergroesse=" + puffergroesse
+                        + ", batchGroesse=" + batchGroesse + ", verweilzeitMillis=" + verweilzeitMillis);
+            }
+            if (wiederverbindungMinMillis <= 0 || wiederverbindungMaxMillis < wiederverbindungMinMillis) {
+                throw new IllegalArgumentException("Ungültige Abstände für die Wiederverbindung: " + wiederverbindungMinMillis
+                        + " bis " + wiederverbindungMaxMillis + " ms");
+            }
+            if (spoolDatei != null && (!asynchron || spoolGroesse <= 0)) {
+                throw new IllegalArgumentException("Der Spool erfordert den asynchronen Modus und eine positive Größe");
+            }
+        }
+
+        /**
+         * Erstellt Einstellungen ohne Spool mit Verbindungsversuchen im Abstand von einer bis 30 Sekunden.
+         *
+         * @param asynchron Ob über Ringpuffer und Versandthread gesendet wird.
+         * @param puffergroesse Die Kapazität des Ringpuffers.
+         * @param batchGroesse Die maximale Anzahl von Ereignissen pro Nachricht.
+         * @param verweilzeitMillis Die maximale Zeit, die ein Ereignis auf weitere Ereignisse für seine Nachricht wartet.
+         * @param komprimieren Ob gebündelte Nachrichten mit gzip komprimiert werden.
+         * @param ueberlauf Die Strategie bei vollem Ringpuffer.
+         */
+        public Versandeinstellungen(boolean asynchron, int puffergroesse, int batchGroesse, long verweilzeitMillis,
+                                    boolean komprimieren, Ueberlaufstrategie ueberlauf) {
+            this(asynchron, puffergroesse, batchGroesse, verweilzeitMillis, komprimieren, ueberlauf, null, 0, 1000, 30_000);
+        }
+    }
+
     /**
      * Die RabbitMQ-Verbindung.
      */
-    private transient Connection verbindung;
+    private transient volatile Connection verbindung;
     /**
      * Der RabbitMQ-Kanal.
      */
-    private transient Channel kanal;
+    private transient volatile Channel kanal;
     /**
      * Der Name des RabbitMQ-Exchanges, an den die Nachrichten gesendet werden.
      */
     private final String austauschName;
 
     /**
-     * Geschützter Konstruktor für den RabbitMQAppender.
+     * Der Name der Queue, die bei jedem Verbindungsaufbau deklariert wird.
+     */
+    private final String warteschlangenName;
+
+    /**
+     * Die Verbindungsfabrik für den Verbindungsaufbau und die Wiederverbindung.
+     */
+    private final ConnectionFactory verbindungsFabrik;
+
+    /**
+     * Die Einstellungen für den Versand.
+     */
+    private final Versandeinstellungen einstellungen;
+
+    /**
+     * Schützt den Kanal im synchronen Modus vor gleichzeitigem Zugriff mehrerer loggender Threads und des
+     * Verbindungsaufbaus.
+     */
+    private final ReentrantLock kanalSperre = new ReentrantLock();
+
+    /**
+     * Der Ringpuffer im asynchronen Modus, sonst {@code null}.
+     */
+    private final LogRingpuffer puffer;
+
+    /**
+     * Der Spool für Broker-Ausfälle oder {@code null}; nur vom Versandthread verwendet.
+     */
+    private final LogSpool spool;
+
+    /**
+     * Die Anzahl der wegen eines vollen Puffers oder Spools verworfenen Ereignisse.
+     */
+    private final LongAdder verworfen = new LongAdder();
+
+    /**
+     * Die Anzahl der in den Spool geschriebenen Ereignisse.
+     */
+    private final LongAdder gespoolt = new LongAdder();
+
+    /**
+     * Die Anzahl der aus dem Spool nachgesendeten Ereignisse.
+     */
+    private final LongAdder wiedergesendet = new LongAdder();
+
+    /**
+     * Die Anzahl der Ereignisse, deren Versand fehlgeschlagen ist.
+     */
+    private final LongAdder fehlgeschlagen = new LongAdder();
+
+    /**
+     * Der Zeitpunkt ({@link System#nanoTime()}) des nächsten Verbindungsversuchs.
+     */
+    private volatile long naechsterVerbindungsversuch;
+
+    /**
+     * Der aktuelle Abstand zwischen zwei Verbindungsversuchen in Millisekunden.
+     */
+    private volatile long wiederverbindungMillis;
+
+    /**
+     * Ob im synchronen Modus gerade ein Thread die Verbindung neu aufbaut.
+     */
+    private final AtomicBoolean wiederverbindungLaeuft = new AtomicBoolean();
+
+    /**
+     * Der Versandthread im asynchronen Modus.
+     */
+    private volatile Thread versender;
+
+    /**
+     * Ob der Versandthread weiterläuft; beim Stoppen leert er zuvor den Puffer.
+     */
+    private volatile boolean versandLaeuft;
+
+    /**
+     * Konstruktor für den RabbitMQAppender.
      * Initialisiert den Appender und baut die Verbindung zu RabbitMQ auf.
      *
      * @param name Der Name des Appenders.
@@ -52,32 +266,26 @@ public class RabbitMQAppender extends AbstractAppender {
      * @param ignoriereAusnahmen Gibt an, ob Ausnahmen, die während des Anhängens auftreten, ignoriert werden sollen.
      * @param warteschlangenName Der Name der zu deklarierenden RabbitMQ-Queue.
      * @param austauschName Der Name des zu deklarierenden RabbitMQ-Exchanges.
-     * @param host Der Hostname des RabbitMQ-Servers.
-     * @param port Der Port des RabbitMQ-Servers.
-     * @param benutzername Der Benutzername für die RabbitMQ-Verbindung.
-     * @param passwort Das Passwort für die RabbitMQ-Verbindung.
+     * @param verbindungsFabrik Die Verbindungsfabrik für den RabbitMQ-Server.
+     * @param einstellungen Die Einstellungen für den Versand.
      */
-    protected RabbitMQAppender(final String name, final Filter filter, final Layout<? extends Serializable> layout,
-                               final boolean ignoriereAusnahmen, final String warteschlangenName, final String austauschName, final String host,
-                               final int port, final String benutzername, final String passwort) {
+    public RabbitMQAppender(final String name, final Filter filter, final Layout<? extends Serializable> layout,
+                            final boolean ignoriereAusnahmen, final String warteschlangenName, final String austauschName,
+                            final ConnectionFactory verbindungsFabrik, final Versandeinstellungen einstellungen) {
         super(name, filter, layout, ignoriereAusnahmen, null);
         this.austauschName = austauschName;
+        this.warteschlangenName = warteschlangenName;
+        this.verbindungsFabrik = verbindungsFabrik;
+        this.einstellungen = einstellungen;
+        this.puffer = einstellungen.asynchron() ? new LogRingpuffer(einstellungen.puffergroesse()) : null;
+        this.wiederverbindungMillis = einstellungen.wiederverbindungMinMillis();
+        this.spool = oeffneSpool(einstellungen);
 
         try {
-            ConnectionFactory verbindungsFabrik = new ConnectionFactory();
-            verbindungsFabrik.setHost(host);
-            verbindungsFabrik.setPort(port);
-            verbindungsFabrik.setUsername(benutzername);
-            verbindungsFabrik.setPassword(passwort);
-            this.verbindung = verbindungsFabrik.newConnection();
-            this.kanal = this.verbindung.createChannel();
-
-            this.kanal.exchangeDeclare(this.austauschName, "fanout", true);
-            this.kanal.queueDeclare(warteschlangenName, true, false, false, null);
-            this.kanal.queueBind(warteschlangenName, this.austauschName, "");
-
+            verbinde();
         } catch (IOException | TimeoutException e) {
             LOGGER.error("Failed to connect to RabbitMQ", e);
+            planeWiederverbindung();
         }
     }
 
@@ -92,9 +300,19 @@ public class RabbitMQAppender extends AbstractAppender {
      * @param port Der Port des RabbitMQ-Servers.
      * @param benutzername Der Benutzername für die RabbitMQ-Verbindung.
      * @param passwort Das Passwort für die RabbitMQ-Verbindung.
+     * @param asynchron Ob asynchron über einen Ringpuffer gesendet wird. Standardmäßig {@code false}.
+     * @param puffergroesse Die Kapazität des Ringpuffers. Standardmäßig 8192.
+     * @param batchGroesse Die maximale Anzahl von Ereignissen pro Nachricht. Standardmäßig 256.
+     * @param verweilzeitMillis Die maximale Wartezeit auf weitere Ereignisse in Millisekunden. Standardmäßig 50.
+     * @param kompression {@code none} oder {@code gzip}. Standardmäßig {@code none}.
+     * @param ueberlauf {@code drop} oder {@code block}. Standardmäßig {@code drop}.
+     * @param spoolDatei Die Datei des Spools für Broker-Ausfälle. Standardmäßig kein Spool.
+     * @param spoolGroesseMb Die Größe des Spools in MB. Standardmäßig 64.
+     * @param wiederverbindungMinMillis Der erste Abstand zwischen Verbindungsversuchen in Millisekunden. Standardmäßig 1000.
+     * @param wiederverbindungMaxMillis Der maximale Abstand zwischen Verbindungsversuchen in Millisekunden. Standardmäßig 30000.
      * @param layout Das Layout, das zum Formatieren von Log-Ereignissen verwendet wird. Wenn null, wird ein Standard-PatternLayout verwendet.
      * @param filter Der Filter, der auf Ereignisse angewendet wird.
-     * @return Eine Instanz des konfigurierten RabbitMQAppenders.
+     * @return Eine Instanz des konfigurierten RabbitMQAppenders oder null bei einer ungültigen Konfiguration.
      */
     @PluginFactory
     public static RabbitMQAppender createAppender(
@@ -105,43 +323,484 @@ public class RabbitMQAppender extends AbstractAppender {
             @PluginAttribute("port") final int port,
             @PluginAttribute("username") final String benutzername,
             @PluginAttribute("password") final String passwort,
+            @PluginAttribute("async") final boolean asynchron,
+            @PluginAttribute(value = "bufferSize", defaultInt = 8192) final int puffergroesse,
+            @PluginAttribute(value = "batchSize", defaultInt = 256) final int batchGroesse,
+            @PluginAttribute(value = "lingerMs", defaultLong = 50) final long verweilzeitMillis,
+            @PluginAttribute(value = "compression", defaultString = "none") final String kompression,
+            @PluginAttribute(value = "overflow", defaultString = "drop") final String ueberlauf,
+            @PluginAttribute("spoolFile") final String spoolDatei,
+            @PluginAttribute(value = "spoolSizeMb", defaultInt = 64) final int spoolGroesseMb,
+            @PluginAttribute(value = "reconnectMinMs", defaultLong = 1000) final long wiederverbindungMinMillis,
+            @PluginAttribute(value = "reconnectMaxMs", defaultLong = 30_000) final long wiederverbindungMaxMillis,
             @PluginElement("Layout") Layout<? extends Serializable> layout,
             @PluginElement("Filter") final Filter filter) {
 
         if (layout == null) {
             layout = PatternLayout.createDefaultLayout();
         }
+
+        final Versandeinstellungen einstellungen;
+        try {
+            einstellungen = new Versandeinstellungen(asynchron, puffergroesse, batchGroesse, verweilzeitMillis,
+                    switch (kompression.toLowerCase()) {
+                        case "none" -> false;
+                        case "gzip" -> true;
+                        default -> throw new IllegalArgumentException("Unbekannte Kompression: " + kompression);
+                    },
+                    Ueberlaufstrategie.von(ueberlauf), spoolDatei == null ? null : Path.of(spoolDatei),
+                    Math.multiplyExact(spoolGroesseMb, 1024 * 1024), wiederverbindungMinMillis, wiederverbindungMaxMillis);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            LOGGER.error("Invalid configuration for RabbitMQ appender {}: {}", name, e.getMessage());
+            return null;
+        }
+
+        ConnectionFactory verbindungsFabrik = new ConnectionFactory();
+        verbindungsFabrik.setHost(host);
+        verbindungsFabrik.setPort(port);
+        verbindungsFabrik.setUsername(benutzername);
+        verbindungsFabrik.setPassword(passwort);
+        verbindungsFabrik.setAutomaticRecoveryEnabled(false);
+        verbindungsFabrik.setConnectionTimeout(VERBINDUNGS_TIMEOUT_MILLIS);
+
         // Der Parameter ignoreExceptions wird im Konstruktoraufruf standardmäßig auf true gesetzt.
-        return new RabbitMQAppender(name, filter, layout, true, warteschlangenName, austauschName, host, port, benutzername, passwort);
+        return new RabbitMQAppender(name, filter, layout, true, warteschlangenName, austauschName, verbindungsFabrik, einstellungen);
     }
 
     /**
-     * Hängt ein Log-Ereignis an. Das formatierte Ereignis wird als Nachricht an den konfigurierten RabbitMQ Exchange gesendet.
-     * Stellt sicher, dass der Kanal für die Veröffentlichung verfügbar ist.
+     * Startet den Appender und im asynchronen Modus den Versandthread.
+     */
+    @Override
+    public void start() {
+        super.start();
+        if (puffer != null) {
+            versandLaeuft = true;
+            versender = Thread.ofPlatform().name("rabbitmq-appender-" + getName()).daemon().start(this::versende);
+        }
+    }
+
+    /**
+     * Hängt ein Log-Ereignis an. Das formatierte Ereignis wird als Nachricht an den konfigurierten RabbitMQ Exchange
+     * gesendet, im asynchronen Modus über den Ringpuffer.
      *
      * @param logEreignis Das zu protokollierende Log-Ereignis.
      */
     @Override
     public void append(final LogEvent logEreignis) {
-        if (this.kanal == null || !this.kanal.isOpen()) {
-            LOGGER.error("Cannot log to RabbitMQ, channel is not available or closed for appender {}.", this.getName());
+        if (puffer == null) {
+            sendeSynchron(getLayout().toByteArray(logEreignis));
             return;
         }
+
+        long position = puffer.reserviere();
+        while (position < 0) {
+            Thread aktuellerVersender = versender;
+            if (einstellungen.ueberlauf() == Ueberlaufstrategie.VERWERFEN || !versandLaeuft
+                    || Thread.currentThread() == aktuellerVersender) {
+                verworfen.increment();
+                return;
+            }
+            LockSupport.unpark(aktuellerVersender);
+            LockSupport.parkNanos(BLOCKIER_WARTEZEIT_NANOS);
+            position = puffer.reserviere();
+        }
+        final LogRingpuffer.Platz platz = puffer.platz(position);
         try {
-            final byte[] nachricht = getLayout().toByteArray(logEreignis);
-            this.kanal.basicPublish(this.austauschName, "", MessageProperties.PERSISTENT_TEXT_PLAIN, nachricht);
-        } catch (IOException e) {
+            getLayout().encode(logEreignis, platz);
+        } catch (RuntimeException e) {
+            // Der Platz muss trotzdem freigegeben werden; leer wird er vom Versandthread übersprungen.
+            platz.leere();
+            throw e;
+        } finally {
+            puffer.veroeffentliche(position);
+        }
+        if (position % einstellungen.batchGroesse() == einstellungen.batchGroesse() - 1) {
+            LockSupport.unpark(versender);
+        }
+    }
+
+    /**
+     * Sendet ein Ereignis direkt auf dem loggenden Thread. Ist die Verbindung verloren, geht das Ereignis verloren, und
+     * sobald der nächste Versuch fällig ist, wird die Verbindung auf einem eigenen Thread neu aufgebaut.
+     *
+     * @param nachricht Das formatierte Ereignis.
+     */
+    private void sendeSynchron(final byte[] nachricht) {
+        if (!istVerbunden()) {
+            fehlgeschlagen.increment();
+            starteWiederverbindung();
+            return;
+        }
+        kanalSperre.lock();
+        try {
+            Channel aktuellerKanal = this.kanal;
+            if (aktuellerKanal == null || !aktuellerKanal.isOpen()) {
+                fehlgeschlagen.increment();
+                return;
+            }
+            aktuellerKanal.basicPublish(this.austauschName, "", MessageProperties.PERSISTENT_TEXT_PLAIN, nachricht);
+        } catch (IOException | RuntimeException e) {
+            fehlgeschlagen.increment();
             LOGGER.error("Error while sending log to RabbitMQ for appender {}: {}", this.getName(), e.getMessage(), e);
+            trenne();
+        } finally {
+            kanalSperre.unlock();
+        }
+    }
+
+    /**
+     * Startet im synchronen Modus einen Thread für den Verbindungsaufbau, wenn der nächste Versuch fällig ist und nicht
+     * bereits ein anderer läuft. Der Thread hält die Sperre des Kanals nur, während er verbindet.
+     */
+    private void starteWiederverbindung() {
+        if (System.nanoTime() - naechsterVerbindungsversuch < 0 || !wiederverbindungLaeuft.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofPlatform().name("rabbitmq-appender-" + getName() + "-verbinden").daemon().start(() -> {
+            kanalSperre.lock();
+            try {
+                if (!istVerbunden() && !isStopping() && !isStopped()) {
+                    versucheWiederverbindung();
+                }
+            } finally {
+                kanalSperre.unlock();
+                wiederverbindungLaeuft.set(false);
+            }
+        });
+    }
+
+    /**
+     * Die Schleife des Versandthreads: Entnimmt Ereignisse aus dem Ringpuffer und sendet sie gebündelt, sobald
+     * {@code batchSize} erreicht oder die Verweilzeit des ältesten Ereignisses abgelaufen ist. Nach dem Stoppen wird der
+     * Puffer noch geleert.
+     */
+    private void versende() {
+        final long verweilzeitNanos = TimeUnit.MILLISECONDS.toNanos(einstellungen.verweilzeitMillis());
+        final ByteArrayOutputStream batch = new ByteArrayOutputStream(8192);
+        final ByteArrayOutputStream komprimiert = new ByteArrayOutputStream(8192);
+        int anzahl = 0;
+        long faellig = 0;
+        long gemeldetVerworfen = 0;
+
+        while (true) {
+            boolean beenden = !versandLaeuft;
+            LogRingpuffer.Platz ereignis = puffer.naechster();
+            if (ereignis != null) {
+                boolean leer = ereignis.laenge() == 0;
+                if (!leer) {
+                    if (anzahl == 0) {
+                        faellig = System.nanoTime() + verweilzeitNanos;
+                    }
+                    ereignis.schreibeIn(batch);
+                    anzahl++;
+                }
+                puffer.entnimm();
+                if (leer || anzahl < einstellungen.batchGroesse()) {
+                    continue;
+                }
+            } else if (anzahl == 0) {
+                if (beenden) {
+                    return;
+                }
+                pflegeVerbindung();
+                LockSupport.parkNanos(Math.max(verweilzeitNanos, MINIMALE_RUHEZEIT_NANOS));
+                continue;
+            } else if (!beenden && faellig - System.nanoTime() > 0) {
+                LockSupport.parkNanos(faellig - System.nanoTime());
+                continue;
+            }
+
+            sendeBatch(batch, komprimiert, anzahl);
+            batch.reset();
+            anzahl = 0;
+
+            long aktuellVerworfen = verworfen.sum();
+            if (aktuellVerworfen != gemeldetVerworfen) {
+                LOGGER.warn("RabbitMQ appender {}: dropped {} log events because the buffer or spool is full ({} in total).",
+                        getName(), aktuellVerworfen - gemeldetVerworfen, aktuellVerworfen);
+                gemeldetVerworfen = aktuellVerworfen;
+            }
+        }
+    }
+
+    /**
+     * Sendet gebündelte Ereignisse als eine Nachricht. Liegen noch Nachrichten im Spool oder ist der Broker nicht
+     * erreichbar, kommt die Nachricht in den Spool, damit die Reihenfolge erhalten bleibt; ohne Spool geht sie verloren.
+     *
+     * @param batch Die hintereinander geschriebenen Ereignisse.
+     * @param komprimiert Der Puffer für den komprimierten Inhalt.
+     * @param anzahl Die Anzahl der Ereignisse.
+     */
+    private void sendeBatch(final ByteArrayOutputStream batch, final ByteArrayOutputStream komprimiert, final int anzahl) {
+        final byte[] inhalt;
+        try {
+            if (einstellungen.komprimieren()) {
+                komprimiert.reset();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(komprimiert, 8192)) {
+                    batch.writeTo(gzip);
+                }
+                inhalt = komprimiert.toByteArray();
+            } else {
+                inhalt = batch.toByteArray();
+            }
+        } catch (IOException e) {
+            fehlgeschlagen.add(anzahl);
+            LOGGER.error("Error while sending {} logs to RabbitMQ for appender {}: {}", anzahl, this.getName(), e.getMessage(), e);
+            return;
+        }
+
+        pflegeVerbindung();
+        if (spool != null && (!spool.istLeer() || !istVerbunden())) {
+            spoole(inhalt, anzahl);
+            return;
+        }
+        if (!istVerbunden()) {
+            fehlgeschlagen.add(anzahl);
+            return;
+        }
+        try {
+            veroeffentliche(inhalt, anzahl, einstellungen.komprimieren());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Error while sending {} logs to RabbitMQ for appender {}: {}", anzahl, this.getName(), e.getMessage(), e);
+            trenne();
+            if (spool != null) {
+                spoole(inhalt, anzahl);
+            } else {
+                fehlgeschlagen.add(anzahl);
+            }
         }
     }
 
+    /**
+     * Veröffentlicht eine gebündelte Nachricht.
+     *
+     * @param inhalt Der Inhalt der Nachricht.
+     * @param anzahl Die Anzahl der Ereignisse.
+     * @param komprimiert Ob der Inhalt gzip-komprimiert ist.
+     * @throws IOException Wenn die Nachricht nicht gesendet werden kann.
+     */
+    private void veroeffentliche(final byte[] inhalt, final int anzahl, final boolean komprimiert) throws IOException {
+        final AMQP.BasicProperties eigenschaften = MessageProperties.PERSISTENT_TEXT_PLAIN.builder()
+                .contentEncoding(komprimiert ? "gzip" : null)
+                .headers(Map.of(HEADER_ANZAHL, anzahl))
+                .build();
+        this.kanal.basicPublish(this.austauschName, "", eigenschaften, inhalt);
+    }
+
+    /**
+     * Schreibt eine Nachricht in den Spool; ist er voll, werden ihre Ereignisse verworfen.
+     *
+     * @param inhalt Der Inhalt der Nachricht.
+     * @param anzahl Die Anzahl der Ereignisse.
+     */
+    private void spoole(final byte[] inhalt, final int anzahl) {
+        if (spool.schreibe(inhalt, anzahl, einstellungen.komprimieren())) {
+            gespoolt.add(anzahl);
+        } else {
+            verworfen.add(anzahl);
+        }
+    }
+
+    /**
+     * Baut im Versandthread eine verlorene Verbindung neu auf, sobald der nächste Versuch fällig ist, und sendet danach
+     * die Nachrichten aus dem Spool in ihrer Reihenfolge. Schlägt das Senden fehl, bleiben die restlichen Nachrichten
+     * im Spool.
+     */
+    private void pflegeVerbindung() {
+        if (!istVerbunden() && !versucheWiederverbindung()) {
+            return;
+        }
+        if (spool == null) {
+            return;
+        }
+        LogSpool.Satz satz;
+        while ((satz = spool.naechster()) != null) {
+            try {
+                veroeffentliche(satz.inhalt(), satz.anzahl(), satz.komprimiert());
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Error while sending {} logs to RabbitMQ for appender {}: {}", satz.anzahl(), this.getName(), e.getMessage(), e);
+                trenne();
+                return;
+            }
+            spool.bestaetige();
+            wiedergesendet.add(satz.anzahl());
+        }
+    }
+
+    /**
+     * Versucht einen Verbindungsaufbau, wenn der nächste Versuch fällig ist, und verdoppelt bei einem Fehlschlag den
+     * Abstand bis höchstens {@code reconnectMaxMs}.
+     *
+     * @return {@code true}, wenn die Verbindung steht.
+     */
+    private boolean versucheWiederverbindung() {
+        if (System.nanoTime() - naechsterVerbindungsversuch < 0) {
+            return false;
+        }
+        try {
+            verbinde();
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            wiederverbindungMillis = Math.min(wiederverbindungMillis * 2, einstellungen.wiederverbindungMaxMillis());
+            planeWiederverbindung();
+            return false;
+        }
+        wiederverbindungMillis = einstellungen.wiederverbindungMinMillis();
+        LOGGER.info("RabbitMQ appender {}: reconnected, replaying {} spooled log events.", getName(), spool == null ? 0 : spool.getOffeneEreignisse());
+        return true;
+    }
+
+    /**
+     * Baut Verbindung und Kanal auf und deklariert Exchange, Queue und Binding.
+     *
+     * @throws IOException Wenn die Verbindung oder die Deklaration fehlschlägt.
+     * @throws TimeoutException Wenn der Verbindungsaufbau zu lange dauert.
+     */
+    private void verbinde() throws IOException, TimeoutException {
+        Connection alteVerbindung = this.verbindung;
+        if (alteVerbindung != null) {
+            alteVerbindung.abort();
+        }
+        Connection neueVerbindung = verbindungsFabrik.newConnection();
+        Channel neuerKanal = neueVerbindung.createChannel();
+        neuerKanal.exchangeDeclare(this.austauschName, "fanout", true);
+        neuerKanal.queueDeclare(this.warteschlangenName, true, false, false, null);
+        neuerKanal.queueBind(this.warteschlangenName, this.austauschName, "");
+        this.verbindung = neueVerbindung;
+        this.kanal = neuerKanal;
+    }
+
+    /**
+     * Schließt eine gestörte Verbindung und plant den nächsten Verbindungsversuch.
+     */
+    private void trenne() {
+        Connection alteVerbindung = this.verbindung;
+        this.kanal = null;
+        this.verbindung = null;
+        if (alteVerbindung != null) {
+            alteVerbindung.abort();
+        }
+        planeWiederverbindung();
+        LOGGER.warn("RabbitMQ appender {}: connection lost, {}; next attempt in {} ms.", getName(), spool != null ? "spooling log events" : "dropping log events", wiederverbindungMillis);
+    }
+
+    /**
+     * Setzt den nächsten Verbindungsversuch auf den aktuellen Abstand.
+     */
+    private void planeWiederverbindung() {
+        naechsterVerbindungsversuch = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wiederverbindungMillis);
+    }
+
+    /**
+     * Gibt an, ob ein offener Kanal zum Broker besteht.
+     *
+     * @return {@code true}, wenn gesendet werden kann.
+     */
+    private boolean istVerbunden() {
+        Channel aktuellerKanal = this.kanal;
+        return aktuellerKanal != null && aktuellerKanal.isOpen();
+    }
+
+    /**
+     * Öffnet den Spool, wenn einer konfiguriert ist.
+     *
+     * @param einstellungen Die Einstellungen für den Versand.
+     * @return Der Spool oder {@code null}, wenn keiner konfiguriert ist oder er nicht geöffnet werden kann.
+     */
+    private LogSpool oeffneSpool(final Versandeinstellungen einstellungen) {
+        if (einstellungen.spoolDatei() == null) {
+            return null;
+        }
+        try {
+            LogSpool geoeffnet = new LogSpool(einstellungen.spoolDatei(), einstellungen.spoolGroesse());
+            if (!geoeffnet.istLeer()) {
+                LOGGER.info("RabbitMQ appender {}: {} log events waiting in spool {}.", getName(), geoeffnet.getOffeneEreignisse(), einstellungen.spoolDatei());
+            }
+            return geoeffnet;
+        } catch (IOException e) {
+            LOGGER.error("Cannot open spool {} for appender {}, continuing without spool", einstellungen.spoolDatei(), getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Gibt die Anzahl der wegen eines vollen Puffers oder Spools verworfenen Ereignisse zurück.
+     *
+     * @return Die Anzahl seit dem Start.
+     */
+    public long getVerworfen() {
+        return verworfen.sum();
+    }
+
+    /**
+     * Gibt die Anzahl der Ereignisse zurück, deren Versand ohne Spool fehlgeschlagen ist.
+     *
+     * @return Die Anzahl seit dem Start.
+     */
+    public long getFehlgeschlagen() {
+        return fehlgeschlagen.sum();
+    }
+
+    /**
+     * Gibt die Anzahl der in den Spool geschriebenen Ereignisse zurück.
+     *
+     * @return Die Anzahl seit dem Start.
+     */
+    public long getGespoolt() {
+        return gespoolt.sum();
+    }
+
+    /**
+     * Gibt die Anzahl der aus dem Spool nachgesendeten Ereignisse zurück.
+     *
+     * @return Die Anzahl seit dem Start.
+     */
+    public long getWiedergesendet() {
+        return wiedergesendet.sum();
+    }
+
+    /**
+     * Gibt die ungefähre Anzahl der Ereignisse im Ringpuffer zurück.
+     *
+     * @return Die Belegung, im synchronen Modus immer 0.
+     */
+    public int getPufferbelegung() {
+        return puffer == null ? 0 : puffer.belegung();
+    }
+
     /**
      * Stoppt den Appender und gibt die verwendeten Ressourcen frei.
-     * Schließt den RabbitMQ-Kanal und die Verbindung.
+     * Sendet im asynchronen Modus die restlichen Ereignisse und schließt den RabbitMQ-Kanal und die Verbindung.
+     *
+     * @param timeout Die maximale Wartezeit auf den Versandthread; 0 für den Standard von 5 Sekunden.
+     * @param zeiteinheit Die Einheit des Timeouts.
+     * @return {@code true}, wenn der Appender gestoppt wurde.
      */
     @Override
-    public void stop() {
-        super.stop();
+    public boolean stop(final long timeout, final TimeUnit zeiteinheit) {
+        setStopping();
+        super.stop(timeout, zeiteinheit, false);
+        Thread aktuellerVersender = versender;
+        if (aktuellerVersender != null) {
+            versandLaeuft = false;
+            LockSupport.unpark(aktuellerVersender);
+            try {
+                aktuellerVersender.join(timeout > 0 ? zeiteinheit.toMillis(timeout) : STANDARD_STOPP_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (aktuellerVersender.isAlive()) {
+                LOGGER.warn("RabbitMQ appender {}: publisher thread did not finish in time, {} log events not sent.",
+                        getName(), puffer.belegung());
+            }
+        }
+        if (spool != null && (aktuellerVersender == null || !aktuellerVersender.isAlive())) {
+            try {
+                spool.close();
+            } catch (IOException ignoriert) {
+                LOGGER.warn("Exception ignored while closing spool for appender {}: {}", this.getName(), ignoriert.getMessage());
+            }
+        }
+        kanalSperre.lock();
         try {
             if (this.kanal != null && this.kanal.isOpen()) {
                 this.kanal.close();
@@ -152,6 +811,10 @@ public class RabbitMQAppender extends AbstractAppender {
         } catch (TimeoutException | IOException ignoriert) {
             // Fehler beim Schließen der Ressourcen werden protokolliert, aber ignoriert, um den Stopp-Prozess nicht zu blockieren.
             LOGGER.warn("Exception ignored while closing RabbitMQ resources for appender {}: {}", this.getName(), ignoriert.getMessage());
+        } finally {
+            kanalSperre.unlock();
         }
+        setStopped();
+        return true;
     }
-}
\ No newline at end of file
+}
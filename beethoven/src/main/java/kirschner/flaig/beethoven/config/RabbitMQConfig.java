@@ -1,5 +1,7 @@
 package kirschner.flaig.beethoven.config;
 
+import java.util.List;
+
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
@@ -10,8 +12,14 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.context.annotation.Bean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import kirschner.flaig.beethoven.config.NachrichtenformatKonverter.Nachrichtenformat;
+import kirschner.flaig.beethoven.config.NachrichtenformatKonverter.Protobufabbildung;
+import kirschner.flaig.beethoven.entity.ECommerceStatusAktualisierung;
+import kirschner.flaig.beethoven.grpc.StatusAktualisierung;
+
 /**
  * Konfigurationsklasse für RabbitMQ-Beans im Beethoven-Service.
  * Definiert Exchanges, Warteschlangen, Bindings, einen JSON-Nachrichtenkonverter
@@ -138,13 +146,25 @@ public class RabbitMQConfig {
 
     /**
      * Erstellt und konfiguriert ein {@link RabbitTemplate} für die Interaktion mit RabbitMQ.
+     * Statusaktualisierungen an das E-Commerce-System schreibt der {@link StatusNachrichtenKonverter},
+     * alle anderen Nachrichten der {@link #jsonNachrichtenKonverter()}. Mit {@code beethoven.amqp.format=protobuf}
+     * übernimmt der {@link NachrichtenformatKonverter} die Statusaktualisierungen und sendet sie als
+     * {@link StatusAktualisierung}.
+     * Nachrichten werden mit {@code mandatory} gesendet; Publisher Confirms und Returns wertet der
+     * {@link kirschner.flaig.beethoven.service.Nachrichtenversand} aus.
      * @param verbindungsFabrik Die {@link ConnectionFactory}.
+     * @param format Das Format für gesendete Nachrichten, {@code json} oder {@code protobuf}.
      * @return Eine konfigurierte Instanz von {@link RabbitTemplate}.
      */
     @Bean
-    public RabbitTemplate rabbitVorlage(final ConnectionFactory verbindungsFabrik) {
+    public RabbitTemplate rabbitVorlage(final ConnectionFactory verbindungsFabrik,
+                                        @Value("${beethoven.amqp.format:json}") String format) {
         final RabbitTemplate vorlage = new RabbitTemplate(verbindungsFabrik);
-        vorlage.setMessageConverter(jsonNachrichtenKonverter());
+        vorlage.setMessageConverter(new NachrichtenformatKonverter(new StatusNachrichtenKonverter(jsonNachrichtenKonverter()),
+                Nachrichtenformat.von(format), List.of(
+                new Protobufabbildung<>(ECommerceStatusAktualisierung.class, StatusAktualisierung.getDescriptor().getFullName(),
+                        StatusAktualisierung.parser(), ECommerceStatusAktualisierung::alsProto, ECommerceStatusAktualisierung::vonProto))));
+        vorlage.setMandatory(true);
         return vorlage;
     }
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+package kirschner.flaig.beethoven.config;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Ein zeitlich begrenzter Schritt eines Traces, etwa ein gRPC-Aufruf von Mozart oder eine Statusaktualisierung.
+ * Spans werden von der {@link Ablaufverfolgung} begonnen und beendet und danach im {@link Spanspeicher} abgelegt.
+ * Ein Span wird von einem Thread zur Zeit beschrieben; zwischen den Callbacks eines gRPC-Aufrufs wechselt er den
+ * Thread nur über die Aufrufreihenfolge von gRPC.
+ */
+public final class Span {
+
+    /**
+     * Setzt die Dauer genau einmal, auch wenn Abbruch und Abschluss eines Aufrufs gleichzeitig eintreffen.
+     */
+    private static final AtomicLongFieldUpdater<Span> DAUER = AtomicLongFieldUpdater.newUpdater(Span.class, "dauerNanos");
+
+    /**
+     * Der Name des Schritts.
+     */
+    private final String name;
+
+    /**
+     * Der Kontext mit Trace- und Span-ID.
+     */
+    private final Tracekontext kontext;
+
+    /**
+     * Die Span-ID des Elternschritts oder {@code null} für die Wurzel eines Traces.
+     */
+    private final String elternSpanId;
+
+    /**
+     * Der Beginn in Mikrosekunden seit der Epoche, um Spans verschiedener Dienste zu ordnen.
+     */
+    private final long beginnEpochMikros;
+
+    /**
+     * Der Beginn aus {@link System#nanoTime()} für die Dauer.
+     */
+    private final long beginnNanos;
+
+    /**
+     * Die Dauer in Nanosekunden oder -1, solange der Span läuft.
+     */
+    private volatile long dauerNanos = -1;
+
+    /**
+     * Ein Detail wie die Bestell-ID oder {@code null}.
+     */
+    private String detail;
+
+    /**
+     * Der Fehler, mit dem der Schritt gescheitert ist, oder {@code null}.
+     */
+    private String fehler;
+
+    /**
+     * Erstellt einen laufenden Span.
+     *
+     * @param name Der Name des Schritts.
+     * @param kontext Der Kontext des Spans.
+     * @param elternSpanId Die Span-ID des Elternschritts oder {@code null}.
+     * @param beginnEpochMikros Der Beginn in Mikrosekunden seit der Epoche.
+     * @param beginnNanos Der Beginn aus {@link System#nanoTime()}.
+     */
+    Span(String name, Tracekontext kontext, String elternSpanId, long beginnEpochMikros, long beginnNanos) {
+        this.name = name;
+        this.kontext = kontext;
+        this.elternSpanId = elternSpanId;
+        this.beginnEpochMikros = beginnEpochMikros;
+        this.beginnNanos = beginnNanos;
+    }
+
+    /**
+     * Beendet den Span, sofern er noch läuft.
+     *
+     * @param endeNanos Das Ende aus {@link System#nanoTime()}.
+     * @return {@code true}, wenn der Span hierdurch beendet wurde.
+     */
+    boolean beende(long endeNanos) {
+        return DAUER.compareAndSet(this, -1, Math.max(0, endeNanos - beginnNanos));
+    }
+
+    /**
+     * Setzt ein Detail des Schritts.
+     *
+     * @param detail Das Detail, etwa die Bestell-ID.
+     */
+    public void setzeDetail(String detail) {
+        this.detail = detail;
+    }
+
+    /**
+     * Markiert den Schritt als gescheitert.
+     *
+     * @param fehler Der Grund.
+     */
+    public void setzeFehler(String fehler) {
+        this.fehler = fehler;
+    }
+
+    /**
+     * Gibt den Kontext zurück, der an Kindschritte und andere Dienste weitergegeben wird.
+     *
+     * @return Der Kontext.
+     */
+    public Tracekontext kontext() {
+        return kontext;
+    }
+
+    /**
+     * Gibt den Namen des Schritts zurück.
+     *
+     * @return Der Name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gibt die Trace-ID zurück.
+     *
+     * @return Die Trace-ID.
+     */
+    public String getTraceId() {
+        return kontext.traceId();
+    }
+
+    /**
+     * Gibt die Span-ID zurück.
+     *
+     * @return Die Span-ID.
+     */
+    public String getSpanId() {
+        return kontext.spanId();
+    }
+
+    /**
+     * Gibt die Span-ID des Elternschritts zurück.
+     *
+     * @return Die Span-ID oder {@code null} für die Wurzel.
+     */
+    public String getElternSpanId() {
+        return elternSpanId;
+    }
+
+    /**
+     * Gibt den Beginn zurück.
+     *
+     * @return Der Beginn in Mikrosekunden seit der Epoche.
+     */
+    public long getBeginnEpochMikros() {
+        return beginnEpochMikros;
+    }
+
+    /**
+     * Gibt die Dauer zurück.
+     *
+     * @return Die Dauer in Mikrosekunden oder -1, solange der Span läuft.
+     */
+    public long getDauerMikros() {
+        long dauer = dauerNanos;
+        return dauer < 0 ? -1 : dauer / 1_000;
+    }
+
+    /**
+     * Gibt das Ende zurück.
+     *
+     * @return Das Ende in Mikrosekunden seit der Epoche oder -1, solange der Span läuft.
+     */
+    long endeEpochMikros() {
+        long dauer = getDauerMikros();
+        return dauer < 0 ? -1 : beginnEpochMikros + dauer;
+    }
+
+    /**
+     * Gibt das Detail zurück.
+     *
+     * @return Das Detail oder {@code null}.
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * Gibt den Fehler zurück.
+     *
+     * @return Der Fehler oder {@code null}, wenn der Schritt erfolgreich war.
+     */
+    public String getFehler() {
+        return fehler;
+    }
+}
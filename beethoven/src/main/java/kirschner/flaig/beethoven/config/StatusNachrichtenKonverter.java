@@ -0,0 +1,182 @@
+package kirschner.flaig.beethoven.config;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import kirschner.flaig.beethoven.entity.ECommerceStatusAktualisierung;
+
+/**
+ * Nachrichtenkonverter, der {@link ECommerceStatusAktualisierung}-Nachrichten ohne Jackson schreibt und alle
+ * anderen Nachrichten an einen Delegaten weitergibt.
+ * <p>
+ * Das Format entspricht dem JSON des {@code Jackson2JsonMessageConverter} ({@code {"bestellId":"…","status":"…"}}),
+ * jedoch ohne Typ-ID-Header. Die Länge des Inhalts wird vorab berechnet und die Zeichen werden direkt als UTF-8 in
+ * das Byte-Array der Nachricht geschrieben, ohne Zwischen-Strings.
+ */
+public class StatusNachrichtenKonverter implements MessageConverter {
+
+    /**
+     * Der Anfang des JSON-Objekts bis zum Wert der Bestell-ID.
+     */
+    private static final byte[] ANFANG = "{\"bestellId\":".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Der Übergang zum Wert des Status.
+     */
+    private static final byte[] STATUS = ",\"status\":".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Das JSON-Literal {@code null}.
+     */
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Die Hexadezimalziffern für Unicode-Escape-Sequenzen.
+     */
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Der Konverter für alle anderen Nachrichten.
+     */
+    private final MessageConverter delegat;
+
+    /**
+     * Erstellt den Konverter.
+     *
+     * @param delegat Der Konverter für alle Nachrichten außer {@link ECommerceStatusAktualisierung} und für den Empfang.
+     */
+    public StatusNachrichtenKonverter(MessageConverter delegat) {
+        this.delegat = delegat;
+    }
+
+    /**
+     * Schreibt eine {@link ECommerceStatusAktualisierung} als JSON; alle anderen Objekte schreibt der Delegat.
+     *
+     * @param objekt Das Objekt.
+     * @param eigenschaften Die Eigenschaften der Nachricht.
+     * @return Die Nachricht.
+     */
+    @Override
+    public Message toMessage(Object objekt, MessageProperties eigenschaften) {
+        if (!(objekt instanceof ECommerceStatusAktualisierung statusAktualisierung)) {
+            return delegat.toMessage(objekt, eigenschaften);
+        }
+        String bestellId = statusAktualisierung.getBestellId();
+        String status = statusAktualisierung.getStatus();
+        byte[] inhalt = new byte[ANFANG.length + laenge(bestellId) + STATUS.length + laenge(status) + 1];
+        int position = kopiere(ANFANG, inhalt, 0);
+        position = schreibe(bestellId, inhalt, position);
+        position = kopiere(STATUS, inhalt, position);
+        position = schreibe(status, inhalt, position);
+        inhalt[position] = '}';
+
+        eigenschaften.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        eigenschaften.setContentEncoding(StandardCharsets.UTF_8.name());
+        eigenschaften.setContentLength(inhalt.length);
+        return new Message(inhalt, eigenschaften);
+    }
+
+    /**
+     * Liest eine Nachricht mit dem Delegaten.
+     *
+     * @param nachricht Die Nachricht.
+     * @return Das gelesene Objekt.
+     */
+    @Override
+    public Object fromMessage(Message nachricht) {
+        return delegat.fromMessage(nachricht);
+    }
+
+    /**
+     * Berechnet die Länge eines String-Werts in JSON als UTF-8, einschließlich Anführungszeichen und Escapes.
+     *
+     * @param wert Der Wert oder {@code null}.
+     * @return Die Länge in Bytes.
+     */
+    private static int laenge(String wert) {
+        if (wert == null) {
+            return NULL.length;
+        }
+        int laenge = 2;
+        for (int i = 0; i < wert.length(); i++) {
+            char zeichen = wert.charAt(i);
+            if (zeichen == '"' || zeichen == '\\') {
+                laenge += 2;
+            } else if (zeichen < 0x20) {
+                laenge += 6;
+            } else if (zeichen < 0x80) {
+                laenge += 1;
+            } else if (zeichen < 0x800) {
+                laenge += 2;
+            } else if (Character.isHighSurrogate(zeichen) && i + 1 < wert.length() && Character.isLowSurrogate(wert.charAt(i + 1))) {
+                laenge += 4;
+                i++;
+            } else {
+                laenge += 3;
+            }
+        }
+        return laenge;
+    }
+
+    /**
+     * Schreibt einen String-Wert als JSON in UTF-8.
+     *
+     * @param wert Der Wert oder {@code null}.
+     * @param ziel Das Ziel.
+     * @param position Die Schreibposition.
+     * @return Die Schreibposition nach dem Wert.
+     */
+    private static int schreibe(String wert, byte[] ziel, int position) {
+        if (wert == null) {
+            return kopiere(NULL, ziel, position);
+        }
+        ziel[position++] = '"';
+        for (int i = 0; i < wert.length(); i++) {
+            char zeichen = wert.charAt(i);
+            if (zeichen == '"' || zeichen == '\\') {
+                ziel[position++] = '\\';
+                ziel[position++] = (byte) zeichen;
+            } else if (zeichen < 0x20) {
+                ziel[position++] = '\\';
+                ziel[position++] = 'u';
+                ziel[position++] = '0';
+                ziel[position++] = '0';
+                ziel[position++] = HEX[zeichen >> 4];
+                ziel[position++] = HEX[zeichen & 0xF];
+            } else if (zeichen < 0x80) {
+                ziel[position++] = (byte) zeichen;
+            } else if (zeichen < 0x800) {
+                ziel[position++] = (byte) (0xC0 | zeichen >> 6);
+                ziel[position++] = (byte) (0x80 | zeichen & 0x3F);
+            } else if (Character.isHighSurrogate(zeichen) && i + 1 < wert.length() && Character.isLowSurrogate(wert.charAt(i + 1))) {
+                int codepoint = Character.toCodePoint(zeichen, wert.charAt(++i));
+                ziel[position++] = (byte) (0xF0 | codepoint >> 18);
+                ziel[position++] = (byte) (0x80 | codepoint >> 12 & 0x3F);
+                ziel[position++] = (byte) (0x80 | codepoint >> 6 & 0x3F);
+                ziel[position++] = (byte) (0x80 | codepoint & 0x3F);
+            } else {
+                ziel[position++] = (byte) (0xE0 | zeichen >> 12);
+                ziel[position++] = (byte) (0x80 | zeichen >> 6 & 0x3F);
+                ziel[position++] = (byte) (0x80 | zeichen & 0x3F);
+            }
+        }
+        ziel[position++] = '"';
+        return position;
+    }
+
+    /**
+     * Kopiert feste Bytes in das Ziel.
+     *
+     * @param quelle Die Bytes.
+     * @param ziel Das Ziel.
+     * @param position Die Schreibposition.
+     * @return Die Schreibposition nach den Bytes.
+     */
+    private static int kopiere(byte[] quelle, byte[] ziel, int position) {
+        System.arraycopy(quelle, 0, ziel, position, quelle.length);
+        return position + quelle.length;
+    }
+}
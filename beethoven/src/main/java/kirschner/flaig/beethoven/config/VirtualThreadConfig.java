@@ -0,0 +1,48 @@
+package kirschner.flaig.beethoven.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.annotation.PreDestroy;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+
+/**
+ * Konfiguration für den Betrieb mit virtuellen Threads im Beethoven-Service.
+ * Wird nur aktiv, wenn {@code spring.threads.virtual.enabled=true} gesetzt ist.
+ * Tomcat wird in diesem Fall bereits von Spring Boot umgestellt; diese Klasse ergänzt
+ * den Executor des gRPC-Servers, auf dem {@code ErpOrderService} ausgeführt wird.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    /**
+     * Executor, der jede Aufgabe auf einem eigenen virtuellen Thread ausführt.
+     * Bewusst kein eigenes Bean, damit Spring Boot weiterhin seinen {@code applicationTaskExecutor} anlegt.
+     */
+    private final ExecutorService grpcExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-server-", 0).factory());
+
+    /**
+     * Schließt den Executor beim Herunterfahren des Kontexts.
+     */
+    @PreDestroy
+    public void schliesseExecutor() {
+        grpcExecutor.close();
+    }
+
+    /**
+     * Setzt den Executor des gRPC-Servers auf virtuelle Threads.
+     *
+     * @return Ein {@link GrpcServerConfigurer}, der den Executor setzt.
+     */
+    @Bean
+    public GrpcServerConfigurer virtuelleThreadsGrpcServerKonfigurierer() {
+        return serverBuilder -> serverBuilder.executor(grpcExecutor);
+    }
+}
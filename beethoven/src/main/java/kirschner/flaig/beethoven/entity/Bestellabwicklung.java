@@ -38,6 +38,12 @@ public class Bestellabwicklung {
      */
     private LocalDateTime versanddatum;
 
+    /**
+     * Der Kontext des Traces, in dem die Bestellung angelegt wurde, als {@code traceparent}, oder {@code null}.
+     * Spätere Statusaktualisierungen werden diesem Trace zugeordnet.
+     */
+    private String traceparent;
+
     // Standardkonstruktor wird implizit bereitgestellt, falls kein anderer Konstruktor definiert ist.
     // Falls ein Konstruktor benötigt wird, sollte er hier mit deutschen Parametern hinzugefügt werden.
 
@@ -132,4 +138,22 @@ public class Bestellabwicklung {
     public void setVersanddatum(LocalDateTime versanddatum) {
         this.versanddatum = versanddatum;
     }
+
+    /**
+     * Gibt den Kontext des Traces zurück, in dem die Bestellung angelegt wurde.
+     *
+     * @return Der {@code traceparent}-Wert oder {@code null}.
+     */
+    public String getTraceparent() {
+        return traceparent;
+    }
+
+    /**
+     * Setzt den Kontext des Traces, in dem die Bestellung angelegt wurde.
+     *
+     * @param traceparent Der {@code traceparent}-Wert oder {@code null}.
+     */
+    public void setTraceparent(String traceparent) {
+        this.traceparent = traceparent;
+    }
 }
\ No newline at end of file
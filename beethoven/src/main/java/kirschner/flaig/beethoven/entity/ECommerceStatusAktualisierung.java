@@ -1,9 +1,12 @@
 package kirschner.flaig.beethoven.entity;
 
+import kirschner.flaig.beethoven.grpc.StatusAktualisierung;
+
 /**
  * Repräsentiert eine Statusaktualisierung, die an das E-Commerce-System gesendet wird.
  * Diese Klasse dient als Datenübertragungsobjekt (DTO) und enthält die Bestell-ID
  * sowie den neuen Status der Bestellung aus Sicht des E-Commerce-Systems.
+ * In Protobuf wird sie als {@link StatusAktualisierung} übertragen.
  */
 public class ECommerceStatusAktualisierung {
 
@@ -28,6 +31,34 @@ public class ECommerceStatusAktualisierung {
         this.status = status;
     }
 
+    /**
+     * Erstellt eine Statusaktualisierung aus ihrer Protobuf-Darstellung. Leere Strings werden zu {@code null}.
+     *
+     * @param aktualisierung Die {@link StatusAktualisierung}.
+     * @return Die Statusaktualisierung.
+     */
+    public static ECommerceStatusAktualisierung vonProto(StatusAktualisierung aktualisierung) {
+        return new ECommerceStatusAktualisierung(
+                aktualisierung.getBestellId().isEmpty() ? null : aktualisierung.getBestellId(),
+                aktualisierung.getStatus().isEmpty() ? null : aktualisierung.getStatus());
+    }
+
+    /**
+     * Gibt die Protobuf-Darstellung der Statusaktualisierung zurück. Felder mit {@code null} bleiben ungesetzt.
+     *
+     * @return Die {@link StatusAktualisierung}.
+     */
+    public StatusAktualisierung alsProto() {
+        StatusAktualisierung.Builder aktualisierung = StatusAktualisierung.newBuilder();
+        if (bestellId != null) {
+            aktualisierung.setBestellId(bestellId);
+        }
+        if (status != null) {
+            aktualisierung.setStatus(status);
+        }
+        return aktualisierung.build();
+    }
+
     /**
      * Gibt die Bestell-ID zurück.
      *
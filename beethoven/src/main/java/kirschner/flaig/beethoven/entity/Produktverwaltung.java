@@ -1,7 +1,5 @@
 package kirschner.flaig.beethoven.entity;
 
-import java.math.BigDecimal;
-
 /**
  * Repräsentiert Verwaltungsdaten für ein Produkt im Beethoven-System.
  * Diese Klasse enthält Informationen wie Produktidentifikation, Name, Lieferant,
@@ -27,12 +25,12 @@ public class Produktverwaltung {
     /**
      * Der Einkaufspreis des Produkts.
      */
-    private BigDecimal einkaufspreis;
+    private Geldbetrag einkaufspreis;
 
     /**
      * Der Verkaufspreis des Produkts.
      */
-    private BigDecimal verkaufspreis;
+    private Geldbetrag verkaufspreis;
 
     /**
      * Der aktuelle Lagerbestand des Produkts.
@@ -50,7 +48,7 @@ public class Produktverwaltung {
      * @param lagerbestand Der aktuelle Lagerbestand des Produkts.
      */
     public Produktverwaltung(String produktId, String produktName, String lieferant,
-                             BigDecimal einkaufspreis, BigDecimal verkaufspreis, int lagerbestand) {
+                             Geldbetrag einkaufspreis, Geldbetrag verkaufspreis, int lagerbestand) {
         this.produktId = produktId;
         this.produktName = produktName;
         this.lieferant = lieferant;
@@ -116,36 +114,36 @@ public class Produktverwaltung {
     /**
      * Gibt den Einkaufspreis des Produkts zurück.
      *
-     * @return Der Einkaufspreis als {@link BigDecimal}.
+     * @return Der Einkaufspreis als {@link Geldbetrag}.
      */
-    public BigDecimal getEinkaufspreis() {
+    public Geldbetrag getEinkaufspreis() {
         return einkaufspreis;
     }
 
     /**
      * Setzt den Einkaufspreis des Produkts.
      *
-     * @param einkaufspreis Der neue Einkaufspreis als {@link BigDecimal}.
+     * @param einkaufspreis Der neue Einkaufspreis als {@link Geldbetrag}.
      */
-    public void setEinkaufspreis(BigDecimal einkaufspreis) {
+    public void setEinkaufspreis(Geldbetrag einkaufspreis) {
         this.einkaufspreis = einkaufspreis;
     }
 
     /**
      * Gibt den Verkaufspreis des Produkts zurück.
      *
-     * @return Der Verkaufspreis als {@link BigDecimal}.
+     * @return Der Verkaufspreis als {@link Geldbetrag}.
      */
-    public BigDecimal getVerkaufspreis() {
+    public Geldbetrag getVerkaufspreis() {
         return verkaufspreis;
     }
 
     /**
      * Setzt den Verkaufspreis des Produkts.
      *
-     * @param verkaufspreis Der neue Verkaufspreis als {@link BigDecimal}.
+     * @param verkaufspreis Der neue Verkaufspreis als {@link Geldbetrag}.
      */
-    public void setVerkaufspreis(BigDecimal verkaufspreis) {
+    public void setVerkaufspreis(Geldbetrag verkaufspreis) {
         this.verkaufspreis = verkaufspreis;
     }
 
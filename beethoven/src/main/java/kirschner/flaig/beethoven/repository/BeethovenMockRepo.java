@@ -1,11 +1,12 @@
 package kirschner.flaig.beethoven.repository;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import kirschner.flaig.beethoven.entity.Bestellabwicklung;
+import kirschner.flaig.beethoven.entity.Geldbetrag;
 import kirschner.flaig.beethoven.entity.OrderStatus;
 import kirschner.flaig.beethoven.entity.Produktverwaltung;
 
@@ -40,6 +41,7 @@ public final class BeethovenMockRepo {
      * Die Map wird bei der Initialisierung der Klasse gefüllt.
      * <p>
      * <strong>Hinweis:</strong> Der Inhalt dieser Map ist standardmäßig zur Laufzeit veränderbar.
+     * Da der {@code ErpOrderService} aus mehreren gRPC-Threads gleichzeitig Bestellabwicklungen anlegt, ist sie eine {@link ConcurrentHashMap}.
      */
     public static final Map<String, Bestellabwicklung> bestellabwicklung;
 
@@ -58,14 +60,14 @@ public final class BeethovenMockRepo {
      */
     static {
         Map<String, Produktverwaltung> temporaereProduktverwaltung = new HashMap<>();
-        Map<String, Bestellabwicklung> temporaereBestellabwicklung = new HashMap<>();
+        Map<String, Bestellabwicklung> temporaereBestellabwicklung = new ConcurrentHashMap<>();
 
         Produktverwaltung produktVerwaltung1 = ProduktverwaltungBuilder.erhalteInstanz()
                 .mitProduktId("PROD-MOCK-001")
                 .mitProduktName("Mozart Kugeln Classic (10er)")
                 .mitLieferant("Breitkopf & Härtel")
-                .mitEinkaufspreis(new BigDecimal("3.50"))
-                .mitVerkaufspreis(new BigDecimal("5.99"))
+                .mitEinkaufspreis(Geldbetrag.parse("3.50"))
+                .mitVerkaufspreis(Geldbetrag.parse("5.99"))
                 .mitLagerbestand(250)
                 .erstellen();
         temporaereProduktverwaltung.put(produktVerwaltung1.getProduktId(), produktVerwaltung1);
@@ -74,8 +76,8 @@ public final class BeethovenMockRepo {
                 .mitProduktId("PROD-MOCK-002")
                 .mitProduktName("Zauberflöte Partitur")
                 .mitLieferant("G. Henle Verlag")
-                .mitEinkaufspreis(new BigDecimal("12.00"))
-                .mitVerkaufspreis(new BigDecimal("29.95"))
+                .mitEinkaufspreis(Geldbetrag.parse("12.00"))
+                .mitVerkaufspreis(Geldbetrag.parse("29.95"))
                 .mitLagerbestand(30)
                 .erstellen();
         temporaereProduktverwaltung.put(produktVerwaltung2.getProduktId(), produktVerwaltung2);
@@ -84,8 +86,8 @@ public final class BeethovenMockRepo {
                 .mitProduktId("PROD-MOCK-003")
                 .mitProduktName("Dirigentenstab Ebenholz")
                 .mitLieferant("Kunstgießerei Bonn")
-                .mitEinkaufspreis(new BigDecimal("25.00"))
-                .mitVerkaufspreis(new BigDecimal("45.00"))
+                .mitEinkaufspreis(Geldbetrag.parse("25.00"))
+                .mitVerkaufspreis(Geldbetrag.parse("45.00"))
                 .mitLagerbestand(50)
                 .erstellen();
         temporaereProduktverwaltung.put(produktVerwaltung3.getProduktId(), produktVerwaltung3);
@@ -33,6 +33,10 @@ public class BestellabwicklungBuilder {
      * Das Versanddatum für das zu erstellende {@link Bestellabwicklung}-Objekt.
      */
     private LocalDateTime versanddatum;
+    /**
+     * Der {@code traceparent} für das zu erstellende {@link Bestellabwicklung}-Objekt.
+     */
+    private String traceparent;
 
     /**
      * Privater Konstruktor, um die direkte Instanziierung zu verhindern.
@@ -106,6 +110,17 @@ public class BestellabwicklungBuilder {
         return this;
     }
 
+    /**
+     * Setzt den Kontext des Traces, in dem die Bestellung angelegt wird.
+     *
+     * @param traceparent der {@code traceparent}-Wert oder {@code null}.
+     * @return diese {@code BestellabwicklungBuilder}-Instanz für Method Chaining.
+     */
+    public BestellabwicklungBuilder mitTraceparent(String traceparent) {
+        this.traceparent = traceparent;
+        return this;
+    }
+
     /**
      * Erstellt und gibt eine neue Instanz von {@link Bestellabwicklung} zurück,
      * basierend auf den zuvor im Erbauer gesetzten Werten.
@@ -121,6 +136,7 @@ public class BestellabwicklungBuilder {
         abwicklung.setProduktId(this.produktId);
         abwicklung.setBestellStatus(this.bestellStatus);
         abwicklung.setVersanddatum(this.versanddatum);
+        abwicklung.setTraceparent(this.traceparent);
         return abwicklung;
     }
 }
\ No newline at end of file
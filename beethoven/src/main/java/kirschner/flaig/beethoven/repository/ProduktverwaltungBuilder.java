@@ -1,6 +1,6 @@
 package kirschner.flaig.beethoven.repository;
 
-import java.math.BigDecimal;
+import kirschner.flaig.beethoven.entity.Geldbetrag;
 import kirschner.flaig.beethoven.entity.Produktverwaltung;
 
 /**
@@ -25,11 +25,11 @@ public class ProduktverwaltungBuilder {
     /**
      * Der Einkaufspreis für das zu erstellende {@link Produktverwaltung}-Objekt.
      */
-    private BigDecimal einkaufspreis;
+    private Geldbetrag einkaufspreis;
     /**
      * Der Verkaufspreis für das zu erstellende {@link Produktverwaltung}-Objekt.
      */
-    private BigDecimal verkaufspreis;
+    private Geldbetrag verkaufspreis;
     /**
      * Der Lagerbestand für das zu erstellende {@link Produktverwaltung}-Objekt.
      */
@@ -91,7 +91,7 @@ public class ProduktverwaltungBuilder {
      * @param einkaufspreis der Einkaufspreis des Produkts.
      * @return diese {@code ProduktverwaltungBuilder}-Instanz für Method Chaining.
      */
-    public ProduktverwaltungBuilder mitEinkaufspreis(BigDecimal einkaufspreis) {
+    public ProduktverwaltungBuilder mitEinkaufspreis(Geldbetrag einkaufspreis) {
         this.einkaufspreis = einkaufspreis;
         return this;
     }
@@ -102,7 +102,7 @@ public class ProduktverwaltungBuilder {
      * @param verkaufspreis der Verkaufspreis des Produkts.
      * @return diese {@code ProduktverwaltungBuilder}-Instanz für Method Chaining.
      */
-    public ProduktverwaltungBuilder mitVerkaufspreis(BigDecimal verkaufspreis) {
+    public ProduktverwaltungBuilder mitVerkaufspreis(Geldbetrag verkaufspreis) {
         this.verkaufspreis = verkaufspreis;
         return this;
     }
@@ -0,0 +1,41 @@
+package kirschner.flaig.beethoven.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import kirschner.flaig.beethoven.entity.Produktverwaltung;
+import kirschner.flaig.beethoven.repository.BeethovenMockRepo;
+
+/**
+ * Setzt beim Start den Lagerbestand aller Produkte im {@link BeethovenMockRepo#produktverwaltung} auf
+ * {@code beethoven.lager.anfangsbestand}. Ohne die Eigenschaft bleiben die Lagerbestände der Mock-Daten erhalten;
+ * der Lasttest setzt sie, damit die Bestellungen eines Laufs nicht am Bestand scheitern.
+ */
+@Component
+@ConditionalOnProperty(name = "beethoven.lager.anfangsbestand")
+public class Anfangsbestand {
+
+    /**
+     * Logger für diese Klasse.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(Anfangsbestand.class);
+
+    /**
+     * Konstruktor für den {@code Anfangsbestand}.
+     *
+     * @param lagerbestand Der Lagerbestand, den jedes Produkt erhält.
+     * @throws IllegalArgumentException Wenn der Lagerbestand negativ ist.
+     */
+    public Anfangsbestand(@Value("${beethoven.lager.anfangsbestand}") int lagerbestand) throws IllegalArgumentException {
+        if (lagerbestand < 0) {
+            throw new IllegalArgumentException("Der Anfangsbestand darf nicht negativ sein: " + lagerbestand);
+        }
+        for (Produktverwaltung produkt : BeethovenMockRepo.produktverwaltung.values()) {
+            produkt.setLagerbestand(lagerbestand);
+        }
+        LOGGER.info("Anfangsbestand: Lagerbestand aller Produkte auf {} gesetzt.", lagerbestand);
+    }
+}
@@ -1,15 +1,21 @@
 package kirschner.flaig.beethoven.service;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.amqp.AmqpException;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import kirschner.flaig.beethoven.config.Ablaufverfolgung;
+import kirschner.flaig.beethoven.config.Ablaufverfolgung.Bereich;
 import kirschner.flaig.beethoven.config.RabbitMQConfig;
+import kirschner.flaig.beethoven.config.Span;
+import kirschner.flaig.beethoven.config.Tracekontext;
 import kirschner.flaig.beethoven.entity.Bestellabwicklung;
 import kirschner.flaig.beethoven.entity.ECommerceStatusAktualisierung;
 import kirschner.flaig.beethoven.entity.OrderStatus;
@@ -20,6 +26,9 @@ import kirschner.flaig.beethoven.repository.BeethovenMockRepo;
  * für Bestellabwicklungen im Beethoven-System.
  * Validiert Statusänderungen, aktualisiert lokale Repositories und sendet
  * Statusinformationen an das E-Commerce-System via RabbitMQ.
+ * Die Dauer jeder Statusaktualisierung wird als Histogramm {@code statusaktualisierung.senden.dauer} je Ergebnis
+ * erfasst. Jede Aktualisierung einer bekannten Bestellung wird als Span {@code statusaktualisierung} im Trace ihrer
+ * Anlage erfasst; sein Kontext geht als {@code traceparent} mit der Nachricht an Mozart.
  */
 @Service
 public class BeethovenStatusService {
@@ -29,18 +38,38 @@ public class BeethovenStatusService {
     private static final Logger LOGGER = LogManager.getLogger(BeethovenStatusService.class);
 
     /**
-     * RabbitTemplate für die Kommunikation mit RabbitMQ.
+     * Versandschicht für die Kommunikation mit RabbitMQ.
      */
-    private final RabbitTemplate rabbitTemplate;
+    private final Nachrichtenversand nachrichtenversand;
+
+    /**
+     * Beginnt und beendet die Spans der Statusaktualisierungen.
+     */
+    private final Ablaufverfolgung ablaufverfolgung;
+
+    /**
+     * Misst erfolgreiche Statusaktualisierungen.
+     */
+    private final Timer erfolgDauer;
+
+    /**
+     * Misst abgelehnte Statusaktualisierungen.
+     */
+    private final Timer fehlerDauer;
 
     /**
      * Konstruktor für den {@code BeethovenStatusService}.
      *
-     * @param rabbitTemplate Das {@link RabbitTemplate} für die RabbitMQ-Kommunikation.
+     * @param nachrichtenversand Der {@link Nachrichtenversand} für die RabbitMQ-Kommunikation.
+     * @param ablaufverfolgung Die {@link Ablaufverfolgung} für die Spans der Statusaktualisierungen.
+     * @param registry Die {@link MeterRegistry} für die Dauer der Statusaktualisierungen.
      */
     @Autowired
-    public BeethovenStatusService(RabbitTemplate rabbitTemplate) {
-        this.rabbitTemplate = rabbitTemplate;
+    public BeethovenStatusService(Nachrichtenversand nachrichtenversand, Ablaufverfolgung ablaufverfolgung, MeterRegistry registry) {
+        this.nachrichtenversand = nachrichtenversand;
+        this.ablaufverfolgung = ablaufverfolgung;
+        this.erfolgDauer = dauerTimer(registry, "erfolg");
+        this.fehlerDauer = dauerTimer(registry, "fehler");
     }
 
     /**
@@ -53,8 +82,26 @@ public class BeethovenStatusService {
      * @throws IllegalArgumentException Wenn der Status ungültig ist oder die Bestellung nicht gefunden wird.
      */
     public void sendeStatusAktualisierung(String bestellId, String status) throws IllegalArgumentException {
+        long start = System.nanoTime();
+        boolean erfolgreich = false;
+        try {
+            verarbeiteStatusAktualisierung(bestellId, status);
+            erfolgreich = true;
+        } finally {
+            (erfolgreich ? erfolgDauer : fehlerDauer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Validiert den Status, aktualisiert die Bestellabwicklung und leitet die Aktualisierung weiter.
+     *
+     * @param bestellId Die ID der Bestellung.
+     * @param status    Der neue Status als String.
+     * @throws IllegalArgumentException Wenn der Status ungültig ist oder die Bestellung nicht gefunden wird.
+     */
+    private void verarbeiteStatusAktualisierung(String bestellId, String status) throws IllegalArgumentException {
         LOGGER.info("Sende Statusaktualisierung für Bestell-ID: {} mit Status: {}", bestellId, status);
-        rabbitTemplate.convertAndSend(RabbitMQConfig.LOGGING_EXCHANGE_NAME, "Hello");
+        nachrichtenversand.sende("", RabbitMQConfig.LOGGING_EXCHANGE_NAME, "Hello");
         if (!validiereStatus(status)) {
             LOGGER.error("Ungültiger Status: {}. Statusaktualisierung nicht gesendet.", status);
             throw new IllegalArgumentException("Ungültiger Status: " + status);
@@ -66,10 +113,19 @@ public class BeethovenStatusService {
             throw new IllegalArgumentException("Bestellung mit ID " + bestellId + " nicht gefunden.");
         }
 
-        // Annahme: OrderStatus Enum-Konstanten sind englisch und Bestellabwicklung hat setBestellStatus.
-        bestellabwicklungAusRepo.setBestellStatus(OrderStatus.valueOf(status.toUpperCase()));
-        sendeStatusAktualisierungAnECommerce(bestellId, status);
-        LOGGER.info("Statusaktualisierung für Bestell-ID {} erfolgreich verarbeitet.", bestellId);
+        Span span = ablaufverfolgung.starte("statusaktualisierung", Tracekontext.ausTraceparent(bestellabwicklungAusRepo.getTraceparent()));
+        span.setzeDetail(bestellId + " " + status);
+        try (Bereich bereich = Ablaufverfolgung.aktiviere(span.kontext())) {
+            // Annahme: OrderStatus Enum-Konstanten sind englisch und Bestellabwicklung hat setBestellStatus.
+            bestellabwicklungAusRepo.setBestellStatus(OrderStatus.valueOf(status.toUpperCase()));
+            sendeStatusAktualisierungAnECommerce(bestellId, status);
+            LOGGER.info("Statusaktualisierung für Bestell-ID {} erfolgreich verarbeitet.", bestellId);
+        } catch (RuntimeException e) {
+            span.setzeFehler(String.valueOf(e.getMessage()));
+            throw e;
+        } finally {
+            ablaufverfolgung.beende(span);
+        }
     }
 
     /**
@@ -102,6 +158,7 @@ public class BeethovenStatusService {
     /**
      * Sendet eine Statusaktualisierung für eine Bestellung an das E-Commerce-System via RabbitMQ.
      * Mappt hierfür den internen ERP-Status auf einen E-Commerce-spezifischen Status.
+     * Auf die Bestätigung des Brokers wird nicht gewartet; bleibt sie aus, wird der Fehler protokolliert.
      *
      * @param bestellId Die ID der Bestellung.
      * @param status    Der interne ERP-Status der Bestellung.
@@ -111,13 +168,35 @@ public class BeethovenStatusService {
         String statusECommerce = mappeErpStatusZuECommerceStatus(status);
         ECommerceStatusAktualisierung eCommerceAktualisierung = new ECommerceStatusAktualisierung(bestellId, statusECommerce);
         try {
-            rabbitTemplate.convertAndSend(RabbitMQConfig.ECOMMERCE_EXCHANGE_NAME, RabbitMQConfig.ECOMMERCE_STATUS_ROUTING_KEY, eCommerceAktualisierung);
+            nachrichtenversand.sende(RabbitMQConfig.ECOMMERCE_EXCHANGE_NAME, RabbitMQConfig.ECOMMERCE_STATUS_ROUTING_KEY, eCommerceAktualisierung)
+                    .whenComplete((bestaetigt, fehler) -> {
+                        if (fehler != null) {
+                            LOGGER.error("Statusaktualisierung an E-Commerce für Bestell-ID {} nicht bestätigt: {}", bestellId, fehler.getMessage());
+                        } else {
+                            LOGGER.info("Statusaktualisierung vom Broker bestätigt für Bestell-ID: {}", bestellId);
+                        }
+                    });
             LOGGER.info("Statusaktualisierung erfolgreich an E-Commerce-System gesendet für Bestell-ID: {}", bestellId);
         } catch (AmqpException e) {
             LOGGER.error("Fehler beim Senden der Statusaktualisierung an E-Commerce für Bestell-ID {}: {}", bestellId, e.getMessage(), e);
         }
     }
 
+    /**
+     * Registriert das Histogramm der Statusaktualisierungen für ein Ergebnis.
+     *
+     * @param registry Die Registry.
+     * @param ergebnis Das Ergebnis als Tag.
+     * @return Der Timer.
+     */
+    private static Timer dauerTimer(MeterRegistry registry, String ergebnis) {
+        return Timer.builder("statusaktualisierung.senden.dauer")
+                .description("Dauer einer Statusaktualisierung bis zur Übergabe an den Broker")
+                .tag("ergebnis", ergebnis)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
     /**
      * Mappt einen ERP-spezifischen Bestellstatus auf einen für das E-Commerce-System verständlichen Status.
      *
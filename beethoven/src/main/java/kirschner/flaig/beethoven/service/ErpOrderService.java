@@ -1,16 +1,25 @@
 package kirschner.flaig.beethoven.service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
 
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
+import kirschner.flaig.beethoven.config.Ablaufverfolgung;
+import kirschner.flaig.beethoven.config.Tracekontext;
 import kirschner.flaig.beethoven.entity.Bestellabwicklung;
 import kirschner.flaig.beethoven.entity.OrderStatus;
 import kirschner.flaig.beethoven.entity.Produktverwaltung;
+import kirschner.flaig.beethoven.grpc.BestellungBatchRequest;
+import kirschner.flaig.beethoven.grpc.BestellungBatchResponse;
+import kirschner.flaig.beethoven.grpc.BestellungBatchResult;
 import kirschner.flaig.beethoven.grpc.BestellungRequest;
 import kirschner.flaig.beethoven.grpc.BestellungResponse;
 import kirschner.flaig.beethoven.grpc.ErpOrderServiceGrpc;
@@ -23,6 +32,9 @@ import net.devh.boot.grpc.server.service.GrpcService;
  * zur Verarbeitung von Bestellungen im ERP-System (Beethoven).
  * Diese Klasse handhabt eingehende Bestellwünsche, prüft Produktverfügbarkeiten,
  * aktualisiert Lagerbestände und legt Bestellabwicklungsdatensätze an.
+ * Bestellanfragen mit {@code idempotency_key} werden pro Schlüssel nur einmal verarbeitet;
+ * Wiederholungen erhalten die Antwort der ersten Verarbeitung.
+ * Jede Bestellabwicklung merkt sich den Kontext des gRPC-Aufrufs, in dem sie angelegt wurde.
  */
 @GrpcService
 public class ErpOrderService extends ErpOrderServiceGrpc.ErpOrderServiceImplBase {
@@ -37,16 +49,28 @@ public class ErpOrderService extends ErpOrderServiceGrpc.ErpOrderServiceImplBase
     private static final int VORRAUSICHTLICHE_LIEFERZEIT_IN_TAGEN = 3;
 
     /**
-     * Standardkonstruktor für den {@code ErpOrderService}.
+     * Die Antworten bereits verarbeiteter Bestellanfragen je Idempotenzschlüssel.
      */
-    public ErpOrderService() {
+    private final Idempotenzcache<BestellungResponse> idempotenzcache;
+
+    /**
+     * Konstruktor für den {@code ErpOrderService}.
+     *
+     * @param idempotenzMaximaleAnzahl Die maximale Anzahl gemerkter Idempotenzschlüssel.
+     * @param idempotenzLebensdauerSekunden Wie lange ein Idempotenzschlüssel gemerkt wird.
+     */
+    public ErpOrderService(@Value("${beethoven.idempotenz.max-eintraege:100000}") int idempotenzMaximaleAnzahl,
+                           @Value("${beethoven.idempotenz.lebensdauer-sekunden:86400}") long idempotenzLebensdauerSekunden) {
         super();
+        this.idempotenzcache = new Idempotenzcache<>(idempotenzMaximaleAnzahl, Duration.ofSeconds(idempotenzLebensdauerSekunden));
     }
 
     /**
      * Verarbeitet eine eingehende Bestellanfrage vom gRPC-Client.
      * Validiert das angefragte Produkt, aktualisiert dessen Lagerbestand,
      * erstellt eine neue Bestellabwicklung und sendet eine Antwort an den Client.
+     * Trägt die Anfrage einen Idempotenzschlüssel, erhalten Wiederholungen die Antwort der ersten Verarbeitung,
+     * ohne den Lagerbestand erneut zu verringern; gleichzeitige Wiederholungen warten auf diese Verarbeitung.
      *
      * @param request Die {@link BestellungRequest} vom Client.
      * @param responseObserver Der {@link StreamObserver} für das Senden der {@link BestellungResponse}.
@@ -54,66 +78,128 @@ public class ErpOrderService extends ErpOrderServiceGrpc.ErpOrderServiceImplBase
     @Override
     public void bestellungOrder(BestellungRequest request, StreamObserver<BestellungResponse> responseObserver) {
         LOGGER.info("ErpOrderService: bestellungOrder aufgerufen für Produkt-ID {}...", request.getProductId());
-        Produktverwaltung produkt = BeethovenMockRepo.produktverwaltung.get(request.getProductId());
-
-        if (!verarbeiteProdukt(produkt, request, responseObserver)) {
-            // Die Methode verarbeiteProdukt hat bereits responseObserver.onError aufgerufen.
+        BestellungResponse antwort;
+        try {
+            antwort = request.getIdempotencyKey().isEmpty()
+                    ? verarbeiteBestellung(request)
+                    : idempotenzcache.fuehreAus(request.getIdempotencyKey(), request,
+                            () -> CompletableFuture.completedFuture(verarbeiteBestellung(request))).join();
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+            return;
+        } catch (CompletionException e) {
+            responseObserver.onError(Status.fromThrowable(e.getCause()).asRuntimeException());
+            return;
+        } catch (RuntimeException e) {
+            responseObserver.onError(Status.fromThrowable(e).asRuntimeException());
             return;
         }
 
-        LocalDateTime versanddatum = LocalDateTime.now().plusDays(VORRAUSICHTLICHE_LIEFERZEIT_IN_TAGEN);
-        // Annahme: OrderStatus.PROCESSED ist ein gültiger Enum-Wert
-        OrderStatus bestellStatus = OrderStatus.PROCESSED;
-        UUID bestellId = UUID.randomUUID();
+        responseObserver.onNext(antwort);
+        responseObserver.onCompleted();
+        LOGGER.info("ErpOrderService: Bestellung für Produkt-ID {} erfolgreich bearbeitet. Bestellabwicklungs-ID: {}", request.getProductId(), antwort.getOrderId());
+    }
 
-        speichereBestellabwicklungInRepo(bestellId, request, versanddatum, bestellStatus);
+    /**
+     * Prüft das Produkt einer Bestellanfrage, verringert den Lagerbestand und legt die Bestellabwicklung an.
+     *
+     * @param request Die {@link BestellungRequest} vom Client.
+     * @return Die {@link BestellungResponse} für den Client.
+     * @throws io.grpc.StatusRuntimeException Wenn das Produkt nicht existiert oder der Lagerbestand nicht ausreicht.
+     */
+    private BestellungResponse verarbeiteBestellung(BestellungRequest request) {
+        Status fehler = verarbeiteProdukt(BeethovenMockRepo.produktverwaltung.get(request.getProductId()), request);
+        if (fehler != null) {
+            throw fehler.asRuntimeException();
+        }
+        return legeBestellungAn(request);
+    }
 
-        BestellungResponse antwort = BestellungResponse.newBuilder()
-                .setOrderId(bestellId.toString())
-                .setDeliveryDate(versanddatum.toString())
-                .setDeliveryStatus("Processing") // Status-String für die gRPC-Antwort
-                .build();
+    /**
+     * Verarbeitet mehrere Bestellanfragen in einem einzigen gRPC-Aufruf.
+     * Jede Bestellung wird wie bei {@link #bestellungOrder} einzeln geprüft; ein Fehler bei einer
+     * Bestellung führt nicht zum Abbruch des Batches, sondern wird im jeweiligen Ergebnis gemeldet.
+     *
+     * @param request Die {@link BestellungBatchRequest} mit allen Bestellungen.
+     * @param responseObserver Der {@link StreamObserver} für das Senden der {@link BestellungBatchResponse}.
+     */
+    @Override
+    public void bestellungOrderBatch(BestellungBatchRequest request, StreamObserver<BestellungBatchResponse> responseObserver) {
+        LOGGER.info("ErpOrderService: bestellungOrderBatch aufgerufen mit {} Bestellungen...", request.getOrdersCount());
+        BestellungBatchResponse.Builder antwort = BestellungBatchResponse.newBuilder();
 
-        responseObserver.onNext(antwort);
+        for (int index = 0; index < request.getOrdersCount(); index++) {
+            BestellungRequest bestellung = request.getOrders(index);
+            BestellungBatchResult.Builder ergebnis = BestellungBatchResult.newBuilder().setIndex(index);
+            Status fehler = verarbeiteProdukt(BeethovenMockRepo.produktverwaltung.get(bestellung.getProductId()), bestellung);
+            if (fehler == null) {
+                ergebnis.setAccepted(true).setResponse(legeBestellungAn(bestellung));
+            } else {
+                ergebnis.setAccepted(false)
+                        .setErrorCode(fehler.getCode().name())
+                        .setErrorMessage(fehler.getDescription());
+            }
+            antwort.addResults(ergebnis);
+        }
+
+        responseObserver.onNext(antwort.build());
         responseObserver.onCompleted();
-        LOGGER.info("ErpOrderService: Bestellung für Produkt-ID {} erfolgreich bearbeitet. Bestellabwicklungs-ID: {}", request.getProductId(), bestellId);
+        LOGGER.info("ErpOrderService: Batch mit {} Bestellungen bearbeitet.", request.getOrdersCount());
     }
 
     /**
      * Verarbeitet das Produkt im Rahmen einer Bestellanfrage. Prüft die Verfügbarkeit
-     * und aktualisiert den Lagerbestand. Sendet im Fehlerfall eine entsprechende gRPC-Fehlerantwort.
+     * und aktualisiert den Lagerbestand.
      *
      * @param produkt Das {@link Produktverwaltung}-Objekt.
      * @param request Die {@link BestellungRequest} vom Client.
-     * @param responseObserver Der {@link StreamObserver} für das Senden von gRPC-Fehlerantworten.
-     * @return {@code true}, wenn das Produkt erfolgreich verarbeitet wurde, sonst {@code false}.
+     * @return {@code null}, wenn das Produkt erfolgreich verarbeitet wurde, sonst der gRPC-{@link Status} des Fehlers.
      */
-    private boolean verarbeiteProdukt(Produktverwaltung produkt, BestellungRequest request, StreamObserver<BestellungResponse> responseObserver) {
+    private Status verarbeiteProdukt(Produktverwaltung produkt, BestellungRequest request) {
         if (produkt == null) {
             LOGGER.error("ErpOrderService: Produkt mit ID {} nicht gefunden.", request.getProductId());
-            responseObserver.onError(Status.NOT_FOUND
-                    .withDescription("Produkt mit ID " + request.getProductId() + " nicht gefunden.")
-                    .asRuntimeException());
-            return false;
+            return Status.NOT_FOUND
+                    .withDescription("Produkt mit ID " + request.getProductId() + " nicht gefunden.");
         }
 
         int neuerLagerbestand = produkt.getLagerbestand() - request.getQuantity();
         if (neuerLagerbestand < 0) {
             LOGGER.error("ErpOrderService: Nicht genügend Lagerbestand für Produkt {}. Benötigt: {}, Verfügbar: {}.",
                     request.getProductId(), request.getQuantity(), produkt.getLagerbestand());
-            responseObserver.onError(Status.FAILED_PRECONDITION
+            return Status.FAILED_PRECONDITION
                     .withDescription("Nicht genügend Lagerbestand für Produkt " + request.getProductId() +
-                            ". Benötigt: " + request.getQuantity() + ", Verfügbar: " + produkt.getLagerbestand())
-                    .asRuntimeException());
-            return false;
+                            ". Benötigt: " + request.getQuantity() + ", Verfügbar: " + produkt.getLagerbestand());
         }
         produkt.setLagerbestand(neuerLagerbestand);
         LOGGER.info("ErpOrderService: Lagerbestand für Produkt {} aktualisiert. Neuer Lagerbestand: {}.", request.getProductId(), neuerLagerbestand);
-        return true;
+        return null;
+    }
+
+    /**
+     * Legt für eine geprüfte Bestellanfrage eine neue Bestellabwicklung an
+     * und erstellt die zugehörige gRPC-Antwort.
+     *
+     * @param request Die {@link BestellungRequest} vom Client.
+     * @return Die {@link BestellungResponse} mit Bestell-ID, Lieferdatum und initialem Status.
+     */
+    private BestellungResponse legeBestellungAn(BestellungRequest request) {
+        LocalDateTime versanddatum = LocalDateTime.now().plusDays(VORRAUSICHTLICHE_LIEFERZEIT_IN_TAGEN);
+        // Annahme: OrderStatus.PROCESSED ist ein gültiger Enum-Wert
+        OrderStatus bestellStatus = OrderStatus.PROCESSED;
+        UUID bestellId = UUID.randomUUID();
+
+        speichereBestellabwicklungInRepo(bestellId, request, versanddatum, bestellStatus);
+
+        return BestellungResponse.newBuilder()
+                .setOrderId(bestellId.toString())
+                .setDeliveryDate(versanddatum.toString())
+                .setDeliveryStatus("Processing") // Status-String für die gRPC-Antwort
+                .build();
     }
 
     /**
      * Erstellt eine neue {@link Bestellabwicklung} und speichert sie im Mock-Repository.
+     * Ist ein {@link Tracekontext} aktiv, wird er als {@code traceparent} der Bestellabwicklung übernommen.
      *
      * @param bestellId Die zu verwendende UUID für die Bestellabwicklung.
      * @param request Die ursprüngliche {@link BestellungRequest}.
@@ -121,12 +207,14 @@ public class ErpOrderService extends ErpOrderServiceGrpc.ErpOrderServiceImplBase
      * @param bestellStatus Der initiale {@link OrderStatus} der Bestellung.
      */
     private void speichereBestellabwicklungInRepo(UUID bestellId, BestellungRequest request, LocalDateTime versanddatum, OrderStatus bestellStatus) {
+        Tracekontext kontext = Ablaufverfolgung.aktueller();
         Bestellabwicklung bestellabwicklung = BestellabwicklungBuilder.erhalteInstanz()
                 .mitBestellId(bestellId.toString())
                 .mitKundenId(request.getCustomerId())
                 .mitProduktId(request.getProductId())
                 .mitBestellStatus(bestellStatus)
                 .mitVersanddatum(versanddatum)
+                .mitTraceparent(kontext != null ? kontext.alsTraceparent() : null)
                 .erstellen();
         BeethovenMockRepo.bestellabwicklung.put(bestellId.toString(), bestellabwicklung);
         LOGGER.info("ErpOrderService: Bestellabwicklung mit ID {} im Repository gespeichert.", bestellId);
@@ -0,0 +1,323 @@
+package kirschner.flaig.beethoven.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import kirschner.flaig.beethoven.config.Ablaufverfolgung;
+import kirschner.flaig.beethoven.config.Tracekontext;
+
+/**
+ * Versandschicht für RabbitMQ-Nachrichten mit Publisher Confirms.
+ * <p>
+ * Alle Nachrichten werden mit {@code mandatory} und einer {@link CorrelationData} über das {@link RabbitTemplate}
+ * gesendet. Die Kanäle stammen aus dem Kanal-Cache der {@code CachingConnectionFactory}, die im Modus
+ * {@code correlated} jeden Kanal in den Confirm-Modus versetzt; Größe und Wartezeit des Pools werden über
+ * {@code spring.rabbitmq.cache.channel.*} konfiguriert. Der Sender wartet nicht auf den Broker: Das zurückgegebene
+ * {@link CompletableFuture} wird abgeschlossen, sobald der Broker die Nachricht bestätigt, und scheitert, wenn er sie
+ * ablehnt oder sie als nicht zustellbar zurückgibt.
+ * <p>
+ * Die Anzahl gleichzeitig unbestätigter Nachrichten ist begrenzt; ist die Grenze erreicht, wartet der Sender bis zur
+ * konfigurierten Zeit auf freie Plätze. Die Zeit vom Senden bis zur Bestätigung wird als Timer
+ * {@code rabbitmq.versand.latenz} je Exchange und Ergebnis erfasst, die unbestätigten Nachrichten als
+ * {@code rabbitmq.versand.ausstehend} und die an den Broker übergebenen Nachrichten als Zähler
+ * {@code rabbitmq.versand.gesendet} je Exchange.
+ * <p>
+ * Ist beim Senden ein {@link Tracekontext} aktiv, erhält die Nachricht ihn als Header {@code traceparent}, sofern
+ * die Nachbearbeitung keinen eigenen gesetzt hat.
+ */
+@Service
+public class Nachrichtenversand {
+
+    /**
+     * Logger für diese Klasse.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(Nachrichtenversand.class);
+
+    /**
+     * Ergebnis einer vom Broker bestätigten Nachricht.
+     */
+    private static final String BESTAETIGT = "bestaetigt";
+
+    /**
+     * Ergebnis einer vom Broker abgelehnten Nachricht.
+     */
+    private static final String ABGELEHNT = "abgelehnt";
+
+    /**
+     * Ergebnis einer nicht zustellbaren, vom Broker zurückgegebenen Nachricht.
+     */
+    private static final String ZURUECKGEGEBEN = "zurueckgegeben";
+
+    /**
+     * RabbitTemplate mit Publisher Confirms und Returns.
+     */
+    private final RabbitTemplate rabbitTemplate;
+
+    /**
+     * Die Registry für die Versandmetriken.
+     */
+    private final MeterRegistry registry;
+
+    /**
+     * Begrenzt die Anzahl unbestätigter Nachrichten.
+     */
+    private final Semaphore ausstehend;
+
+    /**
+     * Die maximale Anzahl unbestätigter Nachrichten.
+     */
+    private final int maximalAusstehend;
+
+    /**
+     * Wie lange ein Sender auf einen freien Platz wartet, in Millisekunden.
+     */
+    private final long maximaleWartezeitMillis;
+
+    /**
+     * Vergibt die Korrelations-IDs.
+     */
+    private final AtomicLong naechsteKorrelation = new AtomicLong();
+
+    /**
+     * Die Latenz-Timer je Exchange und Ergebnis.
+     */
+    private final Map<String, Timer> timer = new ConcurrentHashMap<>();
+
+    /**
+     * Die Zähler der gesendeten Nachrichten je Exchange.
+     */
+    private final Map<String, Counter> gesendet = new ConcurrentHashMap<>();
+
+    /**
+     * Konstruktor für den {@code Nachrichtenversand}. Registriert den Return-Callback am Template.
+     *
+     * @param rabbitTemplate Das {@link RabbitTemplate} mit {@code mandatory}; seine ConnectionFactory muss Publisher Confirms
+     *                       im Modus {@code correlated} und Returns aktiviert haben.
+     * @param registry Die {@link MeterRegistry} für die Versandmetriken.
+     * @param maximalAusstehend Die maximale Anzahl unbestätigter Nachrichten.
+     * @param maximaleWartezeitMillis Wie lange ein Sender auf einen freien Platz wartet.
+     */
+    public Nachrichtenversand(RabbitTemplate rabbitTemplate, MeterRegistry registry,
+                              @Value("${beethoven.rabbitmq.versand.max-ausstehend:1000}") int maximalAusstehend,
+                              @Value("${beethoven.rabbitmq.versand.max-wartezeit-ms:5000}") long maximaleWartezeitMillis) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.registry = registry;
+        this.ausstehend = new Semaphore(maximalAusstehend);
+        this.maximalAusstehend = maximalAusstehend;
+        this.maximaleWartezeitMillis = maximaleWartezeitMillis;
+
+        rabbitTemplate.setReturnsCallback(this::protokolliereRueckgabe);
+        Gauge.builder("rabbitmq.versand.ausstehend", this, Nachrichtenversand::getAusstehend)
+                .description("Gesendete, noch nicht vom Broker bestätigte Nachrichten")
+                .register(registry);
+    }
+
+    /**
+     * Sendet eine Nachricht, ohne auf die Bestätigung des Brokers zu warten.
+     *
+     * @param exchange Der Exchange.
+     * @param routingKey Der Routing Key.
+     * @param nachricht Die Nachricht; sie wird vom Nachrichtenkonverter des Templates serialisiert.
+     * @return Ein {@link CompletableFuture}, das mit der Bestätigung des Brokers abgeschlossen wird.
+     * @throws AmqpTimeoutException Wenn innerhalb der Wartezeit kein Platz für eine weitere unbestätigte Nachricht frei wird.
+     */
+    public CompletableFuture<Void> sende(String exchange, String routingKey, Object nachricht) {
+        return sende(exchange, routingKey, nachricht, null);
+    }
+
+    /**
+     * Sendet eine Nachricht, ohne auf die Bestätigung des Brokers zu warten.
+     *
+     * @param exchange Der Exchange.
+     * @param routingKey Der Routing Key.
+     * @param nachricht Die Nachricht; sie wird vom Nachrichtenkonverter des Templates serialisiert.
+     * @param nachbearbeitung Setzt zusätzliche Eigenschaften der Nachricht, oder {@code null}.
+     * @return Ein {@link CompletableFuture}, das mit der Bestätigung des Brokers abgeschlossen wird; es scheitert mit
+     * einer {@link AmqpException}, wenn der Broker die Nachricht ablehnt oder sie nicht zustellbar ist.
+     * @throws AmqpTimeoutException Wenn innerhalb der Wartezeit kein Platz für eine weitere unbestätigte Nachricht frei wird.
+     */
+    public CompletableFuture<Void> sende(String exchange, String routingKey, Object nachricht, MessagePostProcessor nachbearbeitung) {
+        return sende(rabbitTemplate, exchange, routingKey, nachricht, nachbearbeitung);
+    }
+
+    /**
+     * Sendet mehrere Nachrichten über denselben Kanal, ohne auf die Bestätigungen des Brokers zu warten.
+     * <p>
+     * Ein Kanal mit unbestätigten Nachrichten kehrt erst nach deren Bestätigung in den Kanal-Cache zurück; einzeln
+     * gesendet belegt also jede Nachricht bis zur Bestätigung einen eigenen Kanal. Gebündelt teilen sich die
+     * Nachrichten einen Kanal und der Broker kann sie gemeinsam bestätigen.
+     *
+     * @param exchange Der Exchange.
+     * @param routingKey Der Routing Key.
+     * @param nachrichten Die Nachrichten; sie werden vom Nachrichtenkonverter des Templates serialisiert.
+     * @param nachbearbeitung Liefert je Nachricht die zusätzlichen Eigenschaften, oder {@code null}.
+     * @param <T> Der Typ der Nachrichten.
+     * @return Je Nachricht ein {@link CompletableFuture} wie bei {@link #sende(String, String, Object, MessagePostProcessor)},
+     * in der Reihenfolge der Nachrichten.
+     * @throws AmqpTimeoutException Wenn innerhalb der Wartezeit kein Platz für eine weitere unbestätigte Nachricht frei wird.
+     */
+    public <T> List<CompletableFuture<Void>> sendeAlle(String exchange, String routingKey, List<T> nachrichten,
+                                                       Function<? super T, MessagePostProcessor> nachbearbeitung) {
+        return rabbitTemplate.invoke(operationen -> {
+            List<CompletableFuture<Void>> bestaetigungen = new ArrayList<>(nachrichten.size());
+            for (T nachricht : nachrichten) {
+                bestaetigungen.add(sende(operationen, exchange, routingKey, nachricht,
+                        nachbearbeitung == null ? null : nachbearbeitung.apply(nachricht)));
+            }
+            return bestaetigungen;
+        });
+    }
+
+    /**
+     * Gibt die Anzahl der gesendeten, noch nicht bestätigten Nachrichten zurück.
+     *
+     * @return Die Anzahl.
+     */
+    public int getAusstehend() {
+        return maximalAusstehend - ausstehend.availablePermits();
+    }
+
+    /**
+     * Sendet eine Nachricht über die angegebenen Operationen und verfolgt ihre Bestätigung.
+     *
+     * @param operationen Das Template oder die an einen Kanal gebundenen Operationen aus {@link RabbitTemplate#invoke}.
+     * @param exchange Der Exchange.
+     * @param routingKey Der Routing Key.
+     * @param nachricht Die Nachricht.
+     * @param nachbearbeitung Setzt zusätzliche Eigenschaften der Nachricht, oder {@code null}.
+     * @return Das {@link CompletableFuture} der Bestätigung.
+     */
+    private CompletableFuture<Void> sende(RabbitOperations operationen, String exchange, String routingKey, Object nachricht,
+                                          MessagePostProcessor nachbearbeitung) {
+        reserviere();
+        CorrelationData korrelation = new CorrelationData(Long.toString(naechsteKorrelation.incrementAndGet()));
+        long start = System.nanoTime();
+        nachbearbeitung = mitTraceparent(nachbearbeitung);
+        try {
+            if (nachbearbeitung == null) {
+                operationen.convertAndSend(exchange, routingKey, nachricht, korrelation);
+            } else {
+                operationen.convertAndSend(exchange, routingKey, nachricht, nachbearbeitung, korrelation);
+            }
+        } catch (RuntimeException e) {
+            ausstehend.release();
+            throw e;
+        }
+        gesendetZaehler(exchange).increment();
+
+        return korrelation.getFuture().handle((bestaetigung, fehler) -> {
+            ausstehend.release();
+            String ergebnis = fehler != null || !bestaetigung.isAck() ? ABGELEHNT
+                    : korrelation.getReturned() != null ? ZURUECKGEGEBEN
+                    : BESTAETIGT;
+            latenzTimer(exchange, ergebnis).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            switch (ergebnis) {
+                case ABGELEHNT -> throw new AmqpException("Nachricht an " + exchange + " vom Broker abgelehnt: "
+                        + (fehler != null ? fehler.getMessage() : bestaetigung.getReason()));
+                case ZURUECKGEGEBEN -> throw new AmqpException("Nachricht an " + exchange + " mit Routing Key " + routingKey
+                        + " nicht zustellbar: " + korrelation.getReturned().getReplyText());
+                default -> {
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Ergänzt eine Nachbearbeitung um den Header {@code traceparent} des aktiven Kontexts.
+     *
+     * @param nachbearbeitung Die Nachbearbeitung oder {@code null}.
+     * @return Die ergänzte Nachbearbeitung oder die unveränderte, wenn kein Kontext aktiv ist.
+     */
+    private static MessagePostProcessor mitTraceparent(MessagePostProcessor nachbearbeitung) {
+        Tracekontext kontext = Ablaufverfolgung.aktueller();
+        if (kontext == null) {
+            return nachbearbeitung;
+        }
+        String traceparent = kontext.alsTraceparent();
+        return nachricht -> {
+            Message bearbeitet = nachbearbeitung == null ? nachricht : nachbearbeitung.postProcessMessage(nachricht);
+            bearbeitet.getMessageProperties().getHeaders().putIfAbsent(Tracekontext.HEADER, traceparent);
+            return bearbeitet;
+        };
+    }
+
+    /**
+     * Belegt einen Platz für eine unbestätigte Nachricht und wartet dafür höchstens {@link #maximaleWartezeitMillis}.
+     *
+     * @throws AmqpTimeoutException Wenn kein Platz frei wird.
+     */
+    private void reserviere() {
+        try {
+            if (!ausstehend.tryAcquire(maximaleWartezeitMillis, TimeUnit.MILLISECONDS)) {
+                throw new AmqpTimeoutException("Zu viele unbestätigte Nachrichten: " + maximalAusstehend);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpTimeoutException("Warten auf einen freien Versandplatz unterbrochen.");
+        }
+    }
+
+    /**
+     * Gibt den Latenz-Timer für einen Exchange und ein Ergebnis zurück.
+     *
+     * @param exchange Der Exchange.
+     * @param ergebnis Das Ergebnis.
+     * @return Der Timer.
+     */
+    private Timer latenzTimer(String exchange, String ergebnis) {
+        return timer.computeIfAbsent(exchange + '|' + ergebnis, schluessel -> Timer.builder("rabbitmq.versand.latenz")
+                .description("Zeit vom Senden bis zur Bestätigung durch den Broker")
+                .tag("exchange", exchange)
+                .tag("ergebnis", ergebnis)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(registry));
+    }
+
+    /**
+     * Gibt den Zähler der gesendeten Nachrichten für einen Exchange zurück.
+     *
+     * @param exchange Der Exchange.
+     * @return Der Zähler.
+     */
+    private Counter gesendetZaehler(String exchange) {
+        return gesendet.computeIfAbsent(exchange, schluessel -> Counter.builder("rabbitmq.versand.gesendet")
+                .description("An den Broker übergebene Nachrichten")
+                .tag("exchange", exchange)
+                .register(registry));
+    }
+
+    /**
+     * Protokolliert eine vom Broker zurückgegebene, nicht zustellbare Nachricht.
+     *
+     * @param rueckgabe Die zurückgegebene Nachricht.
+     */
+    private void protokolliereRueckgabe(ReturnedMessage rueckgabe) {
+        LOGGER.warn("Nachrichtenversand: Nachricht an {} mit Routing Key {} nicht zustellbar: {} {}",
+                rueckgabe.getExchange(), rueckgabe.getRoutingKey(), rueckgabe.getReplyCode(), rueckgabe.getReplyText());
+    }
+}
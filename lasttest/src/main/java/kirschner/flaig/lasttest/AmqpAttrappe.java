@@ -0,0 +1,823 @@
+package kirschner.flaig.lasttest;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Ein AMQP-0-9-1-Broker im Speicher, der Mozart und Beethoven im Lasttest den RabbitMQ-Server ersetzt.
+ * Unterstützt wird, was Spring AMQP und der RabbitMQ-Client der Dienste verwenden: Direct-, Fanout- und
+ * Topic-Exchanges, Warteschlangen mit Bindings, Publisher Confirms, Returns für nicht zustellbare
+ * {@code mandatory}-Nachrichten und Consumer mit Prefetch, Ack, Nack und Reject. Nicht bestätigte Nachrichten
+ * eines geschlossenen Kanals werden erneut zugestellt. Nichts wird persistiert; Warteschlangen ohne Consumer, etwa
+ * die des CRM-Systems, verwerfen ab {@code maximaleLaenge} Nachrichten die jeweils älteste.
+ * <p>
+ * Der gesamte Zustand liegt hinter einer {@link ReentrantLock}; jede {@link AmqpVerbindung} liest auf einem eigenen
+ * Thread und schreibt über einen weiteren, sodass Zustellungen nie auf einen langsamen Client warten. Der Lasttest
+ * kann Nachrichten direkt veröffentlichen und Veröffentlichungen auf einem Exchange sowie Acks auf einer
+ * Warteschlange beobachten.
+ */
+final class AmqpAttrappe implements AutoCloseable {
+
+    /**
+     * Der Reply-Code für eine nicht gefundene Warteschlange oder einen nicht gefundenen Exchange.
+     */
+    static final int NICHT_GEFUNDEN = 404;
+
+    /**
+     * Schützt Exchanges, Warteschlangen, Consumer und die nicht bestätigten Zustellungen aller Kanäle.
+     */
+    private final ReentrantLock sperre = new ReentrantLock();
+
+    /**
+     * Die Exchanges nach Namen; der Default-Exchange wird nicht gespeichert.
+     */
+    private final Map<String, Austausch> austausche = new HashMap<>();
+
+    /**
+     * Die Warteschlangen nach Namen.
+     */
+    private final Map<String, Warteschlange> warteschlangen = new LinkedHashMap<>();
+
+    /**
+     * Beobachter der Veröffentlichungen je Exchange.
+     */
+    private final Map<String, List<Consumer<byte[]>>> veroeffentlichungsbeobachter = new ConcurrentHashMap<>();
+
+    /**
+     * Beobachter der Acks je Warteschlange.
+     */
+    private final Map<String, List<Consumer<byte[]>>> bestaetigungsbeobachter = new ConcurrentHashMap<>();
+
+    /**
+     * Die offenen Verbindungen.
+     */
+    private final Set<AmqpVerbindung> verbindungen = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Die maximale Anzahl wartender Nachrichten pro Warteschlange.
+     */
+    private final int maximaleLaenge;
+
+    /**
+     * Die Anzahl der Nachrichten, die an keine Warteschlange geleitet werden konnten.
+     */
+    private final AtomicLong nichtZustellbar = new AtomicLong();
+
+    /**
+     * Zählt die Namen für vom Broker benannte Warteschlangen und Consumer.
+     */
+    private final AtomicLong namenszaehler = new AtomicLong();
+
+    /**
+     * Der Server-Socket, an dem die Verbindungen angenommen werden.
+     */
+    private ServerSocket serverSocket;
+
+    /**
+     * Erstellt den Broker; er nimmt erst nach {@link #starte()} Verbindungen an.
+     *
+     * @param maximaleLaenge Die maximale Anzahl wartender Nachrichten pro Warteschlange.
+     * @throws IllegalArgumentException Wenn die maximale Länge nicht positiv ist.
+     */
+    AmqpAttrappe(int maximaleLaenge) throws IllegalArgumentException {
+        if (maximaleLaenge < 1) {
+            throw new IllegalArgumentException("Die maximale Länge einer Warteschlange muss positiv sein: " + maximaleLaenge);
+        }
+        this.maximaleLaenge = maximaleLaenge;
+    }
+
+    /**
+     * Öffnet einen freien Port auf der Loopback-Adresse und nimmt dort Verbindungen an.
+     *
+     * @throws IOException Wenn der Port nicht geöffnet werden kann.
+     */
+    void starte() throws IOException {
+        serverSocket = new ServerSocket(0, 64, InetAddress.getLoopbackAddress());
+        Thread.ofPlatform().name("amqp-attrappe-annahme").daemon().start(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    AmqpVerbindung verbindung = new AmqpVerbindung(this, socket);
+                    verbindungen.add(verbindung);
+                    verbindung.starte();
+                } catch (IOException e) {
+                    if (!serverSocket.isClosed()) {
+                        System.err.printf("AmqpAttrappe: Verbindung konnte nicht angenommen werden: %s%n", e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return Der Port, an dem der Broker Verbindungen annimmt.
+     */
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Meldet den Inhalt jeder Nachricht, die auf einem Exchange veröffentlicht wird, bevor sie weitergeleitet wird.
+     * Der Beobachter läuft auf dem Thread des Absenders und darf nicht blockieren.
+     *
+     * @param austausch Der Name des Exchanges.
+     * @param beobachter Der Beobachter.
+     */
+    void beobachteVeroeffentlichungen(String austausch, Consumer<byte[]> beobachter) {
+        veroeffentlichungsbeobachter.computeIfAbsent(austausch, name -> new CopyOnWriteArrayList<>()).add(beobachter);
+    }
+
+    /**
+     * Meldet den Inhalt jeder Nachricht aus einer Warteschlange, sobald ihr Consumer sie bestätigt.
+     * Der Beobachter läuft auf dem Lesethread der Verbindung des Consumers und darf nicht blockieren.
+     *
+     * @param warteschlange Der Name der Warteschlange.
+     * @param beobachter Der Beobachter.
+     */
+    void beobachteBestaetigungen(String warteschlange, Consumer<byte[]> beobachter) {
+        bestaetigungsbeobachter.computeIfAbsent(warteschlange, name -> new CopyOnWriteArrayList<>()).add(beobachter);
+    }
+
+    /**
+     * Veröffentlicht eine Nachricht wie ein Client, nur ohne Verbindung.
+     *
+     * @param austausch Der Name des Exchanges.
+     * @param schluessel Der Routing Key.
+     * @param inhaltstyp Der Content-Type der Nachricht.
+     * @param inhalt Der Inhalt.
+     * @return {@code true}, wenn die Nachricht an mindestens eine Warteschlange geleitet wurde.
+     */
+    boolean veroeffentliche(String austausch, String schluessel, String inhaltstyp, byte[] inhalt) {
+        byte[] typ = inhaltstyp.getBytes(StandardCharsets.US_ASCII);
+        byte[] kodierung = "UTF-8".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer kopf = ByteBuffer.allocate(16 + typ.length + kodierung.length);
+        kopf.putShort((short) 60).putShort((short) 0).putLong(inhalt.length)
+                .putShort((short) 0xC000)
+                .put((byte) typ.length).put(typ)
+                .put((byte) kodierung.length).put(kodierung);
+        return veroeffentliche(austausch, schluessel, kopf.array(), inhalt);
+    }
+
+    /**
+     * Leitet eine veröffentlichte Nachricht an alle passend gebundenen Warteschlangen und stellt sie zu.
+     *
+     * @param austausch Der Name des Exchanges, leer für den Default-Exchange.
+     * @param schluessel Der Routing Key.
+     * @param kopf Der Inhaltskopf, wie ihn der Absender gesendet hat.
+     * @param inhalt Der Inhalt.
+     * @return {@code true}, wenn die Nachricht an mindestens eine Warteschlange geleitet wurde.
+     */
+    boolean veroeffentliche(String austausch, String schluessel, byte[] kopf, byte[] inhalt) {
+        List<Consumer<byte[]>> beobachter = veroeffentlichungsbeobachter.get(austausch);
+        if (beobachter != null) {
+            beobachter.forEach(b -> b.accept(inhalt));
+        }
+        Nachricht nachricht = new Nachricht(austausch, schluessel, kopf, inhalt);
+        sperre.lock();
+        try {
+            List<Warteschlange> ziele = ziele(austausch, schluessel);
+            for (Warteschlange warteschlange : ziele) {
+                warteschlange.fuegeHinzu(nachricht, false);
+                verteile(warteschlange);
+            }
+            if (ziele.isEmpty()) {
+                nichtZustellbar.incrementAndGet();
+                return false;
+            }
+            return true;
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Legt einen Exchange an, falls es ihn noch nicht gibt.
+     *
+     * @param name Der Name.
+     * @param typ Der Typ, {@code direct}, {@code fanout}, {@code topic} oder {@code headers}.
+     * @param passiv {@code true}, wenn nur geprüft werden soll, ob der Exchange existiert.
+     * @return {@code false}, wenn passiv geprüft wurde und der Exchange nicht existiert.
+     */
+    boolean deklariereAustausch(String name, String typ, boolean passiv) {
+        sperre.lock();
+        try {
+            if (passiv) {
+                return name.isEmpty() || austausche.containsKey(name);
+            }
+            austausche.putIfAbsent(name, new Austausch(typ));
+            return true;
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Legt eine Warteschlange an, falls es sie noch nicht gibt.
+     *
+     * @param name Der Name, leer für einen vom Broker vergebenen.
+     * @param passiv {@code true}, wenn nur geprüft werden soll, ob die Warteschlange existiert.
+     * @return Der Stand der Warteschlange oder {@code null}, wenn passiv geprüft wurde und sie nicht existiert.
+     */
+    Warteschlangenstand deklariereWarteschlange(String name, boolean passiv) {
+        sperre.lock();
+        try {
+            String vergebenerName = name.isEmpty() ? "amq.gen-" + namenszaehler.incrementAndGet() : name;
+            Warteschlange warteschlange = warteschlangen.get(vergebenerName);
+            if (warteschlange == null) {
+                if (passiv) {
+                    return null;
+                }
+                warteschlange = new Warteschlange(vergebenerName);
+                warteschlangen.put(vergebenerName, warteschlange);
+            }
+            return new Warteschlangenstand(vergebenerName, warteschlange.nachrichten.size(), warteschlange.verbraucher.size());
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Bindet eine Warteschlange an einen Exchange.
+     *
+     * @param warteschlange Der Name der Warteschlange.
+     * @param austausch Der Name des Exchanges.
+     * @param schluessel Der Binding Key.
+     * @return {@code false}, wenn Warteschlange oder Exchange nicht existieren.
+     */
+    boolean binde(String warteschlange, String austausch, String schluessel) {
+        sperre.lock();
+        try {
+            Austausch ziel = austausche.get(austausch);
+            if (ziel == null || !warteschlangen.containsKey(warteschlange)) {
+                return false;
+            }
+            ziel.bindungen.add(new Bindung(warteschlange, schluessel));
+            return true;
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Löst das Binding einer Warteschlange an einen Exchange.
+     *
+     * @param warteschlange Der Name der Warteschlange.
+     * @param austausch Der Name des Exchanges.
+     * @param schluessel Der Binding Key.
+     */
+    void entbinde(String warteschlange, String austausch, String schluessel) {
+        sperre.lock();
+        try {
+            Austausch ziel = austausche.get(austausch);
+            if (ziel != null) {
+                ziel.bindungen.remove(new Bindung(warteschlange, schluessel));
+            }
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Entfernt alle wartenden Nachrichten einer Warteschlange.
+     *
+     * @param name Der Name der Warteschlange.
+     * @return Die Anzahl der entfernten Nachrichten.
+     */
+    int leere(String name) {
+        sperre.lock();
+        try {
+            Warteschlange warteschlange = warteschlangen.get(name);
+            if (warteschlange == null) {
+                return 0;
+            }
+            int anzahl = warteschlange.nachrichten.size();
+            warteschlange.nachrichten.clear();
+            return anzahl;
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Löscht eine Warteschlange mit ihren Consumern und Bindings.
+     *
+     * @param name Der Name der Warteschlange.
+     * @return Die Anzahl der wartenden Nachrichten, die mit ihr gelöscht wurden.
+     */
+    int loesche(String name) {
+        sperre.lock();
+        try {
+            Warteschlange warteschlange = warteschlangen.remove(name);
+            if (warteschlange == null) {
+                return 0;
+            }
+            for (Verbraucher verbraucher : warteschlange.verbraucher) {
+                verbraucher.kanal.verbraucher.remove(verbraucher.tag);
+            }
+            for (Austausch austausch : austausche.values()) {
+                austausch.bindungen.removeIf(bindung -> bindung.warteschlange.equals(name));
+            }
+            return warteschlange.nachrichten.size();
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Öffnet den Broker-seitigen Zustand eines Kanals.
+     *
+     * @param verbindung Die Verbindung des Kanals.
+     * @param nummer Die Kanalnummer.
+     * @return Der Kanal.
+     */
+    Kanal oeffneKanal(AmqpVerbindung verbindung, int nummer) {
+        return new Kanal(verbindung, nummer);
+    }
+
+    /**
+     * Schließt einen Kanal: Seine Consumer werden entfernt und seine nicht bestätigten Nachrichten erneut zugestellt.
+     *
+     * @param kanal Der Kanal.
+     */
+    void schliesseKanal(Kanal kanal) {
+        sperre.lock();
+        try {
+            if (kanal.geschlossen) {
+                return;
+            }
+            kanal.geschlossen = true;
+            for (Verbraucher verbraucher : kanal.verbraucher.values()) {
+                verbraucher.warteschlange.verbraucher.remove(verbraucher);
+            }
+            kanal.verbraucher.clear();
+            stelleZurueck(kanal.unbestaetigt);
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Vergisst eine beendete Verbindung.
+     *
+     * @param verbindung Die Verbindung.
+     */
+    void entferne(AmqpVerbindung verbindung) {
+        verbindungen.remove(verbindung);
+    }
+
+    /**
+     * Meldet einen Consumer an einer Warteschlange an. Die Bestätigung wird vor der ersten Zustellung gesendet.
+     *
+     * @param kanal Der Kanal des Consumers.
+     * @param warteschlange Der Name der Warteschlange.
+     * @param tag Der Consumer-Tag, leer für einen vom Broker vergebenen.
+     * @param ohneAck {@code true}, wenn Zustellungen nicht bestätigt werden.
+     * @param ohneAntwort {@code true}, wenn keine Bestätigung gesendet wird.
+     * @return {@code false}, wenn die Warteschlange nicht existiert.
+     */
+    boolean konsumiere(Kanal kanal, String warteschlange, String tag, boolean ohneAck, boolean ohneAntwort) {
+        sperre.lock();
+        try {
+            Warteschlange quelle = warteschlangen.get(warteschlange);
+            if (quelle == null) {
+                return false;
+            }
+            String vergebenerTag = tag.isEmpty() ? "amq.ctag-" + namenszaehler.incrementAndGet() : tag;
+            Verbraucher verbraucher = new Verbraucher(kanal, vergebenerTag, quelle, ohneAck, kanal.prefetch);
+            kanal.verbraucher.put(vergebenerTag, verbraucher);
+            quelle.verbraucher.add(verbraucher);
+            if (!ohneAntwort) {
+                kanal.verbindung.sende(AmqpRahmen.Schreiber.methode(60, 21).kurzString(vergebenerTag).alsRahmen(kanal.nummer));
+            }
+            verteile(quelle);
+            return true;
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Meldet einen Consumer ab. Seine nicht bestätigten Nachrichten bleiben dem Kanal zugeordnet.
+     *
+     * @param kanal Der Kanal des Consumers.
+     * @param tag Der Consumer-Tag.
+     */
+    void beendeKonsum(Kanal kanal, String tag) {
+        sperre.lock();
+        try {
+            Verbraucher verbraucher = kanal.verbraucher.remove(tag);
+            if (verbraucher != null) {
+                verbraucher.warteschlange.verbraucher.remove(verbraucher);
+            }
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Verarbeitet ein Ack eines Consumers.
+     *
+     * @param kanal Der Kanal.
+     * @param zustellTag Der Delivery-Tag.
+     * @param mehrere {@code true}, wenn alle Zustellungen bis einschließlich {@code zustellTag} bestätigt werden.
+     */
+    void bestaetige(Kanal kanal, long zustellTag, boolean mehrere) {
+        List<Zustellung> bestaetigt;
+        sperre.lock();
+        try {
+            bestaetigt = entnehme(kanal, zustellTag, mehrere);
+            for (Zustellung zustellung : bestaetigt) {
+                zustellung.warteschlange.bestaetigt++;
+            }
+            verteileNach(bestaetigt);
+        } finally {
+            sperre.unlock();
+        }
+        for (Zustellung zustellung : bestaetigt) {
+            List<Consumer<byte[]>> beobachter = bestaetigungsbeobachter.get(zustellung.warteschlange.name);
+            if (beobachter != null) {
+                beobachter.forEach(b -> b.accept(zustellung.nachricht.inhalt()));
+            }
+        }
+    }
+
+    /**
+     * Verarbeitet ein Nack oder Reject eines Consumers.
+     *
+     * @param kanal Der Kanal.
+     * @param zustellTag Der Delivery-Tag.
+     * @param mehrere {@code true}, wenn alle Zustellungen bis einschließlich {@code zustellTag} abgelehnt werden.
+     * @param zurueckstellen {@code true}, wenn die Nachrichten erneut zugestellt werden sollen.
+     */
+    void lehneAb(Kanal kanal, long zustellTag, boolean mehrere, boolean zurueckstellen) {
+        sperre.lock();
+        try {
+            List<Zustellung> abgelehnt = entnehme(kanal, zustellTag, mehrere);
+            for (int i = abgelehnt.size() - 1; i >= 0; i--) {
+                Zustellung zustellung = abgelehnt.get(i);
+                if (zurueckstellen) {
+                    zustellung.warteschlange.fuegeHinzu(zustellung.nachricht, true);
+                } else {
+                    zustellung.warteschlange.verworfen++;
+                }
+            }
+            verteileNach(abgelehnt);
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Stellt alle nicht bestätigten Nachrichten eines Kanals erneut zu ({@code basic.recover}).
+     *
+     * @param kanal Der Kanal.
+     */
+    void stelleZurueck(Kanal kanal) {
+        sperre.lock();
+        try {
+            stelleZurueck(kanal.unbestaetigt);
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Beschreibt jede Warteschlange in einer Zeile und die nicht zustellbaren Nachrichten in einer weiteren.
+     *
+     * @return Die Zeilen.
+     */
+    List<String> statistik() {
+        sperre.lock();
+        try {
+            List<String> zeilen = new ArrayList<>();
+            for (Warteschlange warteschlange : warteschlangen.values()) {
+                zeilen.add(String.format("%-24s eingereiht %8d  zugestellt %8d  bestätigt %8d  verworfen %8d  wartend %6d  Consumer %d",
+                        warteschlange.name, warteschlange.eingereiht, warteschlange.zugestellt, warteschlange.bestaetigt,
+                        warteschlange.verworfen, warteschlange.nachrichten.size(), warteschlange.verbraucher.size()));
+            }
+            zeilen.add(String.format("nicht zustellbar %d", nichtZustellbar.get()));
+            return zeilen;
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Schließt den Server-Socket und alle Verbindungen.
+     *
+     * @throws IOException Wenn der Server-Socket nicht geschlossen werden kann.
+     */
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        for (AmqpVerbindung verbindung : verbindungen) {
+            verbindung.schliesse();
+        }
+    }
+
+    /**
+     * Bestimmt die Warteschlangen, an die eine Nachricht geleitet wird. Nur unter der Sperre aufrufen.
+     *
+     * @param austausch Der Name des Exchanges.
+     * @param schluessel Der Routing Key.
+     * @return Die Warteschlangen, jede höchstens einmal.
+     */
+    private List<Warteschlange> ziele(String austausch, String schluessel) {
+        if (austausch.isEmpty()) {
+            Warteschlange warteschlange = warteschlangen.get(schluessel);
+            return warteschlange == null ? List.of() : List.of(warteschlange);
+        }
+        Austausch quelle = austausche.get(austausch);
+        if (quelle == null) {
+            return List.of();
+        }
+        List<Warteschlange> ziele = new ArrayList<>(1);
+        for (Bindung bindung : quelle.bindungen) {
+            boolean passt = switch (quelle.typ) {
+                case "direct" -> bindung.schluessel.equals(schluessel);
+                case "topic" -> passtThema(bindung.schluessel.split("\\."), 0, schluessel.split("\\."), 0);
+                default -> true;
+            };
+            Warteschlange warteschlange = warteschlangen.get(bindung.warteschlange);
+            if (passt && warteschlange != null && !ziele.contains(warteschlange)) {
+                ziele.add(warteschlange);
+            }
+        }
+        return ziele;
+    }
+
+    /**
+     * Prüft einen Routing Key gegen das Muster eines Topic-Bindings.
+     *
+     * @param muster Die Wörter des Musters; {@code *} steht für genau ein, {@code #} für beliebig viele Wörter.
+     * @param m Die aktuelle Position im Muster.
+     * @param woerter Die Wörter des Routing Keys.
+     * @param w Die aktuelle Position im Routing Key.
+     * @return {@code true}, wenn der Rest des Routing Keys zum Rest des Musters passt.
+     */
+    private static boolean passtThema(String[] muster, int m, String[] woerter, int w) {
+        if (m == muster.length) {
+            return w == woerter.length;
+        }
+        if (muster[m].equals("#")) {
+            for (int rest = w; rest <= woerter.length; rest++) {
+                if (passtThema(muster, m + 1, woerter, rest)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return w < woerter.length && (muster[m].equals("*") || muster[m].equals(woerter[w]))
+                && passtThema(muster, m + 1, woerter, w + 1);
+    }
+
+    /**
+     * Stellt wartende Nachrichten reihum an Consumer mit freiem Prefetch zu. Nur unter der Sperre aufrufen.
+     *
+     * @param warteschlange Die Warteschlange.
+     */
+    private void verteile(Warteschlange warteschlange) {
+        List<Verbraucher> verbraucher = warteschlange.verbraucher;
+        while (!warteschlange.nachrichten.isEmpty() && !verbraucher.isEmpty()) {
+            Verbraucher empfaenger = null;
+            for (int i = 0; i < verbraucher.size() && empfaenger == null; i++) {
+                Verbraucher kandidat = verbraucher.get((warteschlange.naechsterVerbraucher + i) % verbraucher.size());
+                if (kandidat.hatPlatz()) {
+                    empfaenger = kandidat;
+                    warteschlange.naechsterVerbraucher = (warteschlange.naechsterVerbraucher + i + 1) % verbraucher.size();
+                }
+            }
+            if (empfaenger == null) {
+                return;
+            }
+            Eintrag eintrag = warteschlange.nachrichten.pollFirst();
+            Kanal kanal = empfaenger.kanal;
+            long zustellTag = ++kanal.zustellNummer;
+            if (!empfaenger.ohneAck) {
+                kanal.unbestaetigt.put(zustellTag, new Zustellung(eintrag.nachricht, warteschlange, empfaenger));
+                empfaenger.unbestaetigt++;
+            }
+            warteschlange.zugestellt++;
+            kanal.verbindung.stelleZu(kanal.nummer, empfaenger.tag, zustellTag, eintrag.erneut, eintrag.nachricht);
+        }
+    }
+
+    /**
+     * Entnimmt bestätigte oder abgelehnte Zustellungen eines Kanals. Nur unter der Sperre aufrufen.
+     *
+     * @param kanal Der Kanal.
+     * @param zustellTag Der Delivery-Tag; 0 mit {@code mehrere} steht für alle.
+     * @param mehrere {@code true}, wenn alle Zustellungen bis einschließlich {@code zustellTag} gemeint sind.
+     * @return Die Zustellungen in aufsteigender Reihenfolge.
+     */
+    private static List<Zustellung> entnehme(Kanal kanal, long zustellTag, boolean mehrere) {
+        List<Zustellung> entnommen = new ArrayList<>();
+        if (mehrere) {
+            NavigableMap<Long, Zustellung> bis = zustellTag == 0 ? kanal.unbestaetigt : kanal.unbestaetigt.headMap(zustellTag, true);
+            entnommen.addAll(bis.values());
+            bis.clear();
+        } else {
+            Zustellung zustellung = kanal.unbestaetigt.remove(zustellTag);
+            if (zustellung != null) {
+                entnommen.add(zustellung);
+            }
+        }
+        for (Zustellung zustellung : entnommen) {
+            zustellung.verbraucher.unbestaetigt--;
+        }
+        return entnommen;
+    }
+
+    /**
+     * Stellt Zustellungen an den Anfang ihrer Warteschlangen zurück und verteilt neu. Nur unter der Sperre aufrufen.
+     *
+     * @param unbestaetigt Die nicht bestätigten Zustellungen eines Kanals; die Map wird geleert.
+     */
+    private void stelleZurueck(TreeMap<Long, Zustellung> unbestaetigt) {
+        List<Zustellung> zurueck = new ArrayList<>(unbestaetigt.descendingMap().values());
+        unbestaetigt.clear();
+        for (Zustellung zustellung : zurueck) {
+            zustellung.verbraucher.unbestaetigt--;
+            zustellung.warteschlange.fuegeHinzu(zustellung.nachricht, true);
+        }
+        verteileNach(zurueck);
+    }
+
+    /**
+     * Verteilt die Warteschlangen der Zustellungen neu, deren Consumer nun wieder Platz haben. Nur unter der Sperre aufrufen.
+     *
+     * @param zustellungen Die Zustellungen.
+     */
+    private void verteileNach(List<Zustellung> zustellungen) {
+        zustellungen.stream().map(Zustellung::warteschlange).distinct().forEach(this::verteile);
+    }
+
+    /**
+     * Eine veröffentlichte Nachricht.
+     *
+     * @param austausch Der Exchange, auf dem sie veröffentlicht wurde.
+     * @param schluessel Der Routing Key.
+     * @param kopf Der Inhaltskopf, unverändert vom Absender.
+     * @param inhalt Der Inhalt.
+     */
+    record Nachricht(String austausch, String schluessel, byte[] kopf, byte[] inhalt) {
+    }
+
+    /**
+     * Der Stand einer Warteschlange, wie ihn {@code queue.declare-ok} meldet.
+     *
+     * @param name Der Name.
+     * @param nachrichten Die Anzahl wartender Nachrichten.
+     * @param verbraucher Die Anzahl der Consumer.
+     */
+    record Warteschlangenstand(String name, int nachrichten, int verbraucher) {
+    }
+
+    /**
+     * Der Broker-seitige Zustand eines Kanals. Alle Felder außer den unveränderlichen werden nur unter der Sperre
+     * des Brokers geändert, {@link #prefetch} und {@link #bestaetigungsmodus} nur vom Lesethread der Verbindung.
+     */
+    static final class Kanal {
+
+        final AmqpVerbindung verbindung;
+        final int nummer;
+        final TreeMap<Long, Zustellung> unbestaetigt = new TreeMap<>();
+        final Map<String, Verbraucher> verbraucher = new HashMap<>();
+        int prefetch;
+        boolean bestaetigungsmodus;
+        long veroeffentlichungsNummer;
+        long zustellNummer;
+        boolean geschlossen;
+
+        Kanal(AmqpVerbindung verbindung, int nummer) {
+            this.verbindung = verbindung;
+            this.nummer = nummer;
+        }
+    }
+
+    /**
+     * Ein Exchange mit seinen Bindings.
+     */
+    private static final class Austausch {
+
+        final String typ;
+        final List<Bindung> bindungen = new ArrayList<>();
+
+        Austausch(String typ) {
+            this.typ = typ;
+        }
+    }
+
+    /**
+     * Das Binding einer Warteschlange an einen Exchange.
+     *
+     * @param warteschlange Der Name der Warteschlange.
+     * @param schluessel Der Binding Key.
+     */
+    private record Bindung(String warteschlange, String schluessel) {
+    }
+
+    /**
+     * Eine wartende Nachricht.
+     *
+     * @param nachricht Die Nachricht.
+     * @param erneut {@code true}, wenn sie schon einmal zugestellt wurde.
+     */
+    private record Eintrag(Nachricht nachricht, boolean erneut) {
+    }
+
+    /**
+     * Eine Warteschlange mit ihren wartenden Nachrichten, Consumern und Zählern.
+     */
+    private final class Warteschlange {
+
+        final String name;
+        final ArrayDeque<Eintrag> nachrichten = new ArrayDeque<>();
+        final List<Verbraucher> verbraucher = new ArrayList<>();
+        int naechsterVerbraucher;
+        long eingereiht;
+        long zugestellt;
+        long bestaetigt;
+        long verworfen;
+
+        Warteschlange(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Reiht eine Nachricht ein; zurückgestellte kommen an den Anfang. Ist die Warteschlange durch eine neue Nachricht
+         * voll, wird die älteste verworfen.
+         *
+         * @param nachricht Die Nachricht.
+         * @param erneut {@code true}, wenn die Nachricht zurückgestellt wird.
+         */
+        void fuegeHinzu(Nachricht nachricht, boolean erneut) {
+            if (erneut) {
+                nachrichten.addFirst(new Eintrag(nachricht, true));
+            } else {
+                nachrichten.addLast(new Eintrag(nachricht, false));
+                eingereiht++;
+                if (nachrichten.size() > maximaleLaenge) {
+                    nachrichten.pollFirst();
+                    verworfen++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ein Consumer an einer Warteschlange.
+     */
+    private static final class Verbraucher {
+
+        final Kanal kanal;
+        final String tag;
+        final Warteschlange warteschlange;
+        final boolean ohneAck;
+        final int prefetch;
+        int unbestaetigt;
+
+        Verbraucher(Kanal kanal, String tag, Warteschlange warteschlange, boolean ohneAck, int prefetch) {
+            this.kanal = kanal;
+            this.tag = tag;
+            this.warteschlange = warteschlange;
+            this.ohneAck = ohneAck;
+            this.prefetch = prefetch;
+        }
+
+        boolean hatPlatz() {
+            return ohneAck || prefetch == 0 || unbestaetigt < prefetch;
+        }
+    }
+
+    /**
+     * Eine nicht bestätigte Zustellung.
+     *
+     * @param nachricht Die Nachricht.
+     * @param warteschlange Die Warteschlange, aus der sie stammt.
+     * @param verbraucher Der Consumer, dem sie zugestellt wurde.
+     */
+    private record Zustellung(Nachricht nachricht, Warteschlange warteschlange, Verbraucher verbraucher) {
+    }
+}
@@ -0,0 +1,258 @@
+package kirschner.flaig.lasttest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Ein Rahmen des AMQP-0-9-1-Protokolls mit den Lese- und Schreibhilfen für seine Feldtypen, soweit die
+ * {@link AmqpAttrappe} sie braucht. Tabellen werden nur geschrieben; beim Lesen werden sie übersprungen.
+ *
+ * @param typ Der Rahmentyp, z.B. {@link #METHODE}.
+ * @param kanal Die Kanalnummer, 0 für die Verbindung selbst.
+ * @param nutzlast Die Nutzlast ohne Rahmenkopf und Endemarke.
+ */
+record AmqpRahmen(int typ, int kanal, byte[] nutzlast) {
+
+    /**
+     * Rahmentyp einer Methode.
+     */
+    static final int METHODE = 1;
+
+    /**
+     * Rahmentyp eines Inhaltskopfs.
+     */
+    static final int KOPF = 2;
+
+    /**
+     * Rahmentyp eines Inhaltsteils.
+     */
+    static final int INHALT = 3;
+
+    /**
+     * Rahmentyp eines Herzschlags.
+     */
+    static final int HERZSCHLAG = 8;
+
+    /**
+     * Die Endemarke jedes Rahmens.
+     */
+    static final int ENDE = 0xCE;
+
+    /**
+     * Der Protokollkopf, den ein Client zu Beginn sendet.
+     */
+    static final byte[] PROTOKOLLKOPF = {'A', 'M', 'Q', 'P', 0, 0, 9, 1};
+
+    /**
+     * Größe von Rahmenkopf und Endemarke.
+     */
+    static final int VERWALTUNGSGROESSE = 8;
+
+    /**
+     * Liest den nächsten Rahmen.
+     *
+     * @param ein Der Eingabestrom der Verbindung.
+     * @return Der Rahmen oder {@code null}, wenn der Client die Verbindung geschlossen hat.
+     * @throws IOException Wenn der Rahmen nicht gelesen werden kann oder keine gültige Endemarke hat.
+     */
+    static AmqpRahmen lies(DataInputStream ein) throws IOException {
+        int typ = ein.read();
+        if (typ < 0) {
+            return null;
+        }
+        try {
+            int kanal = ein.readUnsignedShort();
+            byte[] nutzlast = new byte[ein.readInt()];
+            ein.readFully(nutzlast);
+            if (ein.readUnsignedByte() != ENDE) {
+                throw new IOException("Rahmen ohne gültige Endemarke.");
+            }
+            return new AmqpRahmen(typ, kanal, nutzlast);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Kodiert einen Rahmen vollständig, mit Kopf und Endemarke.
+     *
+     * @param typ Der Rahmentyp.
+     * @param kanal Die Kanalnummer.
+     * @param nutzlast Die Nutzlast.
+     * @return Die Bytes des Rahmens.
+     */
+    static byte[] kodiere(int typ, int kanal, byte[] nutzlast) {
+        return kodiere(typ, kanal, nutzlast, 0, nutzlast.length);
+    }
+
+    /**
+     * Kodiert einen Rahmen mit einem Ausschnitt als Nutzlast.
+     *
+     * @param typ Der Rahmentyp.
+     * @param kanal Die Kanalnummer.
+     * @param quelle Das Array mit der Nutzlast.
+     * @param von Der Beginn der Nutzlast in {@code quelle}.
+     * @param laenge Die Länge der Nutzlast.
+     * @return Die Bytes des Rahmens.
+     */
+    static byte[] kodiere(int typ, int kanal, byte[] quelle, int von, int laenge) {
+        ByteBuffer puffer = ByteBuffer.allocate(laenge + VERWALTUNGSGROESSE);
+        puffer.put((byte) typ).putShort((short) kanal).putInt(laenge).put(quelle, von, laenge).put((byte) ENDE);
+        return puffer.array();
+    }
+
+    /**
+     * Liest die Argumente einer Methode oder die Felder eines Inhaltskopfs der Reihe nach.
+     */
+    static final class Leser {
+
+        /**
+         * Die Nutzlast mit der aktuellen Leseposition.
+         */
+        private final ByteBuffer puffer;
+
+        /**
+         * Erstellt einen Leser über die Nutzlast eines Rahmens.
+         *
+         * @param nutzlast Die Nutzlast.
+         */
+        Leser(byte[] nutzlast) {
+            this.puffer = ByteBuffer.wrap(nutzlast);
+        }
+
+        int oktett() {
+            return puffer.get() & 0xFF;
+        }
+
+        int kurz() {
+            return puffer.getShort() & 0xFFFF;
+        }
+
+        int lang() {
+            return puffer.getInt();
+        }
+
+        long langlang() {
+            return puffer.getLong();
+        }
+
+        String kurzString() {
+            byte[] bytes = new byte[oktett()];
+            puffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        byte[] langString() {
+            byte[] bytes = new byte[lang()];
+            puffer.get(bytes);
+            return bytes;
+        }
+
+        void ueberspringeTabelle() {
+            int laenge = lang();
+            puffer.position(puffer.position() + laenge);
+        }
+    }
+
+    /**
+     * Schreibt die Argumente einer Methode der Reihe nach.
+     */
+    static final class Schreiber {
+
+        /**
+         * Die bisher geschriebenen Bytes.
+         */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+
+        /**
+         * Beginnt eine Methode.
+         *
+         * @param klasse Die Klassen-ID.
+         * @param methode Die Methoden-ID.
+         * @return Ein Schreiber für die Argumente.
+         */
+        static Schreiber methode(int klasse, int methode) {
+            return new Schreiber().kurz(klasse).kurz(methode);
+        }
+
+        Schreiber oktett(int wert) {
+            bytes.write(wert);
+            return this;
+        }
+
+        Schreiber kurz(int wert) {
+            bytes.write(wert >>> 8);
+            bytes.write(wert);
+            return this;
+        }
+
+        Schreiber lang(int wert) {
+            return kurz(wert >>> 16).kurz(wert & 0xFFFF);
+        }
+
+        Schreiber langlang(long wert) {
+            return lang((int) (wert >>> 32)).lang((int) wert);
+        }
+
+        Schreiber kurzString(String wert) {
+            byte[] utf8 = wert.getBytes(StandardCharsets.UTF_8);
+            oktett(utf8.length);
+            bytes.writeBytes(utf8);
+            return this;
+        }
+
+        Schreiber langString(String wert) {
+            byte[] utf8 = wert.getBytes(StandardCharsets.UTF_8);
+            lang(utf8.length);
+            bytes.writeBytes(utf8);
+            return this;
+        }
+
+        /**
+         * Schreibt eine Tabelle mit Strings, Wahrheitswerten und verschachtelten Tabellen.
+         *
+         * @param eintraege Die Einträge.
+         * @return Dieser Schreiber.
+         * @throws IllegalArgumentException Bei einem Wert anderen Typs.
+         */
+        Schreiber tabelle(Map<String, ?> eintraege) throws IllegalArgumentException {
+            Schreiber inhalt = new Schreiber();
+            for (Map.Entry<String, ?> eintrag : eintraege.entrySet()) {
+                inhalt.kurzString(eintrag.getKey());
+                switch (eintrag.getValue()) {
+                    case String text -> inhalt.oktett('S').langString(text);
+                    case Boolean wahr -> inhalt.oktett('t').oktett(wahr ? 1 : 0);
+                    case Map<?, ?> tabelle -> {
+                        @SuppressWarnings("unchecked")
+                        Map<String, ?> verschachtelt = (Map<String, ?>) tabelle;
+                        inhalt.oktett('F').tabelle(verschachtelt);
+                    }
+                    default -> throw new IllegalArgumentException("Nicht unterstützter Tabellenwert: " + eintrag.getValue());
+                }
+            }
+            byte[] kodiert = inhalt.fertig();
+            lang(kodiert.length);
+            bytes.writeBytes(kodiert);
+            return this;
+        }
+
+        byte[] fertig() {
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Kodiert die Methode als Rahmen.
+         *
+         * @param kanal Die Kanalnummer.
+         * @return Die Bytes des Rahmens.
+         */
+        byte[] alsRahmen(int kanal) {
+            return kodiere(METHODE, kanal, fertig());
+        }
+    }
+}
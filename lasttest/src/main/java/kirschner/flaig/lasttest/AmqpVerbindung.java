@@ -0,0 +1,513 @@
+package kirschner.flaig.lasttest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eine Client-Verbindung zur {@link AmqpAttrappe}. Ein Thread liest die Rahmen des Clients und führt die Methoden
+ * aus, ein zweiter schreibt die Antworten und Zustellungen aus einer Warteschlange und sendet Herzschläge, wenn
+ * nichts anderes zu schreiben ist. Die Rahmen einer Zustellung werden als ein Element eingereiht, damit sie auf
+ * ihrem Kanal nicht von anderen Rahmen unterbrochen werden.
+ */
+final class AmqpVerbindung {
+
+    /**
+     * Die maximale Rahmengröße, die der Broker vorschlägt.
+     */
+    private static final int MAXIMALE_RAHMENGROESSE = 131_072;
+
+    /**
+     * Das Herzschlagintervall in Sekunden, das der Broker vorschlägt.
+     */
+    private static final int HERZSCHLAG_SEKUNDEN = 60;
+
+    /**
+     * Markiert das Ende der Ausgabe.
+     */
+    private static final byte[][] ENDE = new byte[0][];
+
+    /**
+     * Ein Herzschlag-Rahmen.
+     */
+    private static final byte[] HERZSCHLAG = AmqpRahmen.kodiere(AmqpRahmen.HERZSCHLAG, 0, new byte[0]);
+
+    /**
+     * Der Broker.
+     */
+    private final AmqpAttrappe attrappe;
+
+    /**
+     * Der Socket der Verbindung.
+     */
+    private final Socket socket;
+
+    /**
+     * Die zu schreibenden Rahmen, gruppiert nach zusammengehörigen Rahmen.
+     */
+    private final LinkedBlockingQueue<byte[][]> ausgabe = new LinkedBlockingQueue<>();
+
+    /**
+     * Die offenen Kanäle; nur der Lesethread greift darauf zu.
+     */
+    private final Map<Integer, Kanalzustand> kanaele = new HashMap<>();
+
+    /**
+     * Die mit dem Client ausgehandelte maximale Rahmengröße.
+     */
+    private volatile int rahmengroesse = MAXIMALE_RAHMENGROESSE;
+
+    /**
+     * Das mit dem Client ausgehandelte Herzschlagintervall in Sekunden, 0 ohne Herzschläge.
+     */
+    private volatile int herzschlagSekunden;
+
+    /**
+     * Erstellt die Verbindung.
+     *
+     * @param attrappe Der Broker.
+     * @param socket Der angenommene Socket.
+     */
+    AmqpVerbindung(AmqpAttrappe attrappe, Socket socket) {
+        this.attrappe = attrappe;
+        this.socket = socket;
+    }
+
+    /**
+     * Startet Lese- und Schreibthread.
+     */
+    void starte() {
+        String name = "amqp-attrappe-" + socket.getPort();
+        Thread.ofPlatform().name(name + "-schreiben").daemon().start(this::schreibe);
+        Thread.ofPlatform().name(name + "-lesen").daemon().start(this::lies);
+    }
+
+    /**
+     * Beendet die Verbindung, ohne auf den Client zu warten.
+     */
+    void schliesse() {
+        ausgabe.add(ENDE);
+    }
+
+    /**
+     * Reiht zusammengehörige Rahmen zum Schreiben ein.
+     *
+     * @param rahmen Die vollständig kodierten Rahmen.
+     */
+    void sende(byte[]... rahmen) {
+        ausgabe.add(rahmen);
+    }
+
+    /**
+     * Reiht die Zustellung einer Nachricht an einen Consumer ein ({@code basic.deliver}).
+     *
+     * @param kanal Die Kanalnummer.
+     * @param verbraucherTag Der Consumer-Tag.
+     * @param zustellTag Der Delivery-Tag.
+     * @param erneut {@code true}, wenn die Nachricht schon einmal zugestellt wurde.
+     * @param nachricht Die Nachricht.
+     */
+    void stelleZu(int kanal, String verbraucherTag, long zustellTag, boolean erneut, AmqpAttrappe.Nachricht nachricht) {
+        byte[] methode = AmqpRahmen.Schreiber.methode(60, 60)
+                .kurzString(verbraucherTag)
+                .langlang(zustellTag)
+                .oktett(erneut ? 1 : 0)
+                .kurzString(nachricht.austausch())
+                .kurzString(nachricht.schluessel())
+                .alsRahmen(kanal);
+        sende(mitInhalt(methode, kanal, nachricht));
+    }
+
+    /**
+     * Liest und verarbeitet die Rahmen des Clients, bis er die Verbindung schließt.
+     */
+    private void lies() {
+        try {
+            DataInputStream ein = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 65_536));
+            byte[] protokollkopf = new byte[AmqpRahmen.PROTOKOLLKOPF.length];
+            ein.readFully(protokollkopf);
+            if (!Arrays.equals(protokollkopf, AmqpRahmen.PROTOKOLLKOPF)) {
+                sende(AmqpRahmen.PROTOKOLLKOPF);
+                return;
+            }
+            sende(AmqpRahmen.Schreiber.methode(10, 10)
+                    .oktett(0).oktett(9)
+                    .tabelle(Map.of(
+                            "product", "AmqpAttrappe",
+                            "version", "0.9.1",
+                            "capabilities", Map.of(
+                                    "publisher_confirms", true,
+                                    "basic.nack", true,
+                                    "consumer_cancel_notify", true,
+                                    "per_consumer_qos", true)))
+                    .langString("PLAIN AMQPLAIN")
+                    .langString("en_US")
+                    .alsRahmen(0));
+            AmqpRahmen rahmen;
+            while ((rahmen = AmqpRahmen.lies(ein)) != null) {
+                if (!verarbeite(rahmen)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Der Client hat die Verbindung ohne connection.close beendet.
+        } finally {
+            for (Kanalzustand kanal : kanaele.values()) {
+                attrappe.schliesseKanal(kanal.broker);
+            }
+            kanaele.clear();
+            attrappe.entferne(this);
+            schliesse();
+        }
+    }
+
+    /**
+     * Verarbeitet einen Rahmen.
+     *
+     * @param rahmen Der Rahmen.
+     * @return {@code false}, wenn die Verbindung danach beendet ist.
+     */
+    private boolean verarbeite(AmqpRahmen rahmen) {
+        Kanalzustand kanal = kanaele.get(rahmen.kanal());
+        switch (rahmen.typ()) {
+            case AmqpRahmen.METHODE -> {
+                return verarbeiteMethode(rahmen.kanal(), kanal, new AmqpRahmen.Leser(rahmen.nutzlast()));
+            }
+            case AmqpRahmen.KOPF -> {
+                if (kanal != null && kanal.veroeffentlichung != null) {
+                    kanal.veroeffentlichung.kopf(rahmen.nutzlast());
+                    schliesseVeroeffentlichungAb(kanal);
+                }
+            }
+            case AmqpRahmen.INHALT -> {
+                if (kanal != null && kanal.veroeffentlichung != null) {
+                    kanal.veroeffentlichung.inhalt.writeBytes(rahmen.nutzlast());
+                    schliesseVeroeffentlichungAb(kanal);
+                }
+            }
+            default -> {
+                // Herzschläge des Clients brauchen keine Antwort.
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Führt eine Methode aus und sendet ihre Antwort.
+     *
+     * @param nummer Die Kanalnummer.
+     * @param kanal Der Kanal oder {@code null}, wenn er nicht offen ist.
+     * @param leser Der Leser über die Methode.
+     * @return {@code false}, wenn die Verbindung danach beendet ist.
+     */
+    private boolean verarbeiteMethode(int nummer, Kanalzustand kanal, AmqpRahmen.Leser leser) {
+        int klasse = leser.kurz();
+        int methode = leser.kurz();
+        if (kanal != null && kanal.broker.geschlossen && !(klasse == 20 && methode == 41)) {
+            return true;
+        }
+        switch (klasse << 16 | methode) {
+            case 10 << 16 | 11 -> sende(AmqpRahmen.Schreiber.methode(10, 30)
+                    .kurz(2047).lang(MAXIMALE_RAHMENGROESSE).kurz(HERZSCHLAG_SEKUNDEN).alsRahmen(0));
+            case 10 << 16 | 31 -> {
+                leser.kurz();
+                int groesse = leser.lang();
+                rahmengroesse = groesse == 0 ? MAXIMALE_RAHMENGROESSE : Math.min(groesse, MAXIMALE_RAHMENGROESSE);
+                herzschlagSekunden = leser.kurz();
+            }
+            case 10 << 16 | 40 -> sende(AmqpRahmen.Schreiber.methode(10, 41).kurzString("").alsRahmen(0));
+            case 10 << 16 | 50 -> {
+                sende(AmqpRahmen.Schreiber.methode(10, 51).alsRahmen(0));
+                return false;
+            }
+            case 10 << 16 | 51 -> {
+                return false;
+            }
+            case 20 << 16 | 10 -> {
+                kanaele.put(nummer, new Kanalzustand(attrappe.oeffneKanal(this, nummer)));
+                sende(AmqpRahmen.Schreiber.methode(20, 11).langString("").alsRahmen(nummer));
+            }
+            case 20 << 16 | 20 -> sende(AmqpRahmen.Schreiber.methode(20, 21).oktett(leser.oktett()).alsRahmen(nummer));
+            case 20 << 16 | 40 -> {
+                schliesseKanal(nummer, kanal);
+                sende(AmqpRahmen.Schreiber.methode(20, 41).alsRahmen(nummer));
+            }
+            case 20 << 16 | 41 -> schliesseKanal(nummer, kanal);
+            case 40 << 16 | 10 -> {
+                leser.kurz();
+                String name = leser.kurzString();
+                String typ = leser.kurzString();
+                int bits = leser.oktett();
+                if (!attrappe.deklariereAustausch(name, typ, (bits & 1) != 0)) {
+                    lehneKanalAb(nummer, kanal, "NOT_FOUND - no exchange '" + name + "'", klasse, methode);
+                } else if ((bits & 16) == 0) {
+                    sende(AmqpRahmen.Schreiber.methode(40, 11).alsRahmen(nummer));
+                }
+            }
+            case 40 << 16 | 20 -> {
+                leser.kurz();
+                leser.kurzString();
+                if ((leser.oktett() & 2) == 0) {
+                    sende(AmqpRahmen.Schreiber.methode(40, 21).alsRahmen(nummer));
+                }
+            }
+            case 50 << 16 | 10 -> {
+                leser.kurz();
+                String name = leser.kurzString();
+                int bits = leser.oktett();
+                AmqpAttrappe.Warteschlangenstand stand = attrappe.deklariereWarteschlange(name, (bits & 1) != 0);
+                if (stand == null) {
+                    lehneKanalAb(nummer, kanal, "NOT_FOUND - no queue '" + name + "'", klasse, methode);
+                } else if ((bits & 16) == 0) {
+                    sende(AmqpRahmen.Schreiber.methode(50, 11)
+                            .kurzString(stand.name()).lang(stand.nachrichten()).lang(stand.verbraucher()).alsRahmen(nummer));
+                }
+            }
+            case 50 << 16 | 20 -> {
+                leser.kurz();
+                String warteschlange = leser.kurzString();
+                String austausch = leser.kurzString();
+                String schluessel = leser.kurzString();
+                boolean ohneAntwort = (leser.oktett() & 1) != 0;
+                if (!attrappe.binde(warteschlange, austausch, schluessel)) {
+                    lehneKanalAb(nummer, kanal, "NOT_FOUND - no queue '" + warteschlange + "' or exchange '" + austausch + "'", klasse, methode);
+                } else if (!ohneAntwort) {
+                    sende(AmqpRahmen.Schreiber.methode(50, 21).alsRahmen(nummer));
+                }
+            }
+            case 50 << 16 | 30 -> {
+                leser.kurz();
+                int anzahl = attrappe.leere(leser.kurzString());
+                if ((leser.oktett() & 1) == 0) {
+                    sende(AmqpRahmen.Schreiber.methode(50, 31).lang(anzahl).alsRahmen(nummer));
+                }
+            }
+            case 50 << 16 | 40 -> {
+                leser.kurz();
+                int anzahl = attrappe.loesche(leser.kurzString());
+                if ((leser.oktett() & 4) == 0) {
+                    sende(AmqpRahmen.Schreiber.methode(50, 41).lang(anzahl).alsRahmen(nummer));
+                }
+            }
+            case 50 << 16 | 50 -> {
+                leser.kurz();
+                String warteschlange = leser.kurzString();
+                String austausch = leser.kurzString();
+                attrappe.entbinde(warteschlange, austausch, leser.kurzString());
+                sende(AmqpRahmen.Schreiber.methode(50, 51).alsRahmen(nummer));
+            }
+            case 60 << 16 | 10 -> {
+                leser.lang();
+                kanal.broker.prefetch = leser.kurz();
+                sende(AmqpRahmen.Schreiber.methode(60, 11).alsRahmen(nummer));
+            }
+            case 60 << 16 | 20 -> {
+                leser.kurz();
+                String warteschlange = leser.kurzString();
+                String tag = leser.kurzString();
+                int bits = leser.oktett();
+                if (!attrappe.konsumiere(kanal.broker, warteschlange, tag, (bits & 2) != 0, (bits & 8) != 0)) {
+                    lehneKanalAb(nummer, kanal, "NOT_FOUND - no queue '" + warteschlange + "'", klasse, methode);
+                }
+            }
+            case 60 << 16 | 30 -> {
+                String tag = leser.kurzString();
+                attrappe.beendeKonsum(kanal.broker, tag);
+                if ((leser.oktett() & 1) == 0) {
+                    sende(AmqpRahmen.Schreiber.methode(60, 31).kurzString(tag).alsRahmen(nummer));
+                }
+            }
+            case 60 << 16 | 40 -> {
+                leser.kurz();
+                String austausch = leser.kurzString();
+                String schluessel = leser.kurzString();
+                kanal.veroeffentlichung = new Veroeffentlichung(austausch, schluessel, (leser.oktett() & 1) != 0);
+            }
+            case 60 << 16 | 70 -> sende(AmqpRahmen.Schreiber.methode(60, 72).kurzString("").alsRahmen(nummer));
+            case 60 << 16 | 80 -> {
+                long zustellTag = leser.langlang();
+                attrappe.bestaetige(kanal.broker, zustellTag, (leser.oktett() & 1) != 0);
+            }
+            case 60 << 16 | 90 -> {
+                long zustellTag = leser.langlang();
+                attrappe.lehneAb(kanal.broker, zustellTag, false, (leser.oktett() & 1) != 0);
+            }
+            case 60 << 16 | 100 -> attrappe.stelleZurueck(kanal.broker);
+            case 60 << 16 | 110 -> {
+                attrappe.stelleZurueck(kanal.broker);
+                sende(AmqpRahmen.Schreiber.methode(60, 111).alsRahmen(nummer));
+            }
+            case 60 << 16 | 120 -> {
+                long zustellTag = leser.langlang();
+                int bits = leser.oktett();
+                attrappe.lehneAb(kanal.broker, zustellTag, (bits & 1) != 0, (bits & 2) != 0);
+            }
+            case 85 << 16 | 10 -> {
+                kanal.broker.bestaetigungsmodus = true;
+                if ((leser.oktett() & 1) == 0) {
+                    sende(AmqpRahmen.Schreiber.methode(85, 11).alsRahmen(nummer));
+                }
+            }
+            default -> {
+                sende(AmqpRahmen.Schreiber.methode(10, 50)
+                        .kurz(540).kurzString("NOT_IMPLEMENTED - " + klasse + "." + methode).kurz(klasse).kurz(methode)
+                        .alsRahmen(0));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Leitet eine Veröffentlichung weiter, sobald ihr Inhalt vollständig ist, und sendet Return und Confirm.
+     *
+     * @param kanal Der Kanal der Veröffentlichung.
+     */
+    private void schliesseVeroeffentlichungAb(Kanalzustand kanal) {
+        Veroeffentlichung veroeffentlichung = kanal.veroeffentlichung;
+        if (veroeffentlichung.kopf == null || veroeffentlichung.inhalt.size() < veroeffentlichung.groesse) {
+            return;
+        }
+        kanal.veroeffentlichung = null;
+        AmqpAttrappe.Nachricht nachricht = new AmqpAttrappe.Nachricht(veroeffentlichung.austausch, veroeffentlichung.schluessel,
+                veroeffentlichung.kopf, veroeffentlichung.inhalt.toByteArray());
+        boolean zugestellt = attrappe.veroeffentliche(nachricht.austausch(), nachricht.schluessel(), nachricht.kopf(), nachricht.inhalt());
+        int nummer = kanal.broker.nummer;
+        if (!zugestellt && veroeffentlichung.mandatory) {
+            byte[] methode = AmqpRahmen.Schreiber.methode(60, 50)
+                    .kurz(312).kurzString("NO_ROUTE").kurzString(nachricht.austausch()).kurzString(nachricht.schluessel())
+                    .alsRahmen(nummer);
+            sende(mitInhalt(methode, nummer, nachricht));
+        }
+        if (kanal.broker.bestaetigungsmodus) {
+            sende(AmqpRahmen.Schreiber.methode(60, 80).langlang(++kanal.broker.veroeffentlichungsNummer).oktett(0).alsRahmen(nummer));
+        }
+    }
+
+    /**
+     * Schließt einen Kanal auf Anfrage des Clients oder nach dessen Bestätigung.
+     *
+     * @param nummer Die Kanalnummer.
+     * @param kanal Der Kanal oder {@code null}.
+     */
+    private void schliesseKanal(int nummer, Kanalzustand kanal) {
+        if (kanal != null) {
+            attrappe.schliesseKanal(kanal.broker);
+            kanaele.remove(nummer);
+        }
+    }
+
+    /**
+     * Schließt einen Kanal wegen eines Fehlers von Broker-Seite; bis zum {@code channel.close-ok} des Clients werden
+     * weitere Methoden auf dem Kanal ignoriert.
+     *
+     * @param nummer Die Kanalnummer.
+     * @param kanal Der Kanal.
+     * @param text Der Reply-Text.
+     * @param klasse Die Klassen-ID der auslösenden Methode.
+     * @param methode Die Methoden-ID der auslösenden Methode.
+     */
+    private void lehneKanalAb(int nummer, Kanalzustand kanal, String text, int klasse, int methode) {
+        attrappe.schliesseKanal(kanal.broker);
+        sende(AmqpRahmen.Schreiber.methode(20, 40)
+                .kurz(AmqpAttrappe.NICHT_GEFUNDEN).kurzString(text).kurz(klasse).kurz(methode).alsRahmen(nummer));
+    }
+
+    /**
+     * Kodiert eine Methode mit dem Inhaltskopf und den Inhaltsrahmen einer Nachricht.
+     *
+     * @param methode Der Methodenrahmen.
+     * @param kanal Die Kanalnummer.
+     * @param nachricht Die Nachricht.
+     * @return Die Rahmen in Sendereihenfolge.
+     */
+    private byte[][] mitInhalt(byte[] methode, int kanal, AmqpAttrappe.Nachricht nachricht) {
+        byte[] inhalt = nachricht.inhalt();
+        int teilgroesse = rahmengroesse - AmqpRahmen.VERWALTUNGSGROESSE;
+        int teile = (inhalt.length + teilgroesse - 1) / teilgroesse;
+        byte[][] rahmen = new byte[2 + teile][];
+        rahmen[0] = methode;
+        rahmen[1] = AmqpRahmen.kodiere(AmqpRahmen.KOPF, kanal, nachricht.kopf());
+        for (int i = 0; i < teile; i++) {
+            int von = i * teilgroesse;
+            rahmen[2 + i] = AmqpRahmen.kodiere(AmqpRahmen.INHALT, kanal, inhalt, von, Math.min(teilgroesse, inhalt.length - von));
+        }
+        return rahmen;
+    }
+
+    /**
+     * Schreibt die eingereihten Rahmen, bis die Verbindung endet. Geleert wird erst, wenn nichts mehr wartet.
+     */
+    private void schreibe() {
+        try (socket; OutputStream aus = new BufferedOutputStream(socket.getOutputStream(), 65_536)) {
+            while (true) {
+                int herzschlag = herzschlagSekunden;
+                byte[][] rahmen = herzschlag > 0 ? ausgabe.poll(herzschlag * 500L, TimeUnit.MILLISECONDS) : ausgabe.take();
+                if (rahmen == null) {
+                    aus.write(HERZSCHLAG);
+                } else if (rahmen == ENDE) {
+                    aus.flush();
+                    return;
+                } else {
+                    for (byte[] teil : rahmen) {
+                        aus.write(teil);
+                    }
+                }
+                if (ausgabe.isEmpty()) {
+                    aus.flush();
+                }
+            }
+        } catch (IOException e) {
+            // Der Client hat die Verbindung beendet; der Lesethread räumt auf.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Eine Veröffentlichung, deren Inhalt noch nicht vollständig empfangen ist.
+     */
+    private static final class Veroeffentlichung {
+
+        final String austausch;
+        final String schluessel;
+        final boolean mandatory;
+        final ByteArrayOutputStream inhalt = new ByteArrayOutputStream();
+        byte[] kopf;
+        long groesse;
+
+        Veroeffentlichung(String austausch, String schluessel, boolean mandatory) {
+            this.austausch = austausch;
+            this.schluessel = schluessel;
+            this.mandatory = mandatory;
+        }
+
+        void kopf(byte[] kopf) {
+            this.kopf = kopf;
+            this.groesse = ByteBuffer.wrap(kopf, 4, 8).getLong();
+        }
+    }
+
+    /**
+     * Ein offener Kanal mit seinem Broker-seitigen Zustand und der laufenden Veröffentlichung.
+     */
+    private static final class Kanalzustand {
+
+        final AmqpAttrappe.Kanal broker;
+        Veroeffentlichung veroeffentlichung;
+
+        Kanalzustand(AmqpAttrappe.Kanal broker) {
+            this.broker = broker;
+        }
+    }
+}
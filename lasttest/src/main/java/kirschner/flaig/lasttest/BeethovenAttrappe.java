@@ -0,0 +1,334 @@
+package kirschner.flaig.lasttest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import kirschner.flaig.mozart.grpc.BestellungBatchRequest;
+import kirschner.flaig.mozart.grpc.BestellungBatchResponse;
+import kirschner.flaig.mozart.grpc.BestellungBatchResult;
+import kirschner.flaig.mozart.grpc.BestellungRequest;
+import kirschner.flaig.mozart.grpc.BestellungResponse;
+import kirschner.flaig.mozart.grpc.ErpOrderServiceGrpc;
+
+/**
+ * Ersetzt Beethoven im Lasttest mit {@code beethoven=attrappe}: ein gRPC-Server für den {@code ErpOrderService}, wie
+ * ihn Mozart aufruft, und der HTTP-Endpunkt {@code GET /api/status/{id}?status=…}, der wie Beethoven eine
+ * Statusaktualisierung über den Broker an Mozart sendet.
+ * <p>
+ * Jede Bestellung wird angenommen, ohne Lager und Idempotenz, und nach einer einstellbaren Latenz beantwortet:
+ * {@code latenzMikros} plus gleichverteilt bis zu {@code streuungMikros}. Die Antwort wird verzögert über einen
+ * Scheduler gesendet, sodass kein Thread auf sie wartet. Mit Wahrscheinlichkeit {@code fehlerquote} scheitert ein
+ * Aufruf nach derselben Latenz mit {@link Status#UNAVAILABLE}, ein Batch dabei als Ganzes. Statusaktualisierungen
+ * sind nur für Bestellungen dieser Attrappe möglich und bilden den ERP-Status wie Beethoven auf den
+ * E-Commerce-Status ab.
+ */
+final class BeethovenAttrappe extends ErpOrderServiceGrpc.ErpOrderServiceImplBase implements AutoCloseable {
+
+    /**
+     * Der Exchange, an den Beethoven Statusaktualisierungen sendet.
+     */
+    static final String ECOMMERCE_EXCHANGE = "ecommerce.direct.exchange";
+
+    /**
+     * Der Routing Key der Statusaktualisierungen.
+     */
+    static final String ECOMMERCE_STATUS_ROUTING_KEY = "ecommerce.status.routingkey";
+
+    /**
+     * Der Pfad des Status-Endpunkts.
+     */
+    private static final String STATUS_PFAD = "/api/status/";
+
+    /**
+     * Der Broker, über den Statusaktualisierungen gesendet werden.
+     */
+    private final AmqpAttrappe broker;
+
+    /**
+     * Die feste Latenz jeder Antwort in Mikrosekunden.
+     */
+    private final long latenzMikros;
+
+    /**
+     * Die maximale zusätzliche, gleichverteilte Latenz in Mikrosekunden.
+     */
+    private final long streuungMikros;
+
+    /**
+     * Die Wahrscheinlichkeit, mit der ein Aufruf scheitert.
+     */
+    private final double fehlerquote;
+
+    /**
+     * Die IDs der angenommenen Bestellungen.
+     */
+    private final Set<String> bestellIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Zählt die vergebenen Bestell-IDs.
+     */
+    private final AtomicLong bestellzaehler = new AtomicLong();
+
+    /**
+     * Zählt die eingespeisten Fehler.
+     */
+    private final AtomicLong eingespeisteFehler = new AtomicLong();
+
+    /**
+     * Sendet die verzögerten Antworten.
+     */
+    private final ScheduledExecutorService verzoegerung = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("beethoven-attrappe-verzoegerung").daemon().factory());
+
+    /**
+     * Führt gRPC-Aufrufe und HTTP-Anfragen aus.
+     */
+    private final ExecutorService ausfuehrung = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Der gRPC-Server.
+     */
+    private Server grpcServer;
+
+    /**
+     * Der HTTP-Server des Status-Endpunkts.
+     */
+    private HttpServer httpServer;
+
+    /**
+     * Erstellt die Attrappe; sie nimmt erst nach {@link #starte()} Anfragen an.
+     *
+     * @param broker Der Broker für Statusaktualisierungen.
+     * @param latenzMikros Die feste Latenz jeder Antwort in Mikrosekunden.
+     * @param streuungMikros Die maximale zusätzliche Latenz in Mikrosekunden.
+     * @param fehlerquote Die Wahrscheinlichkeit, mit der ein Aufruf scheitert, zwischen 0 und 1.
+     * @throws IllegalArgumentException Wenn Latenz oder Streuung negativ sind oder die Fehlerquote außerhalb von [0, 1] liegt.
+     */
+    BeethovenAttrappe(AmqpAttrappe broker, long latenzMikros, long streuungMikros, double fehlerquote) throws IllegalArgumentException {
+        if (latenzMikros < 0 || streuungMikros < 0) {
+            throw new IllegalArgumentException("Latenz und Streuung dürfen nicht negativ sein.");
+        }
+        if (fehlerquote < 0 || fehlerquote > 1) {
+            throw new IllegalArgumentException("Die Fehlerquote muss zwischen 0 und 1 liegen: " + fehlerquote);
+        }
+        this.broker = broker;
+        this.latenzMikros = latenzMikros;
+        this.streuungMikros = streuungMikros;
+        this.fehlerquote = fehlerquote;
+    }
+
+    /**
+     * Startet gRPC- und HTTP-Server auf freien Ports.
+     *
+     * @throws IOException Wenn ein Server nicht gestartet werden kann.
+     */
+    void starte() throws IOException {
+        grpcServer = Grpc.newServerBuilderForPort(0, InsecureServerCredentials.create())
+                .executor(ausfuehrung)
+                .addService(this)
+                .build()
+                .start();
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        httpServer.setExecutor(ausfuehrung);
+        httpServer.createContext(STATUS_PFAD, this::behandleStatus);
+        httpServer.start();
+    }
+
+    /**
+     * @return Der Port des gRPC-Servers.
+     */
+    int grpcPort() {
+        return grpcServer.getPort();
+    }
+
+    /**
+     * @return Die Basis-URL des HTTP-Servers.
+     */
+    String httpBasis() {
+        return "http://localhost:" + httpServer.getAddress().getPort();
+    }
+
+    /**
+     * @return Die Anzahl der eingespeisten Fehler.
+     */
+    long eingespeisteFehler() {
+        return eingespeisteFehler.get();
+    }
+
+    @Override
+    public void bestellungOrder(BestellungRequest request, StreamObserver<BestellungResponse> responseObserver) {
+        boolean fehler = scheitert();
+        BestellungResponse antwort = fehler ? null : nimmAn();
+        verzoegerung.schedule(() -> antworte(responseObserver, antwort), verzoegerungMikros(), TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public void bestellungOrderBatch(BestellungBatchRequest request, StreamObserver<BestellungBatchResponse> responseObserver) {
+        BestellungBatchResponse antwort = null;
+        if (!scheitert()) {
+            BestellungBatchResponse.Builder batch = BestellungBatchResponse.newBuilder();
+            for (int i = 0; i < request.getOrdersCount(); i++) {
+                batch.addResults(BestellungBatchResult.newBuilder().setIndex(i).setAccepted(true).setResponse(nimmAn()));
+            }
+            antwort = batch.build();
+        }
+        BestellungBatchResponse ergebnis = antwort;
+        verzoegerung.schedule(() -> antworte(responseObserver, ergebnis), verzoegerungMikros(), TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Fährt beide Server und den Scheduler herunter.
+     *
+     * @throws InterruptedException Wenn das Warten auf den gRPC-Server unterbrochen wird.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+        if (grpcServer != null) {
+            grpcServer.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        verzoegerung.shutdownNow();
+        ausfuehrung.shutdownNow();
+    }
+
+    /**
+     * Nimmt eine Bestellung an.
+     *
+     * @return Die Antwort mit neuer Bestell-ID, Lieferdatum in drei Tagen und Status {@code Processing}.
+     */
+    private BestellungResponse nimmAn() {
+        String bestellId = "ORD-LAST-" + bestellzaehler.incrementAndGet();
+        bestellIds.add(bestellId);
+        return BestellungResponse.newBuilder()
+                .setOrderId(bestellId)
+                .setDeliveryDate(LocalDateTime.now().plusDays(3).truncatedTo(ChronoUnit.SECONDS).toString())
+                .setDeliveryStatus("Processing")
+                .build();
+    }
+
+    /**
+     * Entscheidet, ob ein Aufruf scheitert, und zählt eingespeiste Fehler.
+     *
+     * @return {@code true}, wenn der Aufruf scheitern soll.
+     */
+    private boolean scheitert() {
+        if (fehlerquote > 0 && ThreadLocalRandom.current().nextDouble() < fehlerquote) {
+            eingespeisteFehler.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Die Latenz des nächsten Aufrufs in Mikrosekunden.
+     */
+    private long verzoegerungMikros() {
+        return streuungMikros == 0 ? latenzMikros : latenzMikros + ThreadLocalRandom.current().nextLong(streuungMikros + 1);
+    }
+
+    /**
+     * Beendet einen Aufruf mit der Antwort oder dem eingespeisten Fehler.
+     *
+     * @param beobachter Der Beobachter des Aufrufs.
+     * @param antwort Die Antwort oder {@code null} für den Fehler.
+     * @param <T> Der Antworttyp.
+     */
+    private static <T> void antworte(StreamObserver<T> beobachter, T antwort) {
+        if (antwort == null) {
+            beobachter.onError(Status.UNAVAILABLE.withDescription("Eingespeister Fehler der Beethoven-Attrappe").asRuntimeException());
+            return;
+        }
+        beobachter.onNext(antwort);
+        beobachter.onCompleted();
+    }
+
+    /**
+     * Beantwortet {@code GET /api/status/{id}?status=…} wie der {@code BeethovenStatusController}.
+     *
+     * @param austausch Die HTTP-Anfrage.
+     * @throws IOException Wenn die Antwort nicht geschrieben werden kann.
+     */
+    private void behandleStatus(HttpExchange austausch) throws IOException {
+        try (austausch) {
+            String bestellId = austausch.getRequestURI().getPath().substring(STATUS_PFAD.length());
+            String status = parameter(austausch.getRequestURI().getRawQuery(), "status");
+            String eCommerceStatus = status == null ? null : switch (status.toUpperCase()) {
+                case "SHIPPED" -> "SHIPPED";
+                case "CANCELLED" -> "DELIVERED";
+                case "PROCESSED" -> "PROCESSING";
+                default -> null;
+            };
+            if (!"GET".equals(austausch.getRequestMethod()) || eCommerceStatus == null) {
+                schreibeAntwort(austausch, 400, "Ungültiger Status: " + status);
+            } else if (!bestellIds.contains(bestellId)) {
+                schreibeAntwort(austausch, 400, "Bestellung mit ID " + bestellId + " nicht gefunden.");
+            } else {
+                String json = "{\"bestellId\":\"" + bestellId + "\",\"status\":\"" + eCommerceStatus + "\"}";
+                broker.veroeffentliche(ECOMMERCE_EXCHANGE, ECOMMERCE_STATUS_ROUTING_KEY, "application/json",
+                        json.getBytes(StandardCharsets.UTF_8));
+                schreibeAntwort(austausch, 200, "Status update sent for order ID: " + bestellId + " with status: " + status);
+            }
+        }
+    }
+
+    /**
+     * Liest einen Parameter aus einem Query-String.
+     *
+     * @param query Der rohe Query-String oder {@code null}.
+     * @param name Der Name des Parameters.
+     * @return Der dekodierte Wert oder {@code null}.
+     */
+    private static String parameter(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String paar : query.split("&")) {
+            int gleich = paar.indexOf('=');
+            if (gleich > 0 && paar.substring(0, gleich).equals(name)) {
+                return URLDecoder.decode(paar.substring(gleich + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Schreibt eine Textantwort.
+     *
+     * @param austausch Die HTTP-Anfrage.
+     * @param status Der HTTP-Status.
+     * @param text Der Text.
+     * @throws IOException Wenn die Antwort nicht geschrieben werden kann.
+     */
+    private static void schreibeAntwort(HttpExchange austausch, int status, String text) throws IOException {
+        byte[] inhalt = text.getBytes(StandardCharsets.UTF_8);
+        austausch.getResponseHeaders().set("Content-Type", "text/plain;charset=UTF-8");
+        austausch.sendResponseHeaders(status, inhalt.length);
+        try (OutputStream aus = austausch.getResponseBody()) {
+            aus.write(inhalt);
+        }
+    }
+}
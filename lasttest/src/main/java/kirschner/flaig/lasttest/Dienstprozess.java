@@ -0,0 +1,124 @@
+package kirschner.flaig.lasttest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ein Dienst (Mozart oder Beethoven), der als eigene JVM aus seinem ausführbaren JAR gestartet wird. Er läuft in einem
+ * eigenen Arbeitsverzeichnis, damit Outbox, Bestellprotokoll und Log-Spool nicht im Projekt landen, und schreibt seine
+ * Ausgabe nach {@code <name>.log} im Ergebnisverzeichnis.
+ */
+final class Dienstprozess implements AutoCloseable {
+
+    /**
+     * Der Name des Dienstes.
+     */
+    private final String name;
+
+    /**
+     * Der laufende Prozess.
+     */
+    private final Process prozess;
+
+    /**
+     * Die Log-Datei des Prozesses.
+     */
+    private final Path logdatei;
+
+    /**
+     * Erstellt den Dienstprozess für einen gestarteten Prozess.
+     *
+     * @param name Der Name des Dienstes.
+     * @param prozess Der Prozess.
+     * @param logdatei Die Log-Datei.
+     */
+    private Dienstprozess(String name, Process prozess, Path logdatei) {
+        this.name = name;
+        this.prozess = prozess;
+        this.logdatei = logdatei;
+    }
+
+    /**
+     * Startet einen Dienst mit derselben Java-Installation wie der Lasttest. Wird der Lasttest abgebrochen, beendet ein
+     * Shutdown-Hook den Dienst mit.
+     *
+     * @param name Der Name des Dienstes; bestimmt Arbeitsverzeichnis und Log-Datei.
+     * @param jar Das ausführbare JAR.
+     * @param ergebnisverzeichnis Das Ergebnisverzeichnis.
+     * @param jvmOptionen Zusätzliche JVM-Optionen.
+     * @param eigenschaften Die Eigenschaften als {@code --name=wert}.
+     * @return Der gestartete Dienst.
+     * @throws IOException Wenn das JAR fehlt oder der Prozess nicht gestartet werden kann.
+     */
+    static Dienstprozess starte(String name, Path jar, Path ergebnisverzeichnis, List<String> jvmOptionen, List<String> eigenschaften)
+            throws IOException {
+        if (!Files.isRegularFile(jar)) {
+            throw new IOException(jar + " fehlt; zuerst mvn package -DskipTests im Verzeichnis von " + name + " ausführen.");
+        }
+        Path arbeitsverzeichnis = Files.createDirectories(ergebnisverzeichnis.resolve(name));
+        Path logdatei = ergebnisverzeichnis.resolve(name + ".log");
+        List<String> befehl = new ArrayList<>();
+        befehl.add(ProcessHandle.current().info().command().orElse("java"));
+        befehl.addAll(jvmOptionen);
+        befehl.add("-jar");
+        befehl.add(jar.toString());
+        befehl.addAll(eigenschaften);
+        Process prozess = new ProcessBuilder(befehl)
+                .directory(arbeitsverzeichnis.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(logdatei.toFile())
+                .start();
+        Runtime.getRuntime().addShutdownHook(Thread.ofPlatform().name("lasttest-ende-" + name).unstarted(prozess::destroy));
+        return new Dienstprozess(name, prozess, logdatei);
+    }
+
+    /**
+     * Wartet, bis der Health-Endpunkt des Dienstes mit 200 antwortet.
+     *
+     * @param client Der HTTP-Client.
+     * @param healthUrl Die URL des Health-Endpunkts.
+     * @param zeitlimit Wie lange höchstens gewartet wird.
+     * @throws IOException Wenn der Prozess vorher endet oder das Zeitlimit abläuft.
+     * @throws InterruptedException Wenn das Warten unterbrochen wird.
+     */
+    void warteAufBereitschaft(HttpClient client, String healthUrl, Duration zeitlimit) throws IOException, InterruptedException {
+        long ende = System.nanoTime() + zeitlimit.toNanos();
+        HttpRequest anfrage = HttpRequest.newBuilder(URI.create(healthUrl)).timeout(Duration.ofSeconds(2)).GET().build();
+        while (System.nanoTime() - ende < 0) {
+            if (!prozess.isAlive()) {
+                throw new IOException(name + " wurde mit Code " + prozess.exitValue() + " beendet, siehe " + logdatei);
+            }
+            try {
+                if (client.send(anfrage, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Der Dienst nimmt noch keine Verbindungen an.
+            }
+            Thread.sleep(250);
+        }
+        throw new IOException(name + " war nach " + zeitlimit.toSeconds() + " s nicht bereit, siehe " + logdatei);
+    }
+
+    /**
+     * Beendet den Dienst regulär und nach zehn Sekunden erzwungen.
+     *
+     * @throws InterruptedException Wenn das Warten auf das Ende unterbrochen wird.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        prozess.destroy();
+        if (!prozess.waitFor(10, TimeUnit.SECONDS)) {
+            prozess.destroyForcibly().waitFor();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package kirschner.flaig.lasttest;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Erzeugt Anfragen mit fester Ankunftsrate nach dem offenen Lastmodell: Die {@code i}-te Anfrage ist für
+ * {@code beginn + i / rate} geplant, unabhängig davon, wann frühere Anfragen beantwortet werden. Der Aufgabe wird
+ * der geplante Zeitpunkt übergeben; sie sendet asynchron und misst die Antwortzeit ab diesem Zeitpunkt. Gerät der
+ * Takt in Verzug, etwa weil der Rechner ausgelastet ist, werden die fälligen Anfragen sofort nachgeholt und ihre
+ * Wartezeit zählt zur Antwortzeit, statt wie bei einem geschlossenen Lastmodell unterschlagen zu werden
+ * (Coordinated Omission).
+ */
+final class Lastgenerator {
+
+    /**
+     * Privater Konstruktor, um die Instanziierung dieser Utility-Klasse zu verhindern.
+     */
+    private Lastgenerator() {
+        // Diese Klasse soll nicht instanziiert werden.
+    }
+
+    /**
+     * Startet einen Taktgeber auf einem eigenen Thread.
+     *
+     * @param name Der Name des Endpunkts für den Thread-Namen.
+     * @param proSekunde Die Ankunftsrate.
+     * @param beginn Der geplante Zeitpunkt der ersten Anfrage in {@link System#nanoTime()}.
+     * @param ende Der Zeitpunkt, ab dem keine Anfragen mehr geplant werden.
+     * @param aufgabe Sendet eine Anfrage zum übergebenen geplanten Zeitpunkt; darf nicht blockieren.
+     * @return Der Thread, der endet, sobald die letzte Anfrage gesendet ist.
+     */
+    static Thread starte(String name, double proSekunde, long beginn, long ende, LongConsumer aufgabe) {
+        double abstand = 1_000_000_000d / proSekunde;
+        return Thread.ofPlatform().name("lasttest-takt-" + name).start(() -> {
+            for (long i = 0; ; i++) {
+                long geplant = beginn + Math.round(i * abstand);
+                if (geplant - ende >= 0) {
+                    return;
+                }
+                long rest;
+                while ((rest = geplant - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(rest);
+                }
+                aufgabe.accept(geplant);
+            }
+        });
+    }
+}
@@ -0,0 +1,182 @@
+package kirschner.flaig.lasttest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Die Einstellungen eines Lasttests, gelesen aus Argumenten der Form {@code name=wert} (mit oder ohne führendes
+ * {@code --}). Argumente, die mit {@code mozart.} oder {@code beethoven.} beginnen, werden unverändert als
+ * Eigenschaften an den jeweiligen Dienst weitergereicht, z.B. {@code mozart.bestellung.asynchron=true}.
+ *
+ * @param bestellungenProSekunde Die Ankunftsrate von {@code POST /api/bestellung}.
+ * @param statusProSekunde Die Ankunftsrate von {@code GET /api/status/{id}}; 0 schaltet Statusaktualisierungen ab.
+ * @param aufwaermenSekunden Wie lange vor der Messung schon Last erzeugt wird.
+ * @param dauerSekunden Die Dauer der Messung.
+ * @param nachlaufSekunden Wie lange nach der Messung höchstens auf offene Antworten und Statusaktualisierungen gewartet wird.
+ * @param antwortTimeoutSekunden Nach wie vielen Sekunden eine HTTP-Anfrage als gescheitert gilt.
+ * @param echterBeethoven {@code true}, wenn Beethoven als Prozess gestartet wird ({@code beethoven=echt}),
+ *                        sonst ersetzt ihn die {@link BeethovenAttrappe} ({@code beethoven=attrappe}).
+ * @param attrappeLatenzMillis Die feste Latenz der {@link BeethovenAttrappe}.
+ * @param attrappeStreuungMillis Die maximale zusätzliche Latenz der {@link BeethovenAttrappe}.
+ * @param attrappeFehlerquote Der Anteil der gRPC-Aufrufe, die in der {@link BeethovenAttrappe} scheitern.
+ * @param anfangsbestand Der Lagerbestand jedes Produkts in Mozart und Beethoven zu Beginn.
+ * @param maximaleWarteschlangenlaenge Die maximale Anzahl wartender Nachrichten pro Warteschlange der {@link AmqpAttrappe}.
+ * @param mozartJar Das ausführbare JAR von Mozart.
+ * @param beethovenJar Das ausführbare JAR von Beethoven.
+ * @param ergebnisverzeichnis Das Verzeichnis für Arbeitsverzeichnisse, Logs und Histogramme der Dienste.
+ * @param jvmOptionen Zusätzliche JVM-Optionen für beide Dienste, durch Leerzeichen getrennt.
+ * @param mozartEigenschaften Zusätzliche Eigenschaften für Mozart als {@code --name=wert}.
+ * @param beethovenEigenschaften Zusätzliche Eigenschaften für Beethoven als {@code --name=wert}.
+ */
+record Lastprofil(double bestellungenProSekunde,
+                  double statusProSekunde,
+                  int aufwaermenSekunden,
+                  int dauerSekunden,
+                  int nachlaufSekunden,
+                  int antwortTimeoutSekunden,
+                  boolean echterBeethoven,
+                  double attrappeLatenzMillis,
+                  double attrappeStreuungMillis,
+                  double attrappeFehlerquote,
+                  int anfangsbestand,
+                  int maximaleWarteschlangenlaenge,
+                  Path mozartJar,
+                  Path beethovenJar,
+                  Path ergebnisverzeichnis,
+                  List<String> jvmOptionen,
+                  List<String> mozartEigenschaften,
+                  List<String> beethovenEigenschaften) {
+
+    /**
+     * Die Standardwerte aller Einstellungen.
+     */
+    private static final Map<String, String> STANDARDWERTE = Map.ofEntries(
+            Map.entry("bestellungen-pro-sekunde", "50"),
+            Map.entry("status-pro-sekunde", "25"),
+            Map.entry("aufwaermen-s", "15"),
+            Map.entry("dauer-s", "60"),
+            Map.entry("nachlauf-s", "10"),
+            Map.entry("antwort-timeout-s", "30"),
+            Map.entry("beethoven", "attrappe"),
+            Map.entry("attrappe-latenz-ms", "2"),
+            Map.entry("attrappe-streuung-ms", "0"),
+            Map.entry("attrappe-fehlerquote", "0"),
+            Map.entry("anfangsbestand", "100000000"),
+            Map.entry("warteschlange-max", "100000"),
+            Map.entry("mozart-jar", "../mozart/target/mozart-0.0.1-SNAPSHOT.jar"),
+            Map.entry("beethoven-jar", "../beethoven/target/beethoven-0.0.1-SNAPSHOT.jar"),
+            Map.entry("ergebnisse", "target/lasttest"),
+            Map.entry("jvm-optionen", ""));
+
+    /**
+     * Liest die Einstellungen aus den Argumenten; fehlende Einstellungen erhalten ihren Standardwert.
+     *
+     * @param argumente Die Argumente.
+     * @return Das Lastprofil.
+     * @throws IllegalArgumentException Bei unbekannten Einstellungen, ungültigen Zahlen oder Werten außerhalb ihres Bereichs.
+     */
+    static Lastprofil aus(String[] argumente) throws IllegalArgumentException {
+        Map<String, String> werte = new LinkedHashMap<>(STANDARDWERTE);
+        List<String> mozartEigenschaften = new ArrayList<>();
+        List<String> beethovenEigenschaften = new ArrayList<>();
+        for (String argument : argumente) {
+            String eintrag = argument.startsWith("--") ? argument.substring(2) : argument;
+            int gleich = eintrag.indexOf('=');
+            if (gleich < 1) {
+                throw new IllegalArgumentException("Argument ohne Wert: " + argument);
+            }
+            String name = eintrag.substring(0, gleich);
+            if (name.startsWith("mozart.")) {
+                mozartEigenschaften.add("--" + eintrag);
+            } else if (name.startsWith("beethoven.")) {
+                beethovenEigenschaften.add("--" + eintrag);
+            } else if (werte.containsKey(name)) {
+                werte.put(name, eintrag.substring(gleich + 1));
+            } else {
+                throw new IllegalArgumentException("Unbekannte Einstellung: " + name + ". Bekannt sind " + STANDARDWERTE.keySet()
+                        + " sowie Eigenschaften mit mozart. und beethoven.");
+            }
+        }
+
+        String beethoven = werte.get("beethoven");
+        if (!beethoven.equals("attrappe") && !beethoven.equals("echt")) {
+            throw new IllegalArgumentException("beethoven muss attrappe oder echt sein: " + beethoven);
+        }
+        String jvmOptionen = werte.get("jvm-optionen").trim();
+        Lastprofil profil = new Lastprofil(
+                zahl(werte, "bestellungen-pro-sekunde"),
+                zahl(werte, "status-pro-sekunde"),
+                ganzzahl(werte, "aufwaermen-s"),
+                ganzzahl(werte, "dauer-s"),
+                ganzzahl(werte, "nachlauf-s"),
+                ganzzahl(werte, "antwort-timeout-s"),
+                beethoven.equals("echt"),
+                zahl(werte, "attrappe-latenz-ms"),
+                zahl(werte, "attrappe-streuung-ms"),
+                zahl(werte, "attrappe-fehlerquote"),
+                ganzzahl(werte, "anfangsbestand"),
+                ganzzahl(werte, "warteschlange-max"),
+                Path.of(werte.get("mozart-jar")).toAbsolutePath().normalize(),
+                Path.of(werte.get("beethoven-jar")).toAbsolutePath().normalize(),
+                Path.of(werte.get("ergebnisse")).toAbsolutePath().normalize(),
+                jvmOptionen.isEmpty() ? List.of() : List.of(jvmOptionen.split("\\s+")),
+                List.copyOf(mozartEigenschaften),
+                List.copyOf(beethovenEigenschaften));
+        if (profil.bestellungenProSekunde <= 0 || profil.statusProSekunde < 0) {
+            throw new IllegalArgumentException("Die Bestellrate muss positiv und die Statusrate darf nicht negativ sein.");
+        }
+        if (profil.dauerSekunden < 1 || profil.aufwaermenSekunden < 0 || profil.nachlaufSekunden < 0 || profil.antwortTimeoutSekunden < 1) {
+            throw new IllegalArgumentException("Dauer und Antwort-Timeout müssen positiv, Aufwärmen und Nachlauf dürfen nicht negativ sein.");
+        }
+        return profil;
+    }
+
+    /**
+     * Beschreibt das Profil in einer Zeile für den Bericht.
+     *
+     * @return Die Beschreibung.
+     */
+    String beschreibung() {
+        String beethoven = echterBeethoven
+                ? "Beethoven als Prozess"
+                : String.format("Beethoven-Attrappe (Latenz %.1f ms + bis %.1f ms, Fehlerquote %.3f)",
+                        attrappeLatenzMillis, attrappeStreuungMillis, attrappeFehlerquote);
+        return String.format("%.1f Bestellungen/s, %.1f Statusaktualisierungen/s, %d s Messung nach %d s Aufwärmen, %s",
+                bestellungenProSekunde, statusProSekunde, dauerSekunden, aufwaermenSekunden, beethoven);
+    }
+
+    /**
+     * Liest eine Kommazahl.
+     *
+     * @param werte Die Einstellungen.
+     * @param name Der Name der Einstellung.
+     * @return Die Zahl.
+     * @throws IllegalArgumentException Wenn der Wert keine Zahl ist.
+     */
+    private static double zahl(Map<String, String> werte, String name) throws IllegalArgumentException {
+        try {
+            return Double.parseDouble(werte.get(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " ist keine Zahl: " + werte.get(name), e);
+        }
+    }
+
+    /**
+     * Liest eine Ganzzahl.
+     *
+     * @param werte Die Einstellungen.
+     * @param name Der Name der Einstellung.
+     * @return Die Zahl.
+     * @throws IllegalArgumentException Wenn der Wert keine Ganzzahl ist.
+     */
+    private static int ganzzahl(Map<String, String> werte, String name) throws IllegalArgumentException {
+        try {
+            return Integer.parseInt(werte.get(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " ist keine Ganzzahl: " + werte.get(name), e);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package kirschner.flaig.lasttest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lasttest für Mozart mit offenem Lastmodell. Startet die Broker-Attrappe, Beethoven als Attrappe oder als Prozess und
+ * Mozart als Prozess, alle auf freien Ports von localhost, sodass weder RabbitMQ noch die Rechner im Heimnetz
+ * gebraucht werden. Dann sendet er {@code POST /api/bestellung} an Mozart und {@code GET /api/status/{id}} an Beethoven
+ * mit je fester Ankunftsrate und berichtet pro Endpunkt Durchsatz sowie p50, p99 und p99,9 der Antwortzeit und dazu die
+ * Verzögerung, bis eine Statusaktualisierung in Mozart übernommen ist.
+ */
+public final class Lasttest {
+
+    /**
+     * Die Produkte, die Mozart und Beethoven anbieten; die Bestellungen verteilen sich gleichmäßig darauf.
+     */
+    private static final String[] PRODUKTE = {"PROD-MOCK-001", "PROD-MOCK-002", "PROD-MOCK-003"};
+
+    /**
+     * Der Austausch, über den Mozart CRM-Aktualisierungen veröffentlicht.
+     */
+    private static final String CRM_EXCHANGE = "crm.direct.exchange";
+
+    /**
+     * Die Warteschlange, aus der Mozart Statusaktualisierungen von Beethoven liest.
+     */
+    private static final String STATUS_WARTESCHLANGE = "ecommerce.status.queue";
+
+    /**
+     * Wie lange ein Dienst höchstens zum Starten braucht.
+     */
+    private static final Duration STARTZEIT = Duration.ofMinutes(3);
+
+    /**
+     * Privater Konstruktor, um die Instanziierung dieser Utility-Klasse zu verhindern.
+     */
+    private Lasttest() {
+        // Diese Klasse soll nicht instanziiert werden.
+    }
+
+    /**
+     * Führt den Lasttest aus.
+     *
+     * @param args Die Einstellungen, siehe {@link Lastprofil}.
+     * @throws Exception Wenn ein Dienst nicht startet oder die Ergebnisse nicht geschrieben werden können.
+     */
+    public static void main(String[] args) throws Exception {
+        Lastprofil profil;
+        try {
+            profil = Lastprofil.aus(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        Path ergebnisse = Files.createDirectories(profil.ergebnisverzeichnis());
+        Path logKonfiguration = ergebnisse.resolve("dienst-log4j2.xml");
+        try (InputStream vorlage = Lasttest.class.getResourceAsStream("/dienst-log4j2.xml")) {
+            Files.copy(vorlage, logKonfiguration, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        Deque<AutoCloseable> aufraeumen = new ArrayDeque<>();
+        try {
+            AmqpAttrappe broker = new AmqpAttrappe(profil.maximaleWarteschlangenlaenge());
+            aufraeumen.push(broker);
+            broker.starte();
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(profil.antwortTimeoutSekunden()))
+                    .build();
+            aufraeumen.push(client);
+            List<String> gemeinsam = List.of(
+                    "--spring.rabbitmq.host=127.0.0.1",
+                    "--spring.rabbitmq.port=" + broker.port(),
+                    "--logging.config=" + logKonfiguration);
+
+            BeethovenAttrappe attrappe = null;
+            int grpcPort;
+            String statusBasis;
+            if (profil.echterBeethoven()) {
+                int httpPort = freierPort();
+                grpcPort = freierPort();
+                List<String> eigenschaften = new ArrayList<>(gemeinsam);
+                eigenschaften.add("--server.port=" + httpPort);
+                eigenschaften.add("--grpc.server.port=" + grpcPort);
+                eigenschaften.add("--beethoven.lager.anfangsbestand=" + profil.anfangsbestand());
+                eigenschaften.addAll(profil.beethovenEigenschaften());
+                Dienstprozess beethoven = Dienstprozess.starte("beethoven", profil.beethovenJar(), ergebnisse, profil.jvmOptionen(), eigenschaften);
+                aufraeumen.push(beethoven);
+                statusBasis = "http://localhost:" + httpPort;
+                beethoven.warteAufBereitschaft(client, statusBasis + "/actuator/health", STARTZEIT);
+            } else {
+                attrappe = new BeethovenAttrappe(broker, mikros(profil.attrappeLatenzMillis()), mikros(profil.attrappeStreuungMillis()),
+                        profil.attrappeFehlerquote());
+                aufraeumen.push(attrappe);
+                attrappe.starte();
+                grpcPort = attrappe.grpcPort();
+                statusBasis = attrappe.httpBasis();
+            }
+
+            int mozartPort = freierPort();
+            List<String> eigenschaften = new ArrayList<>(gemeinsam);
+            eigenschaften.add("--server.port=" + mozartPort);
+            eigenschaften.add("--grpc.client.beethoven-service.address=static://127.0.0.1:" + grpcPort);
+            eigenschaften.add("--mozart.lager.anfangsbestand=" + profil.anfangsbestand());
+            eigenschaften.addAll(profil.mozartEigenschaften());
+            Dienstprozess mozart = Dienstprozess.starte("mozart", profil.mozartJar(), ergebnisse, profil.jvmOptionen(), eigenschaften);
+            aufraeumen.push(mozart);
+            String mozartBasis = "http://localhost:" + mozartPort;
+            mozart.warteAufBereitschaft(client, mozartBasis + "/actuator/health", STARTZEIT);
+
+            fuehreAus(profil, broker, attrappe, client, mozartBasis, statusBasis);
+        } finally {
+            while (!aufraeumen.isEmpty()) {
+                try {
+                    aufraeumen.pop().close();
+                } catch (Exception e) {
+                    System.err.println("Beenden fehlgeschlagen: " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Erzeugt die Last, wartet auf offene Antworten und schreibt den Bericht.
+     *
+     * @param profil Das Lastprofil.
+     * @param broker Die Broker-Attrappe.
+     * @param attrappe Die Beethoven-Attrappe oder {@code null}, wenn Beethoven als Prozess läuft.
+     * @param client Der HTTP-Client.
+     * @param mozartBasis Die Basis-URL von Mozart.
+     * @param statusBasis Die Basis-URL des Statusendpunkts von Beethoven.
+     * @throws IOException Wenn die Ergebnisse nicht geschrieben werden können.
+     * @throws InterruptedException Wenn das Warten unterbrochen wird.
+     */
+    private static void fuehreAus(Lastprofil profil, AmqpAttrappe broker, BeethovenAttrappe attrappe, HttpClient client,
+                                  String mozartBasis, String statusBasis) throws IOException, InterruptedException {
+        long beginn = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long messbeginn = beginn + TimeUnit.SECONDS.toNanos(profil.aufwaermenSekunden());
+        long ende = messbeginn + TimeUnit.SECONDS.toNanos(profil.dauerSekunden());
+        Messreihe bestellungen = new Messreihe("POST /api/bestellung", messbeginn);
+        Messreihe statusaktualisierungen = new Messreihe("GET /api/status/{id}", messbeginn);
+        Statusweitergabe statusweitergabe = new Statusweitergabe(messbeginn);
+        broker.beobachteVeroeffentlichungen(CRM_EXCHANGE, statusweitergabe::bestellungGemeldet);
+        broker.beobachteBestaetigungen(STATUS_WARTESCHLANGE, statusweitergabe::statusUebernommen);
+
+        Duration timeout = Duration.ofSeconds(profil.antwortTimeoutSekunden());
+        AtomicLong unterwegs = new AtomicLong();
+        AtomicLong kunden = new AtomicLong();
+        URI bestellUri = URI.create(mozartBasis + "/api/bestellung");
+        System.out.println("Lasttest läuft: " + profil.beschreibung());
+
+        List<Thread> takte = new ArrayList<>();
+        takte.add(Lastgenerator.starte("bestellung", profil.bestellungenProSekunde(), beginn, ende, geplant -> {
+            long kunde = kunden.incrementAndGet();
+            String inhalt = String.format("{\"kundenId\":\"LAST-%d\",\"email\":\"last%d@example.com\",\"adresse\":\"Lastweg %d, 76133 Karlsruhe\","
+                    + "\"produktId\":\"%s\",\"menge\":1,\"zahlungsmethode\":\"CARD\"}", kunde, kunde, kunde, PRODUKTE[(int) (kunde % PRODUKTE.length)]);
+            HttpRequest anfrage = HttpRequest.newBuilder(bestellUri)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(inhalt))
+                    .build();
+            bestellungen.plane(geplant);
+            sende(client, anfrage, 201, geplant, bestellungen, unterwegs, null);
+        }));
+        if (profil.statusProSekunde() > 0) {
+            takte.add(Lastgenerator.starte("status", profil.statusProSekunde(), beginn, ende, geplant -> {
+                statusaktualisierungen.plane(geplant);
+                String bestellId = statusweitergabe.naechsteBestellung();
+                if (bestellId == null) {
+                    statusaktualisierungen.lasseAus(geplant);
+                    return;
+                }
+                HttpRequest anfrage = HttpRequest.newBuilder(URI.create(statusBasis + "/api/status/" + bestellId + "?status=SHIPPED"))
+                        .timeout(timeout)
+                        .GET()
+                        .build();
+                statusweitergabe.erwarte(bestellId, geplant);
+                sende(client, anfrage, 200, geplant, statusaktualisierungen, unterwegs, () -> statusweitergabe.vergiss(bestellId));
+            }));
+        }
+        for (Thread takt : takte) {
+            takt.join();
+        }
+
+        long nachlaufEnde = System.nanoTime() + TimeUnit.SECONDS.toNanos(profil.nachlaufSekunden());
+        while ((unterwegs.get() > 0 || statusweitergabe.ausstehend() > 0) && System.nanoTime() - nachlaufEnde < 0) {
+            Thread.sleep(50);
+        }
+
+        ByteArrayOutputStream puffer = new ByteArrayOutputStream();
+        try (PrintStream bericht = new PrintStream(puffer, true, StandardCharsets.UTF_8)) {
+            bericht.println(profil.beschreibung());
+            bericht.printf("%-22s %8s %8s %11s %7s %6s %11s  %8s %8s %8s %8s%n", "Endpunkt", "Soll/s", "geplant", "erfolgreich",
+                    "Fehler", "offen", "Durchsatz/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+            Path verzeichnis = profil.ergebnisverzeichnis();
+            bestellungen.werteAus(bericht, profil.bestellungenProSekunde(), profil.dauerSekunden(), verzeichnis, "bestellung");
+            statusaktualisierungen.werteAus(bericht, profil.statusProSekunde(), profil.dauerSekunden(), verzeichnis, "status");
+            statusweitergabe.werteAus(bericht, verzeichnis);
+            if (attrappe != null) {
+                bericht.printf("Beethoven-Attrappe: %d Fehler eingespeist%n", attrappe.eingespeisteFehler());
+            }
+            bericht.println("Broker-Attrappe:");
+            broker.statistik().forEach(zeile -> bericht.println("  " + zeile));
+        }
+        String text = puffer.toString(StandardCharsets.UTF_8);
+        System.out.print(text);
+        Files.writeString(profil.ergebnisverzeichnis().resolve("bericht.txt"), text);
+    }
+
+    /**
+     * Sendet eine Anfrage asynchron und erfasst ihr Ergebnis.
+     *
+     * @param client Der HTTP-Client.
+     * @param anfrage Die Anfrage.
+     * @param erwarteterStatus Der HTTP-Status bei Erfolg.
+     * @param geplant Der geplante Start.
+     * @param messreihe Die Messreihe des Endpunkts.
+     * @param unterwegs Zählt die unbeantworteten Anfragen.
+     * @param beiFehler Wird bei einem Fehler aufgerufen, oder {@code null}.
+     */
+    private static void sende(HttpClient client, HttpRequest anfrage, int erwarteterStatus, long geplant, Messreihe messreihe,
+                              AtomicLong unterwegs, Runnable beiFehler) {
+        unterwegs.incrementAndGet();
+        long gesendet = System.nanoTime();
+        client.sendAsync(anfrage, HttpResponse.BodyHandlers.discarding()).whenComplete((antwort, fehler) -> {
+            long fertig = System.nanoTime();
+            String ursache;
+            if (fehler != null) {
+                Throwable grund = fehler instanceof CompletionException && fehler.getCause() != null ? fehler.getCause() : fehler;
+                ursache = grund instanceof HttpTimeoutException ? "Timeout" : grund.getClass().getSimpleName();
+            } else {
+                ursache = antwort.statusCode() == erwarteterStatus ? null : "HTTP " + antwort.statusCode();
+            }
+            if (ursache != null && beiFehler != null) {
+                beiFehler.run();
+            }
+            messreihe.erfasse(geplant, gesendet, fertig, ursache);
+            unterwegs.decrementAndGet();
+        });
+    }
+
+    /**
+     * Sucht einen freien Port auf localhost für einen Dienst.
+     *
+     * @return Der Port.
+     * @throws IOException Wenn kein Port gefunden wird.
+     */
+    private static int freierPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * @param millis Eine Dauer in Millisekunden.
+     * @return Die Dauer in ganzen Mikrosekunden.
+     */
+    private static long mikros(double millis) {
+        return Math.round(millis * 1000);
+    }
+}
@@ -0,0 +1,180 @@
+package kirschner.flaig.lasttest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Die Messwerte eines Endpunkts: Antwortzeiten ab dem geplanten Start, Bedienzeiten ab dem tatsächlichen Senden,
+ * Erfolge und Fehler nach Ursache. Erfasst werden nur Anfragen, die ab Beginn der Messung geplant sind; die Werte
+ * landen in Mikrosekunden in HdrHistogram-{@link Recorder}n, die ohne Sperren von beliebigen Threads beschrieben
+ * werden. Die Antwortzeit ist die Größe, die der Nutzer sieht; die Bedienzeit zeigt zum Vergleich, wie viel davon
+ * auf das Warten des Lastgenerators selbst entfällt.
+ */
+final class Messreihe {
+
+    /**
+     * Der Name des Endpunkts.
+     */
+    private final String name;
+
+    /**
+     * Die Antwortzeiten ab dem geplanten Start.
+     */
+    private final Recorder antwortzeiten = new Recorder(3);
+
+    /**
+     * Die Bedienzeiten ab dem tatsächlichen Senden.
+     */
+    private final Recorder bedienzeiten = new Recorder(3);
+
+    /**
+     * Zählt die in der Messung geplanten Anfragen.
+     */
+    private final LongAdder geplanteAnfragen = new LongAdder();
+
+    /**
+     * Zählt die erfolgreichen Anfragen.
+     */
+    private final LongAdder erfolgreich = new LongAdder();
+
+    /**
+     * Zählt die gescheiterten Anfragen nach Ursache.
+     */
+    private final Map<String, LongAdder> fehler = new ConcurrentHashMap<>();
+
+    /**
+     * Zählt die geplanten Anfragen, die nicht gesendet werden konnten.
+     */
+    private final LongAdder ausgelassen = new LongAdder();
+
+    /**
+     * Der Beginn der Messung in {@link System#nanoTime()}.
+     */
+    private final long messbeginn;
+
+    /**
+     * Erstellt die Messreihe.
+     *
+     * @param name Der Name des Endpunkts.
+     * @param messbeginn Der Beginn der Messung in {@link System#nanoTime()}; früher geplante Anfragen zählen nicht.
+     */
+    Messreihe(String name, long messbeginn) {
+        this.name = name;
+        this.messbeginn = messbeginn;
+    }
+
+    /**
+     * @param geplant Der geplante Start einer Anfrage.
+     * @return {@code true}, wenn die Anfrage in die Messung fällt.
+     */
+    boolean gemessen(long geplant) {
+        return geplant - messbeginn >= 0;
+    }
+
+    /**
+     * Zählt eine geplante Anfrage, bevor sie gesendet oder ausgelassen wird.
+     *
+     * @param geplant Der geplante Start.
+     */
+    void plane(long geplant) {
+        if (gemessen(geplant)) {
+            geplanteAnfragen.increment();
+        }
+    }
+
+    /**
+     * Erfasst eine beantwortete oder gescheiterte Anfrage.
+     *
+     * @param geplant Der geplante Start.
+     * @param gesendet Der tatsächliche Start.
+     * @param fertig Der Zeitpunkt der Antwort oder des Fehlers.
+     * @param ursache {@code null} bei Erfolg, sonst die Ursache, z.B. {@code HTTP 500}.
+     */
+    void erfasse(long geplant, long gesendet, long fertig, String ursache) {
+        if (!gemessen(geplant)) {
+            return;
+        }
+        antwortzeiten.recordValue(TimeUnit.NANOSECONDS.toMicros(fertig - geplant));
+        bedienzeiten.recordValue(TimeUnit.NANOSECONDS.toMicros(fertig - gesendet));
+        if (ursache == null) {
+            erfolgreich.increment();
+        } else {
+            fehler.computeIfAbsent(ursache, u -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Erfasst eine geplante Anfrage, die nicht gesendet werden konnte.
+     *
+     * @param geplant Der geplante Start.
+     */
+    void lasseAus(long geplant) {
+        if (gemessen(geplant)) {
+            ausgelassen.increment();
+        }
+    }
+
+    /**
+     * Schreibt die Auswertung in den Bericht und die Perzentilverteilung der Antwortzeiten in
+     * {@code <datei>.hgrm} im Ergebnisverzeichnis. Darf nur einmal aufgerufen werden.
+     *
+     * @param bericht Der Bericht.
+     * @param sollProSekunde Die geplante Ankunftsrate.
+     * @param messSekunden Die Dauer der Messung.
+     * @param verzeichnis Das Ergebnisverzeichnis.
+     * @param datei Der Dateiname ohne Endung.
+     * @throws IOException Wenn die Verteilung nicht geschrieben werden kann.
+     */
+    void werteAus(PrintStream bericht, double sollProSekunde, int messSekunden, Path verzeichnis, String datei) throws IOException {
+        Histogram antworten = antwortzeiten.getIntervalHistogram();
+        Histogram bedienungen = bedienzeiten.getIntervalHistogram();
+        long fehlgeschlagen = fehler.values().stream().mapToLong(LongAdder::sum).sum();
+        long offen = geplanteAnfragen.sum() - ausgelassen.sum() - erfolgreich.sum() - fehlgeschlagen;
+        bericht.printf("%-22s %8.1f %8d %11d %7d %6d %11.1f  %s%n", name, sollProSekunde, geplanteAnfragen.sum(), erfolgreich.sum(),
+                fehlgeschlagen, offen, erfolgreich.sum() / (double) messSekunden, perzentile(antworten));
+        bericht.printf("%-22s %56s  %s%n", "  Bedienzeit", "", perzentile(bedienungen));
+        if (ausgelassen.sum() > 0) {
+            bericht.printf("  %d geplante Anfragen ausgelassen, weil noch keine Bestellung bereitstand.%n", ausgelassen.sum());
+        }
+        new TreeMap<>(fehler).forEach((ursache, anzahl) -> bericht.printf("  Fehler %s: %d%n", ursache, anzahl.sum()));
+        schreibeVerteilung(antworten, verzeichnis.resolve(datei + ".hgrm"));
+    }
+
+    /**
+     * Formatiert p50, p99, p99,9 und Maximum in Millisekunden.
+     *
+     * @param histogramm Das Histogramm in Mikrosekunden.
+     * @return Die formatierten Werte oder ein Strich, wenn das Histogramm leer ist.
+     */
+    static String perzentile(Histogram histogramm) {
+        if (histogramm.getTotalCount() == 0) {
+            return String.format("%8s %8s %8s %8s", "-", "-", "-", "-");
+        }
+        return String.format("%8.2f %8.2f %8.2f %8.2f", histogramm.getValueAtPercentile(50) / 1000d,
+                histogramm.getValueAtPercentile(99) / 1000d, histogramm.getValueAtPercentile(99.9) / 1000d,
+                histogramm.getMaxValue() / 1000d);
+    }
+
+    /**
+     * Schreibt die Perzentilverteilung eines Histogramms in Millisekunden, lesbar etwa mit dem HdrHistogram-Plotter.
+     *
+     * @param histogramm Das Histogramm in Mikrosekunden.
+     * @param datei Die Zieldatei.
+     * @throws IOException Wenn die Datei nicht geschrieben werden kann.
+     */
+    static void schreibeVerteilung(Histogram histogramm, Path datei) throws IOException {
+        try (PrintStream aus = new PrintStream(Files.newOutputStream(datei), false, "UTF-8")) {
+            histogramm.outputPercentileDistribution(aus, 1000d);
+        }
+    }
+}
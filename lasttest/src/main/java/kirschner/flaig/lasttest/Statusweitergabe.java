@@ -0,0 +1,168 @@
+package kirschner.flaig.lasttest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Misst, wie lange eine Statusaktualisierung von {@code GET /api/status/{id}} bis in Mozart braucht, und stellt die
+ * Bestellungen bereit, deren Status aktualisiert werden kann. Beides beobachtet sie am Broker:
+ * <ul>
+ * <li>Jede CRM-Aktualisierung, die Mozart veröffentlicht, meldet eine gespeicherte Bestellung; ihre ID wird einmal
+ * für eine Statusaktualisierung bereitgestellt. So funktioniert das auch mit echtem Beethoven, dessen Bestell-IDs
+ * die Antwort von {@code POST /api/bestellung} nicht enthält.</li>
+ * <li>Bestätigt Mozart eine Nachricht der Status-Warteschlange, ist der neue Status übernommen: Der
+ * {@code BeethovenListener} bestätigt erst, nachdem die Bestellverwaltung aktualisiert ist. Die Verzögerung zählt ab dem
+ * geplanten Start der Statusanfrage, wie die Antwortzeiten der {@link Messreihe}.</li>
+ * </ul>
+ */
+final class Statusweitergabe {
+
+    /**
+     * Das Feld mit der Bestell-ID in den JSON-Nachrichten beider Richtungen.
+     */
+    private static final byte[] FELD_BESTELL_ID = "\"bestellId\":\"".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Die gemeldeten Bestellungen, die noch keine Statusaktualisierung erhalten haben.
+     */
+    private final Queue<String> bereit = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Alle jemals gemeldeten Bestellungen, damit keine zweimal bereitgestellt wird.
+     */
+    private final Set<String> gemeldet = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Der geplante Start der Statusanfrage je Bestellung, deren Aktualisierung noch nicht übernommen ist.
+     */
+    private final Map<String, Long> ausstehend = new ConcurrentHashMap<>();
+
+    /**
+     * Die Verzögerungen in Mikrosekunden.
+     */
+    private final Recorder verzoegerungen = new Recorder(3);
+
+    /**
+     * Der Beginn der Messung in {@link System#nanoTime()}.
+     */
+    private final long messbeginn;
+
+    /**
+     * Erstellt die Statusweitergabe.
+     *
+     * @param messbeginn Der Beginn der Messung; früher geplante Statusanfragen zählen nicht.
+     */
+    Statusweitergabe(long messbeginn) {
+        this.messbeginn = messbeginn;
+    }
+
+    /**
+     * Stellt die Bestellung einer CRM-Aktualisierung bereit.
+     *
+     * @param inhalt Der JSON-Inhalt der CRM-Aktualisierung.
+     */
+    void bestellungGemeldet(byte[] inhalt) {
+        String bestellId = bestellId(inhalt);
+        if (bestellId != null && gemeldet.add(bestellId)) {
+            bereit.add(bestellId);
+        }
+    }
+
+    /**
+     * @return Die nächste Bestellung für eine Statusaktualisierung oder {@code null}, wenn keine bereitsteht.
+     */
+    String naechsteBestellung() {
+        return bereit.poll();
+    }
+
+    /**
+     * Merkt sich den geplanten Start einer Statusanfrage; muss vor dem Senden aufgerufen werden.
+     *
+     * @param bestellId Die Bestell-ID.
+     * @param geplant Der geplante Start.
+     */
+    void erwarte(String bestellId, long geplant) {
+        ausstehend.put(bestellId, geplant);
+    }
+
+    /**
+     * Vergisst eine Statusanfrage, die gescheitert ist.
+     *
+     * @param bestellId Die Bestell-ID.
+     */
+    void vergiss(String bestellId) {
+        ausstehend.remove(bestellId);
+    }
+
+    /**
+     * Erfasst die Übernahme einer Statusaktualisierung in Mozart.
+     *
+     * @param inhalt Der JSON-Inhalt der bestätigten Statusnachricht.
+     */
+    void statusUebernommen(byte[] inhalt) {
+        long jetzt = System.nanoTime();
+        String bestellId = bestellId(inhalt);
+        Long geplant = bestellId == null ? null : ausstehend.remove(bestellId);
+        if (geplant != null && geplant - messbeginn >= 0) {
+            verzoegerungen.recordValue(TimeUnit.NANOSECONDS.toMicros(jetzt - geplant));
+        }
+    }
+
+    /**
+     * @return Die Anzahl der Statusaktualisierungen, die noch nicht in Mozart übernommen sind.
+     */
+    int ausstehend() {
+        return ausstehend.size();
+    }
+
+    /**
+     * Schreibt die Auswertung in den Bericht und die Perzentilverteilung nach {@code statusweitergabe.hgrm}.
+     * Darf nur einmal aufgerufen werden.
+     *
+     * @param bericht Der Bericht.
+     * @param verzeichnis Das Ergebnisverzeichnis.
+     * @throws IOException Wenn die Verteilung nicht geschrieben werden kann.
+     */
+    void werteAus(PrintStream bericht, Path verzeichnis) throws IOException {
+        Histogram histogramm = verzoegerungen.getIntervalHistogram();
+        bericht.printf("%-22s %8s %8d %11s %7s %6d %11s  %s%n", "Statusweitergabe", "", histogramm.getTotalCount(), "", "",
+                ausstehend.size(), "", Messreihe.perzentile(histogramm));
+        Messreihe.schreibeVerteilung(histogramm, verzeichnis.resolve("statusweitergabe.hgrm"));
+    }
+
+    /**
+     * Liest die Bestell-ID aus einer JSON-Nachricht, ohne sie vollständig zu parsen.
+     *
+     * @param inhalt Der Inhalt.
+     * @return Die Bestell-ID oder {@code null}, wenn die Nachricht keine enthält.
+     */
+    static String bestellId(byte[] inhalt) {
+        naechsterBeginn:
+        for (int beginn = 0; beginn <= inhalt.length - FELD_BESTELL_ID.length; beginn++) {
+            for (int i = 0; i < FELD_BESTELL_ID.length; i++) {
+                if (inhalt[beginn + i] != FELD_BESTELL_ID[i]) {
+                    continue naechsterBeginn;
+                }
+            }
+            int von = beginn + FELD_BESTELL_ID.length;
+            for (int bis = von; bis < inhalt.length; bis++) {
+                if (inhalt[bis] == '"') {
+                    return new String(inhalt, von, bis - von, StandardCharsets.UTF_8);
+                }
+            }
+            return null;
+        }
+        return null;
+    }
+}
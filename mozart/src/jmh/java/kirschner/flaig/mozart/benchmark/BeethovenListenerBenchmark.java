@@ -0,0 +1,153 @@
+package kirschner.flaig.mozart.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kirschner.flaig.mozart.config.Ablaufverfolgung;
+import kirschner.flaig.mozart.config.Spanspeicher;
+import kirschner.flaig.mozart.config.Tracekontext;
+import kirschner.flaig.mozart.entity.BeethovenStatusUpdate;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+import kirschner.flaig.mozart.repository.BestellungBuilder;
+import kirschner.flaig.mozart.service.BeethovenListener;
+import kirschner.flaig.mozart.service.Bestellverwaltung;
+import kirschner.flaig.mozart.service.Statusverteiler;
+
+/**
+ * Misst die Übernahme von Statusaktualisierungen aus Beethoven im {@link BeethovenListener}, ohne Broker und
+ * Nachrichtenkonverter: {@link #einzeln()} ruft {@link BeethovenListener#receiveMessage} für eine Aktualisierung auf,
+ * {@link #batch()} übergibt {@value #BATCHGROESSE} Aktualisierungen an {@link BeethovenListener#empfangeBatch}; gemessen
+ * wird jeweils pro Aktualisierung. Die Aktualisierungen betreffen reihum {@value #BESTELLUNGEN} vorab gespeicherte
+ * Bestellungen und tragen den Lieferstatus bereits, wie ihn der {@code StatusNachrichtenKonverter} setzt.
+ * <p>
+ * Mit {@code mitTraceparent} trägt jede Nachricht den Header {@code traceparent}, sodass pro Aktualisierung ein Span
+ * begonnen, beendet und im {@link Spanspeicher} abgelegt wird. Mit {@code -prof gc} ausführen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BeethovenListenerBenchmark {
+
+    private static final int BESTELLUNGEN = 4096;
+
+    private static final int BATCHGROESSE = 100;
+
+    private static final DeliveryStatus[] LIEFERSTATUS = {DeliveryStatus.SHIPPED, DeliveryStatus.DELIVERED};
+
+    /**
+     * Ob die Nachrichten einen Tracekontext tragen.
+     */
+    @Param({"false", "true"})
+    public boolean mitTraceparent;
+
+    private LoggerContext logkontext;
+    private Path verzeichnis;
+    private Bestellverwaltung bestellverwaltung;
+    private Statusverteiler statusverteiler;
+    private BeethovenListener listener;
+    private String traceparent;
+    private BeethovenStatusUpdate[] aktualisierungen;
+    private List<List<Message<BeethovenStatusUpdate>>> batches;
+    private int naechste;
+
+    /**
+     * Speichert die Bestellungen und bereitet die Aktualisierungen vor.
+     *
+     * @throws IOException Wenn die {@link Bestellverwaltung} nicht angelegt werden kann.
+     */
+    @Setup(Level.Trial)
+    public void vorbereiten() throws IOException {
+        logkontext = StilleProtokollierung.konfiguriere();
+        verzeichnis = Files.createTempDirectory("listener-benchmark");
+        MeterRegistry registry = new SimpleMeterRegistry();
+        bestellverwaltung = new Bestellverwaltung("heap", BESTELLUNGEN, false, verzeichnis.toString(), 64, false);
+        statusverteiler = new Statusverteiler(4, registry);
+        listener = new BeethovenListener(bestellverwaltung, Optional.of(statusverteiler), new Ablaufverfolgung(new Spanspeicher(16384)), registry);
+        traceparent = mitTraceparent ? new Tracekontext("4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902b7").alsTraceparent() : null;
+
+        aktualisierungen = new BeethovenStatusUpdate[BESTELLUNGEN * LIEFERSTATUS.length];
+        for (int i = 0; i < BESTELLUNGEN; i++) {
+            String bestellId = "ORD-BENCH-LISTENER-" + i;
+            bestellverwaltung.speichere(BestellungBuilder.getInstance()
+                    .withOrderID(bestellId)
+                    .withCustomerID("KUNDE-" + (i % 64))
+                    .withProductID("P-0042")
+                    .withQuantity(1)
+                    .withDeliveryStatus(DeliveryStatus.PROCESSING)
+                    .build());
+            for (int j = 0; j < LIEFERSTATUS.length; j++) {
+                BeethovenStatusUpdate aktualisierung = new BeethovenStatusUpdate(bestellId, LIEFERSTATUS[j].getDisplayName());
+                aktualisierung.setLieferstatus(LIEFERSTATUS[j]);
+                aktualisierungen[j * BESTELLUNGEN + i] = aktualisierung;
+            }
+        }
+
+        batches = new ArrayList<>();
+        for (int beginn = 0; beginn < aktualisierungen.length; beginn += BATCHGROESSE) {
+            List<Message<BeethovenStatusUpdate>> batch = new ArrayList<>(BATCHGROESSE);
+            for (int i = beginn; i < beginn + BATCHGROESSE; i++) {
+                MessageBuilder<BeethovenStatusUpdate> nachricht = MessageBuilder.withPayload(aktualisierungen[i % aktualisierungen.length]);
+                if (traceparent != null) {
+                    nachricht.setHeader(Tracekontext.HEADER, traceparent);
+                }
+                batch.add(nachricht.build());
+            }
+            batches.add(batch);
+        }
+    }
+
+    /**
+     * Beendet den {@link Statusverteiler} und löscht das temporäre Verzeichnis.
+     *
+     * @throws IOException Wenn das Verzeichnis nicht gelöscht werden kann.
+     */
+    @TearDown(Level.Trial)
+    public void aufraeumen() throws IOException {
+        statusverteiler.schliessen();
+        bestellverwaltung.schliessen();
+        Files.delete(verzeichnis);
+        Configurator.shutdown(logkontext);
+    }
+
+    @Benchmark
+    public void einzeln() {
+        naechste = (naechste + 1) % aktualisierungen.length;
+        listener.receiveMessage(aktualisierungen[naechste], traceparent);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCHGROESSE)
+    public void batch() {
+        naechste = (naechste + 1) % batches.size();
+        listener.empfangeBatch(batches.get(naechste));
+    }
+}
@@ -0,0 +1,103 @@
+package kirschner.flaig.mozart.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import kirschner.flaig.mozart.entity.Bestellung;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+import kirschner.flaig.mozart.repository.Bestellspeicher;
+import kirschner.flaig.mozart.repository.BestellungBuilder;
+import kirschner.flaig.mozart.repository.HeapBestellspeicher;
+import kirschner.flaig.mozart.repository.OffHeapBestellspeicher;
+
+/**
+ * Vergleicht die GC-Kosten eines großen Bestands an Bestellungen im Heap ({@link HeapBestellspeicher})
+ * und außerhalb des Heaps ({@link OffHeapBestellspeicher}).
+ * <p>
+ * {@code zugriffUnterLast} simuliert den Betrieb: Statusaktualisierungen und Lookups wie im {@code BeethovenListener}
+ * plus kurzlebiger Müll pro Anfrage; mit {@code -prof gc} zeigen {@code gc.count} und {@code gc.time} die Pausen.
+ * {@code vollstaendigeGc} misst die Dauer einer vollständigen Collection, die mit der Größe des lebenden Heaps wächst.
+ * Der Heap sollte groß genug für die gewählte Anzahl sein, z.B. {@code -jvmArgs -Xmx4g}.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BestellspeicherBenchmark {
+
+    /**
+     * Die Art des Speichers.
+     */
+    @Param({"HEAP", "OFFHEAP"})
+    public String speicherArt;
+
+    /**
+     * Die Anzahl der gespeicherten Bestellungen.
+     */
+    @Param({"2000000"})
+    public int anzahl;
+
+    private Bestellspeicher bestellspeicher;
+
+    /**
+     * Füllt den Speicher mit Bestellungen.
+     */
+    @Setup(Level.Trial)
+    public void fuelleSpeicher() {
+        bestellspeicher = "HEAP".equals(speicherArt)
+                ? new HeapBestellspeicher(new ConcurrentHashMap<>(anzahl * 2))
+                : new OffHeapBestellspeicher(anzahl);
+        LocalDateTime jetzt = LocalDateTime.now();
+        for (int i = 0; i < anzahl; i++) {
+            bestellspeicher.speichere(BestellungBuilder.getInstance()
+                    .withOrderID("ORD-" + i)
+                    .withCustomerID("CUST-" + (i % 10_000))
+                    .withEmail("kunde" + (i % 10_000) + "@example.com")
+                    .withAddress("Musterstraße " + (i % 200) + ", 12345 Musterstadt")
+                    .withProductID("PROD-MOCK-00" + (i % 3 + 1))
+                    .withQuantity(1 + i % 5)
+                    .withOrderDate(jetzt.minusMinutes(i))
+                    .withDeliveryStatus(DeliveryStatus.PROCESSING)
+                    .withDeliveryDate(jetzt.plusDays(3))
+                    .withPaymentMethod("Kreditkarte")
+                    .build());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 5, time = 5)
+    @Threads(4)
+    public void zugriffUnterLast(Blackhole blackhole) {
+        String bestellId = "ORD-" + ThreadLocalRandom.current().nextInt(anzahl);
+        blackhole.consume(bestellspeicher.aktualisiereLieferstatus(bestellId, DeliveryStatus.SHIPPED));
+        blackhole.consume(bestellspeicher.finde(bestellId));
+        blackhole.consume(new byte[512]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void vollstaendigeGc() {
+        System.gc();
+    }
+}
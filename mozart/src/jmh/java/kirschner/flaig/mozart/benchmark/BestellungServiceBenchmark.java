@@ -0,0 +1,218 @@
+package kirschner.flaig.mozart.benchmark;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kirschner.flaig.mozart.benchmark.NachrichtenversandBenchmark.BrokerAttrappe;
+import kirschner.flaig.mozart.config.Ablaufverfolgung;
+import kirschner.flaig.mozart.config.Spanspeicher;
+import kirschner.flaig.mozart.controller.NewBestellungRequestDto;
+import kirschner.flaig.mozart.entity.Geldbetrag;
+import kirschner.flaig.mozart.entity.Lieferinformationen;
+import kirschner.flaig.mozart.grpc.BestellungRequest;
+import kirschner.flaig.mozart.grpc.BestellungResponse;
+import kirschner.flaig.mozart.grpc.ErpOrderServiceGrpc;
+import kirschner.flaig.mozart.repository.MozartMockRepo;
+import kirschner.flaig.mozart.repository.ProduktdatenBuilder;
+import kirschner.flaig.mozart.service.Bestellspuren;
+import kirschner.flaig.mozart.service.BestellungService;
+import kirschner.flaig.mozart.service.Bestellverwaltung;
+import kirschner.flaig.mozart.service.CrmVersand;
+import kirschner.flaig.mozart.service.Lagerverwaltung;
+import kirschner.flaig.mozart.service.Nachrichtenversand;
+
+/**
+ * Misst den Pfad einer Bestellung durch den {@link BestellungService} ohne HTTP-Schicht: Lagerreservierung, gRPC-Aufruf,
+ * Ablage in der {@link Bestellverwaltung}, Eintrag in die CRM-Outbox und Bestellspur mit Logging, blockierend über
+ * {@link BestellungService#processBestellung} und nicht-blockierend über {@link BestellungService#processBestellungAsync}.
+ * <p>
+ * Beethoven ersetzt ein {@link BeethovenAttrappe} im In-Process-Server mit {@code directExecutor}, sodass der Aufruf
+ * keinen Threadwechsel kostet; den RabbitMQ-Broker des {@link CrmVersand} ersetzt die {@link BrokerAttrappe}, das
+ * Logging die {@link StilleProtokollierung}. Die Outbox liegt in einem temporären Verzeichnis, mit {@code outboxSynchron}
+ * wird jeder Eintrag vor der Rückkehr auf die Platte erzwungen, wie in der Standardkonfiguration. Die Attrappe vergibt
+ * reihum {@value BeethovenAttrappe#BESTELLNUMMERN} Bestell-IDs, damit der Bestellspeicher nicht mit jeder Operation
+ * wächst. Mit {@code -prof gc} ausführen; {@code gc.alloc.rate.norm} enthält auch die Allokationen des Versandthreads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BestellungServiceBenchmark {
+
+    private static final String PRODUKT_ID = "PROD-BENCH-SERVICE";
+
+    /**
+     * Ob die CRM-Outbox jeden Eintrag mit {@code force} auf die Platte schreibt.
+     */
+    @Param({"false", "true"})
+    public boolean outboxSynchron;
+
+    private LoggerContext logkontext;
+    private Path verzeichnis;
+    private Server server;
+    private ManagedChannel kanal;
+    private BrokerAttrappe broker;
+    private CachingConnectionFactory verbindungen;
+    private CrmVersand crmVersand;
+    private Bestellverwaltung bestellverwaltung;
+    private BestellungService bestellungService;
+    private NewBestellungRequestDto bestellAnfrage;
+
+    /**
+     * Baut den {@link BestellungService} mit seinen Abhängigkeiten wie der Spring-Kontext auf.
+     *
+     * @throws Exception Wenn der In-Process-Server, die Outbox oder die Stubs nicht eingerichtet werden können.
+     */
+    @Setup(Level.Trial)
+    public void vorbereiten() throws Exception {
+        logkontext = StilleProtokollierung.konfiguriere();
+        if (MozartMockRepo.produktkatalog.index(PRODUKT_ID) < 0) {
+            MozartMockRepo.produktkatalog.registriere(new ProduktdatenBuilder()
+                    .withProductId(PRODUKT_ID)
+                    .withProductName("Benchmark-Produkt")
+                    .withCategory("Benchmark")
+                    .withPrice(Geldbetrag.parse("1.00"))
+                    .withStockQuantity(1_000_000_000)
+                    .build());
+        }
+        verzeichnis = Files.createTempDirectory("bestellung-benchmark");
+
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name).directExecutor().addService(new BeethovenAttrappe()).build().start();
+        kanal = InProcessChannelBuilder.forName(name).directExecutor().build();
+
+        broker = new BrokerAttrappe(0);
+        verbindungen = new CachingConnectionFactory(broker);
+        verbindungen.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        verbindungen.setPublisherReturns(true);
+        verbindungen.setChannelCacheSize(8);
+        verbindungen.setChannelCheckoutTimeout(5000);
+        RabbitTemplate template = new RabbitTemplate(verbindungen);
+        template.setMessageConverter(new Jackson2JsonMessageConverter());
+        template.setMandatory(true);
+
+        MeterRegistry registry = new SimpleMeterRegistry();
+        Ablaufverfolgung ablaufverfolgung = new Ablaufverfolgung(new Spanspeicher(16384));
+        crmVersand = new CrmVersand(new Nachrichtenversand(template, registry, 1000, 5000), ablaufverfolgung,
+                new ObjectMapper().registerModule(new JavaTimeModule()), registry,
+                verzeichnis.toString(), outboxSynchron, 16, 100, 5000, 30000);
+        crmVersand.starte();
+        bestellverwaltung = new Bestellverwaltung("heap", 100_000, false, verzeichnis.toString(), 64, false);
+        bestellungService = new BestellungService(crmVersand, new Lagerverwaltung(), bestellverwaltung,
+                new Bestellspuren(ablaufverfolgung, registry, 0.01), ablaufverfolgung, 100_000, 86_400);
+        setzeFeld("erpBestellServiceStub", ErpOrderServiceGrpc.newBlockingStub(kanal));
+        setzeFeld("erpBestellServiceFutureStub", ErpOrderServiceGrpc.newFutureStub(kanal));
+
+        bestellAnfrage = new NewBestellungRequestDto("KUNDE-004711", "erika.mustermann@example.com",
+                "Heilbronner Straße 12, 70191 Stuttgart, Deutschland", PRODUKT_ID, 1, "CREDIT_CARD");
+    }
+
+    /**
+     * Schließt Outbox, Verbindungen, Kanal und Server und löscht das temporäre Verzeichnis.
+     *
+     * @throws Exception Wenn das Schließen oder Löschen fehlschlägt.
+     */
+    @TearDown(Level.Trial)
+    public void aufraeumen() throws Exception {
+        bestellungService.schliesseAbschlussExecutor();
+        crmVersand.schliessen();
+        bestellverwaltung.schliessen();
+        verbindungen.destroy();
+        broker.schliessen();
+        kanal.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        try (Stream<Path> pfade = Files.walk(verzeichnis)) {
+            for (Path pfad : pfade.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(pfad);
+            }
+        }
+        Configurator.shutdown(logkontext);
+    }
+
+    @Benchmark
+    public Lieferinformationen blockierend() {
+        return bestellungService.processBestellung(bestellAnfrage, null);
+    }
+
+    @Benchmark
+    public Lieferinformationen asynchron() {
+        return bestellungService.processBestellungAsync(bestellAnfrage, null).join();
+    }
+
+    /**
+     * Setzt einen der per {@code @GrpcClient} injizierten Stubs.
+     *
+     * @param name Der Name des Felds.
+     * @param stub Der Stub.
+     * @throws ReflectiveOperationException Wenn das Feld nicht existiert.
+     */
+    private void setzeFeld(String name, Object stub) throws ReflectiveOperationException {
+        Field feld = BestellungService.class.getDeclaredField(name);
+        feld.setAccessible(true);
+        feld.set(bestellungService, stub);
+    }
+
+    /**
+     * Beethoven-Ersatz, der jede Bestellung sofort mit einer vorbereiteten Antwort bestätigt.
+     */
+    static final class BeethovenAttrappe extends ErpOrderServiceGrpc.ErpOrderServiceImplBase {
+
+        static final int BESTELLNUMMERN = 4096;
+
+        private final BestellungResponse[] antworten = new BestellungResponse[BESTELLNUMMERN];
+        private final AtomicInteger naechste = new AtomicInteger();
+
+        BeethovenAttrappe() {
+            for (int i = 0; i < BESTELLNUMMERN; i++) {
+                antworten[i] = BestellungResponse.newBuilder()
+                        .setOrderId("ORD-BENCH-" + i)
+                        .setDeliveryDate("2025-05-15T10:30:12")
+                        .setDeliveryStatus("Processing")
+                        .build();
+            }
+        }
+
+        @Override
+        public void bestellungOrder(BestellungRequest request, StreamObserver<BestellungResponse> responseObserver) {
+            responseObserver.onNext(antworten[naechste.getAndIncrement() & (BESTELLNUMMERN - 1)]);
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package kirschner.flaig.mozart.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kirschner.flaig.mozart.controller.NewBestellungRequestDto;
+import kirschner.flaig.mozart.entity.Bestellung;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+import kirschner.flaig.mozart.entity.Lieferinformationen;
+import kirschner.flaig.mozart.grpc.BestellungResponse;
+import kirschner.flaig.mozart.repository.BestellungBuilder;
+import kirschner.flaig.mozart.repository.LieferinformationenBuilder;
+
+/**
+ * Misst das Anlegen der Entitäten, das der {@code BestellungService} pro Bestellung aus der gRPC-Antwort vornimmt:
+ * eine {@link Bestellung} über den {@link BestellungBuilder} und die {@link Lieferinformationen} über den
+ * {@link LieferinformationenBuilder}, jeweils im Vergleich zum direkten Konstruktoraufruf. {@link #lieferinformationenAusAntwort()}
+ * enthält zusätzlich das Parsen von Lieferdatum und -status aus der Antwort wie in {@code erstelleLieferinformationen}.
+ * Mit {@code -prof gc} ausführen; ohne Escape-Analyse kostet der Builder ein zusätzliches Objekt pro Entität.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuilderBenchmark {
+
+    private NewBestellungRequestDto bestellAnfrage;
+    private BestellungResponse antwort;
+    private LocalDateTime bestelldatum;
+    private LocalDateTime lieferdatum;
+    private DeliveryStatus lieferstatus;
+
+    /**
+     * Legt eine typische Bestellanfrage und Beethoven-Antwort an.
+     */
+    @Setup
+    public void vorbereiten() {
+        bestellAnfrage = new NewBestellungRequestDto("KUNDE-004711", "erika.mustermann@example.com",
+                "Heilbronner Straße 12, 70191 Stuttgart, Deutschland", "P-0042", 2, "CREDIT_CARD");
+        antwort = BestellungResponse.newBuilder()
+                .setOrderId("ORD-20250512-000123")
+                .setDeliveryDate("2025-05-15T10:30:12")
+                .setDeliveryStatus("Processing")
+                .build();
+        bestelldatum = LocalDateTime.of(2025, 5, 12, 9, 15);
+        lieferdatum = LocalDateTime.of(2025, 5, 15, 10, 30, 12);
+        lieferstatus = DeliveryStatus.PROCESSING;
+    }
+
+    @Benchmark
+    public Bestellung bestellungBuilder() {
+        return BestellungBuilder.getInstance()
+                .withOrderID(antwort.getOrderId())
+                .withCustomerID(bestellAnfrage.kundenId())
+                .withEmail(bestellAnfrage.email())
+                .withAddress(bestellAnfrage.adresse())
+                .withProductID(bestellAnfrage.produktId())
+                .withQuantity(bestellAnfrage.menge())
+                .withPaymentMethod(bestellAnfrage.zahlungsmethode())
+                .withOrderDate(bestelldatum)
+                .build();
+    }
+
+    @Benchmark
+    public Bestellung bestellungKonstruktor() {
+        return new Bestellung(antwort.getOrderId(), bestellAnfrage.kundenId(), bestellAnfrage.email(), bestellAnfrage.adresse(),
+                bestellAnfrage.produktId(), bestellAnfrage.menge(), bestelldatum, null, null, bestellAnfrage.zahlungsmethode());
+    }
+
+    @Benchmark
+    public Lieferinformationen lieferinformationenBuilder() {
+        return LieferinformationenBuilder.getInstance()
+                .withDeliveryDate(lieferdatum)
+                .withDeliveryStatus(lieferstatus)
+                .build();
+    }
+
+    @Benchmark
+    public Lieferinformationen lieferinformationenKonstruktor() {
+        return new Lieferinformationen(lieferdatum, lieferstatus);
+    }
+
+    @Benchmark
+    public Lieferinformationen lieferinformationenAusAntwort() {
+        return LieferinformationenBuilder.getInstance()
+                .withDeliveryDate(LocalDateTime.parse(antwort.getDeliveryDate()))
+                .withDeliveryStatus(DeliveryStatus.valueOf(antwort.getDeliveryStatus().toUpperCase()))
+                .build();
+    }
+}
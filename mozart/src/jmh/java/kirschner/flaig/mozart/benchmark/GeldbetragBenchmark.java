@@ -0,0 +1,106 @@
+package kirschner.flaig.mozart.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import kirschner.flaig.mozart.entity.BestellungDataSchuhmacher;
+import kirschner.flaig.mozart.entity.Geldbetrag;
+
+/**
+ * Vergleicht {@link Geldbetrag} mit {@link BigDecimal} auf dem Pfad der CRM-Aktualisierung:
+ * Berechnung des Gesamtbetrags aus Stückpreis und Menge sowie die Jackson-Serialisierung
+ * der Nachricht an Schuhmacher. Mit {@code -prof gc} ausführen, um die Allokationen pro Operation zu sehen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeldbetragBenchmark {
+
+    /**
+     * Die frühere Form der CRM-Nachricht mit {@link BigDecimal} als Vergleichsbasis.
+     */
+    public record BestellungDataBigDecimal(String bestellId, String kundenId, LocalDate bestelldatum,
+                                           BigDecimal gesamtbetrag, String status, String email,
+                                           String adressZeichenkette) {
+    }
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final LocalDate bestelldatum = LocalDate.of(2025, 5, 12);
+
+    private BigDecimal preisBigDecimal;
+    private Geldbetrag preisGeldbetrag;
+    private int menge;
+    private byte[] jsonBigDecimal;
+    private byte[] jsonGeldbetrag;
+
+    /**
+     * Legt Preise und vorab serialisierte Nachrichten an.
+     */
+    @Setup
+    public void vorbereiten() throws JsonProcessingException {
+        preisBigDecimal = new BigDecimal("29.95");
+        preisGeldbetrag = Geldbetrag.parse("29.95");
+        menge = 3;
+        jsonBigDecimal = objectMapper.writeValueAsBytes(nachrichtBigDecimal());
+        jsonGeldbetrag = objectMapper.writeValueAsBytes(nachrichtGeldbetrag());
+    }
+
+    @Benchmark
+    public BigDecimal gesamtbetragBigDecimal() {
+        return preisBigDecimal.multiply(BigDecimal.valueOf(menge));
+    }
+
+    @Benchmark
+    public Geldbetrag gesamtbetragGeldbetrag() {
+        return preisGeldbetrag.mal(menge);
+    }
+
+    @Benchmark
+    public byte[] serialisiereBigDecimal() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(nachrichtBigDecimal());
+    }
+
+    @Benchmark
+    public byte[] serialisiereGeldbetrag() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(nachrichtGeldbetrag());
+    }
+
+    @Benchmark
+    public BestellungDataBigDecimal deserialisiereBigDecimal() throws Exception {
+        return objectMapper.readValue(jsonBigDecimal, BestellungDataBigDecimal.class);
+    }
+
+    @Benchmark
+    public BestellungDataSchuhmacher deserialisiereGeldbetrag() throws Exception {
+        return objectMapper.readValue(jsonGeldbetrag, BestellungDataSchuhmacher.class);
+    }
+
+    private BestellungDataBigDecimal nachrichtBigDecimal() {
+        return new BestellungDataBigDecimal("ORD-BENCH", "CUST-001", bestelldatum,
+                preisBigDecimal.multiply(BigDecimal.valueOf(menge)), "Versendet", "kunde@example.com", "Musterstraße 1, 12345 Musterstadt");
+    }
+
+    private BestellungDataSchuhmacher nachrichtGeldbetrag() {
+        return new BestellungDataSchuhmacher("ORD-BENCH", "CUST-001", bestelldatum,
+                preisGeldbetrag.mal(menge), "Versendet", "kunde@example.com", "Musterstraße 1, 12345 Musterstadt");
+    }
+}
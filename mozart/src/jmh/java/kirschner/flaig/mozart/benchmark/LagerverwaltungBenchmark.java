@@ -0,0 +1,131 @@
+package kirschner.flaig.mozart.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kirschner.flaig.mozart.entity.Geldbetrag;
+import kirschner.flaig.mozart.entity.Produktdaten;
+import kirschner.flaig.mozart.repository.MozartMockRepo;
+import kirschner.flaig.mozart.repository.ProduktdatenBuilder;
+import kirschner.flaig.mozart.service.Lagerverwaltung;
+
+/**
+ * Misst Reservierung und Freigabe von Lagerbeständen unter Konkurrenz.
+ * Viele Threads bestellen entweder alle dasselbe Produkt (maximale Konkurrenz auf einem Zähler)
+ * oder jeweils ein eigenes Produkt. Als Vergleich dient dieselbe Operation hinter einer globalen Sperre,
+ * wie sie ein einfaches {@code synchronized} um das frühere Lesen-Ändern-Schreiben erfordern würde.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class LagerverwaltungBenchmark {
+
+    /**
+     * Der Anfangsbestand pro Produkt; groß genug, dass nie ausverkauft wird.
+     */
+    private static final int ANFANGSBESTAND = 1_000_000_000;
+
+    /**
+     * Das Zugriffsmuster der Threads.
+     */
+    @Param({"GLEICHES_PRODUKT", "VERSCHIEDENE_PRODUKTE"})
+    public String zugriffsmuster;
+
+    /**
+     * Die Anzahl der Benchmark-Produkte.
+     */
+    @Param({"64"})
+    public int produktAnzahl;
+
+    private final Lagerverwaltung lagerverwaltung = new Lagerverwaltung();
+    private final Object globaleSperre = new Object();
+    private final AtomicInteger naechsterThread = new AtomicInteger();
+    private String[] produktIds;
+
+    /**
+     * Registriert die Benchmark-Produkte im Produktkatalog.
+     */
+    @Setup(Level.Trial)
+    public void legeProdukteAn() {
+        produktIds = new String[produktAnzahl];
+        for (int i = 0; i < produktAnzahl; i++) {
+            String produktId = "PROD-BENCH-" + i;
+            if (MozartMockRepo.produktkatalog.index(produktId) < 0) {
+                MozartMockRepo.produktkatalog.registriere(new ProduktdatenBuilder()
+                        .withProductId(produktId)
+                        .withProductName("Benchmark-Produkt " + i)
+                        .withCategory("Benchmark")
+                        .withPrice(Geldbetrag.parse("1.00"))
+                        .withStockQuantity(ANFANGSBESTAND)
+                        .build());
+            }
+            produktIds[i] = produktId;
+        }
+    }
+
+    /**
+     * Zustand pro Thread: das Produkt, das dieser Thread bestellt.
+     */
+    @State(Scope.Thread)
+    public static class ThreadZustand {
+        String produktId;
+
+        /**
+         * Wählt das Produkt des Threads abhängig vom Zugriffsmuster.
+         *
+         * @param benchmark Der gemeinsame Benchmark-Zustand.
+         */
+        @Setup(Level.Trial)
+        public void waehleProdukt(LagerverwaltungBenchmark benchmark) {
+            int index = "GLEICHES_PRODUKT".equals(benchmark.zugriffsmuster)
+                    ? 0
+                    : benchmark.naechsterThread.getAndIncrement() % benchmark.produktAnzahl;
+            produktId = benchmark.produktIds[index];
+        }
+    }
+
+    /**
+     * Reserviert und gibt frei über die sperrfreie {@link Lagerverwaltung}.
+     *
+     * @param zustand Der Thread-Zustand.
+     */
+    @Benchmark
+    public void reserviereUndGibFreiSperrfrei(ThreadZustand zustand) {
+        int produktIndex = lagerverwaltung.reserviere(zustand.produktId, 1);
+        lagerverwaltung.gibFrei(produktIndex, 1);
+    }
+
+    /**
+     * Dieselbe Operation als Lesen-Ändern-Schreiben hinter einer globalen Sperre (Vergleichswert).
+     *
+     * @param zustand Der Thread-Zustand.
+     */
+    @Benchmark
+    public void reserviereUndGibFreiGlobaleSperre(ThreadZustand zustand) {
+        Produktdaten produkt = MozartMockRepo.produktdaten.get(zustand.produktId);
+        synchronized (globaleSperre) {
+            produkt.setLagermenge(produkt.getLagermenge() - 1);
+        }
+        synchronized (globaleSperre) {
+            produkt.setLagermenge(produkt.getLagermenge() + 1);
+        }
+    }
+}
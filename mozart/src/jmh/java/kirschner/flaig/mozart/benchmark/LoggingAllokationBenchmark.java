@@ -0,0 +1,140 @@
+package kirschner.flaig.mozart.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.OutputStreamAppender;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.core.util.NullOutputStream;
+import org.apache.logging.log4j.util.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kirschner.flaig.mozart.benchmark.RabbitMQAppenderBenchmark.LogBrokerAttrappe;
+import kirschner.flaig.mozart.config.RabbitMQAppender;
+import kirschner.flaig.mozart.config.RabbitMQAppender.Ueberlaufstrategie;
+import kirschner.flaig.mozart.config.RabbitMQAppender.Versandeinstellungen;
+import kirschner.flaig.mozart.controller.NewBestellungRequestDto;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+import kirschner.flaig.mozart.entity.Lieferinformationen;
+
+/**
+ * Misst die Allokationen des Loggings pro Bestellung: Eine Operation schreibt die neun INFO-Zeilen, die Controller und
+ * {@code BestellungService} vor Einführung der Bestellspuren für eine erfolgreiche Bestellung ausgaben, mit denselben
+ * Meldungen und Parametern.
+ * <p>
+ * Die Profile bilden die Konfigurationen nach: {@code bisher} ist {@code log4j2.xml} ohne Thread-Locals, wie Log4j sie
+ * in Webanwendungen von sich aus abschaltet, und mit per {@code toString()} übergebenen DTOs; {@code standard} ist
+ * {@code log4j2.xml} mit den Einstellungen aus {@code log4j2.component.properties}; {@code garbagefree} ist
+ * {@code log4j2-garbagefree.xml} mit asynchronen Loggern. Die Konsole schreibt in einen {@link NullOutputStream}, der
+ * {@link RabbitMQAppender} an eine {@link LogBrokerAttrappe}. Mit {@code -prof gc} ausführen; {@code gc.alloc.rate.norm}
+ * enthält auch die Allokationen der Hintergrundthreads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingAllokationBenchmark {
+
+    @Param({"bisher", "standard", "garbagefree"})
+    public String profil;
+
+    private LoggerContext kontext;
+    private LogBrokerAttrappe broker;
+    private RabbitMQAppender rabbitAppender;
+    private Logger controller;
+    private Logger service;
+    private boolean bisher;
+    private NewBestellungRequestDto bestellAnfrage;
+    private Lieferinformationen lieferinformationen;
+
+    /**
+     * Stellt Log4j auf das gewählte Profil ein. Muss vor jeder anderen Verwendung von Log4j in der Fork laufen, da die
+     * Thread-Locals beim Laden von Log4j festgelegt werden.
+     */
+    @Setup
+    public void vorbereiten() {
+        bisher = profil.equals("bisher");
+        System.setProperty("log4j2.isWebapp", String.valueOf(bisher));
+        boolean garbagefree = profil.equals("garbagefree");
+        String datumsmuster = garbagefree ? "yyyy-MM-dd HH:mm:ss.SSS" : "yyyy-MM-dd HH:mm:ss";
+
+        ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.setStatusLevel(Level.WARN);
+        builder.add(garbagefree ? builder.newAsyncRootLogger(Level.INFO, false) : builder.newRootLogger(Level.INFO));
+        kontext = Configurator.initialize(builder.build());
+        Configuration konfiguration = kontext.getConfiguration();
+
+        broker = new LogBrokerAttrappe(0);
+        rabbitAppender = new RabbitMQAppender("rabbitmq", null, PatternLayout.newBuilder().withConfiguration(konfiguration)
+                .withPattern("[MOZART] %d{" + datumsmuster + "} %-5level %msg%n").build(),
+                true, "benchmark.log.queue", "benchmark.logging.exchange", broker,
+                new Versandeinstellungen(true, 8192, 256, 50, false, Ueberlaufstrategie.BLOCKIEREN));
+        Appender konsole = OutputStreamAppender.newBuilder().setName("Console").setTarget(NullOutputStream.getInstance())
+                .setLayout(PatternLayout.newBuilder().withConfiguration(konfiguration)
+                        .withPattern("%d{HH:mm:ss.SSS} [%t] %-5level %logger{36} - %msg%n").build())
+                .build();
+        for (Appender appender : new Appender[]{konsole, rabbitAppender}) {
+            appender.start();
+            konfiguration.addAppender(appender);
+            konfiguration.getRootLogger().addAppender(appender, null, null);
+        }
+        kontext.updateLoggers();
+
+        controller = kontext.getLogger("kirschner.flaig.mozart.controller.BestellungController");
+        service = kontext.getLogger("kirschner.flaig.mozart.service.BestellungService");
+        bestellAnfrage = new NewBestellungRequestDto("KUNDE-004711", "erika.mustermann@example.com",
+                "Heilbronner Straße 12, 70191 Stuttgart, Deutschland", "P-0042", 2, "CREDIT_CARD");
+        lieferinformationen = new Lieferinformationen(LocalDateTime.of(2025, 5, 15, 10, 30, 12, 345_678_000), DeliveryStatus.PROCESSING);
+        System.out.printf("%nProfil %s: Thread-Locals %b%n", profil, Constants.ENABLE_THREADLOCALS);
+    }
+
+    /**
+     * Fährt Log4j herunter, wobei der Appender seinen Puffer leert, und gibt die Zählerstände aus.
+     */
+    @TearDown
+    public void abbauen() {
+        Configurator.shutdown(kontext);
+        System.out.printf("%nNachrichten %d, Ereignisse %d, Bytes %d, verworfen %d%n",
+                broker.nachrichten.sum(), broker.ereignisse.sum(), broker.bytes.sum(), rabbitAppender.getVerworfen());
+    }
+
+    @Benchmark
+    public void bestellung() {
+        String orderId = "ORD-20250512-000123";
+        controller.info("BestellungController: starte postBestellung() mit folgendem Objekt: {}...",
+                bisher ? bestellAnfrage.toString() : bestellAnfrage);
+        service.info("BestellungService: Starte processBestellung() mit folgendem Objekt: {}...",
+                bisher ? bestellAnfrage.toString() : bestellAnfrage);
+        service.info("BestellungService: Produktbestand aktualisiert für Produkt ID: {}...", bestellAnfrage.produktId());
+        service.info("BestellungService: Erstelle Bestellung mit Order ID: {}...", orderId);
+        service.info("BestellungService: Bestellung erfolgreich in das Repository eingefügt. Order ID: {}...", orderId);
+        service.info("BestellungService: Erstelle BestellungDataSchuhmacher für Bestellung mit Order ID: {}...", orderId);
+        service.info("BestellungService: BestellungDataSchuhmacher in die CRM-Outbox eingereiht. Order ID: {}...", orderId);
+        service.info("BestellungService: Bestellung erfolgreich verarbeitet. Lieferinformationen: {}...",
+                bisher ? lieferinformationen.toString() : lieferinformationen);
+        controller.info("BestellungController: Bestellung erfolgreich verarbeitet. Antwort: {}...",
+                bisher ? lieferinformationen.toString() : lieferinformationen);
+    }
+}
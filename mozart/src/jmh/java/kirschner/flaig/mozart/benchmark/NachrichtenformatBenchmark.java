@@ -0,0 +1,126 @@
+package kirschner.flaig.mozart.benchmark;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import kirschner.flaig.mozart.config.NachrichtenformatKonverter;
+import kirschner.flaig.mozart.config.NachrichtenformatKonverter.Nachrichtenformat;
+import kirschner.flaig.mozart.config.NachrichtenformatKonverter.Protobufabbildung;
+import kirschner.flaig.mozart.config.StatusNachrichtenKonverter;
+import kirschner.flaig.mozart.entity.BeethovenStatusUpdate;
+import kirschner.flaig.mozart.entity.BestellungDataSchuhmacher;
+import kirschner.flaig.mozart.entity.Geldbetrag;
+import kirschner.flaig.mozart.grpc.CrmAktualisierung;
+import kirschner.flaig.mozart.grpc.StatusAktualisierung;
+
+/**
+ * Vergleicht JSON und Protobuf als Format der AMQP-Nachrichten: Schreiben und Lesen einer CRM-Aktualisierung mit dem
+ * {@link Jackson2JsonMessageConverter} bzw. als {@link CrmAktualisierung} und Lesen einer Statusaktualisierung mit dem
+ * {@link StatusNachrichtenKonverter} bzw. als {@link StatusAktualisierung}, jeweils über den
+ * {@link NachrichtenformatKonverter}. Die Rundreisen schreiben und lesen eine CRM-Aktualisierung hintereinander, wie sie
+ * zwischen {@code CrmVersand} und CRM-Consumer läuft. Die Größe der Nachrichteninhalte wird beim Vorbereiten ausgegeben.
+ * Mit {@code -prof gc} ausführen, um die Allokationen pro Nachricht zu sehen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NachrichtenformatBenchmark {
+
+    private final List<Protobufabbildung<?, ?>> abbildungen = List.of(
+            new Protobufabbildung<>(BestellungDataSchuhmacher.class, CrmAktualisierung.getDescriptor().getFullName(),
+                    CrmAktualisierung.parser(), BestellungDataSchuhmacher::alsProto, BestellungDataSchuhmacher::vonProto),
+            new Protobufabbildung<>(BeethovenStatusUpdate.class, StatusAktualisierung.getDescriptor().getFullName(),
+                    StatusAktualisierung.parser(), BeethovenStatusUpdate::alsProto, BeethovenStatusUpdate::vonProto));
+
+    private final NachrichtenformatKonverter crmJson =
+            new NachrichtenformatKonverter(new Jackson2JsonMessageConverter(), Nachrichtenformat.JSON, abbildungen);
+    private final NachrichtenformatKonverter crmProtobuf =
+            new NachrichtenformatKonverter(new Jackson2JsonMessageConverter(), Nachrichtenformat.PROTOBUF, abbildungen);
+    private final NachrichtenformatKonverter statusJson =
+            new NachrichtenformatKonverter(new StatusNachrichtenKonverter(), Nachrichtenformat.JSON, abbildungen);
+    private final NachrichtenformatKonverter statusProtobuf =
+            new NachrichtenformatKonverter(new StatusNachrichtenKonverter(), Nachrichtenformat.PROTOBUF, abbildungen);
+
+    private BestellungDataSchuhmacher crmAktualisierung;
+    private Message crmNachrichtJson;
+    private Message crmNachrichtProtobuf;
+    private Message statusNachrichtJson;
+    private Message statusNachrichtProtobuf;
+
+    /**
+     * Legt eine typische CRM-Aktualisierung und Statusaktualisierung in beiden Formaten an.
+     */
+    @Setup
+    public void vorbereiten() {
+        crmAktualisierung = new BestellungDataSchuhmacher("ORD-20250512-000123", "KUNDE-004711", LocalDate.of(2025, 5, 12),
+                Geldbetrag.vonCent(12_999), "Processing", "erika.mustermann@example.com",
+                "Heilbronner Straße 12, 70191 Stuttgart, Deutschland");
+        BeethovenStatusUpdate statusAktualisierung = new BeethovenStatusUpdate("ORD-20250512-000123", "Shipped");
+
+        crmNachrichtJson = crmJson.toMessage(crmAktualisierung, new MessageProperties());
+        crmNachrichtProtobuf = crmProtobuf.toMessage(crmAktualisierung, new MessageProperties());
+        statusNachrichtJson = statusJson.toMessage(statusAktualisierung, new MessageProperties());
+        statusNachrichtProtobuf = statusProtobuf.toMessage(statusAktualisierung, new MessageProperties());
+        System.out.printf("%nInhalt CRM: JSON %d B, Protobuf %d B; Status: JSON %d B, Protobuf %d B%n",
+                crmNachrichtJson.getBody().length, crmNachrichtProtobuf.getBody().length,
+                statusNachrichtJson.getBody().length, statusNachrichtProtobuf.getBody().length);
+    }
+
+    @Benchmark
+    public Message crmSchreibenJson() {
+        return crmJson.toMessage(crmAktualisierung, new MessageProperties());
+    }
+
+    @Benchmark
+    public Message crmSchreibenProtobuf() {
+        return crmProtobuf.toMessage(crmAktualisierung, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object crmLesenJson() {
+        return crmJson.fromMessage(crmNachrichtJson);
+    }
+
+    @Benchmark
+    public Object crmLesenProtobuf() {
+        return crmProtobuf.fromMessage(crmNachrichtProtobuf);
+    }
+
+    @Benchmark
+    public Object crmRundreiseJson() {
+        return crmJson.fromMessage(crmJson.toMessage(crmAktualisierung, new MessageProperties()));
+    }
+
+    @Benchmark
+    public Object crmRundreiseProtobuf() {
+        return crmProtobuf.fromMessage(crmProtobuf.toMessage(crmAktualisierung, new MessageProperties()));
+    }
+
+    @Benchmark
+    public Object statusLesenJson() {
+        return statusJson.fromMessage(statusNachrichtJson);
+    }
+
+    @Benchmark
+    public Object statusLesenProtobuf() {
+        return statusProtobuf.fromMessage(statusNachrichtProtobuf);
+    }
+}
@@ -0,0 +1,286 @@
+package kirschner.flaig.mozart.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.rabbitmq.client.AddressResolver;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kirschner.flaig.mozart.config.RabbitMQConfig;
+import kirschner.flaig.mozart.entity.BestellungDataSchuhmacher;
+import kirschner.flaig.mozart.entity.Geldbetrag;
+import kirschner.flaig.mozart.service.Nachrichtenversand;
+
+/**
+ * Vergleicht den Durchsatz des {@link Nachrichtenversand} mit asynchron verfolgten Publisher Confirms, einzeln und
+ * gebündelt, gegen das Senden mit anschließendem {@code waitForConfirmsOrDie} pro Nachricht. Der Kanal-Cache ist wie in
+ * der Anwendung über den Checkout-Timeout auf {@code kanaele} Kanäle begrenzt.
+ * <p>
+ * Da im Benchmark kein Broker läuft, ersetzt eine {@link BrokerAttrappe} die Verbindung: Sie nimmt jede Nachricht an
+ * und bestätigt sie nach {@code bestaetigungMikros} auf einem eigenen Thread, wie ein Broker nach dem Schreiben in die
+ * Queue. Gemessen wird damit der Aufwand im Client (Konvertierung, Kanal-Cache, Korrelation) und die Wirkung der
+ * Bestätigungslatenz auf den Durchsatz, nicht der Broker selbst.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(4)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NachrichtenversandBenchmark {
+
+    /**
+     * Die Anzahl der Nachrichten, die {@link #bestaetigtGebuendelt()} über einen Kanal sendet.
+     */
+    private static final int BUENDELGROESSE = 32;
+
+    /**
+     * Wie lange die Attrappe bis zur Bestätigung einer Nachricht braucht, in Mikrosekunden.
+     */
+    @Param({"0", "1000"})
+    public long bestaetigungMikros;
+
+    /**
+     * Die Größe des Kanal-Caches.
+     */
+    @Param({"8"})
+    public int kanaele;
+
+    private BrokerAttrappe broker;
+
+    private CachingConnectionFactory asynchronFactory;
+
+    private CachingConnectionFactory synchronFactory;
+
+    private Nachrichtenversand nachrichtenversand;
+
+    private RabbitTemplate synchronTemplate;
+
+    private BestellungDataSchuhmacher nachricht;
+
+    private List<BestellungDataSchuhmacher> buendel;
+
+    /**
+     * Baut beide Versandwege auf der Attrappe auf.
+     */
+    @Setup(Level.Trial)
+    public void vorbereiten() {
+        broker = new BrokerAttrappe(bestaetigungMikros);
+        Jackson2JsonMessageConverter konverter = new Jackson2JsonMessageConverter(new ObjectMapper().registerModule(new JavaTimeModule()));
+
+        asynchronFactory = new CachingConnectionFactory(broker);
+        asynchronFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        asynchronFactory.setPublisherReturns(true);
+        asynchronFactory.setChannelCacheSize(kanaele);
+        asynchronFactory.setChannelCheckoutTimeout(5000);
+        RabbitTemplate asynchronTemplate = new RabbitTemplate(asynchronFactory);
+        asynchronTemplate.setMessageConverter(konverter);
+        asynchronTemplate.setMandatory(true);
+        nachrichtenversand = new Nachrichtenversand(asynchronTemplate, new SimpleMeterRegistry(), 1000, 5000);
+
+        synchronFactory = new CachingConnectionFactory(broker);
+        synchronFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.SIMPLE);
+        synchronFactory.setChannelCacheSize(kanaele);
+        synchronFactory.setChannelCheckoutTimeout(5000);
+        synchronTemplate = new RabbitTemplate(synchronFactory);
+        synchronTemplate.setMessageConverter(konverter);
+
+        nachricht = new BestellungDataSchuhmacher("ORD-1", "CUST-1", LocalDate.now(), Geldbetrag.vonCent(4999),
+                "PROCESSING", "kunde@example.com", "Musterstraße 1, 12345 Musterstadt");
+        buendel = Collections.nCopies(BUENDELGROESSE, nachricht);
+    }
+
+    /**
+     * Schließt die Verbindungen und die Attrappe.
+     */
+    @TearDown(Level.Trial)
+    public void aufraeumen() {
+        asynchronFactory.destroy();
+        synchronFactory.destroy();
+        broker.schliessen();
+    }
+
+    /**
+     * Sendet über den {@link Nachrichtenversand}; auf die Bestätigung wird nicht gewartet, nur die Anzahl
+     * unbestätigter Nachrichten ist begrenzt.
+     *
+     * @return Das Future der Bestätigung.
+     */
+    @Benchmark
+    public CompletableFuture<Void> bestaetigtAsynchron() {
+        return nachrichtenversand.sende(RabbitMQConfig.CRM_EXCHANGE_NAME, RabbitMQConfig.CRM_ROUTING_KEY, nachricht);
+    }
+
+    /**
+     * Sendet {@value #BUENDELGROESSE} Nachrichten über einen Kanal mit {@link Nachrichtenversand#sendeAlle}, wie der
+     * {@code CrmVersand}; gemessen wird pro Nachricht.
+     *
+     * @return Die Futures der Bestätigungen.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BUENDELGROESSE)
+    public List<CompletableFuture<Void>> bestaetigtGebuendelt() {
+        return nachrichtenversand.sendeAlle(RabbitMQConfig.CRM_EXCHANGE_NAME, RabbitMQConfig.CRM_ROUTING_KEY, buendel, null);
+    }
+
+    /**
+     * Sendet und wartet pro Nachricht auf die Bestätigung, wie es ohne asynchrone Verfolgung nötig wäre.
+     *
+     * @return Immer {@code true}.
+     */
+    @Benchmark
+    public Boolean bestaetigtSynchron() {
+        return synchronTemplate.invoke(operationen -> {
+            operationen.convertAndSend(RabbitMQConfig.CRM_EXCHANGE_NAME, RabbitMQConfig.CRM_ROUTING_KEY, nachricht);
+            operationen.waitForConfirmsOrDie(5000);
+            return true;
+        });
+    }
+
+    /**
+     * Ersetzt den Broker im Prozess. Jeder Kanal befindet sich im Confirm-Modus, nimmt alle Nachrichten an und
+     * bestätigt sie in Veröffentlichungsreihenfolge nach der eingestellten Latenz.
+     */
+    static final class BrokerAttrappe extends ConnectionFactory {
+
+        private final long bestaetigungMikros;
+
+        private final ScheduledExecutorService bestaetiger = Executors.newSingleThreadScheduledExecutor(aufgabe ->
+                Thread.ofPlatform().name("broker-attrappe").daemon().unstarted(aufgabe));
+
+        private final AtomicLong naechsteKanalnummer = new AtomicLong();
+
+        BrokerAttrappe(long bestaetigungMikros) {
+            this.bestaetigungMikros = bestaetigungMikros;
+        }
+
+        @Override
+        public Connection newConnection(ExecutorService executor, AddressResolver addressResolver, String clientProvidedName) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, methode, argumente) -> switch (methode.getName()) {
+                        case "createChannel" -> erstelleKanal((Connection) proxy);
+                        case "isOpen" -> true;
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == argumente[0];
+                        case "toString" -> "BrokerAttrappe";
+                        default -> standardwert(methode.getReturnType());
+                    });
+        }
+
+        void schliessen() {
+            bestaetiger.shutdownNow();
+        }
+
+        private Channel erstelleKanal(Connection verbindung) {
+            int nummer = (int) naechsteKanalnummer.incrementAndGet();
+            List<ConfirmListener> zuhoerer = new CopyOnWriteArrayList<>();
+            AtomicLong veroeffentlicht = new AtomicLong();
+            AtomicLong bestaetigt = new AtomicLong();
+            Object monitor = new Object();
+
+            return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class},
+                    (proxy, methode, argumente) -> switch (methode.getName()) {
+                        case "addConfirmListener" -> {
+                            if (argumente.length == 1) {
+                                zuhoerer.add((ConfirmListener) argumente[0]);
+                            }
+                            yield null;
+                        }
+                        case "getNextPublishSeqNo" -> veroeffentlicht.get() + 1;
+                        case "basicPublish" -> {
+                            long sequenz = veroeffentlicht.incrementAndGet();
+                            Runnable bestaetigung = () -> {
+                                for (ConfirmListener listener : zuhoerer) {
+                                    try {
+                                        listener.handleAck(sequenz, false);
+                                    } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                    }
+                                }
+                                synchronized (monitor) {
+                                    bestaetigt.set(sequenz);
+                                    monitor.notifyAll();
+                                }
+                            };
+                            if (bestaetigungMikros == 0) {
+                                bestaetiger.execute(bestaetigung);
+                            } else {
+                                bestaetiger.schedule(bestaetigung, bestaetigungMikros, TimeUnit.MICROSECONDS);
+                            }
+                            yield null;
+                        }
+                        case "waitForConfirmsOrDie" -> {
+                            long bis = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos((Long) argumente[0]);
+                            synchronized (monitor) {
+                                while (bestaetigt.get() < veroeffentlicht.get()) {
+                                    long rest = bis - System.nanoTime();
+                                    if (rest <= 0) {
+                                        throw new TimeoutException("Keine Bestätigung der Attrappe");
+                                    }
+                                    TimeUnit.NANOSECONDS.timedWait(monitor, rest);
+                                }
+                            }
+                            yield null;
+                        }
+                        case "getConnection" -> verbindung;
+                        case "getChannelNumber" -> nummer;
+                        case "isOpen" -> true;
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == argumente[0];
+                        case "toString" -> "BrokerAttrappe#" + nummer;
+                        default -> standardwert(methode.getReturnType());
+                    });
+        }
+
+        private static Object standardwert(Class<?> typ) {
+            if (typ == boolean.class) {
+                return false;
+            }
+            if (typ == int.class) {
+                return 0;
+            }
+            if (typ == long.class) {
+                return 0L;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package kirschner.flaig.mozart.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.AddressResolver;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+
+import kirschner.flaig.mozart.config.RabbitMQAppender;
+import kirschner.flaig.mozart.config.RabbitMQAppender.Ueberlaufstrategie;
+import kirschner.flaig.mozart.config.RabbitMQAppender.Versandeinstellungen;
+
+/**
+ * Misst den Durchsatz des {@link RabbitMQAppender} aus Sicht der loggenden Threads: synchron mit einem
+ * {@code basicPublish} pro Ereignis gegen den asynchronen Modus mit Ringpuffer und gebündeltem Versand, mit und ohne
+ * gzip und mit beiden Überlaufstrategien.
+ * <p>
+ * Statt eines Brokers nimmt eine {@link LogBrokerAttrappe} die Nachrichten an; jedes {@code basicPublish} kostet dort
+ * {@code schreibMikros} Mikrosekunden aktive Wartezeit, etwa für das Schreiben des Frames auf den Socket. Beim Abbau
+ * werden die gesendeten Nachrichten, Ereignisse und verworfenen Ereignisse ausgegeben. Bei {@code drop} zählt der
+ * Durchsatz auch verworfene Ereignisse; er zeigt dann, wie lange der loggende Thread höchstens aufgehalten wird.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(2)
+@Fork(1)
+public class RabbitMQAppenderBenchmark {
+
+    @Param({"synchron", "asynchron-block", "asynchron-drop", "asynchron-gzip-block"})
+    public String modus;
+
+    @Param({"0", "20"})
+    public long schreibMikros;
+
+    private LogBrokerAttrappe broker;
+    private RabbitMQAppender appender;
+    private LogEvent ereignis;
+
+    /**
+     * Erstellt den Appender im gewählten Modus und ein typisches Log-Ereignis vom Bestellpfad.
+     */
+    @Setup
+    public void vorbereiten() {
+        broker = new LogBrokerAttrappe(schreibMikros);
+        Versandeinstellungen einstellungen = new Versandeinstellungen(!modus.equals("synchron"), 8192, 256, 50,
+                modus.contains("gzip"), modus.endsWith("drop") ? Ueberlaufstrategie.VERWERFEN : Ueberlaufstrategie.BLOCKIEREN);
+        appender = new RabbitMQAppender("benchmark", null,
+                PatternLayout.newBuilder().withPattern("[MOZART] %d{yyyy-MM-dd HH:mm:ss} %-5level %msg%n").build(),
+                true, "benchmark.log.queue", "benchmark.logging.exchange", broker, einstellungen);
+        appender.start();
+        ereignis = Log4jLogEvent.newBuilder()
+                .setLoggerName("kirschner.flaig.mozart.service.Bestellverwaltung")
+                .setLevel(Level.INFO)
+                .setMessage(new SimpleMessage("Bestellverwaltung: Bestellung ORD-20250512-000123 für Kunde KUNDE-004711 angelegt."))
+                .setTimeMillis(System.currentTimeMillis())
+                .build();
+    }
+
+    /**
+     * Stoppt den Appender, der dabei den Puffer leert, und gibt die Zählerstände aus.
+     */
+    @TearDown
+    public void abbauen() {
+        appender.stop(5, TimeUnit.SECONDS);
+        System.out.printf("%nNachrichten %d, Ereignisse %d, Bytes %d, verworfen %d%n",
+                broker.nachrichten.sum(), broker.ereignisse.sum(), broker.bytes.sum(), appender.getVerworfen());
+    }
+
+    @Benchmark
+    public void loggen() {
+        appender.append(ereignis);
+    }
+
+    /**
+     * Ersetzt den Broker: Jede Verbindung liefert einen Kanal, der Deklarationen ignoriert und bei {@code basicPublish}
+     * die konfigurierte Zeit aktiv wartet und die Nachricht zählt.
+     */
+    static final class LogBrokerAttrappe extends ConnectionFactory {
+
+        private final long schreibNanos;
+
+        final LongAdder nachrichten = new LongAdder();
+        final LongAdder ereignisse = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+
+        LogBrokerAttrappe(long schreibMikros) {
+            this.schreibNanos = TimeUnit.MICROSECONDS.toNanos(schreibMikros);
+        }
+
+        @Override
+        public Connection newConnection(ExecutorService executor, AddressResolver addressResolver, String clientProvidedName) {
+            Channel kanal = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class},
+                    (proxy, methode, argumente) -> switch (methode.getName()) {
+                        case "basicPublish" -> {
+                            long bis = System.nanoTime() + schreibNanos;
+                            while (System.nanoTime() - bis < 0) {
+                                Thread.onSpinWait();
+                            }
+                            AMQP.BasicProperties eigenschaften = (AMQP.BasicProperties) argumente[argumente.length - 2];
+                            Object anzahl = eigenschaften.getHeaders() == null ? null
+                                    : eigenschaften.getHeaders().get(RabbitMQAppender.HEADER_ANZAHL);
+                            nachrichten.increment();
+                            ereignisse.add(anzahl == null ? 1 : (Integer) anzahl);
+                            bytes.add(((byte[]) argumente[argumente.length - 1]).length);
+                            yield null;
+                        }
+                        case "isOpen" -> true;
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == argumente[0];
+                        case "toString" -> "LogBrokerAttrappe";
+                        default -> null;
+                    });
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, methode, argumente) -> switch (methode.getName()) {
+                        case "createChannel" -> kanal;
+                        case "isOpen" -> false;
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == argumente[0];
+                        case "toString" -> "LogBrokerAttrappe";
+                        default -> null;
+                    });
+        }
+    }
+}
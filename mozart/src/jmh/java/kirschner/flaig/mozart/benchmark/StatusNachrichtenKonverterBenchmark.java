@@ -0,0 +1,63 @@
+package kirschner.flaig.mozart.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import kirschner.flaig.mozart.config.StatusNachrichtenKonverter;
+import kirschner.flaig.mozart.entity.BeethovenStatusUpdate;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+
+/**
+ * Vergleicht das Lesen einer Statusaktualisierung aus Beethoven mit dem {@link Jackson2JsonMessageConverter} und
+ * anschließendem {@code DeliveryStatus.valueOf(status.toUpperCase())}, wie es der {@code BeethovenListener} früher tat,
+ * mit dem {@link StatusNachrichtenKonverter}, der den Lieferstatus direkt aus den Bytes auflöst.
+ * Mit {@code -prof gc} ausführen, um die Allokationen pro Nachricht zu sehen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatusNachrichtenKonverterBenchmark {
+
+    private final Jackson2JsonMessageConverter jackson = new Jackson2JsonMessageConverter();
+    private final StatusNachrichtenKonverter statusKonverter = new StatusNachrichtenKonverter();
+
+    private Message nachrichtJackson;
+    private Message nachrichtStatus;
+
+    /**
+     * Legt die Nachrichten so an, wie sie der jeweilige Konverter schreibt; Jackson mit Typ-ID-Header.
+     */
+    @Setup
+    public void vorbereiten() {
+        BeethovenStatusUpdate statusAktualisierung = new BeethovenStatusUpdate("ORD-20250512-000123", "Shipped");
+        nachrichtJackson = jackson.toMessage(statusAktualisierung, new MessageProperties());
+        nachrichtStatus = statusKonverter.toMessage(statusAktualisierung, new MessageProperties());
+    }
+
+    @Benchmark
+    public DeliveryStatus jackson() {
+        BeethovenStatusUpdate statusAktualisierung = (BeethovenStatusUpdate) jackson.fromMessage(nachrichtJackson);
+        return DeliveryStatus.valueOf(statusAktualisierung.getStatus().toUpperCase());
+    }
+
+    @Benchmark
+    public DeliveryStatus statusKonverter() {
+        return ((BeethovenStatusUpdate) statusKonverter.fromMessage(nachrichtStatus)).getLieferstatus();
+    }
+}
@@ -0,0 +1,167 @@
+package kirschner.flaig.mozart.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import kirschner.flaig.mozart.grpc.BestellungRequest;
+import kirschner.flaig.mozart.grpc.BestellungResponse;
+import kirschner.flaig.mozart.grpc.ErpOrderServiceGrpc;
+
+/**
+ * Vergleicht virtuelle Threads mit einem Plattform-Thread-Pool bei hoher Parallelität.
+ * Jede Operation schickt {@link #gleichzeitigeBestellungen} blockierende gRPC-Aufrufe gleichzeitig
+ * an einen langsamen Beethoven-Ersatz, so wie es Tomcat-Worker in {@code BestellungService.processBestellung} tun.
+ * Der Plattform-Modus entspricht dem Standard-Tomcat-Pool mit {@link #plattformThreads} Threads.
+ * <p>
+ * Gemessen wird die Dauer eines solchen Schubs; bei 2000 Bestellungen, 200 Threads und 50 ms Latenz
+ * liegt die theoretische Untergrenze im Plattform-Modus bei 500 ms, im virtuellen Modus bei etwa 50 ms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    /**
+     * Das Thread-Modell der simulierten Request-Verarbeitung.
+     */
+    @Param({"PLATTFORM", "VIRTUELL"})
+    public String threadModus;
+
+    /**
+     * Die Anzahl der gleichzeitig eintreffenden Bestellungen pro Operation.
+     */
+    @Param({"2000"})
+    public int gleichzeitigeBestellungen;
+
+    /**
+     * Die künstliche Antwortzeit des Beethoven-Ersatzes in Millisekunden.
+     */
+    @Param({"50"})
+    public int beethovenLatenzMs;
+
+    /**
+     * Die Größe des Plattform-Thread-Pools (Standard von Tomcat: 200).
+     */
+    @Param({"200"})
+    public int plattformThreads;
+
+    private Server server;
+    private ManagedChannel kanal;
+    private ExecutorService serverExecutor;
+    private ExecutorService anfrageExecutor;
+    private ErpOrderServiceGrpc.ErpOrderServiceBlockingStub stub;
+    private BestellungRequest anfrage;
+
+    /**
+     * Startet den langsamen Beethoven-Ersatz und den Executor für das gewählte Thread-Modell.
+     *
+     * @throws Exception Wenn der In-Process-Server nicht gestartet werden kann.
+     */
+    @Setup(Level.Trial)
+    public void starte() throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        // Der Ersatz läuft immer auf virtuellen Threads, damit nur die Client-Seite verglichen wird.
+        serverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server = InProcessServerBuilder.forName(name)
+                .executor(serverExecutor)
+                .addService(new LangsamerBeethoven(beethovenLatenzMs))
+                .build()
+                .start();
+        kanal = InProcessChannelBuilder.forName(name).build();
+        stub = ErpOrderServiceGrpc.newBlockingStub(kanal);
+        anfrageExecutor = "VIRTUELL".equals(threadModus)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(plattformThreads);
+        anfrage = BestellungRequest.newBuilder()
+                .setCustomerId("CUST-BENCH")
+                .setProductId("PROD-MOCK-001")
+                .setQuantity(1)
+                .build();
+    }
+
+    /**
+     * Fährt Executor, Kanal und Server herunter.
+     *
+     * @throws InterruptedException Wenn das Warten auf das Herunterfahren unterbrochen wird.
+     */
+    @TearDown(Level.Trial)
+    public void stoppe() throws InterruptedException {
+        anfrageExecutor.shutdownNow();
+        kanal.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        serverExecutor.shutdownNow();
+    }
+
+    /**
+     * Schickt einen Schub gleichzeitiger Bestellungen ab und wartet auf alle Antworten.
+     *
+     * @return Die Anzahl der erhaltenen Antworten.
+     * @throws Exception Wenn ein Aufruf fehlschlägt.
+     */
+    @Benchmark
+    public int gleichzeitigeBestellungen() throws Exception {
+        List<Future<BestellungResponse>> antworten = new ArrayList<>(gleichzeitigeBestellungen);
+        for (int i = 0; i < gleichzeitigeBestellungen; i++) {
+            antworten.add(anfrageExecutor.submit(() -> stub.bestellungOrder(anfrage)));
+        }
+        int erhalten = 0;
+        for (Future<BestellungResponse> antwort : antworten) {
+            antwort.get();
+            erhalten++;
+        }
+        return erhalten;
+    }
+
+    /**
+     * Beethoven-Ersatz, der jede Bestellung nach einer festen Latenz bestätigt.
+     */
+    static final class LangsamerBeethoven extends ErpOrderServiceGrpc.ErpOrderServiceImplBase {
+        private final long latenzMs;
+        private final BestellungResponse antwort = BestellungResponse.newBuilder()
+                .setOrderId("ORD-BENCH")
+                .setDeliveryDate("2025-05-01T12:00:00")
+                .setDeliveryStatus("Processing")
+                .build();
+
+        LangsamerBeethoven(long latenzMs) {
+            this.latenzMs = latenzMs;
+        }
+
+        @Override
+        public void bestellungOrder(BestellungRequest request, StreamObserver<BestellungResponse> responseObserver) {
+            try {
+                Thread.sleep(latenzMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            responseObserver.onNext(antwort);
+            responseObserver.onCompleted();
+        }
+    }
+}
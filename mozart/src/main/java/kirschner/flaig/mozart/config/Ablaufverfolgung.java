@@ -0,0 +1,134 @@
+package kirschner.flaig.mozart.config;
+
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.logging.log4j.ThreadContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Beginnt und beendet {@link Span}s und verwaltet den aktiven {@link Tracekontext} des Threads.
+ * <p>
+ * Der aktive Kontext wird mit {@link #aktiviere(Tracekontext)} für einen Bereich gesetzt und zugleich als
+ * {@code traceId} und {@code spanId} in den {@link ThreadContext} von Log4j geschrieben, sodass jede Logzeile des
+ * Bereichs, auch die des {@link RabbitMQAppender}, die IDs trägt. Die gRPC-Interceptoren und der
+ * {@code Nachrichtenversand} geben den aktiven Kontext an andere Dienste weiter. Beendete Spans landen im
+ * {@link Spanspeicher}.
+ */
+@Component
+public class Ablaufverfolgung {
+
+    /**
+     * Der Schlüssel der Trace-ID im {@link ThreadContext}.
+     */
+    public static final String MDC_TRACE_ID = "traceId";
+
+    /**
+     * Der Schlüssel der Span-ID im {@link ThreadContext}.
+     */
+    public static final String MDC_SPAN_ID = "spanId";
+
+    /**
+     * Der aktive Kontext des Threads.
+     */
+    private static final ThreadLocal<Tracekontext> AKTIV = new ThreadLocal<>();
+
+    /**
+     * Formatiert die zufälligen IDs als kleine Hexadezimalziffern.
+     */
+    private static final HexFormat HEX = HexFormat.of();
+
+    /**
+     * Ein aktivierter Kontext; {@link #close()} stellt den vorherigen Kontext des Threads wieder her.
+     */
+    @FunctionalInterface
+    public interface Bereich extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Der Speicher für beendete Spans.
+     */
+    private final Spanspeicher spanspeicher;
+
+    /**
+     * Der Abstand von {@link System#nanoTime()} zur Epoche in Nanosekunden, um Beginnzeiten ohne weitere Systemaufrufe
+     * zu berechnen.
+     */
+    private final long epochAbstandNanos;
+
+    /**
+     * Konstruktor für die {@code Ablaufverfolgung}.
+     *
+     * @param spanspeicher Der {@link Spanspeicher} für beendete Spans.
+     */
+    public Ablaufverfolgung(Spanspeicher spanspeicher) {
+        this.spanspeicher = spanspeicher;
+        this.epochAbstandNanos = System.currentTimeMillis() * 1_000_000 - System.nanoTime();
+    }
+
+    /**
+     * Beginnt einen Span als Kind eines Kontexts.
+     *
+     * @param name Der Name des Schritts.
+     * @param eltern Der Kontext des Elternschritts oder {@code null}, um einen neuen Trace zu beginnen.
+     * @return Der laufende Span; er muss mit {@link #beende(Span)} beendet werden.
+     */
+    public Span starte(String name, Tracekontext eltern) {
+        ThreadLocalRandom zufall = ThreadLocalRandom.current();
+        String traceId = eltern != null ? eltern.traceId() : HEX.toHexDigits(zufall.nextLong() | 1) + HEX.toHexDigits(zufall.nextLong());
+        Tracekontext kontext = new Tracekontext(traceId, HEX.toHexDigits(zufall.nextLong() | 1));
+        long beginn = System.nanoTime();
+        return new Span(name, kontext, eltern != null ? eltern.spanId() : null, (epochAbstandNanos + beginn) / 1_000, beginn);
+    }
+
+    /**
+     * Beendet einen Span und legt ihn im {@link Spanspeicher} ab. Weitere Aufrufe für denselben Span haben keine Wirkung.
+     *
+     * @param span Der Span.
+     */
+    public void beende(Span span) {
+        if (span.beende(System.nanoTime())) {
+            spanspeicher.speichere(span);
+        }
+    }
+
+    /**
+     * Gibt den aktiven Kontext des Threads zurück.
+     *
+     * @return Der Kontext oder {@code null}, wenn keiner aktiv ist.
+     */
+    public static Tracekontext aktueller() {
+        return AKTIV.get();
+    }
+
+    /**
+     * Aktiviert einen Kontext für den aktuellen Thread, bis der zurückgegebene {@link Bereich} geschlossen wird.
+     *
+     * @param kontext Der Kontext oder {@code null}, um für den Bereich keinen Kontext zu haben.
+     * @return Der Bereich; er muss auf demselben Thread geschlossen werden.
+     */
+    public static Bereich aktiviere(Tracekontext kontext) {
+        Tracekontext vorher = AKTIV.get();
+        setze(kontext);
+        return () -> setze(vorher);
+    }
+
+    /**
+     * Setzt den aktiven Kontext und die IDs im {@link ThreadContext}.
+     *
+     * @param kontext Der Kontext oder {@code null}.
+     */
+    private static void setze(Tracekontext kontext) {
+        if (kontext == null) {
+            AKTIV.remove();
+            ThreadContext.remove(MDC_TRACE_ID);
+            ThreadContext.remove(MDC_SPAN_ID);
+        } else {
+            AKTIV.set(kontext);
+            ThreadContext.put(MDC_TRACE_ID, kontext.traceId());
+            ThreadContext.put(MDC_SPAN_ID, kontext.spanId());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package kirschner.flaig.mozart.config;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall.SimpleForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import net.devh.boot.grpc.client.interceptor.GrpcGlobalClientInterceptor;
+
+/**
+ * Gibt den aktiven {@link Tracekontext} an Beethoven weiter.
+ * Für jeden gRPC-Aufruf innerhalb eines Traces wird ein Client-{@link Span} mit dem vollständigen Methodennamen
+ * begonnen und sein Kontext als {@code traceparent} in die Metadaten geschrieben; beendet wird er, wenn der Aufruf
+ * abgeschlossen ist, bei einem Fehler mit dem gRPC-Statuscode. Aufrufe ohne aktiven Kontext bleiben unverändert.
+ */
+@GrpcGlobalClientInterceptor
+public class GrpcTraceClientInterceptor implements ClientInterceptor {
+
+    /**
+     * Der Metadaten-Schlüssel des Kontexts.
+     */
+    private static final Metadata.Key<String> TRACEPARENT = Metadata.Key.of(Tracekontext.HEADER, Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * Beginnt und beendet die Client-Spans.
+     */
+    private final Ablaufverfolgung ablaufverfolgung;
+
+    /**
+     * Konstruktor für den {@code GrpcTraceClientInterceptor}.
+     *
+     * @param ablaufverfolgung Die {@link Ablaufverfolgung}.
+     */
+    public GrpcTraceClientInterceptor(Ablaufverfolgung ablaufverfolgung) {
+        this.ablaufverfolgung = ablaufverfolgung;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> methode, CallOptions optionen, Channel kanal) {
+        Tracekontext eltern = Ablaufverfolgung.aktueller();
+        if (eltern == null) {
+            return kanal.newCall(methode, optionen);
+        }
+        Span span = ablaufverfolgung.starte(methode.getFullMethodName(), eltern);
+        return new SimpleForwardingClientCall<>(kanal.newCall(methode, optionen)) {
+            @Override
+            public void start(Listener<RespT> empfaenger, Metadata metadaten) {
+                metadaten.put(TRACEPARENT, span.kontext().alsTraceparent());
+                super.start(new SimpleForwardingClientCallListener<>(empfaenger) {
+                    @Override
+                    public void onClose(Status status, Metadata trailer) {
+                        if (!status.isOk()) {
+                            span.setzeFehler(status.getCode().name());
+                        }
+                        ablaufverfolgung.beende(span);
+                        super.onClose(status, trailer);
+                    }
+                }, metadaten);
+            }
+
+            @Override
+            public void cancel(String nachricht, Throwable ursache) {
+                span.setzeFehler(Status.Code.CANCELLED.name());
+                ablaufverfolgung.beende(span);
+                super.cancel(nachricht, ursache);
+            }
+        };
+    }
+}
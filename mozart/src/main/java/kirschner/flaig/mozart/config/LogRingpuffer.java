@@ -0,0 +1,236 @@
+package kirschner.flaig.mozart.config;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.logging.log4j.core.layout.ByteBufferDestination;
+import org.apache.logging.log4j.core.layout.ByteBufferDestinationHelper;
+
+/**
+ * Begrenzter, sperrfreier Ringpuffer für formatierte Log-Ereignisse mit beliebig vielen Schreibern und genau einem
+ * Leser, den Versandthread des {@link RabbitMQAppender}.
+ * <p>
+ * Jeder Platz trägt eine Sequenznummer: Ein Schreiber reserviert eine Position per Compare-and-Set, schreibt das
+ * Ereignis in den {@link Platz} und gibt ihn mit der Sequenz {@code position + 1} für den Leser frei; der Leser gibt ihn
+ * mit {@code position + kapazitaet} für die nächste Runde frei. Ist der Puffer voll, kehrt {@link #reserviere()} sofort
+ * zurück, sodass der Aufrufer über die Überlaufstrategie entscheidet.
+ * <p>
+ * Die Plätze behalten ihren Byte-Puffer über alle Runden, das Layout kodiert das Ereignis direkt hinein. Nach dem
+ * Aufwärmen erzeugt das Anhängen eines Ereignisses daher keine neuen Objekte.
+ */
+final class LogRingpuffer {
+
+    /**
+     * Die Anfangsgröße des Byte-Puffers eines Platzes.
+     */
+    private static final int PLATZ_ANFANGSGROESSE = 512;
+
+    /**
+     * Die größte Kapazität, die ein Platz nach einem großen Ereignis behält; darüber wird er wieder verkleinert.
+     */
+    private static final int PLATZ_HOECHSTGROESSE = 16 * 1024;
+
+    /**
+     * Ein Platz des Ringpuffers mit wiederverwendetem Byte-Puffer, in den das Layout ein Ereignis kodiert.
+     * Reicht der Puffer nicht, wird er verdoppelt.
+     */
+    static final class Platz implements ByteBufferDestination {
+
+        /**
+         * Der Byte-Puffer; wird beim ersten Schreiben angelegt.
+         */
+        private ByteBuffer inhalt;
+
+        @Override
+        public ByteBuffer getByteBuffer() {
+            if (inhalt == null) {
+                inhalt = ByteBuffer.allocate(PLATZ_ANFANGSGROESSE);
+            }
+            return inhalt;
+        }
+
+        @Override
+        public ByteBuffer drain(final ByteBuffer voll) {
+            ByteBuffer groesser = ByteBuffer.allocate(voll.capacity() * 2);
+            voll.flip();
+            groesser.put(voll);
+            inhalt = groesser;
+            return groesser;
+        }
+
+        @Override
+        public void writeBytes(final ByteBuffer daten) {
+            ByteBufferDestinationHelper.writeToUnsynchronized(daten, this);
+        }
+
+        @Override
+        public void writeBytes(final byte[] daten, final int offset, final int laenge) {
+            ByteBufferDestinationHelper.writeToUnsynchronized(daten, offset, laenge, this);
+        }
+
+        /**
+         * Gibt die Anzahl der geschriebenen Bytes zurück.
+         *
+         * @return Die Länge des Ereignisses.
+         */
+        int laenge() {
+            return inhalt == null ? 0 : inhalt.position();
+        }
+
+        /**
+         * Hängt das Ereignis an einen Batch an.
+         *
+         * @param batch Der Batch.
+         */
+        void schreibeIn(final ByteArrayOutputStream batch) {
+            batch.write(inhalt.array(), 0, inhalt.position());
+        }
+
+        /**
+         * Leert den Platz für die nächste Runde; ein übergroßer Puffer wird dabei verworfen.
+         */
+        void leere() {
+            if (inhalt == null) {
+                return;
+            }
+            if (inhalt.capacity() > PLATZ_HOECHSTGROESSE) {
+                inhalt = null;
+            } else {
+                inhalt.clear();
+            }
+        }
+    }
+
+    /**
+     * Die Plätze, indiziert mit {@code position & maske}.
+     */
+    private final Platz[] plaetze;
+
+    /**
+     * Die Sequenznummern der Plätze.
+     */
+    private final AtomicLongArray sequenzen;
+
+    /**
+     * Die Maske für den Index, {@code kapazitaet - 1}.
+     */
+    private final int maske;
+
+    /**
+     * Die nächste zu reservierende Schreibposition.
+     */
+    private final AtomicLong schreibposition = new AtomicLong();
+
+    /**
+     * Die nächste Leseposition; nur vom Leser geschrieben.
+     */
+    private final AtomicLong leseposition = new AtomicLong();
+
+    /**
+     * Erstellt den Ringpuffer.
+     *
+     * @param kapazitaet Die Mindestkapazität; wird auf die nächste Zweierpotenz aufgerundet.
+     * @throws IllegalArgumentException Wenn die Kapazität nicht positiv ist.
+     */
+    LogRingpuffer(int kapazitaet) {
+        if (kapazitaet <= 0) {
+            throw new IllegalArgumentException("Die Kapazität des Ringpuffers muss positiv sein: " + kapazitaet);
+        }
+        int zweierpotenz = Integer.highestOneBit(kapazitaet) == kapazitaet ? kapazitaet : Integer.highestOneBit(kapazitaet) << 1;
+        this.plaetze = new Platz[zweierpotenz];
+        this.sequenzen = new AtomicLongArray(zweierpotenz);
+        this.maske = zweierpotenz - 1;
+        for (int i = 0; i < zweierpotenz; i++) {
+            plaetze[i] = new Platz();
+            sequenzen.set(i, i);
+        }
+    }
+
+    /**
+     * Reserviert eine Position, ohne zu blockieren. Der Schreiber muss den Platz danach mit
+     * {@link #veroeffentliche(long)} freigeben, auch wenn das Schreiben fehlschlägt.
+     *
+     * @return Die Position oder {@code -1}, wenn der Puffer voll ist.
+     */
+    long reserviere() {
+        long position = schreibposition.get();
+        while (true) {
+            long differenz = sequenzen.getAcquire((int) position & maske) - position;
+            if (differenz == 0) {
+                if (schreibposition.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = schreibposition.get();
+            } else if (differenz < 0) {
+                return -1;
+            } else {
+                position = schreibposition.get();
+            }
+        }
+    }
+
+    /**
+     * Gibt den Platz einer reservierten Position zurück.
+     *
+     * @param position Die mit {@link #reserviere()} reservierte Position.
+     * @return Der leere Platz.
+     */
+    Platz platz(long position) {
+        return plaetze[(int) position & maske];
+    }
+
+    /**
+     * Gibt einen beschriebenen Platz für den Leser frei.
+     *
+     * @param position Die mit {@link #reserviere()} reservierte Position.
+     */
+    void veroeffentliche(long position) {
+        sequenzen.setRelease((int) position & maske, position + 1);
+    }
+
+    /**
+     * Gibt den nächsten beschriebenen Platz zurück, ohne ihn zu entnehmen. Darf nur vom Leser aufgerufen werden.
+     *
+     * @return Der Platz oder {@code null}, wenn der Puffer leer ist.
+     */
+    Platz naechster() {
+        long position = leseposition.getPlain();
+        int index = (int) position & maske;
+        if (sequenzen.getAcquire(index) != position + 1) {
+            return null;
+        }
+        return plaetze[index];
+    }
+
+    /**
+     * Leert den mit {@link #naechster()} gelesenen Platz und gibt ihn für die Schreiber frei. Darf nur vom Leser
+     * aufgerufen werden.
+     */
+    void entnimm() {
+        long position = leseposition.getPlain();
+        int index = (int) position & maske;
+        plaetze[index].leere();
+        sequenzen.setRelease(index, position + plaetze.length);
+        leseposition.setRelease(position + 1);
+    }
+
+    /**
+     * Gibt die ungefähre Anzahl der Einträge im Puffer zurück.
+     *
+     * @return Die Anzahl der reservierten, noch nicht entnommenen Einträge.
+     */
+    int belegung() {
+        return (int) Math.max(0, schreibposition.get() - leseposition.getAcquire());
+    }
+
+    /**
+     * Gibt die Kapazität des Puffers zurück.
+     *
+     * @return Die Kapazität.
+     */
+    int kapazitaet() {
+        return plaetze.length;
+    }
+}
@@ -0,0 +1,361 @@
+package kirschner.flaig.mozart.config;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Größenbegrenzter, speicherabgebildeter Zwischenspeicher des {@link RabbitMQAppender} für Log-Nachrichten, die
+ * während eines Broker-Ausfalls nicht gesendet werden können.
+ * <p>
+ * Die Datei hat eine feste Größe und wird vollständig in den Speicher abgebildet. Nach dem Dateikopf (Kennung, Version,
+ * Leseposition und Fortschritt einer Verschiebung) folgen die Sätze in Schreibreihenfolge; ein Satz besteht aus Länge, CRC32C-Prüfsumme, Anzahl der
+ * Ereignisse, Kennzeichen und dem Inhalt der Nachricht. Hinter dem letzten Satz steht immer die Länge 0. Gelesene
+ * Sätze werden über die Leseposition im Kopf quittiert; ist alles gelesen, beginnt der Speicher wieder vorn, und reicht
+ * der Platz für einen neuen Satz nicht, werden die offenen Sätze an den Anfang verschoben. Dabei wird in Stücken
+ * kopiert, die höchstens so groß wie die freie Lücke davor sind, und nach jedem Stück der Fortschritt im Kopf
+ * festgehalten; ein noch nicht kopierter Rest wird so nie überschrieben, und eine abgebrochene Verschiebung wird beim
+ * Öffnen zu Ende geführt.
+ * <p>
+ * Geschrieben wird ohne {@code force()}: Die Sätze überstehen einen Absturz des Prozesses über den Seitencache des
+ * Betriebssystems, beim Öffnen werden sie ab der Leseposition bis zum ersten ungültigen Satz wiederhergestellt. Der
+ * Spool ist nicht threadsicher und wird nur vom Versandthread des Appenders verwendet.
+ */
+final class LogSpool implements AutoCloseable {
+
+    /**
+     * Kennung am Anfang der Datei ("LGSP").
+     */
+    private static final int MAGIC = 0x4C475350;
+
+    /**
+     * Die Formatversion der Datei.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Die Position der Leseposition im Dateikopf.
+     */
+    private static final int POSITION_LESEPOSITION = 8;
+
+    /**
+     * Die Position des Verschiebungsfortschritts im Dateikopf: das Ende des bereits nach vorn kopierten Teils oder 0,
+     * wenn keine Verschiebung läuft.
+     */
+    private static final int POSITION_VERSCHOBEN_BIS = 12;
+
+    /**
+     * Die Größe des Dateikopfs in Bytes.
+     */
+    private static final int DATEI_KOPF = 16;
+
+    /**
+     * Die Größe des Satzkopfs (Länge und Prüfsumme) in Bytes.
+     */
+    private static final int SATZ_KOPF = 8;
+
+    /**
+     * Die Größe der festen Satzfelder (Anzahl und Kennzeichen) in Bytes.
+     */
+    private static final int SATZ_FELDER = Integer.BYTES + 1;
+
+    /**
+     * Kennzeichen für einen gzip-komprimierten Inhalt.
+     */
+    private static final byte KENNZEICHEN_KOMPRIMIERT = 1;
+
+    /**
+     * Eine zwischengespeicherte Log-Nachricht.
+     *
+     * @param anzahl Die Anzahl der Log-Ereignisse in der Nachricht.
+     * @param komprimiert Ob der Inhalt gzip-komprimiert ist.
+     * @param inhalt Der Inhalt der Nachricht.
+     */
+    record Satz(int anzahl, boolean komprimiert, byte[] inhalt) {
+    }
+
+    /**
+     * Die Datei des Spools.
+     */
+    private final Path datei;
+
+    /**
+     * Der geöffnete Dateikanal.
+     */
+    private final FileChannel kanal;
+
+    /**
+     * Die abgebildete Datei.
+     */
+    private final MappedByteBuffer puffer;
+
+    /**
+     * Für die Prüfsummen der Sätze.
+     */
+    private final CRC32C pruefsumme = new CRC32C();
+
+    /**
+     * Die Position des ältesten noch nicht quittierten Satzes.
+     */
+    private int lesePosition;
+
+    /**
+     * Die Position hinter dem letzten Satz.
+     */
+    private int schreibPosition;
+
+    /**
+     * Die Anzahl der Ereignisse in den offenen Sätzen.
+     */
+    private long offeneEreignisse;
+
+    /**
+     * Öffnet den Spool und stellt noch nicht gesendete Sätze wieder her.
+     *
+     * @param datei Die Datei; sie und ihr Verzeichnis werden bei Bedarf angelegt.
+     * @param groesse Die Größe der Datei in Bytes.
+     * @throws IOException Wenn die Datei nicht geöffnet oder abgebildet werden kann oder keine Spool-Datei ist.
+     */
+    LogSpool(Path datei, int groesse) throws IOException {
+        Path verzeichnis = datei.toAbsolutePath().getParent();
+        if (verzeichnis != null) {
+            Files.createDirectories(verzeichnis);
+        }
+        this.datei = datei;
+        this.kanal = FileChannel.open(datei, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean neu = kanal.size() == 0;
+        if (!neu && kanal.size() != groesse) {
+            kanal.close();
+            throw new IOException("Spool-Datei " + datei + " hat " + kanal.size() + " statt " + groesse + " Bytes");
+        }
+        this.puffer = kanal.map(FileChannel.MapMode.READ_WRITE, 0, groesse);
+        if (neu) {
+            puffer.putInt(0, MAGIC);
+            puffer.putInt(4, VERSION);
+            setzeLesePosition(DATEI_KOPF);
+            schreibPosition = DATEI_KOPF;
+            puffer.putInt(DATEI_KOPF, 0);
+        } else if (puffer.getInt(0) != MAGIC || puffer.getInt(4) != VERSION) {
+            kanal.close();
+            throw new IOException("Keine gültige Spool-Datei: " + datei);
+        } else {
+            lesePosition = puffer.getInt(POSITION_LESEPOSITION);
+            if (lesePosition < DATEI_KOPF || lesePosition > puffer.capacity()) {
+                setzeLesePosition(DATEI_KOPF);
+            }
+            int verschobenBis = puffer.getInt(POSITION_VERSCHOBEN_BIS);
+            if (verschobenBis != 0) {
+                setzeVerschiebungFort(verschobenBis);
+            }
+            schreibPosition = scanne();
+        }
+    }
+
+    /**
+     * Hängt eine Nachricht an.
+     *
+     * @param inhalt Der Inhalt der Nachricht.
+     * @param anzahl Die Anzahl der Log-Ereignisse in der Nachricht.
+     * @param komprimiert Ob der Inhalt gzip-komprimiert ist.
+     * @return {@code false}, wenn der Spool voll ist und die Nachricht nicht aufgenommen wurde.
+     */
+    boolean schreibe(byte[] inhalt, int anzahl, boolean komprimiert) {
+        int laenge = SATZ_FELDER + inhalt.length;
+        int benoetigt = SATZ_KOPF + laenge + Integer.BYTES;
+        if (schreibPosition + benoetigt > puffer.capacity()) {
+            verschiebeNachVorn();
+            if (schreibPosition + benoetigt > puffer.capacity()) {
+                return false;
+            }
+        }
+        int position = schreibPosition;
+        puffer.putInt(position + SATZ_KOPF, anzahl);
+        puffer.put(position + SATZ_KOPF + Integer.BYTES, komprimiert ? KENNZEICHEN_KOMPRIMIERT : 0);
+        puffer.put(position + SATZ_KOPF + SATZ_FELDER, inhalt);
+        puffer.putInt(position + SATZ_KOPF + laenge, 0);
+        pruefsumme.reset();
+        pruefsumme.update(puffer.slice(position + SATZ_KOPF, laenge));
+        puffer.putInt(position + 4, (int) pruefsumme.getValue());
+        puffer.putInt(position, laenge);
+        schreibPosition = position + SATZ_KOPF + laenge;
+        offeneEreignisse += anzahl;
+        return true;
+    }
+
+    /**
+     * Liest die älteste offene Nachricht, ohne sie zu quittieren.
+     *
+     * @return Die Nachricht oder {@code null}, wenn der Spool leer ist.
+     */
+    Satz naechster() {
+        if (istLeer()) {
+            return null;
+        }
+        int laenge = puffer.getInt(lesePosition);
+        byte[] inhalt = new byte[laenge - SATZ_FELDER];
+        puffer.get(lesePosition + SATZ_KOPF + SATZ_FELDER, inhalt);
+        return new Satz(puffer.getInt(lesePosition + SATZ_KOPF),
+                puffer.get(lesePosition + SATZ_KOPF + Integer.BYTES) == KENNZEICHEN_KOMPRIMIERT, inhalt);
+    }
+
+    /**
+     * Quittiert die mit {@link #naechster()} gelesene Nachricht als gesendet. Ist danach alles gesendet, beginnt der
+     * Spool wieder am Anfang der Datei.
+     */
+    void bestaetige() {
+        offeneEreignisse -= puffer.getInt(lesePosition + SATZ_KOPF);
+        int naechste = lesePosition + SATZ_KOPF + puffer.getInt(lesePosition);
+        if (naechste == schreibPosition) {
+            puffer.putInt(DATEI_KOPF, 0);
+            schreibPosition = DATEI_KOPF;
+            naechste = DATEI_KOPF;
+        }
+        setzeLesePosition(naechste);
+    }
+
+    /**
+     * Gibt an, ob alle Nachrichten gesendet sind.
+     *
+     * @return {@code true}, wenn keine offene Nachricht vorliegt.
+     */
+    boolean istLeer() {
+        return lesePosition == schreibPosition;
+    }
+
+    /**
+     * Gibt die Anzahl der Log-Ereignisse in den offenen Nachrichten zurück.
+     *
+     * @return Die Anzahl der Ereignisse.
+     */
+    long getOffeneEreignisse() {
+        return offeneEreignisse;
+    }
+
+    /**
+     * Gibt die Anzahl der von offenen Nachrichten belegten Bytes zurück.
+     *
+     * @return Die belegten Bytes.
+     */
+    int getBelegung() {
+        return schreibPosition - lesePosition;
+    }
+
+    /**
+     * Schreibt den Spool auf die Platte und schließt die Datei.
+     *
+     * @throws IOException Wenn die Datei nicht geschlossen werden kann.
+     */
+    @Override
+    public void close() throws IOException {
+        puffer.force();
+        kanal.close();
+    }
+
+    /**
+     * Liest alle gültigen Sätze ab der Leseposition.
+     *
+     * @return Die Position hinter dem letzten gültigen Satz.
+     */
+    private int scanne() {
+        int position = lesePosition;
+        while (position + SATZ_KOPF <= puffer.capacity()) {
+            int laenge = puffer.getInt(position);
+            if (laenge < SATZ_FELDER || laenge > puffer.capacity() - position - SATZ_KOPF - Integer.BYTES) {
+                break;
+            }
+            pruefsumme.reset();
+            pruefsumme.update(puffer.slice(position + SATZ_KOPF, laenge));
+            if ((int) pruefsumme.getValue() != puffer.getInt(position + 4)) {
+                break;
+            }
+            offeneEreignisse += puffer.getInt(position + SATZ_KOPF);
+            position += SATZ_KOPF + laenge;
+        }
+        if (position + Integer.BYTES <= puffer.capacity()) {
+            puffer.putInt(position, 0);
+        }
+        return position;
+    }
+
+    /**
+     * Verschiebt die offenen Sätze an den Anfang der Datei, um hinten Platz zu schaffen.
+     */
+    private void verschiebeNachVorn() {
+        if (lesePosition == DATEI_KOPF) {
+            return;
+        }
+        int laenge = schreibPosition - lesePosition;
+        kopiereNachVorn(0, laenge);
+        puffer.putInt(DATEI_KOPF + laenge, 0);
+        schreibPosition = DATEI_KOPF + laenge;
+        beendeVerschiebung();
+    }
+
+    /**
+     * Führt eine beim Öffnen vorgefundene, abgebrochene Verschiebung zu Ende. Da das Ende der offenen Sätze noch nicht
+     * bekannt ist, wird der ganze Rest der Datei kopiert; {@link #scanne()} findet danach das Ende.
+     *
+     * @param verschobenBis Das Ende des bereits nach vorn kopierten Teils laut Dateikopf.
+     */
+    private void setzeVerschiebungFort(int verschobenBis) {
+        int kopiert = verschobenBis - DATEI_KOPF;
+        if (lesePosition == DATEI_KOPF || kopiert < 0 || kopiert > puffer.capacity() - lesePosition) {
+            // Die Verschiebung war schon abgeschlossen, nur der Fortschritt wurde nicht mehr zurückgesetzt.
+            puffer.putInt(POSITION_VERSCHOBEN_BIS, 0);
+            return;
+        }
+        kopiereNachVorn(kopiert, puffer.capacity() - lesePosition);
+        beendeVerschiebung();
+    }
+
+    /**
+     * Kopiert die Bytes ab der Leseposition an den Anfang der Datei und hält nach jedem Stück den Fortschritt im
+     * Dateikopf fest. Ein Stück ist höchstens so groß wie die Lücke vor der Leseposition, sodass es nur bereits
+     * kopierte Bytes überschreibt.
+     *
+     * @param kopiert Die Anzahl der bereits kopierten Bytes.
+     * @param laenge Die Anzahl der insgesamt zu kopierenden Bytes.
+     */
+    private void kopiereNachVorn(int kopiert, int laenge) {
+        byte[] block = new byte[Math.min(lesePosition - DATEI_KOPF, 64 * 1024)];
+        while (kopiert < laenge) {
+            int stueck = Math.min(block.length, laenge - kopiert);
+            puffer.get(lesePosition + kopiert, block, 0, stueck);
+            puffer.put(DATEI_KOPF + kopiert, block, 0, stueck);
+            kopiert += stueck;
+            puffer.putInt(POSITION_VERSCHOBEN_BIS, DATEI_KOPF + kopiert);
+        }
+    }
+
+    /**
+     * Schließt eine Verschiebung ab: Erst zeigt die Leseposition auf den Anfang, dann wird der Fortschritt gelöscht.
+     */
+    private void beendeVerschiebung() {
+        setzeLesePosition(DATEI_KOPF);
+        puffer.putInt(POSITION_VERSCHOBEN_BIS, 0);
+    }
+
+    /**
+     * Setzt die Leseposition und hält sie im Dateikopf fest.
+     *
+     * @param position Die neue Leseposition.
+     */
+    private void setzeLesePosition(int position) {
+        lesePosition = position;
+        puffer.putInt(POSITION_LESEPOSITION, position);
+    }
+
+    /**
+     * Gibt eine String-Repräsentation des Spools zurück.
+     *
+     * @return Eine Zeichenkette mit Datei und Belegung.
+     */
+    @Override
+    public String toString() {
+        return "LogSpool{" + datei + ", " + getBelegung() + "/" + puffer.capacity() + " Bytes, " + offeneEreignisse + " Ereignisse}";
+    }
+}
@@ -0,0 +1,189 @@
+package kirschner.flaig.mozart.config;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+/**
+ * Nachrichtenkonverter, der zwischen JSON und Protobuf anhand des Content-Types wählt.
+ * <p>
+ * Empfangene Nachrichten mit dem Content-Type {@value #CONTENT_TYPE_PROTOBUF} und dem Parameter {@code proto} werden
+ * mit der passenden {@link Protobufabbildung} gelesen, alle anderen vom JSON-Konverter. Gesendet wird im konfigurierten
+ * {@link Nachrichtenformat}; Typen ohne Protobufabbildung immer als JSON. So können während einer Umstellung JSON- und
+ * Protobuf-Sender nebeneinander bestehen: Zuerst lesen alle Empfänger beide Formate, danach stellen die Sender um.
+ */
+public class NachrichtenformatKonverter implements MessageConverter {
+
+    /**
+     * Der Content-Type von Protobuf-Nachrichten.
+     */
+    public static final String CONTENT_TYPE_PROTOBUF = "application/x-protobuf";
+
+    /**
+     * Der Parameter des Content-Types, der den Namen der Protobuf-Nachricht enthält.
+     */
+    private static final String PARAMETER_PROTO = "proto=";
+
+    /**
+     * Das Format, in dem Nachrichten gesendet werden.
+     */
+    public enum Nachrichtenformat {
+        /**
+         * JSON über den JSON-Konverter.
+         */
+        JSON,
+        /**
+         * Protobuf, sofern für den Typ eine {@link Protobufabbildung} existiert.
+         */
+        PROTOBUF;
+
+        /**
+         * Bestimmt das Format aus seinem Namen ohne Beachtung der Groß-/Kleinschreibung.
+         *
+         * @param name Der Name, z.B. {@code json} oder {@code protobuf}.
+         * @return Das Format.
+         * @throws IllegalArgumentException Wenn das Format unbekannt ist.
+         */
+        public static Nachrichtenformat von(String name) {
+            for (Nachrichtenformat format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unbekanntes Nachrichtenformat: " + name);
+        }
+    }
+
+    /**
+     * Die Abbildung eines Java-Typs auf eine Protobuf-Nachricht.
+     *
+     * @param klasse Der Java-Typ.
+     * @param typ Der Name der Protobuf-Nachricht, wie er im Content-Type übertragen wird.
+     * @param parser Der Parser der Protobuf-Nachricht.
+     * @param nachProto Wandelt ein Objekt in die Protobuf-Nachricht um.
+     * @param vonProto Wandelt die Protobuf-Nachricht in ein Objekt um.
+     * @param <T> Der Java-Typ.
+     * @param <P> Der Typ der Protobuf-Nachricht.
+     */
+    public record Protobufabbildung<T, P extends MessageLite>(Class<T> klasse, String typ, Parser<P> parser,
+                                                            Function<T, P> nachProto, Function<P, T> vonProto) {
+
+        /**
+         * Serialisiert ein Objekt.
+         *
+         * @param objekt Das Objekt.
+         * @return Die Bytes der Protobuf-Nachricht.
+         */
+        byte[] schreibe(Object objekt) {
+            return nachProto.apply(klasse.cast(objekt)).toByteArray();
+        }
+
+        /**
+         * Liest ein Objekt.
+         *
+         * @param inhalt Die Bytes der Protobuf-Nachricht.
+         * @return Das Objekt.
+         * @throws InvalidProtocolBufferException Wenn die Bytes keine gültige Nachricht sind.
+         */
+        T lies(byte[] inhalt) throws InvalidProtocolBufferException {
+            return vonProto.apply(parser.parseFrom(inhalt));
+        }
+    }
+
+    /**
+     * Der Konverter für JSON.
+     */
+    private final MessageConverter json;
+
+    /**
+     * Das Format, in dem gesendet wird.
+     */
+    private final Nachrichtenformat sendeformat;
+
+    /**
+     * Die Abbildungen nach Java-Typ.
+     */
+    private final Map<Class<?>, Protobufabbildung<?, ?>> nachKlasse = new HashMap<>();
+
+    /**
+     * Die Abbildungen nach Name der Protobuf-Nachricht.
+     */
+    private final Map<String, Protobufabbildung<?, ?>> nachTyp = new HashMap<>();
+
+    /**
+     * Die vollständigen Content-Types der Abbildungen, nach Java-Typ.
+     */
+    private final Map<Class<?>, String> contentTypes = new HashMap<>();
+
+    /**
+     * Erstellt den Konverter.
+     *
+     * @param json Der Konverter für JSON.
+     * @param sendeformat Das Format, in dem gesendet wird.
+     * @param abbildungen Die Protobufabbildungen.
+     */
+    public NachrichtenformatKonverter(MessageConverter json, Nachrichtenformat sendeformat, List<Protobufabbildung<?, ?>> abbildungen) {
+        this.json = json;
+        this.sendeformat = sendeformat;
+        for (Protobufabbildung<?, ?> abbildung : abbildungen) {
+            nachKlasse.put(abbildung.klasse(), abbildung);
+            nachTyp.put(abbildung.typ(), abbildung);
+            contentTypes.put(abbildung.klasse(), CONTENT_TYPE_PROTOBUF + "; " + PARAMETER_PROTO + abbildung.typ());
+        }
+    }
+
+    /**
+     * Schreibt ein Objekt im konfigurierten Format.
+     *
+     * @param objekt Das Objekt.
+     * @param eigenschaften Die Eigenschaften der Nachricht.
+     * @return Die Nachricht.
+     */
+    @Override
+    public Message toMessage(Object objekt, MessageProperties eigenschaften) {
+        Protobufabbildung<?, ?> abbildung = sendeformat == Nachrichtenformat.PROTOBUF ? nachKlasse.get(objekt.getClass()) : null;
+        if (abbildung == null) {
+            return json.toMessage(objekt, eigenschaften);
+        }
+        byte[] inhalt = abbildung.schreibe(objekt);
+        eigenschaften.setContentType(contentTypes.get(abbildung.klasse()));
+        eigenschaften.setContentLength(inhalt.length);
+        return new Message(inhalt, eigenschaften);
+    }
+
+    /**
+     * Liest eine Nachricht im Format ihres Content-Types.
+     *
+     * @param nachricht Die Nachricht.
+     * @return Das gelesene Objekt.
+     * @throws MessageConversionException Wenn die Protobuf-Nachricht unbekannt oder ungültig ist.
+     */
+    @Override
+    public Object fromMessage(Message nachricht) {
+        String contentType = nachricht.getMessageProperties().getContentType();
+        if (contentType == null || !contentType.startsWith(CONTENT_TYPE_PROTOBUF)) {
+            return json.fromMessage(nachricht);
+        }
+        int parameter = contentType.indexOf(PARAMETER_PROTO);
+        String typ = parameter < 0 ? null : contentType.substring(parameter + PARAMETER_PROTO.length()).strip();
+        Protobufabbildung<?, ?> abbildung = typ == null ? null : nachTyp.get(typ);
+        if (abbildung == null) {
+            throw new MessageConversionException("Unbekannte Protobuf-Nachricht: " + contentType);
+        }
+        try {
+            return abbildung.lies(nachricht.getBody());
+        } catch (InvalidProtocolBufferException e) {
+            throw new MessageConversionException("Ungültige Protobuf-Nachricht " + typ, e);
+        }
+    }
+}
@@ -1,15 +1,29 @@
 package kirschner.flaig.mozart.config;
 
+import java.util.List;
+
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import kirschner.flaig.mozart.config.NachrichtenformatKonverter.Nachrichtenformat;
+import kirschner.flaig.mozart.config.NachrichtenformatKonverter.Protobufabbildung;
+import kirschner.flaig.mozart.entity.BeethovenStatusUpdate;
+import kirschner.flaig.mozart.entity.BestellungDataSchuhmacher;
+import kirschner.flaig.mozart.grpc.CrmAktualisierung;
+import kirschner.flaig.mozart.grpc.StatusAktualisierung;
 
 /**
  * Konfigurationsklasse für RabbitMQ-Beans.
@@ -48,19 +62,38 @@ public class RabbitMQConfig {
      * Der Routing Key, um E-Commerce-Statusaktualisierungen an die entsprechende Warteschlange zu leiten.
      */
     public static final String ECOMMERCE_STATUS_ROUTING_KEY = "ecommerce.status.routingkey";
+    /**
+     * Der Bean-Name der Listener-Container-Factory, die Statusaktualisierungen in Batches zustellt.
+     */
+    public static final String STATUS_BATCH_LISTENER_FABRIK = "statusBatchListenerFabrik";
 
 
     /**
      * Erstellt einen Nachrichtenkonverter, der Nachrichten in das JSON-Format serialisiert und deserialisiert.
-     * Verwendet {@link Jackson2JsonMessageConverter}.
+     * Verwendet {@link Jackson2JsonMessageConverter}. Er ist der Standardkonverter für das Template und die Listener.
      *
      * @return Eine Instanz von {@link MessageConverter}.
      */
     @Bean
+    @Primary
     public MessageConverter jsonNachrichtenKonverter() {
         return new Jackson2JsonMessageConverter();
     }
 
+    /**
+     * Erstellt den Nachrichtenkonverter für Statusaktualisierungen aus Beethoven, den die Listener der
+     * E-Commerce-Status-Warteschlange verwenden. JSON liest der {@link StatusNachrichtenKonverter},
+     * Protobuf ({@link StatusAktualisierung}) der {@link NachrichtenformatKonverter}, je nach Content-Type.
+     *
+     * @return Eine Instanz von {@link NachrichtenformatKonverter}.
+     */
+    @Bean
+    public NachrichtenformatKonverter statusNachrichtenKonverter() {
+        return new NachrichtenformatKonverter(new StatusNachrichtenKonverter(), Nachrichtenformat.JSON, List.of(
+                new Protobufabbildung<>(BeethovenStatusUpdate.class, StatusAktualisierung.getDescriptor().getFullName(),
+                        StatusAktualisierung.parser(), BeethovenStatusUpdate::alsProto, BeethovenStatusUpdate::vonProto)));
+    }
+
     // === CRM Konfiguration: Exchange, Queue und Binding ===
 
     /**
@@ -136,18 +169,60 @@ public class RabbitMQConfig {
     }
 
 
+    /**
+     * Erstellt die Listener-Container-Factory für Statusaktualisierungen im Batch-Modus.
+     * Der Consumer sammelt bis zu {@code batchGroesse} Nachrichten und stellt sie dem Listener als Liste zu;
+     * kommt innerhalb des Empfangs-Timeouts keine weitere Nachricht, wird der unvollständige Batch zugestellt.
+     * Nach erfolgreicher Verarbeitung bestätigt der Container alle Nachrichten des Batches mit einem Ack.
+     * Die übrigen Einstellungen stammen wie beim Standard-Container aus {@code spring.rabbitmq.listener.simple.*}; nur die
+     * Anzahl der Consumer ist fest auf einen gesetzt. Die Parallelität liefern die Spuren des
+     * {@link kirschner.flaig.mozart.service.Statusverteiler}s, und nur ein einzelner Consumer übergibt die Batches in
+     * Empfangsreihenfolge, sodass Aktualisierungen derselben Bestellung nicht überholt werden.
+     *
+     * @param konfigurierer Überträgt die Spring-Boot-Einstellungen und den Nachrichtenkonverter.
+     * @param verbindungsFabrik Die RabbitMQ-Verbindungsfabrik.
+     * @param batchGroesse Die maximale Anzahl an Nachrichten pro Batch.
+     * @param empfangsTimeoutMillis Wie lange der Consumer auf die nächste Nachricht eines Batches wartet.
+     * @return Eine konfigurierte Instanz von {@link SimpleRabbitListenerContainerFactory}.
+     */
+    @Bean(name = STATUS_BATCH_LISTENER_FABRIK)
+    public SimpleRabbitListenerContainerFactory statusBatchListenerFabrik(SimpleRabbitListenerContainerFactoryConfigurer konfigurierer,
+                                                                          ConnectionFactory verbindungsFabrik,
+                                                                          @Value("${mozart.statusaktualisierungen.batch-groesse:100}") int batchGroesse,
+                                                                          @Value("${mozart.statusaktualisierungen.empfangs-timeout-ms:200}") long empfangsTimeoutMillis) {
+        SimpleRabbitListenerContainerFactory fabrik = new SimpleRabbitListenerContainerFactory();
+        konfigurierer.configure(fabrik, verbindungsFabrik);
+        fabrik.setConcurrentConsumers(1);
+        fabrik.setMaxConcurrentConsumers(1);
+        fabrik.setBatchListener(true);
+        fabrik.setConsumerBatchEnabled(true);
+        fabrik.setBatchSize(batchGroesse);
+        fabrik.setReceiveTimeout(empfangsTimeoutMillis);
+        fabrik.setPrefetchCount(2 * batchGroesse);
+        fabrik.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        return fabrik;
+    }
+
     /**
      * Erstellt und konfiguriert ein {@link RabbitTemplate}.
      * Das Template wird mit der bereitgestellten {@link ConnectionFactory} und dem
-     * {@link #jsonNachrichtenKonverter()} konfiguriert.
+     * {@link #jsonNachrichtenKonverter()} konfiguriert. Mit {@code mozart.amqp.format=protobuf} werden
+     * CRM-Aktualisierungen stattdessen als {@link CrmAktualisierung} gesendet. Nachrichten werden mit
+     * {@code mandatory} gesendet, damit nicht zustellbare Nachrichten vom Broker zurückgegeben werden;
+     * Publisher Confirms und Returns wertet der {@link kirschner.flaig.mozart.service.Nachrichtenversand} aus.
      *
      * @param verbindungsFabrik Die RabbitMQ-Verbindungsfabrik.
+     * @param format Das Format für gesendete Nachrichten, {@code json} oder {@code protobuf}.
      * @return Eine konfigurierte Instanz von {@link RabbitTemplate}.
      */
     @Bean
-    public RabbitTemplate rabbitVorlage(final ConnectionFactory verbindungsFabrik) {
+    public RabbitTemplate rabbitVorlage(final ConnectionFactory verbindungsFabrik,
+                                        @Value("${mozart.amqp.format:json}") String format) {
         final RabbitTemplate vorlage = new RabbitTemplate(verbindungsFabrik);
-        vorlage.setMessageConverter(jsonNachrichtenKonverter());
+        vorlage.setMessageConverter(new NachrichtenformatKonverter(jsonNachrichtenKonverter(), Nachrichtenformat.von(format), List.of(
+                new Protobufabbildung<>(BestellungDataSchuhmacher.class, CrmAktualisierung.getDescriptor().getFullName(),
+                        CrmAktualisierung.parser(), BestellungDataSchuhmacher::alsProto, BestellungDataSchuhmacher::vonProto))));
+        vorlage.setMandatory(true);
         return vorlage;
     }
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package kirschner.flaig.mozart.config;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import kirschner.flaig.mozart.config.Spanspeicher.Spanstatistik;
+import kirschner.flaig.mozart.config.Spanspeicher.Traceansicht;
+
+/**
+ * Actuator-Endpunkt {@code /actuator/spans} für den {@link Spanspeicher}.
+ * Ohne Selektor liefert er die Statistik je Schrittname, mit einer Trace-ID ({@code /actuator/spans/{traceId}})
+ * die Spans dieses Traces mit seinem kritischen Pfad.
+ */
+@Component
+@Endpoint(id = "spans")
+public class SpanEndpunkt {
+
+    /**
+     * Der ausgewertete Spanspeicher.
+     */
+    private final Spanspeicher spanspeicher;
+
+    /**
+     * Konstruktor für den {@code SpanEndpunkt}.
+     *
+     * @param spanspeicher Der {@link Spanspeicher}.
+     */
+    public SpanEndpunkt(Spanspeicher spanspeicher) {
+        this.spanspeicher = spanspeicher;
+    }
+
+    /**
+     * Fasst die gehaltenen Spans je Schrittname zusammen.
+     *
+     * @return Die Statistiken.
+     */
+    @ReadOperation
+    public List<Spanstatistik> uebersicht() {
+        return spanspeicher.uebersicht();
+    }
+
+    /**
+     * Liefert die Spans eines Traces mit seinem kritischen Pfad.
+     *
+     * @param traceId Die Trace-ID.
+     * @return Die Ansicht des Traces.
+     */
+    @ReadOperation
+    public Traceansicht trace(@Selector String traceId) {
+        return spanspeicher.trace(traceId);
+    }
+}
@@ -0,0 +1,205 @@
+package kirschner.flaig.mozart.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lokaler Speicher der zuletzt beendeten {@link Span}s für die Analyse kritischer Pfade unter Last.
+ * <p>
+ * Die Spans liegen in einem Ringpuffer fester Größe, der die ältesten überschreibt; das Ablegen ist eine atomare
+ * Addition und ein Schreibzugriff, sodass der Speicher auch unter Last mitlaufen kann. Ausgewertet wird erst bei einer
+ * Abfrage über den {@link SpanEndpunkt}: je Trace der kritische Pfad, also die Kette der jeweils zuletzt endenden
+ * Kindschritte, und je Schrittname die Verteilung der Dauern und wie oft der Schritt auf dem kritischen Pfad lag.
+ * Jeder Dienst sieht nur seine eigenen Spans; über die Trace-ID lassen sich die Spans mehrerer Dienste zusammenführen.
+ */
+@Component
+public class Spanspeicher {
+
+    /**
+     * Die Statistik der Spans eines Namens.
+     *
+     * @param name Der Name des Schritts.
+     * @param anzahl Die Anzahl der Spans.
+     * @param medianMikros Der Median der Dauer in Mikrosekunden.
+     * @param p99Mikros Das 99. Perzentil der Dauer in Mikrosekunden.
+     * @param maximumMikros Die größte Dauer in Mikrosekunden.
+     * @param aufKritischemPfad Wie oft der Schritt auf dem kritischen Pfad seines Traces lag.
+     */
+    public record Spanstatistik(String name, int anzahl, long medianMikros, long p99Mikros, long maximumMikros, int aufKritischemPfad) {
+    }
+
+    /**
+     * Die Spans eines Traces mit seinem kritischen Pfad.
+     *
+     * @param traceId Die Trace-ID.
+     * @param spans Die Spans nach Beginn geordnet.
+     * @param kritischerPfad Die Spans des kritischen Pfads von der Wurzel an.
+     */
+    public record Traceansicht(String traceId, List<Span> spans, List<Span> kritischerPfad) {
+    }
+
+    /**
+     * Die Plätze des Ringpuffers, indiziert mit {@code position & maske}.
+     */
+    private final AtomicReferenceArray<Span> plaetze;
+
+    /**
+     * Die Maske für den Index, {@code kapazitaet - 1}.
+     */
+    private final int maske;
+
+    /**
+     * Die nächste Schreibposition.
+     */
+    private final AtomicLong position = new AtomicLong();
+
+    /**
+     * Konstruktor für den {@code Spanspeicher}.
+     *
+     * @param kapazitaet Die Mindestanzahl gehaltener Spans; wird auf die nächste Zweierpotenz aufgerundet.
+     * @throws IllegalArgumentException Wenn die Kapazität nicht positiv ist.
+     */
+    public Spanspeicher(@Value("${mozart.tracing.spanspeicher-kapazitaet:16384}") int kapazitaet) {
+        if (kapazitaet <= 0) {
+            throw new IllegalArgumentException("Die Kapazität des Spanspeichers muss positiv sein: " + kapazitaet);
+        }
+        int zweierpotenz = Integer.highestOneBit(kapazitaet) == kapazitaet ? kapazitaet : Integer.highestOneBit(kapazitaet) << 1;
+        this.plaetze = new AtomicReferenceArray<>(zweierpotenz);
+        this.maske = zweierpotenz - 1;
+    }
+
+    /**
+     * Legt einen beendeten Span ab und überschreibt dabei gegebenenfalls den ältesten.
+     *
+     * @param span Der Span.
+     */
+    void speichere(Span span) {
+        plaetze.set((int) position.getAndIncrement() & maske, span);
+    }
+
+    /**
+     * Gibt alle gehaltenen Spans zurück.
+     *
+     * @return Die Spans nach Beginn geordnet.
+     */
+    public List<Span> alle() {
+        List<Span> spans = new ArrayList<>(plaetze.length());
+        for (int i = 0; i < plaetze.length(); i++) {
+            Span span = plaetze.get(i);
+            if (span != null) {
+                spans.add(span);
+            }
+        }
+        spans.sort(Comparator.comparingLong(Span::getBeginnEpochMikros));
+        return spans;
+    }
+
+    /**
+     * Gibt die Spans eines Traces mit seinem kritischen Pfad zurück.
+     *
+     * @param traceId Die Trace-ID.
+     * @return Die Ansicht; ohne gehaltene Spans sind beide Listen leer.
+     */
+    public Traceansicht trace(String traceId) {
+        List<Span> spans = new ArrayList<>();
+        for (Span span : alle()) {
+            if (span.getTraceId().equals(traceId)) {
+                spans.add(span);
+            }
+        }
+        return new Traceansicht(traceId, spans, kritischerPfad(spans));
+    }
+
+    /**
+     * Fasst alle gehaltenen Spans je Schrittname zusammen.
+     *
+     * @return Die Statistiken nach Anzahl auf dem kritischen Pfad und Median absteigend geordnet.
+     */
+    public List<Spanstatistik> uebersicht() {
+        Map<String, List<Span>> jeTrace = new HashMap<>();
+        Map<String, List<Span>> jeName = new HashMap<>();
+        for (Span span : alle()) {
+            jeTrace.computeIfAbsent(span.getTraceId(), schluessel -> new ArrayList<>()).add(span);
+            jeName.computeIfAbsent(span.getName(), schluessel -> new ArrayList<>()).add(span);
+        }
+        Map<String, Integer> kritisch = new HashMap<>();
+        for (List<Span> spans : jeTrace.values()) {
+            for (Span span : kritischerPfad(spans)) {
+                kritisch.merge(span.getName(), 1, Integer::sum);
+            }
+        }
+
+        List<Spanstatistik> statistiken = new ArrayList<>(jeName.size());
+        jeName.forEach((name, spans) -> {
+            long[] dauern = new long[spans.size()];
+            for (int i = 0; i < dauern.length; i++) {
+                dauern[i] = spans.get(i).getDauerMikros();
+            }
+            Arrays.sort(dauern);
+            statistiken.add(new Spanstatistik(name, dauern.length, perzentil(dauern, 0.5), perzentil(dauern, 0.99),
+                    dauern[dauern.length - 1], kritisch.getOrDefault(name, 0)));
+        });
+        statistiken.sort(Comparator.comparingInt(Spanstatistik::aufKritischemPfad)
+                .thenComparingLong(Spanstatistik::medianMikros).reversed());
+        return statistiken;
+    }
+
+    /**
+     * Bestimmt den kritischen Pfad eines Traces: Beginnend mit der längsten Wurzel folgt er jeweils dem Kindschritt,
+     * der zuletzt endet, denn auf ihn hat der Elternschritt gewartet. Kindschritte, die erst nach dem Elternschritt
+     * enden, etwa der Versand aus der CRM-Outbox, laufen entkoppelt und zählen nicht.
+     *
+     * @param spans Die Spans eines Traces.
+     * @return Die Spans des kritischen Pfads von der Wurzel an.
+     */
+    static List<Span> kritischerPfad(List<Span> spans) {
+        Map<String, Span> jeId = new HashMap<>();
+        for (Span span : spans) {
+            jeId.put(span.getSpanId(), span);
+        }
+        Map<String, List<Span>> kinder = new HashMap<>();
+        Span wurzel = null;
+        for (Span span : spans) {
+            if (span.getElternSpanId() != null && jeId.containsKey(span.getElternSpanId())) {
+                kinder.computeIfAbsent(span.getElternSpanId(), schluessel -> new ArrayList<>()).add(span);
+            } else if (wurzel == null || span.getDauerMikros() > wurzel.getDauerMikros()) {
+                wurzel = span;
+            }
+        }
+
+        List<Span> pfad = new ArrayList<>();
+        for (Span schritt = wurzel; schritt != null; ) {
+            pfad.add(schritt);
+            Span zuletzt = null;
+            long ende = schritt.endeEpochMikros();
+            for (Span kind : kinder.getOrDefault(schritt.getSpanId(), List.of())) {
+                if (kind.endeEpochMikros() <= ende && (zuletzt == null || kind.endeEpochMikros() > zuletzt.endeEpochMikros())) {
+                    zuletzt = kind;
+                }
+            }
+            schritt = zuletzt;
+        }
+        return pfad;
+    }
+
+    /**
+     * Gibt ein Perzentil einer sortierten Reihe zurück.
+     *
+     * @param sortiert Die aufsteigend sortierten Werte, nicht leer.
+     * @param anteil Der Anteil zwischen 0 und 1.
+     * @return Der Wert am Rang {@code ceil(anteil * n)}.
+     */
+    private static long perzentil(long[] sortiert, double anteil) {
+        int rang = (int) Math.ceil(anteil * sortiert.length);
+        return sortiert[Math.max(0, rang - 1)];
+    }
+}
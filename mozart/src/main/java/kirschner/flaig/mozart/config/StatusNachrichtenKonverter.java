@@ -0,0 +1,465 @@
+package kirschner.flaig.mozart.config;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import kirschner.flaig.mozart.entity.BeethovenStatusUpdate;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+
+/**
+ * Nachrichtenkonverter für Statusaktualisierungen aus Beethoven.
+ * <p>
+ * Das Format entspricht dem JSON des {@code Jackson2JsonMessageConverter} ({@code {"bestellId":"…","status":"…"}}),
+ * wird aber direkt aus dem Byte-Array der Nachricht gelesen: ohne Jackson-Baum, Typ-ID-Header oder
+ * Zwischen-Strings. Der Status wird ohne Groß-/Kleinschreibung über eine vorberechnete Tabelle der
+ * {@link DeliveryStatus}-Namen aufgelöst und als {@link BeethovenStatusUpdate#getLieferstatus()} gesetzt; nur die
+ * Bestell-ID wird als String angelegt. Unbekannte Felder werden übersprungen.
+ */
+public class StatusNachrichtenKonverter implements MessageConverter {
+
+    /**
+     * Der Feldname der Bestell-ID in UTF-8.
+     */
+    private static final byte[] FELD_BESTELL_ID = "bestellId".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Der Feldname des Status in UTF-8.
+     */
+    private static final byte[] FELD_STATUS = "status".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Alle Lieferstatus, in derselben Reihenfolge wie {@link #NAMEN}.
+     */
+    private static final DeliveryStatus[] LIEFERSTATUS = DeliveryStatus.values();
+
+    /**
+     * Die Namen aller Lieferstatus als ASCII-Großbuchstaben.
+     */
+    private static final byte[][] NAMEN = new byte[LIEFERSTATUS.length][];
+
+    static {
+        for (int i = 0; i < LIEFERSTATUS.length; i++) {
+            NAMEN[i] = LIEFERSTATUS[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Schreibt eine {@link BeethovenStatusUpdate} im selben JSON-Format, das gelesen wird.
+     *
+     * @param objekt Die {@link BeethovenStatusUpdate}.
+     * @param eigenschaften Die Eigenschaften der Nachricht.
+     * @return Die Nachricht.
+     * @throws MessageConversionException Wenn das Objekt keine {@link BeethovenStatusUpdate} ist.
+     */
+    @Override
+    public Message toMessage(Object objekt, MessageProperties eigenschaften) {
+        if (!(objekt instanceof BeethovenStatusUpdate statusAktualisierung)) {
+            throw new MessageConversionException("Nicht unterstützter Nachrichtentyp: " + objekt.getClass().getName());
+        }
+        StringBuilder json = new StringBuilder(48).append('{');
+        schreibeFeld(json, "bestellId", statusAktualisierung.getBestellId()).append(',');
+        schreibeFeld(json, "status", statusAktualisierung.getStatus()).append('}');
+        byte[] inhalt = json.toString().getBytes(StandardCharsets.UTF_8);
+        eigenschaften.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        eigenschaften.setContentEncoding(StandardCharsets.UTF_8.name());
+        eigenschaften.setContentLength(inhalt.length);
+        return new Message(inhalt, eigenschaften);
+    }
+
+    /**
+     * Liest eine {@link BeethovenStatusUpdate} aus dem Inhalt der Nachricht.
+     *
+     * @param nachricht Die Nachricht.
+     * @return Die {@link BeethovenStatusUpdate}; ist der Status unbekannt, bleibt ihr Lieferstatus {@code null}.
+     * @throws MessageConversionException Wenn der Inhalt kein gültiges JSON-Objekt ist.
+     */
+    @Override
+    public Object fromMessage(Message nachricht) {
+        return new Leser(nachricht.getBody()).lies();
+    }
+
+    /**
+     * Löst einen Status ohne Groß-/Kleinschreibung zu einem Lieferstatus auf.
+     *
+     * @param inhalt Die Bytes, die den Status enthalten.
+     * @param von Der Beginn des Status (einschließlich).
+     * @param bis Das Ende des Status (ausschließlich).
+     * @return Der Lieferstatus oder {@code null}, wenn der Status keinem Lieferstatus entspricht.
+     */
+    static DeliveryStatus lieferstatus(byte[] inhalt, int von, int bis) {
+        int laenge = bis - von;
+        naechsterName:
+        for (int i = 0; i < NAMEN.length; i++) {
+            byte[] name = NAMEN[i];
+            if (name.length != laenge) {
+                continue;
+            }
+            for (int j = 0; j < laenge; j++) {
+                int zeichen = inhalt[von + j];
+                if (zeichen >= 'a' && zeichen <= 'z') {
+                    zeichen -= 'a' - 'A';
+                }
+                if (zeichen != name[j]) {
+                    continue naechsterName;
+                }
+            }
+            return LIEFERSTATUS[i];
+        }
+        return null;
+    }
+
+    /**
+     * Hängt ein JSON-Feld mit String-Wert an.
+     *
+     * @param json Der bisherige JSON-Text.
+     * @param name Der Feldname.
+     * @param wert Der Wert oder {@code null}.
+     * @return Der JSON-Text.
+     */
+    private static StringBuilder schreibeFeld(StringBuilder json, String name, String wert) {
+        json.append('"').append(name).append("\":");
+        if (wert == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < wert.length(); i++) {
+            char zeichen = wert.charAt(i);
+            switch (zeichen) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                default -> {
+                    if (zeichen < 0x20) {
+                        json.append(String.format("\\u%04x", (int) zeichen));
+                    } else {
+                        json.append(zeichen);
+                    }
+                }
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * Liest ein JSON-Objekt mit Statusaktualisierung aus einem Byte-Array.
+     */
+    private static final class Leser {
+
+        /**
+         * Der Inhalt der Nachricht.
+         */
+        private final byte[] inhalt;
+
+        /**
+         * Die aktuelle Leseposition.
+         */
+        private int position;
+
+        /**
+         * Ende des zuletzt mit {@link #liesStringBereich()} gelesenen Strings (ausschließlich).
+         */
+        private int stringEnde;
+
+        /**
+         * Gibt an, ob der zuletzt gelesene String Escape-Sequenzen enthält.
+         */
+        private boolean stringMitEscapes;
+
+        /**
+         * Erstellt einen Leser für den Inhalt einer Nachricht.
+         *
+         * @param inhalt Der Inhalt.
+         */
+        Leser(byte[] inhalt) {
+            this.inhalt = inhalt;
+        }
+
+        /**
+         * Liest das Objekt.
+         *
+         * @return Die Statusaktualisierung.
+         */
+        BeethovenStatusUpdate lies() {
+            BeethovenStatusUpdate statusAktualisierung = new BeethovenStatusUpdate();
+            erwarte('{');
+            if (naechstesZeichen() == '}') {
+                position++;
+                return statusAktualisierung;
+            }
+            while (true) {
+                erwarte('"');
+                int schluesselBeginn = position;
+                liesStringBereich();
+                int schluesselEnde = stringEnde;
+                erwarte(':');
+
+                if (gleich(schluesselBeginn, schluesselEnde, FELD_BESTELL_ID)) {
+                    statusAktualisierung.setBestellId(liesStringOderNull());
+                } else if (gleich(schluesselBeginn, schluesselEnde, FELD_STATUS)) {
+                    liesStatus(statusAktualisierung);
+                } else {
+                    ueberspringeWert();
+                }
+
+                byte zeichen = naechstesZeichen();
+                position++;
+                if (zeichen == '}') {
+                    return statusAktualisierung;
+                }
+                if (zeichen != ',') {
+                    throw fehler("',' oder '}' erwartet");
+                }
+            }
+        }
+
+        /**
+         * Liest den Status und löst ihn zum Lieferstatus auf. Der Status-String wird nur für unbekannte Werte
+         * dekodiert; für bekannte wird der Name des Lieferstatus übernommen.
+         *
+         * @param statusAktualisierung Die Statusaktualisierung, in die gelesen wird.
+         */
+        private void liesStatus(BeethovenStatusUpdate statusAktualisierung) {
+            if (naechstesZeichen() != '"') {
+                statusAktualisierung.setStatus(liesStringOderNull());
+                return;
+            }
+            position++;
+            int beginn = position;
+            liesStringBereich();
+            DeliveryStatus lieferstatus = stringMitEscapes ? null : StatusNachrichtenKonverter.lieferstatus(inhalt, beginn, stringEnde);
+            if (lieferstatus != null) {
+                statusAktualisierung.setLieferstatus(lieferstatus);
+                statusAktualisierung.setStatus(lieferstatus.name());
+            } else {
+                String status = dekodiere(beginn, stringEnde);
+                statusAktualisierung.setStatus(status);
+                if (stringMitEscapes) {
+                    byte[] dekodiert = status.getBytes(StandardCharsets.UTF_8);
+                    statusAktualisierung.setLieferstatus(StatusNachrichtenKonverter.lieferstatus(dekodiert, 0, dekodiert.length));
+                }
+            }
+        }
+
+        /**
+         * Liest einen String-Wert oder {@code null}.
+         *
+         * @return Der String oder {@code null}.
+         */
+        private String liesStringOderNull() {
+            if (naechstesZeichen() == 'n') {
+                erwarteLiteral("null");
+                return null;
+            }
+            erwarte('"');
+            int beginn = position;
+            liesStringBereich();
+            return dekodiere(beginn, stringEnde);
+        }
+
+        /**
+         * Liest bis zum schließenden Anführungszeichen des aktuellen Strings; die Position steht danach dahinter.
+         * Setzt {@link #stringEnde} und {@link #stringMitEscapes}.
+         */
+        private void liesStringBereich() {
+            stringMitEscapes = false;
+            while (position < inhalt.length) {
+                byte zeichen = inhalt[position];
+                if (zeichen == '"') {
+                    stringEnde = position++;
+                    return;
+                }
+                if (zeichen == '\\') {
+                    stringMitEscapes = true;
+                    position++;
+                }
+                position++;
+            }
+            throw fehler("Unvollständiger String");
+        }
+
+        /**
+         * Dekodiert einen gelesenen String-Bereich einschließlich Escape-Sequenzen.
+         *
+         * @param beginn Der Beginn (einschließlich).
+         * @param ende Das Ende (ausschließlich).
+         * @return Der String.
+         */
+        private String dekodiere(int beginn, int ende) {
+            if (!stringMitEscapes) {
+                return new String(inhalt, beginn, ende - beginn, StandardCharsets.UTF_8);
+            }
+            String roh = new String(inhalt, beginn, ende - beginn, StandardCharsets.UTF_8);
+            StringBuilder ergebnis = new StringBuilder(roh.length());
+            for (int i = 0; i < roh.length(); i++) {
+                char zeichen = roh.charAt(i);
+                if (zeichen != '\\') {
+                    ergebnis.append(zeichen);
+                    continue;
+                }
+                char escape = roh.charAt(++i);
+                switch (escape) {
+                    case 'b' -> ergebnis.append('\b');
+                    case 'f' -> ergebnis.append('\f');
+                    case 'n' -> ergebnis.append('\n');
+                    case 'r' -> ergebnis.append('\r');
+                    case 't' -> ergebnis.append('\t');
+                    case 'u' -> {
+                        if (i + 4 >= roh.length()) {
+                            throw fehler("Unvollständige Unicode-Escape-Sequenz");
+                        }
+                        ergebnis.append(liesCodeEinheit(roh, i + 1));
+                        i += 4;
+                    }
+                    default -> ergebnis.append(escape);
+                }
+            }
+            return ergebnis.toString();
+        }
+
+        /**
+         * Überspringt einen beliebigen JSON-Wert.
+         */
+        private void ueberspringeWert() {
+            byte zeichen = naechstesZeichen();
+            switch (zeichen) {
+                case '"' -> {
+                    position++;
+                    liesStringBereich();
+                }
+                case '{', '[' -> {
+                    int tiefe = 0;
+                    do {
+                        zeichen = inhalt[position++];
+                        if (zeichen == '"') {
+                            liesStringBereich();
+                        } else if (zeichen == '{' || zeichen == '[') {
+                            tiefe++;
+                        } else if (zeichen == '}' || zeichen == ']') {
+                            tiefe--;
+                        }
+                    } while (tiefe > 0 && position < inhalt.length);
+                    if (tiefe > 0) {
+                        throw fehler("Unvollständiges Objekt oder Array");
+                    }
+                }
+                default -> {
+                    while (position < inhalt.length && inhalt[position] != ',' && inhalt[position] != '}'
+                            && !istLeerzeichen(inhalt[position])) {
+                        position++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Überspringt Leerzeichen und gibt das nächste Zeichen zurück, ohne es zu verbrauchen.
+         *
+         * @return Das nächste Zeichen.
+         */
+        private byte naechstesZeichen() {
+            while (position < inhalt.length && istLeerzeichen(inhalt[position])) {
+                position++;
+            }
+            if (position >= inhalt.length) {
+                throw fehler("Unerwartetes Ende");
+            }
+            return inhalt[position];
+        }
+
+        /**
+         * Verbraucht das erwartete Zeichen nach optionalen Leerzeichen.
+         *
+         * @param erwartet Das erwartete Zeichen.
+         */
+        private void erwarte(char erwartet) {
+            if (naechstesZeichen() != erwartet) {
+                throw fehler("'" + erwartet + "' erwartet");
+            }
+            position++;
+        }
+
+        /**
+         * Verbraucht ein erwartetes Literal wie {@code null}.
+         *
+         * @param literal Das Literal.
+         */
+        private void erwarteLiteral(String literal) {
+            for (int i = 0; i < literal.length(); i++) {
+                if (position >= inhalt.length || inhalt[position++] != literal.charAt(i)) {
+                    throw fehler(literal + " erwartet");
+                }
+            }
+        }
+
+        /**
+         * Liest die vier Hexadezimalziffern einer Unicode-Escape-Sequenz. Anders als {@link Integer#parseInt(CharSequence,
+         * int, int, int)} werden nur ASCII-Ziffern ohne Vorzeichen angenommen.
+         *
+         * @param roh Der String mit der Escape-Sequenz.
+         * @param beginn Die Position der ersten Ziffer.
+         * @return Die UTF-16-Codeeinheit.
+         * @throws MessageConversionException Wenn eine der Ziffern keine Hexadezimalziffer ist.
+         */
+        private char liesCodeEinheit(String roh, int beginn) {
+            int wert = 0;
+            for (int i = beginn; i < beginn + 4; i++) {
+                char ziffer = roh.charAt(i);
+                int stelle;
+                if (ziffer >= '0' && ziffer <= '9') {
+                    stelle = ziffer - '0';
+                } else if (ziffer >= 'a' && ziffer <= 'f') {
+                    stelle = ziffer - 'a' + 10;
+                } else if (ziffer >= 'A' && ziffer <= 'F') {
+                    stelle = ziffer - 'A' + 10;
+                } else {
+                    throw fehler("Ungültige Unicode-Escape-Sequenz");
+                }
+                wert = wert * 16 + stelle;
+            }
+            return (char) wert;
+        }
+
+        /**
+         * Vergleicht einen Bereich des Inhalts mit einem Feldnamen.
+         *
+         * @param beginn Der Beginn des Bereichs (einschließlich).
+         * @param ende Das Ende des Bereichs (ausschließlich).
+         * @param feld Der Feldname in UTF-8.
+         * @return {@code true}, wenn der Bereich genau dem Feldnamen entspricht.
+         */
+        private boolean gleich(int beginn, int ende, byte[] feld) {
+            if (ende - beginn != feld.length) {
+                return false;
+            }
+            for (int i = 0; i < feld.length; i++) {
+                if (inhalt[beginn + i] != feld[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Prüft, ob ein Byte JSON-Leerraum ist.
+         *
+         * @param zeichen Das Byte.
+         * @return {@code true} für Leerzeichen, Zeilenumbruch, Wagenrücklauf und Tabulator.
+         */
+        private static boolean istLeerzeichen(byte zeichen) {
+            return zeichen == ' ' || zeichen == '\n' || zeichen == '\r' || zeichen == '\t';
+        }
+
+        /**
+         * Erstellt die Ausnahme für ungültigen Inhalt an der aktuellen Leseposition.
+         *
+         * @param beschreibung Was an dieser Stelle erwartet wurde oder fehlt.
+         * @return Die Ausnahme.
+         */
+        private MessageConversionException fehler(String beschreibung) {
+            return new MessageConversionException("Ungültige Statusaktualisierung an Position " + position + ": " + beschreibung);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package kirschner.flaig.mozart.config;
+
+/**
+ * Der Kontext eines Spans, der über Dienstgrenzen weitergegeben wird: die Trace-ID der gesamten Bestellung und die
+ * Span-ID des aufrufenden Schritts. Übertragen wird er im Format {@code traceparent} von W3C Trace Context, in
+ * gRPC-Metadaten wie in AMQP-Headern unter demselben Namen.
+ *
+ * @param traceId Die Trace-ID aus 32 Hexadezimalziffern.
+ * @param spanId Die Span-ID aus 16 Hexadezimalziffern.
+ */
+public record Tracekontext(String traceId, String spanId) {
+
+    /**
+     * Der Name des Headers und des Metadaten-Schlüssels.
+     */
+    public static final String HEADER = "traceparent";
+
+    /**
+     * Die Länge eines gültigen {@code traceparent}, {@code 00-<traceId>-<spanId>-<flags>}.
+     */
+    public static final int HEADER_LAENGE = 55;
+
+    /**
+     * Liest einen Kontext aus einem {@code traceparent}-Wert.
+     *
+     * @param traceparent Der Wert oder {@code null}.
+     * @return Der Kontext oder {@code null}, wenn der Wert fehlt oder ungültig ist.
+     */
+    public static Tracekontext ausTraceparent(String traceparent) {
+        if (traceparent == null || traceparent.length() != HEADER_LAENGE || !traceparent.startsWith("00-")
+                || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-'
+                || !istHex(traceparent.charAt(53)) || !istHex(traceparent.charAt(54))) {
+            return null;
+        }
+        String traceId = traceparent.substring(3, 35);
+        String spanId = traceparent.substring(36, 52);
+        if (!istHexUngleichNull(traceId) || !istHexUngleichNull(spanId)) {
+            return null;
+        }
+        return new Tracekontext(traceId, spanId);
+    }
+
+    /**
+     * Gibt den Kontext als {@code traceparent}-Wert zurück; Spans werden immer als aufgezeichnet markiert.
+     *
+     * @return Der Wert.
+     */
+    public String alsTraceparent() {
+        return "00-" + traceId + "-" + spanId + "-01";
+    }
+
+    /**
+     * Prüft, ob eine ID aus kleinen Hexadezimalziffern besteht und nicht nur aus Nullen, wie W3C es verlangt.
+     *
+     * @param id Die ID.
+     * @return {@code true}, wenn die ID gültig ist.
+     */
+    private static boolean istHexUngleichNull(String id) {
+        boolean ungleichNull = false;
+        for (int i = 0; i < id.length(); i++) {
+            char zeichen = id.charAt(i);
+            if (!istHex(zeichen)) {
+                return false;
+            }
+            ungleichNull |= zeichen != '0';
+        }
+        return ungleichNull;
+    }
+
+    /**
+     * Prüft, ob ein Zeichen eine kleine Hexadezimalziffer ist.
+     *
+     * @param zeichen Das Zeichen.
+     * @return {@code true}, wenn es eine Hexadezimalziffer ist.
+     */
+    private static boolean istHex(char zeichen) {
+        return zeichen >= '0' && zeichen <= '9' || zeichen >= 'a' && zeichen <= 'f';
+    }
+}
@@ -0,0 +1,33 @@
+package kirschner.flaig.mozart.config;
+
+import java.io.IOException;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kirschner.flaig.mozart.config.Ablaufverfolgung.Bereich;
+
+/**
+ * Übernimmt den Header {@code traceparent} einer HTTP-Anfrage, sodass die Bestellung als Kind des aufrufenden Clients
+ * erfasst wird, etwa eines Lasttests. Ohne gültigen Header beginnt jede Bestellung einen eigenen Trace.
+ */
+@Component
+public class TraceparentFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest anfrage, HttpServletResponse antwort, FilterChain kette)
+            throws ServletException, IOException {
+        Tracekontext kontext = Tracekontext.ausTraceparent(anfrage.getHeader(Tracekontext.HEADER));
+        if (kontext == null) {
+            kette.doFilter(anfrage, antwort);
+            return;
+        }
+        try (Bereich bereich = Ablaufverfolgung.aktiviere(kontext)) {
+            kette.doFilter(anfrage, antwort);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package kirschner.flaig.mozart.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.annotation.PreDestroy;
+import net.devh.boot.grpc.client.channelfactory.GrpcChannelConfigurer;
+
+/**
+ * Konfiguration für den Betrieb mit virtuellen Threads.
+ * Wird nur aktiv, wenn {@code spring.threads.virtual.enabled=true} gesetzt ist.
+ * Tomcat und der Listener-Container von Spring AMQP werden in diesem Fall bereits von Spring Boot
+ * auf virtuelle Threads umgestellt; diese Klasse ergänzt die Executor der gRPC-Clients.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    /**
+     * Executor, der jede Aufgabe auf einem eigenen virtuellen Thread ausführt.
+     * Bewusst kein eigenes Bean, damit Spring Boot weiterhin seinen {@code applicationTaskExecutor} anlegt.
+     */
+    private final ExecutorService grpcExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-client-", 0).factory());
+
+    /**
+     * Schließt den Executor beim Herunterfahren des Kontexts.
+     */
+    @PreDestroy
+    public void schliesseExecutor() {
+        grpcExecutor.close();
+    }
+
+    /**
+     * Setzt den Executor aller gRPC-Kanäle auf virtuelle Threads,
+     * sodass Antwort-Callbacks (z.B. des Future-Stubs) nicht mehr auf dem Plattform-Thread-Pool laufen.
+     *
+     * @return Ein {@link GrpcChannelConfigurer}, der den Executor setzt.
+     */
+    @Bean
+    public GrpcChannelConfigurer virtuelleThreadsGrpcKanalKonfigurierer() {
+        return (kanalBuilder, name) -> kanalBuilder.executor(grpcExecutor);
+    }
+}
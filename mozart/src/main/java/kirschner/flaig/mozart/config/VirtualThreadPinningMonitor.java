@@ -0,0 +1,101 @@
+package kirschner.flaig.mozart.config;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Diagnose für gepinnte virtuelle Threads.
+ * Lauscht per JFR-Streaming auf {@code jdk.VirtualThreadPinned}-Ereignisse und protokolliert
+ * die betroffenen Stack-Frames. Gepinnte Threads entstehen vor allem durch blockierende Aufrufe
+ * innerhalb von {@code synchronized}-Abschnitten und blockieren dabei den Carrier-Thread.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@ConditionalOnProperty(name = "mozart.virtual-threads.pinning-diagnose", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+
+    /**
+     * Logger für diese Klasse.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(VirtualThreadPinningMonitor.class);
+
+    /**
+     * Der Name des JFR-Ereignisses für gepinnte virtuelle Threads.
+     */
+    private static final String PINNING_EREIGNIS = "jdk.VirtualThreadPinned";
+
+    /**
+     * Die maximale Anzahl an Stack-Frames, die pro Ereignis protokolliert werden.
+     */
+    private static final int MAX_FRAMES = 12;
+
+    /**
+     * Die Mindestdauer, ab der ein Pinning gemeldet wird.
+     */
+    private final Duration schwellwert;
+
+    /**
+     * Der laufende JFR-Stream.
+     */
+    private RecordingStream aufzeichnung;
+
+    /**
+     * Konstruktor für den {@code VirtualThreadPinningMonitor}.
+     *
+     * @param schwellwertMillis Die Mindestdauer eines Pinnings in Millisekunden.
+     */
+    public VirtualThreadPinningMonitor(@Value("${mozart.virtual-threads.pinning-schwellwert-ms:20}") long schwellwertMillis) {
+        this.schwellwert = Duration.ofMillis(schwellwertMillis);
+    }
+
+    /**
+     * Startet den JFR-Stream im Hintergrund.
+     */
+    @PostConstruct
+    public void starte() {
+        aufzeichnung = new RecordingStream();
+        aufzeichnung.enable(PINNING_EREIGNIS).withThreshold(schwellwert).withStackTrace();
+        aufzeichnung.onEvent(PINNING_EREIGNIS, this::meldePinning);
+        aufzeichnung.startAsync();
+        LOGGER.info("VirtualThreadPinningMonitor: Pinning-Diagnose aktiv, Schwellwert {} ms.", schwellwert.toMillis());
+    }
+
+    /**
+     * Beendet den JFR-Stream.
+     */
+    @PreDestroy
+    public void stoppe() {
+        if (aufzeichnung != null) {
+            aufzeichnung.close();
+        }
+    }
+
+    /**
+     * Protokolliert ein einzelnes Pinning-Ereignis mit den obersten Stack-Frames.
+     *
+     * @param ereignis Das empfangene JFR-Ereignis.
+     */
+    private void meldePinning(RecordedEvent ereignis) {
+        RecordedStackTrace stackTrace = ereignis.getStackTrace();
+        String frames = stackTrace == null ? "<kein Stacktrace>" : stackTrace.getFrames().stream()
+                .limit(MAX_FRAMES)
+                .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber())
+                .collect(Collectors.joining(" <- "));
+        LOGGER.warn("VirtualThreadPinningMonitor: Virtueller Thread {} ms gepinnt (synchronized/nativer Frame): {}",
+                ereignis.getDuration().toMillis(), frames);
+    }
+}
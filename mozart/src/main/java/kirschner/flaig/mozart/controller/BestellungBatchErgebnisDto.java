@@ -0,0 +1,52 @@
+package kirschner.flaig.mozart.controller;
+
+import kirschner.flaig.mozart.entity.Lieferinformationen;
+
+/**
+ * Data Transfer Object (DTO) für das Ergebnis einer einzelnen Bestellung
+ * innerhalb einer Batch-Bestellung.
+ */
+public record BestellungBatchErgebnisDto(
+        /**
+         * Die Position der Bestellung in der ursprünglichen Batch-Anfrage.
+         */
+        int index,
+
+        /**
+         * Gibt an, ob die Bestellung angenommen wurde.
+         */
+        boolean akzeptiert,
+
+        /**
+         * Die Lieferinformationen der angenommenen Bestellung, sonst {@code null}.
+         */
+        Lieferinformationen lieferinformationen,
+
+        /**
+         * Die Fehlermeldung der abgelehnten Bestellung, sonst {@code null}.
+         */
+        String fehler
+) {
+
+    /**
+     * Erstellt das Ergebnis für eine angenommene Bestellung.
+     *
+     * @param index Die Position der Bestellung im Batch.
+     * @param lieferinformationen Die Lieferinformationen der Bestellung.
+     * @return Ein Ergebnis mit {@code akzeptiert = true}.
+     */
+    public static BestellungBatchErgebnisDto akzeptiert(int index, Lieferinformationen lieferinformationen) {
+        return new BestellungBatchErgebnisDto(index, true, lieferinformationen, null);
+    }
+
+    /**
+     * Erstellt das Ergebnis für eine abgelehnte Bestellung.
+     *
+     * @param index Die Position der Bestellung im Batch.
+     * @param fehler Die Ursache der Ablehnung.
+     * @return Ein Ergebnis mit {@code akzeptiert = false}.
+     */
+    public static BestellungBatchErgebnisDto abgelehnt(int index, String fehler) {
+        return new BestellungBatchErgebnisDto(index, false, null, fehler);
+    }
+}
@@ -1,22 +1,40 @@
 package kirschner.flaig.mozart.controller;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import jakarta.validation.Valid;
+import kirschner.flaig.mozart.entity.Bestellung;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
 import kirschner.flaig.mozart.entity.Lieferinformationen;
 import kirschner.flaig.mozart.service.BestellungService;
+import kirschner.flaig.mozart.service.Bestellverwaltung;
+import kirschner.flaig.mozart.service.Schrittzeiten;
 
 /**
  * Controller für die Verarbeitung von Bestellungen.
- * Stellt Endpunkte zum Erstellen neuer Bestellungen und zur Fehlerbehandlung bereit.
+ * Stellt Endpunkte zum Erstellen und Abfragen von Bestellungen sowie zur Fehlerbehandlung bereit.
+ * Abfragen liefern ein {@code ETag} und beantworten bedingte Anfragen mit {@code If-None-Match} mit 304 Not Modified.
+ * Neue Einzelbestellungen liefern die Dauern ihrer Schritte im {@code Server-Timing}-Header.
  */
 @RestController
 @RequestMapping("/api/bestellung")
@@ -27,34 +45,203 @@ public class BestellungController {
      */
     private static final Logger LOGGER = LogManager.getLogger(BestellungController.class);
 
+    /**
+     * Die Standardgröße einer Ergebnisseite.
+     */
+    private static final int STANDARD_LIMIT = 50;
+
+    /**
+     * Die maximale Größe einer Ergebnisseite und die maximale Anzahl an IDs pro Batch-Abfrage.
+     */
+    private static final int MAXIMALES_LIMIT = 500;
+
+    /**
+     * Der Header mit den Dauern der Verarbeitungsschritte.
+     */
+    private static final String SERVER_TIMING = "Server-Timing";
+
     /**
      * Service-Klasse zur Verarbeitung der Bestelllogik.
      */
     private final BestellungService bestellungService;
 
+    /**
+     * Service-Klasse zum Nachschlagen und Suchen von Bestellungen.
+     */
+    private final Bestellverwaltung bestellverwaltung;
+
+    /**
+     * Gibt an, ob Bestellungen über den nicht-blockierenden gRPC-Pfad verarbeitet werden.
+     * Im asynchronen Modus wird der Tomcat-Worker-Thread während des Beethoven-Aufrufs freigegeben.
+     */
+    private final boolean asynchronerModus;
+
     /**
      * Konstruktor für den BestellungController.
      *
      * @param bestellungService Der zu injizierende {@link BestellungService}.
+     * @param bestellverwaltung Die zu injizierende {@link Bestellverwaltung}.
+     * @param asynchronerModus {@code true}, wenn der asynchrone Verarbeitungspfad verwendet werden soll.
      */
-    public BestellungController(BestellungService bestellungService) {
+    public BestellungController(BestellungService bestellungService, Bestellverwaltung bestellverwaltung,
+                                @Value("${mozart.bestellung.asynchron:false}") boolean asynchronerModus) {
         this.bestellungService = bestellungService;
+        this.bestellverwaltung = bestellverwaltung;
+        this.asynchronerModus = asynchronerModus;
     }
 
     /**
      * Verarbeitet eine eingehende Bestellanfrage.
      * Validiert die Anfrage und leitet sie zur Verarbeitung an den {@link BestellungService} weiter.
+     * Im asynchronen Modus wird die Antwort über die Spring-MVC-Async-Unterstützung geschrieben,
+     * sobald der gRPC-Aufruf abgeschlossen ist; im blockierenden Modus ist das Future bereits abgeschlossen.
+     * Mit einem {@code Idempotency-Key} wird die Bestellung bei Wiederholungen nur einmal angelegt und
+     * jede Wiederholung erhält dieselben Lieferinformationen.
+     * Der {@code Server-Timing}-Header der Antwort enthält die Dauern der Schritte aus {@link Schrittzeiten}.
      *
      * @param bestellAnfrage Das {@link NewBestellungRequestDto} Objekt, das die Bestelldaten enthält.
-     * @return Eine {@link ResponseEntity} mit den {@link Lieferinformationen} bei Erfolg oder einem Fehlerstatus.
-     * @throws IllegalArgumentException wenn die Eingabedaten ungültig sind.
+     * @param idempotenzSchluessel Der optionale {@code Idempotency-Key} des Clients.
+     * @return Ein {@link CompletableFuture} mit einer {@link ResponseEntity} mit den {@link Lieferinformationen} bei Erfolg.
+     * @throws IllegalArgumentException wenn die Eingabedaten ungültig sind oder der Schlüssel bereits für eine andere Bestellung verwendet wurde.
      */
     @PostMapping
-    public ResponseEntity<Lieferinformationen> postBestellung(@Valid @RequestBody NewBestellungRequestDto bestellAnfrage) throws IllegalArgumentException {
-        LOGGER.info("BestellungController: starte postBestellung() mit folgendem Objekt: {}...", bestellAnfrage.toString());
-        Lieferinformationen antwortDaten = bestellungService.processBestellung(bestellAnfrage);
-        LOGGER.info("BestellungController: Bestellung erfolgreich verarbeitet. Antwort: {}...", antwortDaten.toString());
-        return ResponseEntity.status(HttpStatus.CREATED).body(antwortDaten);
+    public CompletableFuture<ResponseEntity<Lieferinformationen>> postBestellung(@Valid @RequestBody NewBestellungRequestDto bestellAnfrage,
+                                                                                 @RequestHeader(value = "Idempotency-Key", required = false) String idempotenzSchluessel) throws IllegalArgumentException {
+        Schrittzeiten schrittzeiten = new Schrittzeiten();
+        if (idempotenzSchluessel != null) {
+            return bestellungService.processBestellungIdempotent(bestellAnfrage, idempotenzSchluessel, asynchronerModus, schrittzeiten)
+                    .thenApply(lieferinformationen -> erstelleAntwort(lieferinformationen, schrittzeiten));
+        }
+        if (!asynchronerModus) {
+            return CompletableFuture.completedFuture(erstelleAntwort(bestellungService.processBestellung(bestellAnfrage, schrittzeiten), schrittzeiten));
+        }
+        return bestellungService.processBestellungAsync(bestellAnfrage, schrittzeiten)
+                .thenApply(lieferinformationen -> erstelleAntwort(lieferinformationen, schrittzeiten));
+    }
+
+    /**
+     * Verarbeitet mehrere Bestellanfragen in einem Aufruf.
+     * Alle gültigen Bestellungen werden in einem einzigen gRPC-Round-Trip an Beethoven übergeben;
+     * das Ergebnis enthält pro Bestellung die Lieferinformationen oder die Ablehnungsursache.
+     *
+     * @param batchAnfrage Das {@link NewBestellungBatchRequestDto} mit allen Bestellungen.
+     * @return Eine {@link ResponseEntity} mit einem {@link BestellungBatchErgebnisDto} pro Bestellung.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<BestellungBatchErgebnisDto>> postBestellungBatch(@Valid @RequestBody NewBestellungBatchRequestDto batchAnfrage) {
+        LOGGER.info("BestellungController: starte postBestellungBatch() mit {} Bestellungen...", batchAnfrage.bestellungen().size());
+        List<BestellungBatchErgebnisDto> ergebnisse = bestellungService.processBestellungBatch(batchAnfrage.bestellungen());
+        return ResponseEntity.ok(ergebnisse);
+    }
+
+    /**
+     * Sucht Bestellungen seitenweise nach Kunde, Lieferstatus und Bestellzeitraum.
+     * Alle Kriterien sind optional und werden kombiniert; ohne Kriterien werden alle Bestellungen nach Bestelldatum geliefert.
+     * Die nächste Seite wird mit dem {@code naechsterCursor} der Antwort abgefragt.
+     *
+     * @param kundenId Die Kunden-ID.
+     * @param status Der Lieferstatus, unabhängig von Groß- und Kleinschreibung.
+     * @param von Der Beginn des Bestellzeitraums (einschließlich), ISO-8601.
+     * @param bis Das Ende des Bestellzeitraums (ausschließlich), ISO-8601.
+     * @param cursor Der Cursor der vorherigen Seite.
+     * @param limit Die maximale Anzahl an Bestellungen pro Seite (1 bis {@value #MAXIMALES_LIMIT}).
+     * @param anfrage Die Anfrage für die Auswertung von {@code If-None-Match}.
+     * @return Eine {@link ResponseEntity} mit der {@link BestellungSeiteDto} oder 304, wenn sie unverändert ist.
+     * @throws IllegalArgumentException Bei ungültigem Status, Cursor oder Limit.
+     */
+    @GetMapping
+    public ResponseEntity<BestellungSeiteDto> getBestellungen(@RequestParam(required = false) String kundenId,
+                                                              @RequestParam(required = false) String status,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime von,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime bis,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "" + STANDARD_LIMIT) int limit,
+                                                              WebRequest anfrage) throws IllegalArgumentException {
+        if (limit < 1 || limit > MAXIMALES_LIMIT) {
+            throw new IllegalArgumentException("Limit muss zwischen 1 und " + MAXIMALES_LIMIT + " liegen.");
+        }
+        DeliveryStatus lieferstatus = status == null ? null : DeliveryStatus.valueOf(status.toUpperCase());
+        BestellungSeiteDto seite = bestellverwaltung.suche(kundenId, lieferstatus, von, bis, cursor, limit);
+        return mitEtag(seite, berechneEtag(seite.bestellungen(), seite.naechsterCursor()), anfrage);
+    }
+
+    /**
+     * Liefert mehrere Bestellungen in einem Aufruf. Nicht vorhandene IDs werden übersprungen.
+     *
+     * @param ids Die Bestell-IDs, kommagetrennt oder als wiederholter Parameter (höchstens {@value #MAXIMALES_LIMIT}).
+     * @param anfrage Die Anfrage für die Auswertung von {@code If-None-Match}.
+     * @return Eine {@link ResponseEntity} mit den gefundenen Bestellungen in der Reihenfolge der IDs oder 304, wenn sie unverändert sind.
+     * @throws IllegalArgumentException Wenn zu viele IDs angegeben werden.
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<List<Bestellung>> getBestellungenBatch(@RequestParam List<String> ids, WebRequest anfrage) throws IllegalArgumentException {
+        if (ids.size() > MAXIMALES_LIMIT) {
+            throw new IllegalArgumentException("Höchstens " + MAXIMALES_LIMIT + " IDs pro Anfrage erlaubt.");
+        }
+        List<Bestellung> bestellungen = bestellverwaltung.findeAlle(ids);
+        return mitEtag(bestellungen, berechneEtag(bestellungen, null), anfrage);
+    }
+
+    /**
+     * Liefert eine einzelne Bestellung.
+     *
+     * @param bestellId Die ID der Bestellung.
+     * @param anfrage Die Anfrage für die Auswertung von {@code If-None-Match}.
+     * @return Eine {@link ResponseEntity} mit der Bestellung, 304, wenn sie unverändert ist, oder 404, wenn sie nicht existiert.
+     */
+    @GetMapping("/{bestellId}")
+    public ResponseEntity<Bestellung> getBestellung(@PathVariable String bestellId, WebRequest anfrage) {
+        Bestellung bestellung = bestellverwaltung.finde(bestellId);
+        if (bestellung == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return mitEtag(bestellung, berechneEtag(List.of(bestellung), null), anfrage);
+    }
+
+    /**
+     * Erstellt eine HTTP-200-Antwort mit ETag oder eine 304-Antwort, wenn der Client diesen Stand bereits hat.
+     *
+     * @param inhalt Der Antwortinhalt.
+     * @param etag Das ETag des Inhalts.
+     * @param anfrage Die Anfrage mit einem eventuellen {@code If-None-Match}.
+     * @param <T> Der Typ des Inhalts.
+     * @return Die Antwort.
+     */
+    private <T> ResponseEntity<T> mitEtag(T inhalt, String etag, WebRequest anfrage) {
+        if (anfrage.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(inhalt);
+    }
+
+    /**
+     * Berechnet ein ETag aus allen Feldern der Bestellungen, ohne die Antwort zu serialisieren.
+     *
+     * @param bestellungen Die Bestellungen der Antwort.
+     * @param cursor Der Cursor der Antwort oder {@code null}.
+     * @return Das ETag in Anführungszeichen.
+     */
+    private static String berechneEtag(List<Bestellung> bestellungen, String cursor) {
+        long hash = Objects.hashCode(cursor);
+        for (Bestellung bestellung : bestellungen) {
+            hash = 31 * hash + Objects.hash(bestellung.getBestellId(), bestellung.getKundenId(), bestellung.getEmail(),
+                    bestellung.getAdresse(), bestellung.getProduktId(), bestellung.getMenge(), bestellung.getBestelldatum(),
+                    bestellung.getLieferstatus(), bestellung.getLieferdatum(), bestellung.getZahlungsmethode());
+        }
+        return "\"" + Long.toHexString(hash) + "-" + Integer.toHexString(bestellungen.size()) + "\"";
+    }
+
+    /**
+     * Erstellt die HTTP-201-Antwort für eine erfolgreich verarbeitete Bestellung.
+     *
+     * @param antwortDaten Die {@link Lieferinformationen} der Bestellung.
+     * @param schrittzeiten Die {@link Schrittzeiten} der Bestellung.
+     * @return Eine {@link ResponseEntity} mit Status 201, {@code Server-Timing}-Header und den Lieferinformationen.
+     */
+    private ResponseEntity<Lieferinformationen> erstelleAntwort(Lieferinformationen antwortDaten, Schrittzeiten schrittzeiten) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(SERVER_TIMING, schrittzeiten.alsServerTiming())
+                .body(antwortDaten);
     }
 
     /**
@@ -0,0 +1,21 @@
+package kirschner.flaig.mozart.controller;
+
+import java.util.List;
+
+import kirschner.flaig.mozart.entity.Bestellung;
+
+/**
+ * Data Transfer Object (DTO) für eine Seite von Bestellungen aus einer Abfrage.
+ */
+public record BestellungSeiteDto(
+        /**
+         * Die Bestellungen dieser Seite, sortiert nach Bestelldatum und Bestell-ID.
+         */
+        List<Bestellung> bestellungen,
+
+        /**
+         * Der Cursor für die nächste Seite oder {@code null}, wenn dies die letzte Seite ist.
+         */
+        String naechsterCursor
+) {
+}
@@ -0,0 +1,28 @@
+package kirschner.flaig.mozart.controller;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Data Transfer Object (DTO) für den Empfang mehrerer Bestellanfragen
+ * in einem einzigen Aufruf über die REST-API im E-Commerce-Dienst.
+ */
+public record NewBestellungBatchRequestDto(
+        /**
+         * Die einzelnen Bestellanfragen des Batches.
+         * Darf nicht leer sein und höchstens {@value #MAXIMALE_ANZAHL} Bestellungen enthalten;
+         * jede Bestellung wird wie eine Einzelbestellung validiert.
+         */
+        @NotEmpty(message = "Orders cannot be empty")
+        @Size(max = NewBestellungBatchRequestDto.MAXIMALE_ANZAHL, message = "At most {max} orders per batch")
+        List<@Valid NewBestellungRequestDto> bestellungen
+) {
+
+    /**
+     * Die maximale Anzahl an Bestellungen pro Batch; größere Batches werden abgelehnt, bevor sie verarbeitet werden.
+     */
+    public static final int MAXIMALE_ANZAHL = 500;
+}
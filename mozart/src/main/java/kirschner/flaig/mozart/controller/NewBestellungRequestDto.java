@@ -5,9 +5,12 @@ import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+
 /**
  * Data Transfer Object (DTO) für den Empfang neuer Bestellanfragen
  * über die REST-API im E-Commerce-Dienst.
+ * Als Log-Parameter schreibt es sich über {@link StringBuilderFormattable} ohne eigene Zeichenkette in die Meldung.
  */
 public record NewBestellungRequestDto(
         /**
@@ -53,5 +56,37 @@ public record NewBestellungRequestDto(
          */
         @NotEmpty(message = "Payment method cannot be empty")
         String zahlungsmethode
-) {
+) implements StringBuilderFormattable {
+
+    /**
+     * Gibt die String-Repräsentation im Format eines Records zurück.
+     *
+     * @return Eine Zeichenkette mit allen Feldern.
+     */
+    @Override
+    public String toString() {
+        StringBuilder puffer = new StringBuilder(160);
+        formatTo(puffer);
+        return puffer.toString();
+    }
+
+    /**
+     * Hängt die String-Repräsentation an, ohne Zwischenobjekte zu erzeugen.
+     *
+     * @param puffer Der Puffer, an den angehängt wird.
+     */
+    @Override
+    public void formatTo(StringBuilder puffer) {
+        puffer.append("NewBestellungRequestDto[kundenId=").append(kundenId)
+                .append(", email=").append(email)
+                .append(", adresse=").append(adresse)
+                .append(", produktId=").append(produktId)
+                .append(", menge=");
+        if (menge == null) {
+            puffer.append((String) null);
+        } else {
+            puffer.append(menge.intValue());
+        }
+        puffer.append(", zahlungsmethode=").append(zahlungsmethode).append(']');
+    }
 }
\ No newline at end of file
@@ -1,10 +1,18 @@
 package kirschner.flaig.mozart.entity;
 
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import kirschner.flaig.mozart.grpc.StatusAktualisierung;
+
 /**
  * Repräsentiert eine Statusaktualisierung für eine Bestellung,
  * typischerweise im Kontext eines Systems oder Moduls namens "Beethoven".
+ * In Protobuf wird sie als {@link StatusAktualisierung} übertragen.
+ * Als Log-Parameter schreibt sie sich über {@link StringBuilderFormattable} ohne eigene Zeichenkette in die Meldung.
  */
-public class BeethovenStatusUpdate {
+public class BeethovenStatusUpdate implements StringBuilderFormattable {
     /**
      * Die eindeutige Identifikationsnummer der Bestellung.
      */
@@ -13,6 +21,19 @@ public class BeethovenStatusUpdate {
      * Der aktuelle Status der Bestellung.
      */
     private String status;
+    /**
+     * Der zum Status gehörende Lieferstatus, oder {@code null}, wenn der Status keinem Lieferstatus entspricht.
+     * Wird vom Nachrichtenkonverter beim Empfang gesetzt und nicht serialisiert.
+     */
+    @JsonIgnore
+    private DeliveryStatus lieferstatus;
+
+    /**
+     * Standardkonstruktor.
+     * Erforderlich für bestimmte Frameworks und Bibliotheken zur Instanziierung.
+     */
+    public BeethovenStatusUpdate() {
+    }
 
     /**
      * Konstruktor zum Erstellen einer neuen BeethovenStatusUpdate-Instanz.
@@ -25,6 +46,37 @@ public class BeethovenStatusUpdate {
         this.status = status;
     }
 
+    /**
+     * Erstellt eine Statusaktualisierung aus ihrer Protobuf-Darstellung und löst den Lieferstatus auf.
+     * Leere Strings werden zu {@code null}.
+     *
+     * @param aktualisierung Die {@link StatusAktualisierung}.
+     * @return Die Statusaktualisierung.
+     */
+    public static BeethovenStatusUpdate vonProto(StatusAktualisierung aktualisierung) {
+        BeethovenStatusUpdate statusAktualisierung = new BeethovenStatusUpdate(
+                aktualisierung.getBestellId().isEmpty() ? null : aktualisierung.getBestellId(),
+                aktualisierung.getStatus().isEmpty() ? null : aktualisierung.getStatus());
+        statusAktualisierung.setLieferstatus(DeliveryStatus.vonName(statusAktualisierung.getStatus()));
+        return statusAktualisierung;
+    }
+
+    /**
+     * Gibt die Protobuf-Darstellung der Statusaktualisierung zurück. Felder mit {@code null} bleiben ungesetzt.
+     *
+     * @return Die {@link StatusAktualisierung}.
+     */
+    public StatusAktualisierung alsProto() {
+        StatusAktualisierung.Builder aktualisierung = StatusAktualisierung.newBuilder();
+        if (bestellId != null) {
+            aktualisierung.setBestellId(bestellId);
+        }
+        if (status != null) {
+            aktualisierung.setStatus(status);
+        }
+        return aktualisierung.build();
+    }
+
     /**
      * Gibt die Bestell-ID zurück.
      *
@@ -61,6 +113,24 @@ public class BeethovenStatusUpdate {
         this.status = status;
     }
 
+    /**
+     * Gibt den zum Status gehörenden Lieferstatus zurück.
+     *
+     * @return Der Lieferstatus oder {@code null}, wenn er nicht bestimmt wurde oder der Status ungültig ist.
+     */
+    public DeliveryStatus getLieferstatus() {
+        return lieferstatus;
+    }
+
+    /**
+     * Setzt den zum Status gehörenden Lieferstatus.
+     *
+     * @param lieferstatus Der Lieferstatus.
+     */
+    public void setLieferstatus(DeliveryStatus lieferstatus) {
+        this.lieferstatus = lieferstatus;
+    }
+
     /**
      * Gibt eine String-Repräsentation des BeethovenStatusUpdate-Objekts zurück.
      *
@@ -68,9 +138,19 @@ public class BeethovenStatusUpdate {
      */
     @Override
     public String toString() {
-        return "BeethovenStatusUpdate{" +
-                "bestellId='" + bestellId + '\'' +
-                ", status='" + status + '\'' +
-                '}';
+        StringBuilder puffer = new StringBuilder(64);
+        formatTo(puffer);
+        return puffer.toString();
+    }
+
+    /**
+     * Hängt die String-Repräsentation an, ohne Zwischenobjekte zu erzeugen.
+     *
+     * @param puffer Der Puffer, an den angehängt wird.
+     */
+    @Override
+    public void formatTo(StringBuilder puffer) {
+        puffer.append("BeethovenStatusUpdate{bestellId='").append(bestellId)
+                .append("', status='").append(status).append("'}");
     }
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package kirschner.flaig.mozart.entity;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 
+import kirschner.flaig.mozart.grpc.CrmAktualisierung;
+
 /**
  * Repräsentiert Bestelldaten, die spezifisch für den "Schuhmacher"-Kontext sind oder von diesem System stammen.
  * Diese Klasse dient als Datenübertragungsobjekt für Bestellinformationen.
+ * In Protobuf wird sie als {@link CrmAktualisierung} übertragen.
  */
 public class BestellungDataSchuhmacher {
     /**
@@ -23,7 +25,7 @@ public class BestellungDataSchuhmacher {
     /**
      * Der Gesamtbetrag der Bestellung.
      */
-    private BigDecimal gesamtbetrag;
+    private Geldbetrag gesamtbetrag;
     /**
      * Der aktuelle Status der Bestellung.
      */
@@ -55,7 +57,7 @@ public class BestellungDataSchuhmacher {
      * @param email Die E-Mail-Adresse des Kunden.
      * @param adressZeichenkette Die Adresse als formatierte Zeichenkette.
      */
-    public BestellungDataSchuhmacher(String bestellId, String kundenId, LocalDate bestelldatum, BigDecimal gesamtbetrag, String status, String email, String adressZeichenkette) {
+    public BestellungDataSchuhmacher(String bestellId, String kundenId, LocalDate bestelldatum, Geldbetrag gesamtbetrag, String status, String email, String adressZeichenkette) {
         this.bestellId = bestellId;
         this.kundenId = kundenId;
         this.email = email;
@@ -65,6 +67,64 @@ public class BestellungDataSchuhmacher {
         this.status = status;
     }
 
+    /**
+     * Erstellt die Bestelldaten aus ihrer Protobuf-Darstellung. Leere Strings werden zu {@code null}.
+     *
+     * @param aktualisierung Die {@link CrmAktualisierung}.
+     * @return Die Bestelldaten.
+     */
+    public static BestellungDataSchuhmacher vonProto(CrmAktualisierung aktualisierung) {
+        return new BestellungDataSchuhmacher(
+                leerAlsNull(aktualisierung.getBestellId()),
+                leerAlsNull(aktualisierung.getKundenId()),
+                aktualisierung.hasBestelldatumEpochentag() ? LocalDate.ofEpochDay(aktualisierung.getBestelldatumEpochentag()) : null,
+                aktualisierung.hasGesamtbetrag() ? Geldbetrag.vonProto(aktualisierung.getGesamtbetrag()) : null,
+                leerAlsNull(aktualisierung.getStatus()),
+                leerAlsNull(aktualisierung.getEmail()),
+                leerAlsNull(aktualisierung.getAdresse()));
+    }
+
+    /**
+     * Gibt die Protobuf-Darstellung der Bestelldaten zurück. Felder mit {@code null} bleiben ungesetzt.
+     *
+     * @return Die {@link CrmAktualisierung}.
+     */
+    public CrmAktualisierung alsProto() {
+        CrmAktualisierung.Builder aktualisierung = CrmAktualisierung.newBuilder();
+        if (bestellId != null) {
+            aktualisierung.setBestellId(bestellId);
+        }
+        if (kundenId != null) {
+            aktualisierung.setKundenId(kundenId);
+        }
+        if (bestelldatum != null) {
+            aktualisierung.setBestelldatumEpochentag(bestelldatum.toEpochDay());
+        }
+        if (gesamtbetrag != null) {
+            aktualisierung.setGesamtbetrag(gesamtbetrag.alsProto());
+        }
+        if (status != null) {
+            aktualisierung.setStatus(status);
+        }
+        if (email != null) {
+            aktualisierung.setEmail(email);
+        }
+        if (adressZeichenkette != null) {
+            aktualisierung.setAdresse(adressZeichenkette);
+        }
+        return aktualisierung.build();
+    }
+
+    /**
+     * Wandelt einen leeren String aus Protobuf in {@code null} um.
+     *
+     * @param wert Der Wert.
+     * @return Der Wert oder {@code null}, wenn er leer ist.
+     */
+    private static String leerAlsNull(String wert) {
+        return wert.isEmpty() ? null : wert;
+    }
+
     /**
      * Gibt die Bestell-ID zurück.
      *
@@ -124,7 +184,7 @@ public class BestellungDataSchuhmacher {
      *
      * @return Der Gesamtbetrag.
      */
-    public BigDecimal getGesamtbetrag() {
+    public Geldbetrag getGesamtbetrag() {
         return gesamtbetrag;
     }
 
@@ -133,7 +193,7 @@ public class BestellungDataSchuhmacher {
      *
      * @param gesamtbetrag Der neue Gesamtbetrag.
      */
-    public void setGesamtbetrag(BigDecimal gesamtbetrag) {
+    public void setGesamtbetrag(Geldbetrag gesamtbetrag) {
         this.gesamtbetrag = gesamtbetrag;
     }
 
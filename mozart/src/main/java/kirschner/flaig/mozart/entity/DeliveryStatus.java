@@ -23,6 +23,11 @@ public enum DeliveryStatus {
      */
     PROCESSING("Processing");
 
+    /**
+     * Alle Lieferstatus, damit {@link #vonName(String)} nicht bei jedem Aufruf {@link #values()} kopiert.
+     */
+    private static final DeliveryStatus[] WERTE = values();
+
     /**
      * Der menschenlesbare Name des Lieferstatus, wie er angezeigt werden soll.
      */
@@ -45,4 +50,22 @@ public enum DeliveryStatus {
     public String getDisplayName() {
         return displayName;
     }
+
+    /**
+     * Bestimmt den Lieferstatus zu einem Namen ohne Beachtung der Groß-/Kleinschreibung.
+     *
+     * @param name Der Name, z.B. "Shipped" oder "SHIPPED".
+     * @return Der Lieferstatus oder {@code null}, wenn der Name {@code null} ist oder keinem Lieferstatus entspricht.
+     */
+    public static DeliveryStatus vonName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (DeliveryStatus lieferstatus : WERTE) {
+            if (lieferstatus.name().equalsIgnoreCase(name)) {
+                return lieferstatus;
+            }
+        }
+        return null;
+    }
 }
\ No newline at end of file
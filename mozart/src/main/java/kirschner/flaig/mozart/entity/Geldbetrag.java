@@ -0,0 +1,300 @@
+package kirschner.flaig.mozart.entity;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import kirschner.flaig.mozart.grpc.MoneyAmount;
+
+/**
+ * Unveränderlicher Geldbetrag in Euro mit fester Genauigkeit von zwei Nachkommastellen.
+ * Der Betrag wird als {@code long} in Cent gehalten; Rechenoperationen erzeugen kein
+ * {@link BigDecimal} und werfen bei einem Überlauf eine {@link ArithmeticException}.
+ * <p>
+ * Rundungsregeln: Umrechnungen und Parsen sind standardmäßig exakt und schlagen fehl, wenn mehr als
+ * zwei von Null verschiedene Nachkommastellen vorliegen. Soll gerundet werden, muss der
+ * {@link RoundingMode} ausdrücklich angegeben werden.
+ * <p>
+ * In JSON wird der Betrag als Zahl mit zwei Nachkommastellen geschrieben (z.B. {@code 11.98}),
+ * also im selben Format wie zuvor ein {@link BigDecimal}. In Protobuf wird er als {@link MoneyAmount} übertragen.
+ */
+@JsonSerialize(using = Geldbetrag.JsonSerialisierer.class)
+@JsonDeserialize(using = Geldbetrag.JsonDeserialisierer.class)
+public final class Geldbetrag implements Comparable<Geldbetrag> {
+
+    /**
+     * Der Betrag von null Euro.
+     */
+    public static final Geldbetrag NULL = new Geldbetrag(0L);
+
+    /**
+     * Die Anzahl der Nachkommastellen.
+     */
+    private static final int NACHKOMMASTELLEN = 2;
+
+    /**
+     * Die maximale Länge der Dezimaldarstellung: Vorzeichen, 17 Vorkommastellen, Punkt und zwei Nachkommastellen.
+     */
+    public static final int MAXIMALE_ZEICHEN = 21;
+
+    /**
+     * Der Betrag in Cent.
+     */
+    private final long cent;
+
+    /**
+     * Privater Konstruktor; Instanzen werden über die statischen Fabrikmethoden erzeugt.
+     *
+     * @param cent Der Betrag in Cent.
+     */
+    private Geldbetrag(long cent) {
+        this.cent = cent;
+    }
+
+    /**
+     * Erstellt einen Geldbetrag aus einem Cent-Betrag.
+     *
+     * @param cent Der Betrag in Cent.
+     * @return Der Geldbetrag.
+     */
+    public static Geldbetrag vonCent(long cent) {
+        return cent == 0L ? NULL : new Geldbetrag(cent);
+    }
+
+    /**
+     * Erstellt einen Geldbetrag exakt aus einem {@link BigDecimal}.
+     *
+     * @param betrag Der Betrag in Euro.
+     * @return Der Geldbetrag.
+     * @throws ArithmeticException Wenn der Betrag mehr als zwei Nachkommastellen hat oder nicht in einen {@code long} passt.
+     */
+    public static Geldbetrag von(BigDecimal betrag) {
+        return von(betrag, RoundingMode.UNNECESSARY);
+    }
+
+    /**
+     * Erstellt einen Geldbetrag aus einem {@link BigDecimal} und rundet auf zwei Nachkommastellen.
+     *
+     * @param betrag Der Betrag in Euro.
+     * @param rundung Der anzuwendende {@link RoundingMode}.
+     * @return Der Geldbetrag.
+     * @throws ArithmeticException Bei {@link RoundingMode#UNNECESSARY} und notwendiger Rundung oder bei einem Überlauf.
+     */
+    public static Geldbetrag von(BigDecimal betrag, RoundingMode rundung) {
+        return vonCent(betrag.setScale(NACHKOMMASTELLEN, rundung).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Liest einen Geldbetrag exakt aus einer Dezimalzeichenkette wie {@code "29.95"} oder {@code "-3"}.
+     * Nachkommastellen über die zweite hinaus sind nur erlaubt, wenn sie null sind.
+     *
+     * @param text Die Zeichenkette.
+     * @return Der Geldbetrag.
+     * @throws NumberFormatException Wenn die Zeichenkette keine Dezimalzahl ist.
+     * @throws ArithmeticException Wenn gerundet werden müsste oder der Betrag nicht in einen {@code long} passt.
+     */
+    public static Geldbetrag parse(CharSequence text) {
+        int laenge = text.length();
+        int position = 0;
+        boolean negativ = false;
+        if (laenge > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negativ = text.charAt(0) == '-';
+            position++;
+        }
+        long cent = 0L;
+        int ziffern = 0;
+        int nachkomma = -1;
+        for (; position < laenge; position++) {
+            char zeichen = text.charAt(position);
+            if (zeichen == '.' && nachkomma < 0) {
+                nachkomma = 0;
+                continue;
+            }
+            if (zeichen < '0' || zeichen > '9') {
+                throw new NumberFormatException("Ungültiger Geldbetrag: " + text);
+            }
+            ziffern++;
+            if (nachkomma >= NACHKOMMASTELLEN) {
+                if (zeichen != '0') {
+                    throw new ArithmeticException("Geldbetrag hat mehr als zwei Nachkommastellen: " + text);
+                }
+                continue;
+            }
+            if (nachkomma >= 0) {
+                nachkomma++;
+            }
+            cent = Math.addExact(Math.multiplyExact(cent, 10L), zeichen - '0');
+        }
+        if (ziffern == 0) {
+            throw new NumberFormatException("Ungültiger Geldbetrag: " + text);
+        }
+        for (int fehlend = NACHKOMMASTELLEN - Math.max(nachkomma, 0); fehlend > 0; fehlend--) {
+            cent = Math.multiplyExact(cent, 10L);
+        }
+        return vonCent(negativ ? -cent : cent);
+    }
+
+    /**
+     * Erstellt einen Geldbetrag aus seiner Protobuf-Darstellung.
+     *
+     * @param betrag Der {@link MoneyAmount}.
+     * @return Der Geldbetrag.
+     */
+    public static Geldbetrag vonProto(MoneyAmount betrag) {
+        return vonCent(betrag.getMinorUnits());
+    }
+
+    /**
+     * Gibt den Betrag in Cent zurück.
+     *
+     * @return Der Betrag in Cent.
+     */
+    public long getCent() {
+        return cent;
+    }
+
+    /**
+     * Addiert einen weiteren Geldbetrag.
+     *
+     * @param anderer Der zu addierende Betrag.
+     * @return Die Summe.
+     * @throws ArithmeticException Bei einem Überlauf.
+     */
+    public Geldbetrag plus(Geldbetrag anderer) {
+        return vonCent(Math.addExact(cent, anderer.cent));
+    }
+
+    /**
+     * Subtrahiert einen weiteren Geldbetrag.
+     *
+     * @param anderer Der zu subtrahierende Betrag.
+     * @return Die Differenz.
+     * @throws ArithmeticException Bei einem Überlauf.
+     */
+    public Geldbetrag minus(Geldbetrag anderer) {
+        return vonCent(Math.subtractExact(cent, anderer.cent));
+    }
+
+    /**
+     * Multipliziert den Betrag mit einer ganzzahligen Menge.
+     *
+     * @param menge Die Menge.
+     * @return Das Produkt.
+     * @throws ArithmeticException Bei einem Überlauf.
+     */
+    public Geldbetrag mal(long menge) {
+        return vonCent(Math.multiplyExact(cent, menge));
+    }
+
+    /**
+     * Gibt den Betrag als {@link BigDecimal} mit zwei Nachkommastellen zurück.
+     *
+     * @return Der Betrag in Euro.
+     */
+    public BigDecimal alsBigDecimal() {
+        return BigDecimal.valueOf(cent, NACHKOMMASTELLEN);
+    }
+
+    /**
+     * Gibt die Protobuf-Darstellung des Betrags zurück.
+     *
+     * @return Der {@link MoneyAmount}.
+     */
+    public MoneyAmount alsProto() {
+        return MoneyAmount.newBuilder().setMinorUnits(cent).build();
+    }
+
+    /**
+     * Schreibt den Betrag als Dezimalzahl mit zwei Nachkommastellen rechtsbündig an das Ende eines Puffers.
+     *
+     * @param puffer Der Zielpuffer mit mindestens {@value #MAXIMALE_ZEICHEN} Zeichen.
+     * @return Die Position des ersten geschriebenen Zeichens; die Zeichen reichen bis zum Pufferende.
+     */
+    public int schreibeIn(char[] puffer) {
+        int position = puffer.length;
+        long rest = cent;
+        for (int stelle = 0; stelle < NACHKOMMASTELLEN; stelle++) {
+            puffer[--position] = (char) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        }
+        puffer[--position] = '.';
+        do {
+            puffer[--position] = (char) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while (rest != 0);
+        if (cent < 0) {
+            puffer[--position] = '-';
+        }
+        return position;
+    }
+
+    @Override
+    public int compareTo(Geldbetrag anderer) {
+        return Long.compare(cent, anderer.cent);
+    }
+
+    @Override
+    public boolean equals(Object anderes) {
+        return anderes instanceof Geldbetrag anderer && anderer.cent == cent;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cent);
+    }
+
+    /**
+     * Gibt den Betrag als Dezimalzahl mit zwei Nachkommastellen zurück (z.B. {@code "29.95"}).
+     *
+     * @return Die Zeichenkette.
+     */
+    @Override
+    public String toString() {
+        char[] puffer = new char[MAXIMALE_ZEICHEN];
+        int start = schreibeIn(puffer);
+        return new String(puffer, start, puffer.length - start);
+    }
+
+    /**
+     * Jackson-Serialisierer, der den Betrag als JSON-Zahl mit zwei Nachkommastellen schreibt.
+     */
+    public static final class JsonSerialisierer extends JsonSerializer<Geldbetrag> {
+        @Override
+        public void serialize(Geldbetrag betrag, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            char[] puffer = new char[MAXIMALE_ZEICHEN];
+            int start = betrag.schreibeIn(puffer);
+            generator.writeNumber(puffer, start, puffer.length - start);
+        }
+    }
+
+    /**
+     * Jackson-Deserialisierer, der JSON-Zahlen und Zeichenketten exakt in einen Geldbetrag umwandelt.
+     */
+    public static final class JsonDeserialisierer extends JsonDeserializer<Geldbetrag> {
+        @Override
+        public Geldbetrag deserialize(JsonParser parser, DeserializationContext kontext) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                return vonCent(Math.multiplyExact(parser.getLongValue(), 100L));
+            }
+            if (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_STRING) {
+                try {
+                    return parse(parser.getText());
+                } catch (ArithmeticException | NumberFormatException e) {
+                    return (Geldbetrag) kontext.handleWeirdStringValue(Geldbetrag.class, parser.getText(), e.getMessage());
+                }
+            }
+            return (Geldbetrag) kontext.handleUnexpectedToken(Geldbetrag.class, parser);
+        }
+    }
+}
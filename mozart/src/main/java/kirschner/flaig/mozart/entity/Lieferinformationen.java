@@ -2,11 +2,14 @@ package kirschner.flaig.mozart.entity;
 
 import java.time.LocalDateTime;
 
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+
 /**
  * Enthält Informationen zu einer Lieferung, insbesondere das Lieferdatum und den Lieferstatus.
  * Diese Klasse dient dazu, Lieferdetails gebündelt darzustellen und zu übertragen.
+ * Als Log-Parameter schreibt sie sich über {@link StringBuilderFormattable} ohne eigene Zeichenkette in die Meldung.
  */
-public class Lieferinformationen {
+public class Lieferinformationen implements StringBuilderFormattable {
 
     /**
      * Das Datum und die Uhrzeit der Lieferung.
@@ -74,9 +77,57 @@ public class Lieferinformationen {
      */
     @Override
     public String toString() {
-        return "Lieferinformationen{" +
-                "lieferdatum=" + lieferdatum +
-                ", lieferstatus=" + lieferstatus +
-                '}';
+        StringBuilder puffer = new StringBuilder(80);
+        formatTo(puffer);
+        return puffer.toString();
+    }
+
+    /**
+     * Hängt die String-Repräsentation an, ohne Zwischenobjekte zu erzeugen. Das Lieferdatum wird wie von
+     * {@link LocalDateTime#toString()} im ISO-8601-Format geschrieben.
+     *
+     * @param puffer Der Puffer, an den angehängt wird.
+     */
+    @Override
+    public void formatTo(StringBuilder puffer) {
+        puffer.append("Lieferinformationen{lieferdatum=");
+        if (lieferdatum == null || lieferdatum.getYear() < 1000 || lieferdatum.getYear() > 9999) {
+            puffer.append(lieferdatum);
+        } else {
+            puffer.append(lieferdatum.getYear()).append('-');
+            haengeAn(puffer, lieferdatum.getMonthValue(), 2).append('-');
+            haengeAn(puffer, lieferdatum.getDayOfMonth(), 2).append('T');
+            haengeAn(puffer, lieferdatum.getHour(), 2).append(':');
+            haengeAn(puffer, lieferdatum.getMinute(), 2);
+            int nano = lieferdatum.getNano();
+            if (lieferdatum.getSecond() > 0 || nano > 0) {
+                haengeAn(puffer.append(':'), lieferdatum.getSecond(), 2);
+                if (nano % 1_000_000 == 0 && nano > 0) {
+                    haengeAn(puffer.append('.'), nano / 1_000_000, 3);
+                } else if (nano % 1_000 == 0 && nano > 0) {
+                    haengeAn(puffer.append('.'), nano / 1_000, 6);
+                } else if (nano > 0) {
+                    haengeAn(puffer.append('.'), nano, 9);
+                }
+            }
+        }
+        puffer.append(", lieferstatus=").append(lieferstatus).append('}');
+    }
+
+    /**
+     * Hängt eine Zahl mit führenden Nullen an.
+     *
+     * @param puffer Der Puffer, an den angehängt wird.
+     * @param wert Die nicht negative Zahl.
+     * @param stellen Die Mindestanzahl der Stellen.
+     * @return Der Puffer.
+     */
+    private static StringBuilder haengeAn(StringBuilder puffer, int wert, int stellen) {
+        for (int grenze = 10, stelle = 1; stelle < stellen; grenze *= 10, stelle++) {
+            if (wert < grenze) {
+                puffer.append('0');
+            }
+        }
+        return puffer.append(wert);
     }
 }
\ No newline at end of file
@@ -1,11 +1,11 @@
 package kirschner.flaig.mozart.entity;
 
-import java.math.BigDecimal;
-
 /**
  * Repräsentiert die Stammdaten eines Produkts.
  * Diese Klasse enthält detaillierte Informationen wie Produktidentifikation, Name,
  * Kategorie, Preis und Lagermenge.
+ * Reserviert und freigegeben wird die Lagermenge ausschließlich über den
+ * {@code Produktkatalog}, dessen Sichten Lagermenge und Preis in seinen Arrays halten.
  */
 public class Produktdaten {
 
@@ -27,7 +27,7 @@ public class Produktdaten {
     /**
      * Der Preis des Produkts.
      */
-    private BigDecimal preis;
+    private Geldbetrag preis;
 
     /**
      * Die aktuell im Lager verfügbare Menge des Produkts.
@@ -52,7 +52,7 @@ public class Produktdaten {
      * @param lagermenge Die aktuelle Lagermenge des Produkts.
      */
     public Produktdaten(String produktId, String produktName, String kategorie,
-                        BigDecimal preis, Integer lagermenge) {
+                        Geldbetrag preis, Integer lagermenge) {
         this.produktId = produktId;
         this.produktName = produktName;
         this.kategorie = kategorie;
@@ -117,18 +117,18 @@ public class Produktdaten {
     /**
      * Gibt den Preis des Produkts zurück.
      *
-     * @return Der Produktpreis als {@link BigDecimal}.
+     * @return Der Produktpreis als {@link Geldbetrag}.
      */
-    public BigDecimal getPreis() {
+    public Geldbetrag getPreis() {
         return preis;
     }
 
     /**
      * Setzt den Preis des Produkts.
      *
-     * @param preis Der neue Produktpreis als {@link BigDecimal}.
+     * @param preis Der neue Produktpreis als {@link Geldbetrag}.
      */
-    public void setPreis(BigDecimal preis) {
+    public void setPreis(Geldbetrag preis) {
         this.preis = preis;
     }
 
@@ -162,8 +162,8 @@ public class Produktdaten {
                 "produktId='" + produktId + '\'' +
                 ", produktName='" + produktName + '\'' +
                 ", kategorie='" + kategorie + '\'' +
-                ", preis=" + preis +
-                ", lagermenge=" + lagermenge +
+                ", preis=" + getPreis() +
+                ", lagermenge=" + getLagermenge() +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,240 @@
+package kirschner.flaig.mozart.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import kirschner.flaig.mozart.entity.Bestellung;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+
+/**
+ * Threadsichere Sekundärindizes über alle Bestellungen: nach Kunden-ID, nach {@link DeliveryStatus} und nach Bestelldatum.
+ * <p>
+ * Alle Indizes sind nach Bestelldatum und Bestell-ID sortierte {@link ConcurrentSkipListSet}s. Damit lassen sich
+ * Zeiträume in jedem Index per Teilmenge abfragen, und ein {@link Schluessel} dient als stabiler Cursor für die
+ * seitenweise Abfrage, auch wenn parallel Bestellungen hinzukommen.
+ * <p>
+ * Pro Bestellung wird der indizierte Stand in {@link #eintraege} gehalten und über {@link ConcurrentHashMap#compute}
+ * atomar ersetzt, sodass gleichzeitige Statusänderungen derselben Bestellung die Indizes nicht auseinanderlaufen lassen.
+ * Dabei wird der neue Stand eingetragen, bevor der alte entfernt wird, und unveränderte Einträge bleiben stehen; eine
+ * gleichzeitige {@link #suche} übersieht eine Bestellung mit unverändertem Bestelldatum daher nie, kann sie während eines
+ * Statuswechsels aber kurz in beiden Statusindizes sehen. Bestellungen ohne Lieferstatus sind nur im Kunden- und Datumsindex enthalten.
+ * <p>
+ * Die Indizes liegen vollständig auf dem Heap: pro Bestellung ein {@link Eintrag}, ein {@link Schluessel} und bis zu drei
+ * Skip-List-Knoten, also etwa 200 Byte. Bei ausgelagertem {@link OffHeapBestellspeicher} macht das einen großen Teil der
+ * dort eingesparten Heap-Belegung wieder zunichte, denn der Index wächst weiterhin linear mit der Zahl der Bestellungen.
+ */
+public final class Bestellindex {
+
+    /**
+     * Ersatzwert für Bestellungen ohne Bestelldatum; sie stehen am Anfang jedes Index.
+     */
+    private static final LocalDateTime OHNE_DATUM = LocalDateTime.MIN;
+
+    /**
+     * Position einer Bestellung in den Indizes: Bestelldatum, dann Bestell-ID.
+     *
+     * @param bestelldatum Das Bestelldatum.
+     * @param bestellId Die Bestell-ID.
+     */
+    public record Schluessel(LocalDateTime bestelldatum, String bestellId) implements Comparable<Schluessel> {
+
+        /**
+         * Sortierung nach Bestelldatum, dann Bestell-ID.
+         */
+        private static final Comparator<Schluessel> REIHENFOLGE =
+                Comparator.comparing(Schluessel::bestelldatum).thenComparing(Schluessel::bestellId);
+
+        @Override
+        public int compareTo(Schluessel anderer) {
+            return REIHENFOLGE.compare(this, anderer);
+        }
+
+        /**
+         * Kodiert den Schlüssel als undurchsichtigen, URL-sicheren Cursor.
+         *
+         * @return Der Cursor.
+         */
+        public String alsCursor() {
+            String text = bestelldatum + "|" + bestellId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Dekodiert einen Cursor aus {@link #alsCursor()}.
+         *
+         * @param cursor Der Cursor.
+         * @return Der Schlüssel.
+         * @throws IllegalArgumentException Wenn der Cursor ungültig ist.
+         */
+        public static Schluessel ausCursor(String cursor) {
+            try {
+                String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int trenner = text.indexOf('|');
+                return new Schluessel(LocalDateTime.parse(text.substring(0, trenner)), text.substring(trenner + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Ungültiger Cursor: " + cursor);
+            }
+        }
+    }
+
+    /**
+     * Der indizierte Stand einer Bestellung.
+     *
+     * @param schluessel Die Position in den Indizes.
+     * @param kundenId Die Kunden-ID.
+     * @param lieferstatus Der Lieferstatus.
+     */
+    private record Eintrag(Schluessel schluessel, String kundenId, DeliveryStatus lieferstatus) {
+    }
+
+    /**
+     * Der indizierte Stand aller Bestellungen, mit der Bestell-ID als Schlüssel.
+     */
+    private final Map<String, Eintrag> eintraege = new ConcurrentHashMap<>();
+
+    /**
+     * Alle Bestellungen nach Bestelldatum.
+     */
+    private final NavigableSet<Schluessel> nachDatum = new ConcurrentSkipListSet<>();
+
+    /**
+     * Die Bestellungen je Kunde nach Bestelldatum.
+     */
+    private final Map<String, NavigableSet<Schluessel>> nachKunde = new ConcurrentHashMap<>();
+
+    /**
+     * Die Bestellungen je Lieferstatus nach Bestelldatum.
+     */
+    private final Map<DeliveryStatus, NavigableSet<Schluessel>> nachStatus = new EnumMap<>(DeliveryStatus.class);
+
+    /**
+     * Erstellt leere Indizes.
+     */
+    public Bestellindex() {
+        for (DeliveryStatus status : DeliveryStatus.values()) {
+            nachStatus.put(status, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    /**
+     * Nimmt eine Bestellung in die Indizes auf oder aktualisiert ihren indizierten Stand.
+     *
+     * @param bestellung Die Bestellung in ihrem aktuellen Zustand.
+     */
+    public void indexiere(Bestellung bestellung) {
+        LocalDateTime bestelldatum = bestellung.getBestelldatum() == null ? OHNE_DATUM : bestellung.getBestelldatum();
+        Eintrag neu = new Eintrag(new Schluessel(bestelldatum, bestellung.getBestellId()), bestellung.getKundenId(), bestellung.getLieferstatus());
+        eintraege.compute(bestellung.getBestellId(), (bestellId, alt) -> {
+            if (neu.equals(alt)) {
+                return alt;
+            }
+            nachDatum.add(neu.schluessel());
+            if (neu.kundenId() != null) {
+                nachKunde.computeIfAbsent(neu.kundenId(), kundenId -> new ConcurrentSkipListSet<>()).add(neu.schluessel());
+            }
+            if (neu.lieferstatus() != null) {
+                nachStatus.get(neu.lieferstatus()).add(neu.schluessel());
+            }
+            if (alt != null) {
+                entferneVeraltet(alt, neu);
+            }
+            return neu;
+        });
+    }
+
+    /**
+     * Sucht Bestellungen seitenweise. Die Kunden-ID hat Vorrang vor dem Lieferstatus als Einstiegsindex;
+     * das jeweils andere Kriterium wird über {@code passtZuStatus} geprüft. Der Zeitraum wird in jedem Index direkt begrenzt.
+     *
+     * @param kundenId Die Kunden-ID oder {@code null}.
+     * @param lieferstatus Der Lieferstatus oder {@code null}.
+     * @param von Der Beginn des Zeitraums (einschließlich) oder {@code null}.
+     * @param bis Das Ende des Zeitraums (ausschließlich) oder {@code null}.
+     * @param nach Der Schlüssel des letzten Treffers der vorherigen Seite oder {@code null}.
+     * @param limit Die maximale Anzahl an Treffern.
+     * @return Die Schlüssel der Treffer in Index-Reihenfolge; höchstens {@code limit + 1}, damit der Aufrufer erkennt, ob es weitere gibt.
+     */
+    public List<Schluessel> suche(String kundenId, DeliveryStatus lieferstatus, LocalDateTime von, LocalDateTime bis,
+                                  Schluessel nach, int limit) {
+        NavigableSet<Schluessel> index;
+        boolean statusPruefen = false;
+        if (kundenId != null) {
+            index = nachKunde.get(kundenId);
+            if (index == null) {
+                return List.of();
+            }
+            statusPruefen = lieferstatus != null;
+        } else if (lieferstatus != null) {
+            index = nachStatus.get(lieferstatus);
+        } else {
+            index = nachDatum;
+        }
+
+        if (nach != null) {
+            index = index.tailSet(nach, false);
+        }
+        if (von != null) {
+            index = index.tailSet(new Schluessel(von, ""), true);
+        }
+        if (bis != null) {
+            index = index.headSet(new Schluessel(bis, ""), false);
+        }
+
+        List<Schluessel> treffer = new ArrayList<>(Math.min(limit + 1, 1024));
+        for (Schluessel schluessel : index) {
+            if (statusPruefen && !passtZuStatus(schluessel.bestellId(), lieferstatus)) {
+                continue;
+            }
+            treffer.add(schluessel);
+            if (treffer.size() > limit) {
+                break;
+            }
+        }
+        return treffer;
+    }
+
+    /**
+     * Gibt die Anzahl der indizierten Bestellungen zurück.
+     *
+     * @return Die Anzahl.
+     */
+    public int anzahl() {
+        return eintraege.size();
+    }
+
+    /**
+     * Prüft, ob der indizierte Lieferstatus einer Bestellung dem gesuchten entspricht.
+     */
+    private boolean passtZuStatus(String bestellId, DeliveryStatus lieferstatus) {
+        Eintrag eintrag = eintraege.get(bestellId);
+        return eintrag != null && eintrag.lieferstatus() == lieferstatus;
+    }
+
+    /**
+     * Entfernt einen alten Stand aus den Indizes, in denen der bereits eingetragene neue Stand ihn nicht ersetzt.
+     */
+    private void entferneVeraltet(Eintrag alt, Eintrag neu) {
+        boolean gleicherSchluessel = alt.schluessel().equals(neu.schluessel());
+        if (!gleicherSchluessel) {
+            nachDatum.remove(alt.schluessel());
+        }
+        if (alt.kundenId() != null && !(gleicherSchluessel && alt.kundenId().equals(neu.kundenId()))) {
+            NavigableSet<Schluessel> kundenIndex = nachKunde.get(alt.kundenId());
+            if (kundenIndex != null) {
+                kundenIndex.remove(alt.schluessel());
+            }
+        }
+        if (alt.lieferstatus() != null && !(gleicherSchluessel && alt.lieferstatus() == neu.lieferstatus())) {
+            nachStatus.get(alt.lieferstatus()).remove(alt.schluessel());
+        }
+    }
+}
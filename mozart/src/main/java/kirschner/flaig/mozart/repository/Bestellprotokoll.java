@@ -0,0 +1,733 @@
+package kirschner.flaig.mozart.repository;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import kirschner.flaig.mozart.entity.Bestellung;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+
+/**
+ * Dauerhaftes, nur anhängendes Protokoll aller Bestellungen.
+ * <p>
+ * Jede Änderung einer Bestellung (Neuanlage oder Statusänderung) wird als vollständiger Satz an das Ende
+ * eines speichergemappten Segments ({@code bestellungen-NNNNNNNN.log}) geschrieben; ist ein Segment voll,
+ * wird ein neues angelegt. Ein Satz besteht aus Länge, CRC32C-Prüfsumme und den Nutzdaten.
+ * <p>
+ * Schreibende Threads kopieren ihren Satz nur in den gemappten Speicher und warten anschließend auf einen
+ * gemeinsamen Flush-Thread (Group Commit): Dieser schreibt mit einem {@code force()} alle bis dahin
+ * angehängten Sätze auf die Platte, sodass sich viele gleichzeitige Bestellungen einen Plattenzugriff teilen.
+ * <p>
+ * Ein Index im Speicher verweist für jede Bestell-ID auf den jeweils neuesten Satz. Beim Öffnen werden alle
+ * Segmente sequenziell durchlaufen und der Index neu aufgebaut; ein abgeschnittener oder beschädigter Satz
+ * am Ende des letzten Segments (Absturz während des Schreibens) wird verworfen und überschrieben. Hat das letzte
+ * Segment keinen gültigen Kopf und noch keinen Satz, ist das Anlegen des Segments abgebrochen worden; es wird gelöscht
+ * und beim nächsten Segmentwechsel neu angelegt.
+ * Ein beschädigter Satz in einem älteren Segment kann dagegen nicht durch einen Absturz entstehen, weil ein
+ * Segment vor dem Wechsel vollständig geflusht wird; das Öffnen schlägt dann fehl, statt die folgenden, bereits
+ * bestätigten Bestellungen stillschweigend zu verlieren. Ältere Sätze werden nicht kompaktiert.
+ * <p>
+ * Die Sätze eines Aufrufs von {@link #anhaengenAlle(Collection)} landen immer im selben Segment; ein nötiger
+ * Segmentwechsel erfolgt vor dem ersten Satz. Atomar ist ein Batch damit nicht: Stürzt der Prozess ab, bevor der Flush
+ * abgeschlossen ist, kann ein Anfang des Batches wiederhergestellt werden. Jeder Satz ist für sich gültig, und
+ * bestätigt wird ein Batch ohnehin erst nach dem Flush.
+ */
+public final class Bestellprotokoll implements AutoCloseable {
+
+    /**
+     * Logger für diese Klasse.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(Bestellprotokoll.class);
+
+    /**
+     * Kennung am Anfang jedes Segments ("MZBL").
+     */
+    private static final int MAGIC = 0x4D5A424C;
+
+    /**
+     * Die Formatversion der Segmente.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Die Größe des Segmentkopfs (Kennung und Version) in Bytes.
+     */
+    private static final int SEGMENT_KOPF = 8;
+
+    /**
+     * Die Größe des Satzkopfs (Länge und Prüfsumme) in Bytes.
+     */
+    private static final int SATZ_KOPF = 8;
+
+    /**
+     * Markiert einen fehlenden Text in der Satzkodierung.
+     */
+    private static final int KEIN_TEXT = 0xFFFF;
+
+    /**
+     * Markiert ein fehlendes Datum in der Satzkodierung.
+     */
+    private static final long KEIN_DATUM = Long.MIN_VALUE;
+
+    /**
+     * Präfix der Segmentdateien.
+     */
+    private static final String DATEI_PRAEFIX = "bestellungen-";
+
+    /**
+     * Endung der Segmentdateien.
+     */
+    private static final String DATEI_ENDUNG = ".log";
+
+    /**
+     * Das Verzeichnis der Segmentdateien.
+     */
+    private final Path verzeichnis;
+
+    /**
+     * Die Größe neu angelegter Segmente in Bytes.
+     */
+    private final int segmentGroesse;
+
+    /**
+     * Gibt an, ob {@link #anhaengen(Bestellung)} auf den Flush auf die Platte wartet.
+     */
+    private final boolean synchron;
+
+    /**
+     * Alle geöffneten Segmente in aufsteigender Reihenfolge.
+     */
+    private final List<Segment> segmente = new CopyOnWriteArrayList<>();
+
+    /**
+     * Index von Bestell-ID auf den neuesten Satz, kodiert als Segmentposition (obere 32 Bit) und Offset (untere 32 Bit).
+     */
+    private final Map<String, Long> index = new ConcurrentHashMap<>();
+
+    /**
+     * Sperre für Schreibposition und Flush-Zustand.
+     */
+    private final ReentrantLock sperre = new ReentrantLock();
+
+    /**
+     * Signalisiert dem Flush-Thread neu angehängte Sätze.
+     */
+    private final Condition neueSaetze = sperre.newCondition();
+
+    /**
+     * Signalisiert wartenden Schreibern einen abgeschlossenen Flush.
+     */
+    private final Condition geflusht = sperre.newCondition();
+
+    /**
+     * Der Thread, der angehängte Sätze gesammelt auf die Platte schreibt.
+     */
+    private final Thread flushThread;
+
+    /**
+     * Das Segment, an das aktuell angehängt wird.
+     */
+    private Segment aktuellesSegment;
+
+    /**
+     * Die nächste freie Position im aktuellen Segment.
+     */
+    private int schreibPosition;
+
+    /**
+     * Die Anzahl aller seit dem Öffnen angehängten Bytes.
+     */
+    private long geschriebenBis;
+
+    /**
+     * Die Anzahl der seit dem Öffnen angehängten Bytes, die bereits auf der Platte liegen.
+     */
+    private long dauerhaftBis;
+
+    /**
+     * Die Anzahl der seit dem Öffnen angehängten Sätze.
+     */
+    private long anzahlSaetze;
+
+    /**
+     * Die Anzahl der seit dem Öffnen ausgeführten Flushes.
+     */
+    private long anzahlFlushes;
+
+    /**
+     * Der Fehler des Flush-Threads, falls ein Flush fehlgeschlagen ist.
+     */
+    private RuntimeException flushFehler;
+
+    /**
+     * Gibt an, ob das Protokoll geschlossen wurde.
+     */
+    private boolean geschlossen;
+
+    /**
+     * Ein geöffnetes, vollständig gemapptes Segment.
+     *
+     * @param position Die Position des Segments in {@link #segmente}.
+     * @param nummer Die fortlaufende Nummer aus dem Dateinamen.
+     * @param kanal Der geöffnete Dateikanal.
+     * @param puffer Der gemappte Inhalt der Datei.
+     */
+    private record Segment(int position, int nummer, FileChannel kanal, MappedByteBuffer puffer) {
+    }
+
+    /**
+     * Öffnet das Protokoll, stellt den Index aus den vorhandenen Segmenten wieder her und startet den Flush-Thread.
+     *
+     * @param verzeichnis Das Verzeichnis der Segmentdateien; wird bei Bedarf angelegt.
+     * @param segmentGroesse Die Größe neu angelegter Segmente in Bytes.
+     * @param synchron {@code true}, wenn Schreiber warten, bis ihr Satz auf der Platte liegt.
+     * @throws IOException Wenn die Segmente nicht geöffnet oder gelesen werden können.
+     */
+    public Bestellprotokoll(Path verzeichnis, int segmentGroesse, boolean synchron) throws IOException {
+        if (segmentGroesse <= SEGMENT_KOPF + SATZ_KOPF) {
+            throw new IllegalArgumentException("Segmentgröße zu klein: " + segmentGroesse);
+        }
+        this.verzeichnis = Files.createDirectories(verzeichnis);
+        this.segmentGroesse = segmentGroesse;
+        this.synchron = synchron;
+
+        long start = System.nanoTime();
+        try {
+            stelleWiederHer();
+        } catch (IOException | RuntimeException e) {
+            for (Segment segment : segmente) {
+                try {
+                    segment.kanal().close();
+                } catch (IOException schliessFehler) {
+                    e.addSuppressed(schliessFehler);
+                }
+            }
+            throw e;
+        }
+        LOGGER.info("Bestellprotokoll: {} Bestellungen aus {} Segmenten in {} ms wiederhergestellt.",
+                index.size(), segmente.size(), (System.nanoTime() - start) / 1_000_000);
+
+        this.flushThread = Thread.ofPlatform().name("bestellprotokoll-flush").daemon().start(this::flusheFortlaufend);
+    }
+
+    /**
+     * Hängt eine Bestellung als neuen Satz an das Protokoll an.
+     *
+     * @param bestellung Die Bestellung in ihrem aktuellen Zustand.
+     * @throws IOException Wenn der Satz nicht dauerhaft geschrieben werden konnte.
+     */
+    public void anhaengen(Bestellung bestellung) throws IOException {
+        anhaengenAlle(List.of(bestellung));
+    }
+
+    /**
+     * Hängt mehrere Bestellungen an das Protokoll an; alle Sätze werden in dasselbe Segment geschrieben und gemeinsam geflusht.
+     *
+     * @param bestellungen Die Bestellungen in ihrem aktuellen Zustand.
+     * @throws IOException Wenn die Sätze nicht dauerhaft geschrieben werden konnten.
+     * @throws IllegalArgumentException Wenn die Sätze zusammen nicht in ein Segment passen; dann wird nichts geschrieben.
+     */
+    public void anhaengenAlle(Collection<Bestellung> bestellungen) throws IOException {
+        List<byte[]> saetze = new ArrayList<>(bestellungen.size());
+        long gesamt = 0;
+        for (Bestellung bestellung : bestellungen) {
+            byte[] satz = kodiere(bestellung);
+            saetze.add(satz);
+            gesamt += satz.length;
+        }
+        if (SEGMENT_KOPF + gesamt > segmentGroesse) {
+            throw new IllegalArgumentException("Bestellungen sind zusammen zu groß für ein Segment: " + gesamt + " Bytes");
+        }
+
+        sperre.lock();
+        try {
+            if (geschlossen) {
+                throw new IllegalStateException("Bestellprotokoll ist geschlossen.");
+            }
+            if (schreibPosition + gesamt > aktuellesSegment.puffer().capacity()) {
+                wechsleSegment();
+            }
+            int i = 0;
+            for (Bestellung bestellung : bestellungen) {
+                byte[] satz = saetze.get(i++);
+                aktuellesSegment.puffer().put(schreibPosition, satz);
+                index.put(bestellung.getBestellId(), adresse(aktuellesSegment.position(), schreibPosition));
+                schreibPosition += satz.length;
+                geschriebenBis += satz.length;
+                anzahlSaetze++;
+            }
+            long ziel = geschriebenBis;
+            neueSaetze.signal();
+
+            while (synchron && dauerhaftBis < ziel && flushFehler == null) {
+                geflusht.await();
+            }
+            if (flushFehler != null) {
+                throw new IOException("Bestellprotokoll konnte nicht auf die Platte geschrieben werden.", flushFehler);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Warten auf den Flush des Bestellprotokolls unterbrochen.");
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Liest den neuesten Stand einer Bestellung aus dem Protokoll.
+     *
+     * @param bestellId Die ID der Bestellung.
+     * @return Die Bestellung oder {@code null}, wenn sie nicht im Protokoll steht.
+     */
+    public Bestellung lies(String bestellId) {
+        Long adresse = index.get(bestellId);
+        if (adresse == null) {
+            return null;
+        }
+        Segment segment = segmente.get((int) (adresse >>> 32));
+        return dekodiere(segment.puffer(), adresse.intValue() + SATZ_KOPF);
+    }
+
+    /**
+     * Liest den neuesten Stand aller Bestellungen aus dem Protokoll.
+     *
+     * @return Alle Bestellungen, mit der Bestell-ID als Schlüssel.
+     */
+    public Map<String, Bestellung> liesAlle() {
+        Map<String, Bestellung> bestellungen = new HashMap<>(index.size() * 2);
+        for (String bestellId : index.keySet()) {
+            bestellungen.put(bestellId, lies(bestellId));
+        }
+        return bestellungen;
+    }
+
+    /**
+     * Gibt die Anzahl der seit dem Öffnen angehängten Sätze zurück.
+     *
+     * @return Die Anzahl der Sätze.
+     */
+    public long getAnzahlSaetze() {
+        sperre.lock();
+        try {
+            return anzahlSaetze;
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Gibt die Anzahl der seit dem Öffnen ausgeführten Flushes zurück.
+     * Das Verhältnis zu {@link #getAnzahlSaetze()} zeigt, wie viele Sätze sich einen Flush geteilt haben.
+     *
+     * @return Die Anzahl der Flushes.
+     */
+    public long getAnzahlFlushes() {
+        sperre.lock();
+        try {
+            return anzahlFlushes;
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Schreibt alle ausstehenden Sätze auf die Platte, beendet den Flush-Thread und schließt die Segmente.
+     *
+     * @throws IOException Wenn ein Segment nicht geschlossen werden kann.
+     */
+    @Override
+    public void close() throws IOException {
+        sperre.lock();
+        try {
+            if (geschlossen) {
+                return;
+            }
+            geschlossen = true;
+            neueSaetze.signal();
+        } finally {
+            sperre.unlock();
+        }
+        try {
+            flushThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Segment segment : segmente) {
+            segment.kanal().close();
+        }
+    }
+
+    /**
+     * Schleife des Flush-Threads: wartet auf neue Sätze und schreibt alle bis dahin angehängten mit einem
+     * {@code force()} auf die Platte. Während eines Flushes angehängte Sätze werden im nächsten Durchlauf gemeinsam geflusht.
+     */
+    private void flusheFortlaufend() {
+        while (true) {
+            long ziel;
+            Segment segment;
+            sperre.lock();
+            try {
+                while (geschriebenBis == dauerhaftBis && !geschlossen) {
+                    neueSaetze.awaitUninterruptibly();
+                }
+                if (geschriebenBis == dauerhaftBis) {
+                    return;
+                }
+                ziel = geschriebenBis;
+                segment = aktuellesSegment;
+            } finally {
+                sperre.unlock();
+            }
+
+            RuntimeException fehler = null;
+            try {
+                segment.puffer().force();
+            } catch (RuntimeException e) {
+                fehler = e;
+                LOGGER.error("Bestellprotokoll: Flush von Segment {} fehlgeschlagen: {}", segment.nummer(), e.getMessage());
+            }
+
+            sperre.lock();
+            try {
+                if (fehler != null) {
+                    flushFehler = fehler;
+                } else {
+                    dauerhaftBis = ziel;
+                    anzahlFlushes++;
+                }
+                geflusht.signalAll();
+                if (fehler != null) {
+                    return;
+                }
+            } finally {
+                sperre.unlock();
+            }
+        }
+    }
+
+    /**
+     * Schließt das aktuelle Segment ab und legt ein neues an. Muss unter {@link #sperre} aufgerufen werden.
+     * Das alte Segment wird sofort geflusht, damit der Flush-Thread nur das aktuelle Segment kennen muss.
+     *
+     * @throws IOException Wenn das neue Segment nicht angelegt werden kann.
+     */
+    private void wechsleSegment() throws IOException {
+        aktuellesSegment.puffer().force();
+        aktuellesSegment = legeSegmentAn(aktuellesSegment.nummer() + 1);
+        schreibPosition = SEGMENT_KOPF;
+    }
+
+    /**
+     * Öffnet alle vorhandenen Segmente, baut den Index auf und bestimmt die Schreibposition.
+     *
+     * @throws IOException Wenn ein Segment nicht gelesen werden kann.
+     */
+    private void stelleWiederHer() throws IOException {
+        List<Path> dateien;
+        try (Stream<Path> inhalt = Files.list(verzeichnis)) {
+            dateien = inhalt
+                    .filter(datei -> {
+                        String name = datei.getFileName().toString();
+                        return name.startsWith(DATEI_PRAEFIX) && name.endsWith(DATEI_ENDUNG);
+                    })
+                    .sorted()
+                    .toList();
+        }
+
+        for (int i = 0; i < dateien.size(); i++) {
+            Path datei = dateien.get(i);
+            String name = datei.getFileName().toString();
+            int nummer = Integer.parseInt(name.substring(DATEI_PRAEFIX.length(), name.length() - DATEI_ENDUNG.length()));
+            boolean letztes = i == dateien.size() - 1;
+            FileChannel kanal = FileChannel.open(datei, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(segmente.size(), nummer, kanal, kanal.map(FileChannel.MapMode.READ_WRITE, 0, kanal.size()));
+            if (segment.puffer().capacity() < SEGMENT_KOPF || segment.puffer().getInt(0) != MAGIC) {
+                kanal.close();
+                if (letztes && istAbgebrochenAngelegt(segment.puffer())) {
+                    LOGGER.warn("Bestellprotokoll: Segment {} wurde nicht vollständig angelegt und wird verworfen.", datei);
+                    Files.delete(datei);
+                    break;
+                }
+                throw new IOException("Ungültiges Segment im Bestellprotokoll: " + datei);
+            }
+            segmente.add(segment);
+            aktuellesSegment = segment;
+            schreibPosition = scanne(segment, letztes);
+        }
+
+        if (aktuellesSegment == null) {
+            aktuellesSegment = legeSegmentAn(0);
+            schreibPosition = SEGMENT_KOPF;
+        }
+    }
+
+    /**
+     * Prüft, ob ein Segment ohne gültigen Kopf aus einem abgebrochenen {@link #legeSegmentAn(int)} stammt: Sätze werden
+     * erst nach dem dauerhaft geschriebenen Kopf angehängt, das Segment enthält also noch keinen.
+     *
+     * @param puffer Der Inhalt des Segments.
+     * @return {@code true}, wenn das Segment kürzer als der Kopf ist oder an der Stelle des ersten Satzes nur Nullen stehen.
+     */
+    private static boolean istAbgebrochenAngelegt(MappedByteBuffer puffer) {
+        return puffer.capacity() < SEGMENT_KOPF + SATZ_KOPF || puffer.getLong(SEGMENT_KOPF) == 0;
+    }
+
+    /**
+     * Liest alle gültigen Sätze eines Segments und trägt sie in den Index ein.
+     * Ein ungültiger Satz beendet das Segment; im letzten Segment wird der Rest genullt, damit neue Sätze ihn überschreiben.
+     *
+     * @param segment Das zu lesende Segment.
+     * @param letztes {@code true}, wenn es das letzte Segment ist.
+     * @return Die Position hinter dem letzten gültigen Satz.
+     * @throws IOException Wenn ein Segment vor dem letzten einen ungültigen Satz enthält.
+     */
+    private int scanne(Segment segment, boolean letztes) throws IOException {
+        MappedByteBuffer puffer = segment.puffer();
+        CRC32C pruefsumme = new CRC32C();
+        int position = SEGMENT_KOPF;
+        boolean beschaedigt = false;
+
+        while (position + SATZ_KOPF <= puffer.capacity()) {
+            int laenge = puffer.getInt(position);
+            if (laenge == 0) {
+                break;
+            }
+            if (laenge < 0 || laenge > puffer.capacity() - position - SATZ_KOPF) {
+                beschaedigt = true;
+                break;
+            }
+            pruefsumme.reset();
+            pruefsumme.update(puffer.slice(position + SATZ_KOPF, laenge));
+            if ((int) pruefsumme.getValue() != puffer.getInt(position + 4)) {
+                beschaedigt = true;
+                break;
+            }
+            index.put(liesText(puffer, position + SATZ_KOPF), adresse(segment.position(), position));
+            position += SATZ_KOPF + laenge;
+        }
+
+        if (beschaedigt) {
+            if (!letztes) {
+                throw new IOException("Bestellprotokoll beschädigt: ungültiger Satz in Segment " + segment.nummer()
+                        + " an Position " + position + ", obwohl weitere Segmente folgen.");
+            }
+            LOGGER.warn("Bestellprotokoll: Ungültiger Satz in Segment {} an Position {}; Rest des Segments wird verworfen.",
+                    segment.nummer(), position);
+            byte[] nullen = new byte[4096];
+            for (int i = position; i < puffer.capacity(); i += nullen.length) {
+                puffer.put(i, nullen, 0, Math.min(nullen.length, puffer.capacity() - i));
+            }
+            puffer.force();
+        }
+        return position;
+    }
+
+    /**
+     * Legt eine neue, leere Segmentdatei an und schreibt ihren Kopf dauerhaft.
+     *
+     * @param nummer Die Nummer des Segments.
+     * @return Das geöffnete Segment.
+     * @throws IOException Wenn die Datei nicht angelegt werden kann.
+     */
+    private Segment legeSegmentAn(int nummer) throws IOException {
+        Path datei = verzeichnis.resolve(String.format("%s%08d%s", DATEI_PRAEFIX, nummer, DATEI_ENDUNG));
+        FileChannel kanal = FileChannel.open(datei, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer puffer = kanal.map(FileChannel.MapMode.READ_WRITE, 0, segmentGroesse);
+        puffer.putInt(0, MAGIC);
+        puffer.putInt(4, VERSION);
+        puffer.force();
+        Segment segment = new Segment(segmente.size(), nummer, kanal, puffer);
+        segmente.add(segment);
+        return segment;
+    }
+
+    /**
+     * Kodiert die Segmentposition und den Offset eines Satzes als Indexwert.
+     *
+     * @param segmentPosition Die Position des Segments in {@link #segmente}.
+     * @param offset Der Offset des Satzes im Segment.
+     * @return Der Indexwert.
+     */
+    private static long adresse(int segmentPosition, int offset) {
+        return ((long) segmentPosition << 32) | offset;
+    }
+
+    /**
+     * Kodiert eine Bestellung als vollständigen Satz einschließlich Länge und Prüfsumme.
+     *
+     * @param bestellung Die Bestellung.
+     * @return Der Satz.
+     */
+    private static byte[] kodiere(Bestellung bestellung) {
+        byte[] bestellId = utf8(bestellung.getBestellId());
+        byte[] kundenId = utf8(bestellung.getKundenId());
+        byte[] email = utf8(bestellung.getEmail());
+        byte[] adresse = utf8(bestellung.getAdresse());
+        byte[] produktId = utf8(bestellung.getProduktId());
+        byte[] zahlungsmethode = utf8(bestellung.getZahlungsmethode());
+        int laenge = textLaenge(bestellId) + textLaenge(kundenId) + textLaenge(email) + textLaenge(adresse)
+                + textLaenge(produktId) + Integer.BYTES + 2 * Long.BYTES + 1 + 2 * Long.BYTES + textLaenge(zahlungsmethode);
+
+        ByteBuffer satz = ByteBuffer.allocate(SATZ_KOPF + laenge);
+        satz.position(SATZ_KOPF);
+        schreibeText(satz, bestellId);
+        schreibeText(satz, kundenId);
+        schreibeText(satz, email);
+        schreibeText(satz, adresse);
+        schreibeText(satz, produktId);
+        satz.putInt(bestellung.getMenge());
+        schreibeDatum(satz, bestellung.getBestelldatum());
+        satz.put(bestellung.getLieferstatus() == null ? -1 : (byte) bestellung.getLieferstatus().ordinal());
+        schreibeDatum(satz, bestellung.getLieferdatum());
+        schreibeText(satz, zahlungsmethode);
+
+        CRC32C pruefsumme = new CRC32C();
+        pruefsumme.update(satz.array(), SATZ_KOPF, laenge);
+        satz.putInt(0, laenge);
+        satz.putInt(4, (int) pruefsumme.getValue());
+        return satz.array();
+    }
+
+    /**
+     * Dekodiert die Nutzdaten eines Satzes.
+     *
+     * @param puffer Der Segmentinhalt.
+     * @param position Der Beginn der Nutzdaten.
+     * @return Die Bestellung.
+     */
+    private static Bestellung dekodiere(ByteBuffer puffer, int position) {
+        ByteBuffer satz = puffer.slice(position, puffer.capacity() - position);
+        String bestellId = liesText(satz);
+        String kundenId = liesText(satz);
+        String email = liesText(satz);
+        String adresse = liesText(satz);
+        String produktId = liesText(satz);
+        int menge = satz.getInt();
+        LocalDateTime bestelldatum = liesDatum(satz);
+        byte status = satz.get();
+        LocalDateTime lieferdatum = liesDatum(satz);
+        String zahlungsmethode = liesText(satz);
+        return BestellungBuilder.getInstance()
+                .withOrderID(bestellId)
+                .withCustomerID(kundenId)
+                .withEmail(email)
+                .withAddress(adresse)
+                .withProductID(produktId)
+                .withQuantity(menge)
+                .withOrderDate(bestelldatum)
+                .withDeliveryStatus(status < 0 ? null : DeliveryStatus.values()[status])
+                .withDeliveryDate(lieferdatum)
+                .withPaymentMethod(zahlungsmethode)
+                .build();
+    }
+
+    /**
+     * Kodiert einen Text als UTF-8.
+     *
+     * @param text Der Text oder {@code null}.
+     * @return Die Bytes oder {@code null}.
+     */
+    private static byte[] utf8(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Berechnet den Platz eines Textes im Satz: Länge als {@code short} und die Bytes.
+     *
+     * @param text Die UTF-8-Bytes oder {@code null}.
+     * @return Der Platz in Bytes.
+     * @throws IllegalArgumentException Wenn der Text länger als die größte kodierbare Länge ist.
+     */
+    private static int textLaenge(byte[] text) {
+        if (text != null && text.length >= KEIN_TEXT) {
+            throw new IllegalArgumentException("Text zu lang für das Bestellprotokoll: " + text.length + " Bytes");
+        }
+        return Short.BYTES + (text == null ? 0 : text.length);
+    }
+
+    /**
+     * Schreibt einen Text mit vorangestellter Länge; ein fehlender Text wird als {@link #KEIN_TEXT} kodiert.
+     *
+     * @param satz Der Zielpuffer.
+     * @param text Die UTF-8-Bytes oder {@code null}.
+     */
+    private static void schreibeText(ByteBuffer satz, byte[] text) {
+        satz.putShort((short) (text == null ? KEIN_TEXT : text.length));
+        if (text != null) {
+            satz.put(text);
+        }
+    }
+
+    /**
+     * Liest einen mit {@link #schreibeText(ByteBuffer, byte[])} geschriebenen Text an der aktuellen Position.
+     *
+     * @param satz Der Quellpuffer.
+     * @return Der Text oder {@code null}.
+     */
+    private static String liesText(ByteBuffer satz) {
+        int laenge = Short.toUnsignedInt(satz.getShort());
+        if (laenge == KEIN_TEXT) {
+            return null;
+        }
+        byte[] text = new byte[laenge];
+        satz.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Liest einen Text an einer festen Position, ohne die Position des Puffers zu verändern.
+     *
+     * @param puffer Der Quellpuffer.
+     * @param position Die Position der Länge.
+     * @return Der Text oder {@code null}.
+     */
+    private static String liesText(ByteBuffer puffer, int position) {
+        return liesText(puffer.slice(position, puffer.capacity() - position));
+    }
+
+    /**
+     * Schreibt einen Zeitpunkt als Epochentag und Nanosekunde des Tages; ein fehlender als {@link #KEIN_DATUM}.
+     *
+     * @param satz Der Zielpuffer.
+     * @param datum Der Zeitpunkt oder {@code null}.
+     */
+    private static void schreibeDatum(ByteBuffer satz, LocalDateTime datum) {
+        satz.putLong(datum == null ? KEIN_DATUM : datum.toLocalDate().toEpochDay());
+        satz.putLong(datum == null ? 0L : datum.toLocalTime().toNanoOfDay());
+    }
+
+    /**
+     * Liest einen mit {@link #schreibeDatum(ByteBuffer, LocalDateTime)} geschriebenen Zeitpunkt.
+     *
+     * @param satz Der Quellpuffer.
+     * @return Der Zeitpunkt oder {@code null}.
+     */
+    private static LocalDateTime liesDatum(ByteBuffer satz) {
+        long tag = satz.getLong();
+        long nanos = satz.getLong();
+        return tag == KEIN_DATUM ? null : LocalDateTime.of(LocalDate.ofEpochDay(tag), LocalTime.ofNanoOfDay(nanos));
+    }
+}
@@ -0,0 +1,44 @@
+package kirschner.flaig.mozart.repository;
+
+import kirschner.flaig.mozart.entity.Bestellung;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+
+/**
+ * Ablage für Bestellungen, auf die {@code Bestellverwaltung} für Nachschlagen, Speichern und Statusänderungen zugreift.
+ * Implementierungen müssen threadsicher sein.
+ */
+public interface Bestellspeicher {
+
+    /**
+     * Sucht eine Bestellung anhand ihrer ID.
+     * Je nach Implementierung ist das Ergebnis das gespeicherte Objekt oder eine Kopie; Änderungen
+     * müssen daher immer über {@link #speichere(Bestellung)} oder {@link #aktualisiereLieferstatus(String, DeliveryStatus)} erfolgen.
+     *
+     * @param bestellId Die ID der Bestellung.
+     * @return Die Bestellung oder {@code null}, wenn sie nicht existiert oder die ID {@code null} ist.
+     */
+    Bestellung finde(String bestellId);
+
+    /**
+     * Speichert eine Bestellung; eine vorhandene Bestellung mit derselben ID wird ersetzt.
+     *
+     * @param bestellung Die zu speichernde Bestellung.
+     */
+    void speichere(Bestellung bestellung);
+
+    /**
+     * Setzt den Lieferstatus einer gespeicherten Bestellung.
+     *
+     * @param bestellId Die ID der Bestellung.
+     * @param lieferstatus Der neue Lieferstatus.
+     * @return {@code true}, wenn die Bestellung existiert und aktualisiert wurde; {@code false} auch für die ID {@code null}.
+     */
+    boolean aktualisiereLieferstatus(String bestellId, DeliveryStatus lieferstatus);
+
+    /**
+     * Gibt die Anzahl der gespeicherten Bestellungen zurück.
+     *
+     * @return Die Anzahl der Bestellungen.
+     */
+    int anzahl();
+}
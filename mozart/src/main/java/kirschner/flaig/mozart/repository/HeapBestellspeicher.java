@@ -0,0 +1,52 @@
+package kirschner.flaig.mozart.repository;
+
+import java.util.Map;
+
+import kirschner.flaig.mozart.entity.Bestellung;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+
+/**
+ * {@link Bestellspeicher} auf Basis einer Map im Heap, standardmäßig {@link MozartMockRepo#bestellungen}.
+ * {@link #finde(String)} liefert das gespeicherte Objekt selbst.
+ */
+public class HeapBestellspeicher implements Bestellspeicher {
+
+    /**
+     * Die Map aller Bestellungen, mit der Bestell-ID als Schlüssel.
+     */
+    private final Map<String, Bestellung> bestellungen;
+
+    /**
+     * Erstellt einen Speicher über der übergebenen, threadsicheren Map.
+     *
+     * @param bestellungen Die Map der Bestellungen.
+     */
+    public HeapBestellspeicher(Map<String, Bestellung> bestellungen) {
+        this.bestellungen = bestellungen;
+    }
+
+    @Override
+    public Bestellung finde(String bestellId) {
+        return bestellId == null ? null : bestellungen.get(bestellId);
+    }
+
+    @Override
+    public void speichere(Bestellung bestellung) {
+        bestellungen.put(bestellung.getBestellId(), bestellung);
+    }
+
+    @Override
+    public boolean aktualisiereLieferstatus(String bestellId, DeliveryStatus lieferstatus) {
+        Bestellung bestellung = finde(bestellId);
+        if (bestellung == null) {
+            return false;
+        }
+        bestellung.setLieferstatus(lieferstatus);
+        return true;
+    }
+
+    @Override
+    public int anzahl() {
+        return bestellungen.size();
+    }
+}
@@ -1,13 +1,13 @@
 package kirschner.flaig.mozart.repository;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 // import java.util.Collections; // Import für Collections.unmodifiableMap, falls später benötigt
 
 import kirschner.flaig.mozart.entity.Bestellung;
 import kirschner.flaig.mozart.entity.DeliveryStatus;
+import kirschner.flaig.mozart.entity.Geldbetrag;
 import kirschner.flaig.mozart.entity.Produktdaten;
 
 /**
@@ -17,6 +17,7 @@ import kirschner.flaig.mozart.entity.Produktdaten;
  * <p>
  * Der Zugriff auf die Daten erfolgt direkt über die statischen Felder:
  * <ul>
+ * <li>{@code MozartMockRepo.produktkatalog}</li>
  * <li>{@code MozartMockRepo.produktdaten}</li>
  * <li>{@code MozartMockRepo.bestellungen}</li>
  * </ul>
@@ -25,13 +26,24 @@ import kirschner.flaig.mozart.entity.Produktdaten;
  */
 public final class MozartMockRepo {
 
+    /**
+     * Die maximale Anzahl an Produkten im {@link #produktkatalog}.
+     */
+    private static final int PRODUKTKATALOG_KAPAZITAET = 1024;
+
+    /**
+     * Statischer, indexbasierter Katalog aller Produkte.
+     * Hält Lagermengen und Preise in primitiven Arrays; neue Produkte werden über
+     * {@link Produktkatalog#registriere(Produktdaten)} aufgenommen.
+     */
+    public static final Produktkatalog produktkatalog;
+
     /**
      * Statische Map aller Produktdaten, mit der Produkt-ID als Schlüssel.
-     * Die Map wird bei der Initialisierung der Klasse gefüllt.
+     * Die Einträge sind Sichten auf den {@link #produktkatalog}.
      * <p>
-     * <strong>Hinweis:</strong> Der Inhalt dieser Map ist standardmäßig zur Laufzeit veränderbar.
-     * Um dies zu verhindern, könnte die Map nach der Initialisierung mit
-     * {@code Collections.unmodifiableMap()} umschlossen werden.
+     * <strong>Hinweis:</strong> Die Map ist nicht direkt veränderbar. Lagermengen dürfen nicht per
+     * Lesen-Ändern-Schreiben angepasst werden, sondern nur über {@code Lagerverwaltung}.
      */
     public static final Map<String, Produktdaten> produktdaten;
 
@@ -39,7 +51,8 @@ public final class MozartMockRepo {
      * Statische Map aller Bestellungen, mit der Bestell-ID als Schlüssel.
      * Die Map wird bei der Initialisierung der Klasse gefüllt.
      * <p>
-     * <strong>Hinweis:</strong> Der Inhalt dieser Map ist standardmäßig zur Laufzeit veränderbar.
+     * <strong>Hinweis:</strong> Die Map ist threadsicher, da Bestellungen parallel eingefügt
+     * und aktualisiert werden.
      */
     public static final Map<String, Bestellung> bestellungen;
 
@@ -54,39 +67,39 @@ public final class MozartMockRepo {
     /**
      * Statischer Initialisierungsblock.
      * Dieser Block wird einmalig ausgeführt, wenn die Java Virtual Machine die Klasse lädt.
-     * Er initialisiert die statischen Maps {@link #produktdaten} und {@link #bestellungen} mit Beispieldaten.
+     * Er initialisiert den {@link #produktkatalog} und die statischen Maps {@link #produktdaten} und {@link #bestellungen} mit Beispieldaten.
      */
     static {
-        Map<String, Produktdaten> temporaereProduktdaten = new HashMap<>();
-        Map<String, Bestellung> temporaereBestellungen = new HashMap<>();
+        Produktkatalog temporaererProduktkatalog = new Produktkatalog(PRODUKTKATALOG_KAPAZITAET);
+        Map<String, Bestellung> temporaereBestellungen = new ConcurrentHashMap<>();
 
         // Erstellung und Hinzufügung von Produktdaten
         Produktdaten produkt1 = new ProduktdatenBuilder()
                 .withProductId("PROD-MOCK-001")
                 .withProductName("Mozart Kugeln Classic (10er)")
                 .withCategory("Süßwaren")
-                .withPrice(new BigDecimal("5.99"))
+                .withPrice(Geldbetrag.parse("5.99"))
                 .withStockQuantity(250)
                 .build();
-        temporaereProduktdaten.put(produkt1.getProduktId(), produkt1);
+        temporaererProduktkatalog.registriere(produkt1);
 
         Produktdaten produkt2 = new ProduktdatenBuilder()
                 .withProductId("PROD-MOCK-002")
                 .withProductName("Zauberflöte Partitur")
                 .withCategory("Noten")
-                .withPrice(new BigDecimal("29.95"))
+                .withPrice(Geldbetrag.parse("29.95"))
                 .withStockQuantity(30)
                 .build();
-        temporaereProduktdaten.put(produkt2.getProduktId(), produkt2);
+        temporaererProduktkatalog.registriere(produkt2);
 
         Produktdaten produkt3 = new ProduktdatenBuilder()
                 .withProductId("PROD-MOCK-003")
                 .withProductName("Dirigentenstab Ebenholz")
                 .withCategory("Zubehör")
-                .withPrice(new BigDecimal("45.00"))
+                .withPrice(Geldbetrag.parse("45.00"))
                 .withStockQuantity(50)
                 .build();
-        temporaereProduktdaten.put(produkt3.getProduktId(), produkt3);
+        temporaererProduktkatalog.registriere(produkt3);
 
         // Datumsdefinitionen für Bestellungen
         LocalDateTime bestelldatum1 = LocalDateTime.of(2025, 4, 15, 10, 30, 0);
@@ -123,9 +136,9 @@ public final class MozartMockRepo {
 
         // Zuweisung der temporären Maps zu den finalen statischen Feldern
         // Optional: Um die Maps unveränderlich zu machen:
-        // produktdaten = Collections.unmodifiableMap(temporaereProduktdaten);
         // bestellungen = Collections.unmodifiableMap(temporaereBestellungen);
-        produktdaten = temporaereProduktdaten;
+        produktkatalog = temporaererProduktkatalog;
+        produktdaten = temporaererProduktkatalog.alsMap();
         bestellungen = temporaereBestellungen;
     }
 }
\ No newline at end of file
@@ -0,0 +1,466 @@
+package kirschner.flaig.mozart.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import kirschner.flaig.mozart.entity.Bestellung;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+
+/**
+ * {@link Bestellspeicher}, der Bestellungen außerhalb des Heaps in direkten {@link ByteBuffer}n ablegt.
+ * Bei Millionen Bestellungen bleibt damit der Heap klein, und der Garbage Collector muss die Bestellungen
+ * weder markieren noch kopieren.
+ * <p>
+ * Aufbau:
+ * <ul>
+ * <li>Slots fester Größe ({@value #SLOT_GROESSE} Bytes) für Menge, Datumsangaben, Lieferstatus und einen Verweis
+ * auf den variablen Teil; sie liegen in Blöcken zu {@value #SLOTS_PRO_BLOCK} Slots.</li>
+ * <li>Ein variabler Bereich mit den Texten (Bestell-ID, Kunden-ID, E-Mail, Adresse, Produkt-ID, Zahlungsmethode)
+ * als längenpräfixiertes UTF-8, fortlaufend in Blöcken zu {@value #VARIABLER_BLOCK} Bytes vergeben.</li>
+ * <li>Ein Index mit offener Adressierung und linearer Sondierung, ebenfalls außerhalb des Heaps: Jeder Eintrag
+ * enthält den Hash der Bestell-ID (obere 32 Bit) und die Slotnummer plus eins (untere 32 Bit), 0 steht für frei.</li>
+ * </ul>
+ * Der Lieferstatus wird direkt im Slot geändert. Wird eine vorhandene Bestellung erneut gespeichert, wird ihr
+ * variabler Teil neu angehängt; der alte Teil wird nicht wiederverwendet.
+ * {@link #finde(String)} liefert jeweils eine neu dekodierte Kopie.
+ */
+public final class OffHeapBestellspeicher implements Bestellspeicher {
+
+    /**
+     * Die Größe eines Slots in Bytes.
+     */
+    private static final int SLOT_GROESSE = 56;
+
+    /**
+     * Die Anzahl der Slots pro Block (Zweierpotenz).
+     */
+    private static final int SLOTS_PRO_BLOCK = 1 << 16;
+
+    /**
+     * Die Größe eines Blocks im variablen Bereich in Bytes.
+     */
+    private static final int VARIABLER_BLOCK = 16 * 1024 * 1024;
+
+    /**
+     * Markiert einen fehlenden Text im variablen Bereich.
+     */
+    private static final int KEIN_TEXT = 0xFFFF;
+
+    /**
+     * Markiert ein fehlendes Datum im Slot.
+     */
+    private static final long KEIN_DATUM = Long.MIN_VALUE;
+
+    /**
+     * Markiert einen fehlenden Lieferstatus im Slot.
+     */
+    private static final byte KEIN_STATUS = -1;
+
+    // Offsets der Felder innerhalb eines Slots
+    private static final int VERWEIS = 0;
+    private static final int MENGE = 8;
+    private static final int BESTELLDATUM_TAG = 16;
+    private static final int BESTELLDATUM_NANOS = 24;
+    private static final int LIEFERDATUM_TAG = 32;
+    private static final int LIEFERDATUM_NANOS = 40;
+    private static final int LIEFERSTATUS = 48;
+
+    /**
+     * Die Blöcke mit den Slots.
+     */
+    private final List<ByteBuffer> slotBloecke = new ArrayList<>();
+
+    /**
+     * Die Blöcke des variablen Bereichs.
+     */
+    private final List<ByteBuffer> variableBloecke = new ArrayList<>();
+
+    /**
+     * Sperre: Lesen parallel, Einfügen, Statusänderungen und Wachsen exklusiv.
+     */
+    private final ReentrantReadWriteLock sperre = new ReentrantReadWriteLock();
+
+    /**
+     * Der Index von Bestell-ID auf Slot.
+     */
+    private LongBuffer index;
+
+    /**
+     * Die Anzahl der belegten Slots.
+     */
+    private int anzahl;
+
+    /**
+     * Die nächste freie Position im letzten Block des variablen Bereichs.
+     */
+    private int variablePosition = VARIABLER_BLOCK;
+
+    /**
+     * Erstellt einen leeren Speicher.
+     *
+     * @param erwarteteAnzahl Die erwartete Anzahl an Bestellungen, nach der der Index anfangs bemessen wird.
+     */
+    public OffHeapBestellspeicher(int erwarteteAnzahl) {
+        this.index = erstelleIndex(Integer.highestOneBit(Math.max(16, erwarteteAnzahl) * 2 - 1) << 1);
+    }
+
+    @Override
+    public Bestellung finde(String bestellId) {
+        if (bestellId == null) {
+            return null;
+        }
+        byte[] schluessel = utf8(bestellId);
+        sperre.readLock().lock();
+        try {
+            int slot = sucheSlot(schluessel, hash(schluessel));
+            return slot < 0 ? null : dekodiere(slot);
+        } finally {
+            sperre.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void speichere(Bestellung bestellung) {
+        byte[] schluessel = utf8(bestellung.getBestellId());
+        byte[] variablerTeil = kodiereTexte(schluessel, bestellung);
+        int hash = hash(schluessel);
+
+        sperre.writeLock().lock();
+        try {
+            int slot = sucheSlot(schluessel, hash);
+            if (slot < 0) {
+                slot = legeSlotAn(hash);
+            }
+            ByteBuffer block = slotBlock(slot);
+            int basis = slotOffset(slot);
+            block.putLong(basis + VERWEIS, schreibeVariablenTeil(variablerTeil));
+            block.putInt(basis + MENGE, bestellung.getMenge());
+            schreibeDatum(block, basis + BESTELLDATUM_TAG, basis + BESTELLDATUM_NANOS, bestellung.getBestelldatum());
+            schreibeDatum(block, basis + LIEFERDATUM_TAG, basis + LIEFERDATUM_NANOS, bestellung.getLieferdatum());
+            block.put(basis + LIEFERSTATUS, bestellung.getLieferstatus() == null ? KEIN_STATUS : (byte) bestellung.getLieferstatus().ordinal());
+        } finally {
+            sperre.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean aktualisiereLieferstatus(String bestellId, DeliveryStatus lieferstatus) {
+        if (bestellId == null) {
+            return false;
+        }
+        byte[] schluessel = utf8(bestellId);
+        // Änderung direkt im Slot; die Schreibsperre macht sie für nachfolgende Leser sichtbar.
+        sperre.writeLock().lock();
+        try {
+            int slot = sucheSlot(schluessel, hash(schluessel));
+            if (slot < 0) {
+                return false;
+            }
+            slotBlock(slot).put(slotOffset(slot) + LIEFERSTATUS, lieferstatus == null ? KEIN_STATUS : (byte) lieferstatus.ordinal());
+            return true;
+        } finally {
+            sperre.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int anzahl() {
+        sperre.readLock().lock();
+        try {
+            return anzahl;
+        } finally {
+            sperre.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sucht den Slot einer Bestell-ID per linearer Sondierung.
+     *
+     * @param schluessel Die Bestell-ID als UTF-8.
+     * @param hash Der Hash der Bestell-ID.
+     * @return Die Slotnummer oder -1, wenn die Bestell-ID nicht vorhanden ist.
+     */
+    private int sucheSlot(byte[] schluessel, int hash) {
+        int maske = index.capacity() - 1;
+        for (int position = hash & maske; ; position = (position + 1) & maske) {
+            long eintrag = index.get(position);
+            if (eintrag == 0L) {
+                return -1;
+            }
+            if ((int) (eintrag >>> 32) == hash) {
+                int slot = (int) eintrag - 1;
+                if (bestellIdGleich(slot, schluessel)) {
+                    return slot;
+                }
+            }
+        }
+    }
+
+    /**
+     * Vergibt einen neuen Slot und trägt ihn in den Index ein. Muss unter der Schreibsperre aufgerufen werden.
+     *
+     * @param hash Der Hash der Bestell-ID.
+     * @return Die neue Slotnummer.
+     */
+    private int legeSlotAn(int hash) {
+        int slot = anzahl++;
+        if (slot == slotBloecke.size() * SLOTS_PRO_BLOCK) {
+            slotBloecke.add(ByteBuffer.allocateDirect(SLOTS_PRO_BLOCK * SLOT_GROESSE));
+        }
+        if (anzahl * 2 > index.capacity()) {
+            vergroessereIndex();
+        }
+        trageEin(index, hash, slot);
+        return slot;
+    }
+
+    /**
+     * Verdoppelt den Index und trägt alle Slots neu ein.
+     */
+    private void vergroessereIndex() {
+        LongBuffer neuerIndex = erstelleIndex(index.capacity() * 2);
+        for (int position = 0; position < index.capacity(); position++) {
+            long eintrag = index.get(position);
+            if (eintrag != 0L) {
+                trageEin(neuerIndex, (int) (eintrag >>> 32), (int) eintrag - 1);
+            }
+        }
+        index = neuerIndex;
+    }
+
+    /**
+     * Trägt einen Slot per linearer Sondierung in einen Index ein.
+     *
+     * @param ziel Der Index.
+     * @param hash Der Hash der Bestell-ID.
+     * @param slot Die Slotnummer.
+     */
+    private static void trageEin(LongBuffer ziel, int hash, int slot) {
+        int maske = ziel.capacity() - 1;
+        int position = hash & maske;
+        while (ziel.get(position) != 0L) {
+            position = (position + 1) & maske;
+        }
+        ziel.put(position, ((long) hash << 32) | (slot + 1L));
+    }
+
+    /**
+     * Legt einen leeren Index im Direktspeicher an.
+     *
+     * @param kapazitaet Die Anzahl der Indexeinträge; eine Zweierpotenz.
+     * @return Der Index.
+     */
+    private static LongBuffer erstelleIndex(int kapazitaet) {
+        return ByteBuffer.allocateDirect(kapazitaet * Long.BYTES).asLongBuffer();
+    }
+
+    /**
+     * Kopiert einen variablen Teil in den variablen Bereich. Muss unter der Schreibsperre aufgerufen werden.
+     *
+     * @param variablerTeil Die kodierten Texte.
+     * @return Der Verweis aus Blocknummer (obere 32 Bit) und Offset (untere 32 Bit).
+     */
+    private long schreibeVariablenTeil(byte[] variablerTeil) {
+        if (variablerTeil.length > VARIABLER_BLOCK) {
+            throw new IllegalArgumentException("Bestellung ist zu groß: " + variablerTeil.length + " Bytes");
+        }
+        if (variablePosition + variablerTeil.length > VARIABLER_BLOCK) {
+            variableBloecke.add(ByteBuffer.allocateDirect(VARIABLER_BLOCK));
+            variablePosition = 0;
+        }
+        int blockNummer = variableBloecke.size() - 1;
+        variableBloecke.get(blockNummer).put(variablePosition, variablerTeil);
+        long verweis = ((long) blockNummer << 32) | variablePosition;
+        variablePosition += variablerTeil.length;
+        return verweis;
+    }
+
+    /**
+     * Vergleicht die Bestell-ID eines Slots mit einem Schlüssel, ohne sie zu dekodieren.
+     *
+     * @param slot Die Slotnummer.
+     * @param schluessel Die Bestell-ID als UTF-8.
+     * @return {@code true}, wenn der Slot zu dieser Bestell-ID gehört.
+     */
+    private boolean bestellIdGleich(int slot, byte[] schluessel) {
+        ByteBuffer texte = variablerTeil(slot);
+        int laenge = Short.toUnsignedInt(texte.getShort(0));
+        if (laenge != schluessel.length) {
+            return false;
+        }
+        for (int i = 0; i < laenge; i++) {
+            if (texte.get(Short.BYTES + i) != schluessel[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Liest einen Slot samt variablem Teil in eine neue {@link Bestellung}.
+     *
+     * @param slot Die Slotnummer.
+     * @return Die Bestellung.
+     */
+    private Bestellung dekodiere(int slot) {
+        ByteBuffer block = slotBlock(slot);
+        int basis = slotOffset(slot);
+        ByteBuffer texte = variablerTeil(slot);
+        byte status = block.get(basis + LIEFERSTATUS);
+        return BestellungBuilder.getInstance()
+                .withOrderID(liesText(texte))
+                .withCustomerID(liesText(texte))
+                .withEmail(liesText(texte))
+                .withAddress(liesText(texte))
+                .withProductID(liesText(texte))
+                .withPaymentMethod(liesText(texte))
+                .withQuantity(block.getInt(basis + MENGE))
+                .withOrderDate(liesDatum(block, basis + BESTELLDATUM_TAG, basis + BESTELLDATUM_NANOS))
+                .withDeliveryDate(liesDatum(block, basis + LIEFERDATUM_TAG, basis + LIEFERDATUM_NANOS))
+                .withDeliveryStatus(status == KEIN_STATUS ? null : DeliveryStatus.values()[status])
+                .build();
+    }
+
+    /**
+     * Gibt den variablen Teil eines Slots zurück.
+     *
+     * @param slot Die Slotnummer.
+     * @return Ein Puffer, der am Anfang der Texte des Slots beginnt.
+     */
+    private ByteBuffer variablerTeil(int slot) {
+        long verweis = slotBlock(slot).getLong(slotOffset(slot) + VERWEIS);
+        ByteBuffer block = variableBloecke.get((int) (verweis >>> 32));
+        int offset = (int) verweis;
+        return block.slice(offset, block.capacity() - offset);
+    }
+
+    /**
+     * Gibt den Block zurück, in dem ein Slot liegt.
+     *
+     * @param slot Die Slotnummer.
+     * @return Der Block.
+     */
+    private ByteBuffer slotBlock(int slot) {
+        return slotBloecke.get(slot / SLOTS_PRO_BLOCK);
+    }
+
+    /**
+     * Berechnet die Position eines Slots in seinem Block.
+     *
+     * @param slot Die Slotnummer.
+     * @return Der Offset in Bytes.
+     */
+    private static int slotOffset(int slot) {
+        return (slot % SLOTS_PRO_BLOCK) * SLOT_GROESSE;
+    }
+
+    /**
+     * Verteilt den String-Hash der Bestell-ID auf alle Bits (Finalizer von MurmurHash3).
+     *
+     * @param schluessel Die Bestell-ID als UTF-8.
+     * @return Der Hash.
+     */
+    private static int hash(byte[] schluessel) {
+        int h = Arrays.hashCode(schluessel);
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Kodiert die Texte einer Bestellung; die Bestell-ID steht immer an erster Stelle.
+     *
+     * @param bestellId Die Bestell-ID als UTF-8.
+     * @param bestellung Die Bestellung.
+     * @return Die Texte, jeweils mit vorangestellter Länge.
+     * @throws IllegalArgumentException Wenn ein Text zu lang ist.
+     */
+    private static byte[] kodiereTexte(byte[] bestellId, Bestellung bestellung) {
+        byte[][] texte = {
+                bestellId,
+                utf8(bestellung.getKundenId()),
+                utf8(bestellung.getEmail()),
+                utf8(bestellung.getAdresse()),
+                utf8(bestellung.getProduktId()),
+                utf8(bestellung.getZahlungsmethode())
+        };
+        int laenge = 0;
+        for (byte[] text : texte) {
+            if (text != null && text.length >= KEIN_TEXT) {
+                throw new IllegalArgumentException("Text zu lang für den Off-Heap-Speicher: " + text.length + " Bytes");
+            }
+            laenge += Short.BYTES + (text == null ? 0 : text.length);
+        }
+        ByteBuffer puffer = ByteBuffer.allocate(laenge);
+        for (byte[] text : texte) {
+            puffer.putShort((short) (text == null ? KEIN_TEXT : text.length));
+            if (text != null) {
+                puffer.put(text);
+            }
+        }
+        return puffer.array();
+    }
+
+    /**
+     * Kodiert einen Text als UTF-8.
+     *
+     * @param text Der Text oder {@code null}.
+     * @return Die Bytes oder {@code null}.
+     */
+    private static byte[] utf8(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Liest den nächsten Text ab der aktuellen Position und rückt sie vor.
+     *
+     * @param texte Der variable Teil eines Slots.
+     * @return Der Text oder {@code null}.
+     */
+    private static String liesText(ByteBuffer texte) {
+        int laenge = Short.toUnsignedInt(texte.getShort());
+        if (laenge == KEIN_TEXT) {
+            return null;
+        }
+        byte[] text = new byte[laenge];
+        texte.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Schreibt ein Datum als Epochentag und Nanosekunden des Tages.
+     *
+     * @param block Der Slotblock.
+     * @param tagOffset Die Position des Epochentags.
+     * @param nanosOffset Die Position der Nanosekunden.
+     * @param datum Das Datum oder {@code null}.
+     */
+    private static void schreibeDatum(ByteBuffer block, int tagOffset, int nanosOffset, LocalDateTime datum) {
+        block.putLong(tagOffset, datum == null ? KEIN_DATUM : datum.toLocalDate().toEpochDay());
+        block.putLong(nanosOffset, datum == null ? 0L : datum.toLocalTime().toNanoOfDay());
+    }
+
+    /**
+     * Liest ein mit {@link #schreibeDatum(ByteBuffer, int, int, LocalDateTime)} geschriebenes Datum.
+     *
+     * @param block Der Slotblock.
+     * @param tagOffset Die Position des Epochentags.
+     * @param nanosOffset Die Position der Nanosekunden.
+     * @return Das Datum oder {@code null}.
+     */
+    private static LocalDateTime liesDatum(ByteBuffer block, int tagOffset, int nanosOffset) {
+        long tag = block.getLong(tagOffset);
+        return tag == KEIN_DATUM ? null : LocalDateTime.of(LocalDate.ofEpochDay(tag), LocalTime.ofNanoOfDay(block.getLong(nanosOffset)));
+    }
+}
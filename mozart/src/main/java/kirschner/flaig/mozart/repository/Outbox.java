@@ -0,0 +1,604 @@
+package kirschner.flaig.mozart.repository;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Dauerhafte, geordnete Warteschlange für Nachrichten, die noch zugestellt werden müssen (Transactional Outbox).
+ * <p>
+ * Alle Einträge stehen in einer einzigen, nur anhängenden Datei. Ein Satz besteht aus Länge, CRC32C-Prüfsumme,
+ * Satztyp, Sequenznummer, Erstellungszeitpunkt und den Nutzdaten. Wurde ein Eintrag zugestellt, wird er mit einem
+ * Quittungssatz derselben Sequenznummer als erledigt markiert. Übersteigen die erledigten Bytes (Einträge und Quittungen)
+ * sowohl die Kompaktierungsschwelle als auch die Größe der noch offenen Einträge, wird die Datei mit den offenen
+ * Einträgen neu geschrieben und atomar ersetzt. Dadurch kopiert jede Kompaktierung höchstens so viele Bytes, wie seit
+ * der letzten verworfen wurden, auch wenn sich viele offene Einträge aufstauen.
+ * <p>
+ * Beim Anhängen schreibt ein Thread seine Sätze unter der Schreibsperre in die Datei und führt danach den
+ * {@code force()} für alle bis dahin geschriebenen Sätze aus; gleichzeitige Schreiber, deren Sätze davon bereits
+ * erfasst sind, warten nur darauf (Group Commit). Beim Öffnen werden alle Sätze gelesen; ein abgeschnittener oder
+ * beschädigter Satz am Ende (Absturz während des Schreibens) wird abgeschnitten.
+ * <p>
+ * Wird ein Thread während eines Dateizugriffs unterbrochen, schließt der {@link FileChannel} sich selbst, auch für alle
+ * anderen Threads. Die Outbox öffnet die Datei dann neu: Der unterbrochene Aufruf scheitert, alle anderen wiederholen
+ * ihren Zugriff, und ein dabei nur teilweise geschriebener Satz wird vom nächsten Schreiben überschrieben.
+ */
+public final class Outbox implements AutoCloseable {
+
+    /**
+     * Logger für diese Klasse.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(Outbox.class);
+
+    /**
+     * Kennung am Anfang der Datei ("MZOB").
+     */
+    private static final int MAGIC = 0x4D5A4F42;
+
+    /**
+     * Die Formatversion der Datei.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Die Größe des Dateikopfs (Kennung, Version und erste Sequenznummer) in Bytes.
+     */
+    private static final int DATEI_KOPF = 16;
+
+    /**
+     * Die Größe des Satzkopfs (Länge und Prüfsumme) in Bytes.
+     */
+    private static final int SATZ_KOPF = 8;
+
+    /**
+     * Die Größe der festen Satzfelder (Typ, Sequenznummer und Erstellungszeitpunkt) in Bytes.
+     */
+    private static final int SATZ_FELDER = 1 + 2 * Long.BYTES;
+
+    /**
+     * Satztyp eines neuen Eintrags.
+     */
+    private static final byte TYP_EINTRAG = 1;
+
+    /**
+     * Satztyp einer Quittung.
+     */
+    private static final byte TYP_QUITTUNG = 2;
+
+    /**
+     * Ein offener Eintrag.
+     *
+     * @param sequenz Die fortlaufende Sequenznummer.
+     * @param erstelltMillis Der Zeitpunkt des Anhängens in Millisekunden seit der Epoche.
+     * @param nutzdaten Die Nutzdaten.
+     */
+    public record Eintrag(long sequenz, long erstelltMillis, byte[] nutzdaten) {
+    }
+
+    /**
+     * Die Datei der Outbox.
+     */
+    private final Path datei;
+
+    /**
+     * Gibt an, ob {@link #anhaengenAlle(List)} auf den Flush auf die Platte wartet.
+     */
+    private final boolean synchron;
+
+    /**
+     * Die Anzahl erledigter Bytes, ab der nach einer Quittung frühestens kompaktiert wird.
+     */
+    private final long kompaktierungsSchwelle;
+
+    /**
+     * Alle offenen Einträge in Sequenzreihenfolge.
+     */
+    private final NavigableMap<Long, Eintrag> offen = new ConcurrentSkipListMap<>();
+
+    /**
+     * Sperre für Schreibposition, Sequenznummern und Kompaktierung.
+     */
+    private final ReentrantLock sperre = new ReentrantLock();
+
+    /**
+     * Signalisiert neu angehängte Einträge.
+     */
+    private final Condition neueEintraege = sperre.newCondition();
+
+    /**
+     * Sperre für den {@code force()}; wer sie hält, flusht für alle wartenden Schreiber.
+     */
+    private final ReentrantLock flushSperre = new ReentrantLock();
+
+    /**
+     * Sperre für das Neuöffnen des Dateikanals; wird nur kurz und ohne weitere Sperren gehalten.
+     */
+    private final ReentrantLock kanalSperre = new ReentrantLock();
+
+    /**
+     * Der geöffnete Dateikanal.
+     */
+    private volatile FileChannel kanal;
+
+    /**
+     * Die nächste freie Position in der Datei.
+     */
+    private long schreibPosition;
+
+    /**
+     * Die Größe aller Sätze offener Einträge in Bytes; der Rest hinter dem Dateikopf ist erledigt.
+     */
+    private long lebendeBytes;
+
+    /**
+     * Die nächste zu vergebende Sequenznummer.
+     */
+    private long naechsteSequenz;
+
+    /**
+     * Die Anzahl aller seit dem Öffnen geschriebenen Bytes, über Kompaktierungen hinweg.
+     */
+    private volatile long geschriebenBis;
+
+    /**
+     * Die Anzahl der seit dem Öffnen geschriebenen Bytes, die bereits auf der Platte liegen.
+     */
+    private volatile long dauerhaftBis;
+
+    /**
+     * Gibt an, ob die Outbox geschlossen wurde.
+     */
+    private boolean geschlossen;
+
+    /**
+     * Öffnet die Outbox und liest alle offenen Einträge ein.
+     *
+     * @param datei Die Datei der Outbox; sie und ihr Verzeichnis werden bei Bedarf angelegt.
+     * @param synchron {@code true}, wenn Schreiber warten, bis ihre Einträge auf der Platte liegen.
+     * @param kompaktierungsSchwelle Die Anzahl erledigter Bytes, ab der die Datei nach einer Quittung neu geschrieben
+     *            wird, sofern sie auch die Größe der offenen Einträge übersteigt.
+     * @throws IOException Wenn die Datei nicht geöffnet oder gelesen werden kann.
+     */
+    public Outbox(Path datei, boolean synchron, long kompaktierungsSchwelle) throws IOException {
+        Files.createDirectories(datei.toAbsolutePath().getParent());
+        this.datei = datei;
+        this.synchron = synchron;
+        this.kompaktierungsSchwelle = kompaktierungsSchwelle;
+        this.kanal = FileChannel.open(datei, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (kanal.size() < DATEI_KOPF) {
+            // Neue Datei oder Absturz vor dem vollständigen Schreiben des Kopfs: noch kein Satz kann geschrieben sein.
+            kanal.truncate(0);
+            naechsteSequenz = 1;
+            schreibeKopf(kanal, naechsteSequenz);
+            erzwingeVerzeichnis();
+            schreibPosition = DATEI_KOPF;
+        } else {
+            stelleWiederHer();
+        }
+        LOGGER.info("Outbox: {} offene Einträge aus {} wiederhergestellt.", offen.size(), datei);
+    }
+
+    /**
+     * Hängt mehrere Einträge an die Outbox an; alle Sätze werden gemeinsam geflusht.
+     *
+     * @param nutzdaten Die Nutzdaten der Einträge.
+     * @return Die angehängten Einträge in derselben Reihenfolge.
+     * @throws IOException Wenn die Einträge nicht dauerhaft geschrieben werden konnten.
+     */
+    public List<Eintrag> anhaengenAlle(List<byte[]> nutzdaten) throws IOException {
+        List<Eintrag> eintraege = new ArrayList<>(nutzdaten.size());
+        long ziel;
+        sperre.lock();
+        try {
+            pruefeOffen();
+            long jetzt = System.currentTimeMillis();
+            int laenge = 0;
+            for (byte[] daten : nutzdaten) {
+                eintraege.add(new Eintrag(naechsteSequenz++, jetzt, daten));
+                laenge += satzGroesse(daten);
+            }
+            ByteBuffer saetze = ByteBuffer.allocate(laenge);
+            for (Eintrag eintrag : eintraege) {
+                kodiere(saetze, TYP_EINTRAG, eintrag.sequenz(), eintrag.erstelltMillis(), eintrag.nutzdaten());
+            }
+            schreibe(saetze.flip());
+            ziel = geschriebenBis;
+            for (Eintrag eintrag : eintraege) {
+                offen.put(eintrag.sequenz(), eintrag);
+            }
+            lebendeBytes += laenge;
+            neueEintraege.signalAll();
+        } finally {
+            sperre.unlock();
+        }
+        if (synchron) {
+            flushe(ziel);
+        }
+        return eintraege;
+    }
+
+    /**
+     * Gibt die ältesten offenen Einträge in Sequenzreihenfolge zurück, ohne sie zu entfernen.
+     *
+     * @param maximaleAnzahl Die maximale Anzahl an Einträgen.
+     * @return Die Einträge; leer, wenn keine offen sind.
+     */
+    public List<Eintrag> naechste(int maximaleAnzahl) {
+        List<Eintrag> eintraege = new ArrayList<>(Math.min(maximaleAnzahl, offen.size()));
+        for (Eintrag eintrag : offen.values()) {
+            if (eintraege.size() == maximaleAnzahl) {
+                break;
+            }
+            eintraege.add(eintrag);
+        }
+        return eintraege;
+    }
+
+    /**
+     * Wartet, bis offene Einträge vorhanden sind.
+     *
+     * @param zeitlimit Die maximale Wartezeit.
+     * @param einheit Die Einheit der Wartezeit.
+     * @return {@code true}, wenn Einträge offen sind.
+     * @throws InterruptedException Wenn der Thread beim Warten unterbrochen wird.
+     */
+    public boolean warteAufEintraege(long zeitlimit, TimeUnit einheit) throws InterruptedException {
+        long restNanos = einheit.toNanos(zeitlimit);
+        sperre.lock();
+        try {
+            while (offen.isEmpty() && !geschlossen && restNanos > 0) {
+                restNanos = neueEintraege.awaitNanos(restNanos);
+            }
+            return !offen.isEmpty();
+        } finally {
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Markiert zugestellte Einträge dauerhaft als erledigt und kompaktiert die Datei bei Bedarf.
+     *
+     * @param zugestellt Die zugestellten Einträge.
+     * @throws IOException Wenn die Quittungen nicht geschrieben werden konnten.
+     */
+    public void quittiere(Collection<Eintrag> zugestellt) throws IOException {
+        if (zugestellt.isEmpty()) {
+            return;
+        }
+        long ziel;
+        sperre.lock();
+        try {
+            pruefeOffen();
+            ByteBuffer saetze = ByteBuffer.allocate(zugestellt.size() * (SATZ_KOPF + SATZ_FELDER));
+            for (Eintrag eintrag : zugestellt) {
+                kodiere(saetze, TYP_QUITTUNG, eintrag.sequenz(), 0L, new byte[0]);
+            }
+            schreibe(saetze.flip());
+            ziel = geschriebenBis;
+            for (Eintrag eintrag : zugestellt) {
+                Eintrag entfernt = offen.remove(eintrag.sequenz());
+                if (entfernt != null) {
+                    lebendeBytes -= satzGroesse(entfernt.nutzdaten());
+                }
+            }
+            long erledigt = schreibPosition - DATEI_KOPF - lebendeBytes;
+            if (erledigt > Math.max(kompaktierungsSchwelle, lebendeBytes)) {
+                kompaktiere();
+                return;
+            }
+        } finally {
+            sperre.unlock();
+        }
+        flushe(ziel);
+    }
+
+    /**
+     * Gibt die Anzahl der offenen Einträge zurück.
+     *
+     * @return Die Anzahl.
+     */
+    public int anzahl() {
+        return offen.size();
+    }
+
+    /**
+     * Gibt den Erstellungszeitpunkt des ältesten offenen Eintrags zurück.
+     *
+     * @return Der Zeitpunkt in Millisekunden seit der Epoche oder {@code -1}, wenn keine Einträge offen sind.
+     */
+    public long aeltesterEintragMillis() {
+        Map.Entry<Long, Eintrag> aeltester = offen.firstEntry();
+        return aeltester == null ? -1 : aeltester.getValue().erstelltMillis();
+    }
+
+    /**
+     * Schreibt alle ausstehenden Sätze auf die Platte und schließt die Datei. Wurde der Kanal durch eine Unterbrechung
+     * geschlossen, wird die Datei dafür zuvor neu geöffnet.
+     *
+     * @throws IOException Wenn die Datei nicht geschlossen werden kann.
+     */
+    @Override
+    public void close() throws IOException {
+        sperre.lock();
+        flushSperre.lock();
+        try {
+            if (geschlossen) {
+                return;
+            }
+            geschlossen = true;
+            neueEintraege.signalAll();
+            erneuereKanal(kanal);
+            kanal.force(false);
+            kanal.close();
+        } finally {
+            flushSperre.unlock();
+            sperre.unlock();
+        }
+    }
+
+    /**
+     * Schreibt Sätze an das Dateiende. Muss unter {@link #sperre} aufgerufen werden.
+     *
+     * @param saetze Die kodierten Sätze.
+     * @throws IOException Wenn nicht geschrieben werden kann.
+     */
+    private void schreibe(ByteBuffer saetze) throws IOException {
+        long beginn = schreibPosition;
+        int laenge = saetze.remaining();
+        try {
+            while (saetze.hasRemaining()) {
+                FileChannel aktuell = kanal;
+                try {
+                    schreibPosition += aktuell.write(saetze, schreibPosition);
+                } catch (ClosedChannelException e) {
+                    erneuereKanal(aktuell);
+                    if (e instanceof ClosedByInterruptException) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            schreibPosition = beginn;
+            throw e;
+        }
+        geschriebenBis += laenge;
+    }
+
+    /**
+     * Wartet, bis alle Bytes bis {@code ziel} auf der Platte liegen; flusht selbst, falls das noch niemand getan hat.
+     * Nimmt {@link #sperre} nicht, damit Schreiber während des {@code force()} weiter anhängen können; die Kompaktierung
+     * tauscht den Kanal nur unter {@link #flushSperre} aus.
+     *
+     * @param ziel Die Anzahl der geschriebenen Bytes, die dauerhaft sein müssen.
+     * @throws IOException Wenn der Flush fehlschlägt.
+     */
+    private void flushe(long ziel) throws IOException {
+        if (dauerhaftBis >= ziel) {
+            return;
+        }
+        try {
+            flushSperre.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Warten auf den Flush der Outbox unterbrochen.");
+        }
+        try {
+            if (dauerhaftBis >= ziel) {
+                return;
+            }
+            long erfasst = geschriebenBis;
+            while (true) {
+                FileChannel aktuell = kanal;
+                try {
+                    aktuell.force(false);
+                    break;
+                } catch (ClosedChannelException e) {
+                    if (geschlossen) {
+                        throw e;
+                    }
+                    erneuereKanal(aktuell);
+                    if (e instanceof ClosedByInterruptException) {
+                        throw e;
+                    }
+                }
+            }
+            dauerhaftBis = Math.max(dauerhaftBis, erfasst);
+        } finally {
+            flushSperre.unlock();
+        }
+    }
+
+    /**
+     * Öffnet die Datei neu, nachdem der Kanal durch die Unterbrechung eines Threads geschlossen wurde. Hat ein anderer
+     * Thread den Kanal bereits ersetzt, geschieht nichts.
+     *
+     * @param geschlossenerKanal Der Kanal, dessen Zugriff gescheitert ist.
+     * @throws IOException Wenn die Datei nicht geöffnet werden kann.
+     */
+    private void erneuereKanal(FileChannel geschlossenerKanal) throws IOException {
+        kanalSperre.lock();
+        try {
+            if (kanal == geschlossenerKanal && !geschlossenerKanal.isOpen()) {
+                kanal = FileChannel.open(datei, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                LOGGER.warn("Outbox: Dateikanal wurde durch eine Unterbrechung geschlossen und neu geöffnet.");
+            }
+        } finally {
+            kanalSperre.unlock();
+        }
+    }
+
+    /**
+     * Schreibt die offenen Einträge in eine neue Datei und ersetzt die alte atomar.
+     * Muss unter {@link #sperre} aufgerufen werden; danach liegen alle bisher geschriebenen Bytes dauerhaft vor.
+     *
+     * @throws IOException Wenn die neue Datei nicht geschrieben werden kann.
+     */
+    private void kompaktiere() throws IOException {
+        flushSperre.lock();
+        try {
+            long vorher = schreibPosition;
+            Path neueDatei = datei.resolveSibling(datei.getFileName() + ".neu");
+            FileChannel neuerKanal = FileChannel.open(neueDatei, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            schreibeKopf(neuerKanal, naechsteSequenz);
+            long position = DATEI_KOPF;
+            for (Eintrag eintrag : offen.values()) {
+                ByteBuffer satz = ByteBuffer.allocate(satzGroesse(eintrag.nutzdaten()));
+                kodiere(satz, TYP_EINTRAG, eintrag.sequenz(), eintrag.erstelltMillis(), eintrag.nutzdaten());
+                satz.flip();
+                while (satz.hasRemaining()) {
+                    position += neuerKanal.write(satz, position);
+                }
+            }
+            neuerKanal.force(false);
+            Files.move(neueDatei, datei, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            erzwingeVerzeichnis();
+            kanal.close();
+            kanal = neuerKanal;
+            schreibPosition = position;
+            lebendeBytes = position - DATEI_KOPF;
+            dauerhaftBis = geschriebenBis;
+            LOGGER.info("Outbox: Datei von {} auf {} Bytes kompaktiert, {} Einträge offen.", vorher, position, offen.size());
+        } finally {
+            flushSperre.unlock();
+        }
+    }
+
+    /**
+     * Liest alle gültigen Sätze, baut die offenen Einträge auf und schneidet einen ungültigen Rest ab.
+     *
+     * @throws IOException Wenn die Datei nicht gelesen werden kann.
+     */
+    private void stelleWiederHer() throws IOException {
+        long groesse = kanal.size();
+        MappedByteBuffer puffer = kanal.map(FileChannel.MapMode.READ_ONLY, 0, groesse);
+        if (puffer.getInt(0) != MAGIC) {
+            throw new IOException("Ungültige Outbox-Datei: " + datei);
+        }
+        naechsteSequenz = puffer.getLong(8);
+        CRC32C pruefsumme = new CRC32C();
+        int position = DATEI_KOPF;
+
+        while (position + SATZ_KOPF <= groesse) {
+            int laenge = puffer.getInt(position);
+            if (laenge < SATZ_FELDER || laenge > groesse - position - SATZ_KOPF) {
+                break;
+            }
+            pruefsumme.reset();
+            pruefsumme.update(puffer.slice(position + SATZ_KOPF, laenge));
+            if ((int) pruefsumme.getValue() != puffer.getInt(position + 4)) {
+                break;
+            }
+            int felder = position + SATZ_KOPF;
+            byte typ = puffer.get(felder);
+            long sequenz = puffer.getLong(felder + 1);
+            if (typ == TYP_EINTRAG) {
+                byte[] nutzdaten = new byte[laenge - SATZ_FELDER];
+                puffer.get(felder + SATZ_FELDER, nutzdaten);
+                offen.put(sequenz, new Eintrag(sequenz, puffer.getLong(felder + 1 + Long.BYTES), nutzdaten));
+                lebendeBytes += SATZ_KOPF + laenge;
+            } else {
+                Eintrag entfernt = offen.remove(sequenz);
+                if (entfernt != null) {
+                    lebendeBytes -= satzGroesse(entfernt.nutzdaten());
+                }
+            }
+            naechsteSequenz = Math.max(naechsteSequenz, sequenz + 1);
+            position += SATZ_KOPF + laenge;
+        }
+
+        if (position < groesse) {
+            LOGGER.warn("Outbox: Ungültiger Satz an Position {}; Rest der Datei ({} Bytes) wird verworfen.", position, groesse - position);
+            kanal.truncate(position);
+            kanal.force(true);
+        }
+        schreibPosition = position;
+    }
+
+    /**
+     * Macht das Anlegen oder Ersetzen der Datei dauerhaft, indem das Verzeichnis auf die Platte geschrieben wird. Auf
+     * Plattformen, die Verzeichnisse nicht als Kanal öffnen können, wird das übersprungen.
+     */
+    private void erzwingeVerzeichnis() {
+        try (FileChannel verzeichnis = FileChannel.open(datei.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            verzeichnis.force(true);
+        } catch (IOException e) {
+            LOGGER.debug("Outbox: Verzeichnis von {} konnte nicht geflusht werden.", datei, e);
+        }
+    }
+
+    /**
+     * Wirft eine Ausnahme, wenn die Outbox bereits geschlossen wurde. Muss unter {@link #sperre} aufgerufen werden.
+     */
+    private void pruefeOffen() {
+        if (geschlossen) {
+            throw new IllegalStateException("Outbox ist geschlossen.");
+        }
+    }
+
+    /**
+     * Schreibt den Dateikopf dauerhaft.
+     *
+     * @param zielKanal Der Kanal der Datei.
+     * @param ersteSequenz Die nächste zu vergebende Sequenznummer.
+     * @throws IOException Wenn nicht geschrieben werden kann.
+     */
+    private static void schreibeKopf(FileChannel zielKanal, long ersteSequenz) throws IOException {
+        ByteBuffer kopf = ByteBuffer.allocate(DATEI_KOPF).putInt(MAGIC).putInt(VERSION).putLong(ersteSequenz).flip();
+        while (kopf.hasRemaining()) {
+            zielKanal.write(kopf, kopf.position());
+        }
+        zielKanal.force(true);
+    }
+
+    /**
+     * Berechnet die Größe eines Eintragssatzes.
+     *
+     * @param nutzdaten Die Nutzdaten des Eintrags.
+     * @return Die Größe des Satzes einschließlich Satzkopf in Bytes.
+     */
+    private static int satzGroesse(byte[] nutzdaten) {
+        return SATZ_KOPF + SATZ_FELDER + nutzdaten.length;
+    }
+
+    /**
+     * Kodiert einen Satz einschließlich Länge und Prüfsumme an die aktuelle Position des Puffers.
+     *
+     * @param ziel Der Zielpuffer mit Array.
+     * @param typ Der Satztyp.
+     * @param sequenz Die Sequenznummer.
+     * @param erstelltMillis Der Erstellungszeitpunkt.
+     * @param nutzdaten Die Nutzdaten.
+     */
+    private static void kodiere(ByteBuffer ziel, byte typ, long sequenz, long erstelltMillis, byte[] nutzdaten) {
+        int start = ziel.position();
+        int laenge = SATZ_FELDER + nutzdaten.length;
+        ziel.position(start + SATZ_KOPF);
+        ziel.put(typ).putLong(sequenz).putLong(erstelltMillis).put(nutzdaten);
+        CRC32C pruefsumme = new CRC32C();
+        pruefsumme.update(ziel.array(), ziel.arrayOffset() + start + SATZ_KOPF, laenge);
+        ziel.putInt(start, laenge);
+        ziel.putInt(start + 4, (int) pruefsumme.getValue());
+    }
+}
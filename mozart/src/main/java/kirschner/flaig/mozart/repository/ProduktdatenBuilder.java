@@ -1,7 +1,7 @@
 package kirschner.flaig.mozart.repository;
 
-import java.math.BigDecimal;
 
+import kirschner.flaig.mozart.entity.Geldbetrag;
 import kirschner.flaig.mozart.entity.Produktdaten;
 
 /**
@@ -12,7 +12,7 @@ public class ProduktdatenBuilder {
     private String productId;
     private String productName;
     private String category;
-    private BigDecimal price;
+    private Geldbetrag price;
     private Integer stockQuantity;
 
     /**
@@ -47,10 +47,10 @@ public class ProduktdatenBuilder {
 
     /**
      * Setzt den Preis des Produkts.
-     * @param price Der Preis als BigDecimal.
+     * @param price Der Preis als {@link Geldbetrag}.
      * @return Den Builder selbst für Method Chaining.
      */
-    public ProduktdatenBuilder withPrice(BigDecimal price) {
+    public ProduktdatenBuilder withPrice(Geldbetrag price) {
         this.price = price;
         return this;
     }
@@ -0,0 +1,217 @@
+package kirschner.flaig.mozart.repository;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import kirschner.flaig.mozart.entity.Geldbetrag;
+import kirschner.flaig.mozart.entity.Produktdaten;
+
+/**
+ * Primitiver, indexbasierter Produktkatalog.
+ * Jede Produkt-ID wird einmalig bei der Registrierung auf einen dichten {@code int}-Index abgebildet.
+ * Lagermengen liegen in einem {@link AtomicIntegerArray}, Preise als Cent-Beträge in einem {@link AtomicLongArray},
+ * sodass Preisänderungen über {@link Produktdaten#setPreis(Geldbetrag)} sofort für alle Threads sichtbar sind.
+ * Nach dem einmaligen Nachschlagen des Index laufen Reservierung, Freigabe und Preisberechnung
+ * ohne Objekterzeugung.
+ * <p>
+ * Für APIs, die {@link Produktdaten} benötigen, stellt der Katalog pro Produkt eine Sicht bereit,
+ * deren Lagermenge und Preis direkt aus den Arrays gelesen und in sie geschrieben werden.
+ */
+public final class Produktkatalog {
+
+    /**
+     * Die maximale Anzahl an Produkten, die der Katalog aufnehmen kann.
+     */
+    private final int kapazitaet;
+
+    /**
+     * Die Lagermengen aller Produkte, adressiert über den Produktindex.
+     */
+    private final AtomicIntegerArray lagermengen;
+
+    /**
+     * Die Preise aller Produkte in Cent, adressiert über den Produktindex.
+     */
+    private final AtomicLongArray preiseInCent;
+
+    /**
+     * Die {@link Produktdaten}-Sichten, mit der Produkt-ID als Schlüssel.
+     */
+    private final Map<String, Sicht> sichten = new ConcurrentHashMap<>();
+
+    /**
+     * Der nächste freie Produktindex.
+     */
+    private int naechsterIndex;
+
+    /**
+     * Erstellt einen leeren Katalog mit fester Kapazität.
+     *
+     * @param kapazitaet Die maximale Anzahl an Produkten.
+     */
+    public Produktkatalog(int kapazitaet) {
+        this.kapazitaet = kapazitaet;
+        this.lagermengen = new AtomicIntegerArray(kapazitaet);
+        this.preiseInCent = new AtomicLongArray(kapazitaet);
+    }
+
+    /**
+     * Registriert ein Produkt und vergibt ihm einen Index.
+     * Lagermenge und Preis werden aus den übergebenen {@link Produktdaten} übernommen.
+     *
+     * @param produktDaten Die Stammdaten des Produkts.
+     * @return Die {@link Produktdaten}-Sicht auf den Katalogeintrag.
+     * @throws IllegalStateException Wenn die Kapazität des Katalogs erschöpft ist.
+     * @throws IllegalArgumentException Wenn die Produkt-ID bereits registriert ist.
+     */
+    public synchronized Produktdaten registriere(Produktdaten produktDaten) {
+        if (sichten.containsKey(produktDaten.getProduktId())) {
+            throw new IllegalArgumentException("Produkt mit ID " + produktDaten.getProduktId() + " ist bereits registriert.");
+        }
+        if (naechsterIndex >= kapazitaet) {
+            throw new IllegalStateException("Produktkatalog ist voll (Kapazität " + kapazitaet + ").");
+        }
+        Sicht sicht = new Sicht(naechsterIndex++, produktDaten);
+        sichten.put(sicht.getProduktId(), sicht);
+        return sicht;
+    }
+
+    /**
+     * Gibt den Index eines Produkts zurück.
+     *
+     * @param produktId Die ID des Produkts.
+     * @return Der Produktindex oder {@code -1}, wenn das Produkt nicht existiert.
+     */
+    public int index(String produktId) {
+        Sicht sicht = produktId == null ? null : sichten.get(produktId);
+        return sicht == null ? -1 : sicht.index;
+    }
+
+    /**
+     * Reserviert atomar eine Menge aus dem Lager eines Produkts per Compare-and-Set.
+     *
+     * @param index Der Produktindex.
+     * @param anzahl Die zu reservierende Menge.
+     * @return {@code true}, wenn die Menge reserviert wurde, sonst {@code false}.
+     */
+    public boolean reserviere(int index, int anzahl) {
+        int aktuell;
+        do {
+            aktuell = lagermengen.get(index);
+            if (aktuell < anzahl) {
+                return false;
+            }
+        } while (!lagermengen.compareAndSet(index, aktuell, aktuell - anzahl));
+        return true;
+    }
+
+    /**
+     * Gibt eine zuvor reservierte Menge atomar an das Lager eines Produkts zurück.
+     *
+     * @param index Der Produktindex.
+     * @param anzahl Die freizugebende Menge.
+     */
+    public void gibFrei(int index, int anzahl) {
+        lagermengen.addAndGet(index, anzahl);
+    }
+
+    /**
+     * Gibt die aktuelle Lagermenge eines Produkts zurück.
+     *
+     * @param index Der Produktindex.
+     * @return Die Lagermenge.
+     */
+    public int lagermenge(int index) {
+        return lagermengen.get(index);
+    }
+
+    /**
+     * Gibt den Preis eines Produkts in Cent zurück.
+     *
+     * @param index Der Produktindex.
+     * @return Der Preis in Cent.
+     */
+    public long preisInCent(int index) {
+        return preiseInCent.get(index);
+    }
+
+    /**
+     * Berechnet den Gesamtbetrag für eine Menge eines Produkts in Cent.
+     *
+     * @param index Der Produktindex.
+     * @param menge Die bestellte Menge.
+     * @return Der Gesamtbetrag in Cent.
+     * @throws ArithmeticException Bei einem Überlauf.
+     */
+    public long gesamtbetragInCent(int index, int menge) {
+        return Math.multiplyExact(preiseInCent.get(index), (long) menge);
+    }
+
+    /**
+     * Gibt alle Produkte als unveränderliche Map von {@link Produktdaten}-Sichten zurück.
+     * Später registrierte Produkte erscheinen automatisch in der Map.
+     *
+     * @return Eine Map mit der Produkt-ID als Schlüssel.
+     */
+    public Map<String, Produktdaten> alsMap() {
+        return Collections.unmodifiableMap(sichten);
+    }
+
+    /**
+     * Rechnet einen Preis in Cent um.
+     *
+     * @param preis Der Preis; {@code null} wird als 0 behandelt.
+     * @return Der Preis in Cent.
+     */
+    private static long inCent(Geldbetrag preis) {
+        return preis == null ? 0L : preis.getCent();
+    }
+
+    /**
+     * {@link Produktdaten}-Sicht auf einen Katalogeintrag.
+     * Lagermenge und Preis werden nicht im Objekt gehalten, sondern in den Arrays des Katalogs.
+     */
+    private final class Sicht extends Produktdaten {
+
+        /**
+         * Der Index des Produkts im Katalog.
+         */
+        private final int index;
+
+        /**
+         * Erstellt die Sicht und überträgt Lagermenge und Preis in die Katalog-Arrays.
+         *
+         * @param index Der vergebene Produktindex.
+         * @param produktDaten Die ursprünglichen Stammdaten.
+         */
+        Sicht(int index, Produktdaten produktDaten) {
+            super(produktDaten.getProduktId(), produktDaten.getProduktName(), produktDaten.getKategorie(), null, null);
+            this.index = index;
+            setPreis(produktDaten.getPreis());
+            setLagermenge(produktDaten.getLagermenge());
+        }
+
+        @Override
+        public Geldbetrag getPreis() {
+            return Geldbetrag.vonCent(preiseInCent.get(index));
+        }
+
+        @Override
+        public void setPreis(Geldbetrag preis) {
+            preiseInCent.set(index, inCent(preis));
+        }
+
+        @Override
+        public Integer getLagermenge() {
+            return lagermengen.get(index);
+        }
+
+        @Override
+        public void setLagermenge(Integer lagermenge) {
+            lagermengen.set(index, lagermenge == null ? 0 : lagermenge);
+        }
+    }
+}
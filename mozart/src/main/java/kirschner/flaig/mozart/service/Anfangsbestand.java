@@ -0,0 +1,41 @@
+package kirschner.flaig.mozart.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import kirschner.flaig.mozart.entity.Produktdaten;
+import kirschner.flaig.mozart.repository.MozartMockRepo;
+
+/**
+ * Setzt beim Start die Lagermenge aller Produkte im {@link MozartMockRepo#produktkatalog} auf
+ * {@code mozart.lager.anfangsbestand}. Ohne die Eigenschaft bleiben die Lagermengen der Mock-Daten erhalten;
+ * der Lasttest setzt sie, damit die Bestellungen eines Laufs nicht am Bestand scheitern.
+ */
+@Component
+@ConditionalOnProperty(name = "mozart.lager.anfangsbestand")
+public class Anfangsbestand {
+
+    /**
+     * Logger für diese Klasse.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(Anfangsbestand.class);
+
+    /**
+     * Konstruktor für den {@code Anfangsbestand}.
+     *
+     * @param lagermenge Die Lagermenge, die jedes Produkt erhält.
+     * @throws IllegalArgumentException Wenn die Lagermenge negativ ist.
+     */
+    public Anfangsbestand(@Value("${mozart.lager.anfangsbestand}") int lagermenge) throws IllegalArgumentException {
+        if (lagermenge < 0) {
+            throw new IllegalArgumentException("Der Anfangsbestand darf nicht negativ sein: " + lagermenge);
+        }
+        for (Produktdaten produktDaten : MozartMockRepo.produktkatalog.alsMap().values()) {
+            produktDaten.setLagermenge(lagermenge);
+        }
+        LOGGER.info("Anfangsbestand: Lagermenge aller Produkte auf {} gesetzt.", lagermenge);
+    }
+}
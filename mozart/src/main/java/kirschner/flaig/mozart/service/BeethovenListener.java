@@ -1,20 +1,51 @@
 package kirschner.flaig.mozart.service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import kirschner.flaig.mozart.config.Ablaufverfolgung;
+import kirschner.flaig.mozart.config.Ablaufverfolgung.Bereich;
 import kirschner.flaig.mozart.config.RabbitMQConfig;
+import kirschner.flaig.mozart.config.Span;
+import kirschner.flaig.mozart.config.Tracekontext;
 import kirschner.flaig.mozart.entity.BeethovenStatusUpdate;
 import kirschner.flaig.mozart.entity.Bestellung;
 import kirschner.flaig.mozart.entity.DeliveryStatus; // Enum-Name bleibt DeliveryStatus
-import kirschner.flaig.mozart.repository.MozartMockRepo;
 
 /**
  * Ein Service, der auf Nachrichten von einem "Beethoven"-System lauscht,
  * typischerweise um Statusaktualisierungen für Bestellungen zu empfangen und zu verarbeiten.
- * Nutzt RabbitMQ für die Nachrichtenkommunikation.
+ * Nutzt RabbitMQ für die Nachrichtenkommunikation. Die Nachrichten liest der
+ * {@link kirschner.flaig.mozart.config.StatusNachrichtenKonverter}, der den Lieferstatus bereits auflöst.
+ * <p>
+ * Standardmäßig wird jede Nachricht einzeln empfangen. Mit {@code mozart.statusaktualisierungen.batch=true} werden die
+ * Nachrichten stattdessen in Batches empfangen ({@link RabbitMQConfig#STATUS_BATCH_LISTENER_FABRIK}): Pro Bestellung
+ * gilt nur die letzte Aktualisierung des Batches, die Änderungen jeder Spur des {@link Statusverteiler}s werden
+ * gemeinsam übernommen und protokolliert (ein Schreibvorgang je Spur und Batch) und der Batch mit einem Ack bestätigt. Dauer und Größe
+ * jedes Batches werden als {@code statusaktualisierung.batch.dauer} und {@code statusaktualisierung.batch.groesse}
+ * erfasst, einzeln empfangene Nachrichten als {@code statusaktualisierung.dauer}. In beiden Modi zählt
+ * {@code rabbitmq.empfang.nachrichten} die empfangenen Nachrichten und {@code rabbitmq.empfang.verworfen} die wegen
+ * ungültiger Daten oder unbekannter Bestellung übersprungenen.
+ * <p>
+ * Trägt eine Nachricht den Header {@code traceparent} von Beethoven, wird für sie ein Span
+ * {@code statusaktualisierung empfangen} in diesem Trace erfasst; einzeln empfangen ist sein Kontext während der
+ * Übernahme aktiv, im Batch endet er mit der Übernahme des ganzen Batches.
  */
 @Service
 public class BeethovenListener {
@@ -23,38 +54,238 @@ public class BeethovenListener {
      */
     private static final Logger LOGGER = LogManager.getLogger(BeethovenListener.class);
 
+    /**
+     * Bestellverwaltung für das Nachschlagen und Aktualisieren von Bestellungen.
+     */
+    private final Bestellverwaltung bestellverwaltung;
+
+    /**
+     * Verteilt die Übernahme eines Batches nach Bestell-ID auf parallele Spuren; {@code null}, wenn der Batch-Modus
+     * abgeschaltet ist.
+     */
+    private final Statusverteiler statusverteiler;
+
+    /**
+     * Misst die Verarbeitungsdauer eines Batches.
+     */
+    private final Timer batchDauer;
+
+    /**
+     * Erfasst die Anzahl der Nachrichten pro Batch.
+     */
+    private final DistributionSummary batchGroesse;
+
+    /**
+     * Misst die Verarbeitungsdauer einer einzeln empfangenen Statusaktualisierung.
+     */
+    private final Timer einzelDauer;
+
+    /**
+     * Zählt die empfangenen Nachrichten.
+     */
+    private final Counter empfangen;
+
+    /**
+     * Zählt die wegen ungültiger Daten übersprungenen Nachrichten.
+     */
+    private final Counter ungueltig;
+
+    /**
+     * Zählt die wegen unbekannter Bestellung übersprungenen Nachrichten.
+     */
+    private final Counter unbekannt;
+
+    /**
+     * Beginnt und beendet die Spans der empfangenen Statusaktualisierungen.
+     */
+    private final Ablaufverfolgung ablaufverfolgung;
+
+    /**
+     * Konstruktor für den {@code BeethovenListener}.
+     *
+     * @param bestellverwaltung Die {@link Bestellverwaltung} für den Zugriff auf Bestellungen.
+     * @param statusverteiler Der {@link Statusverteiler} für die parallele Übernahme von Batches; nur im Batch-Modus vorhanden.
+     * @param ablaufverfolgung Die {@link Ablaufverfolgung} für die Spans der empfangenen Nachrichten.
+     * @param registry Die {@link MeterRegistry} für die Empfangs- und Batch-Metriken.
+     */
+    public BeethovenListener(Bestellverwaltung bestellverwaltung, Optional<Statusverteiler> statusverteiler,
+                             Ablaufverfolgung ablaufverfolgung, MeterRegistry registry) {
+        this.bestellverwaltung = bestellverwaltung;
+        this.statusverteiler = statusverteiler.orElse(null);
+        this.ablaufverfolgung = ablaufverfolgung;
+        this.batchDauer = Timer.builder("statusaktualisierung.batch.dauer")
+                .description("Verarbeitungsdauer eines Batches von Statusaktualisierungen")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        this.batchGroesse = DistributionSummary.builder("statusaktualisierung.batch.groesse")
+                .description("Anzahl der Statusaktualisierungen pro Batch")
+                .register(registry);
+        this.einzelDauer = Timer.builder("statusaktualisierung.dauer")
+                .description("Verarbeitungsdauer einer einzeln empfangenen Statusaktualisierung")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.empfangen = Counter.builder("rabbitmq.empfang.nachrichten")
+                .description("Empfangene Nachrichten")
+                .tag("warteschlange", RabbitMQConfig.ECOMMERCE_STATUS_WARTESCHLANGE_NAME)
+                .register(registry);
+        this.ungueltig = verworfenZaehler(registry, "ungueltig");
+        this.unbekannt = verworfenZaehler(registry, "unbekannt");
+    }
+
     /**
      * Empfängt Nachrichten von der konfigurierten RabbitMQ-Warteschlange für ERP-System-Updates.
      * Verarbeitet {@link BeethovenStatusUpdate}-Nachrichten, um den Lieferstatus
-     * entsprechender Bestellungen im {@link MozartMockRepo} zu aktualisieren.
+     * entsprechender Bestellungen über die {@link Bestellverwaltung} zu aktualisieren.
+     * Nur aktiv, wenn der Batch-Modus abgeschaltet ist.
      *
      * @param statusAktualisierung Das {@link BeethovenStatusUpdate}-Objekt, das aus der Warteschlange empfangen wurde.
      * Enthält die Bestell-ID und den neuen Status.
+     * @param traceparent Der Kontext des sendenden Spans in Beethoven oder {@code null}.
+     */
+    @RabbitListener(queues = RabbitMQConfig.ECOMMERCE_STATUS_WARTESCHLANGE_NAME,
+            messageConverter = "statusNachrichtenKonverter",
+            autoStartup = "#{!${mozart.statusaktualisierungen.batch:false}}")
+    public void receiveMessage(BeethovenStatusUpdate statusAktualisierung,
+                               @Header(name = Tracekontext.HEADER, required = false) String traceparent) {
+        long start = System.nanoTime();
+        empfangen.increment();
+        Span span = starteSpan(traceparent, statusAktualisierung);
+        try (Bereich bereich = Ablaufverfolgung.aktiviere(span != null ? span.kontext() : null)) {
+            uebernimm(statusAktualisierung);
+        } finally {
+            einzelDauer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (span != null) {
+                ablaufverfolgung.beende(span);
+            }
+        }
+    }
+
+    /**
+     * Übernimmt eine einzeln empfangene Statusaktualisierung.
+     *
+     * @param statusAktualisierung Das empfangene {@link BeethovenStatusUpdate}.
      */
-    @RabbitListener(queues = RabbitMQConfig.ECOMMERCE_STATUS_WARTESCHLANGE_NAME)
-    public void receiveMessage(BeethovenStatusUpdate statusAktualisierung) {
-        LOGGER.info("BeethovenListener: Nachricht empfangen: {}...", statusAktualisierung.toString());
+    private void uebernimm(BeethovenStatusUpdate statusAktualisierung) {
+        LOGGER.info("BeethovenListener: Nachricht empfangen: {}...", statusAktualisierung);
 
         if (statusAktualisierung.getBestellId() == null) {
             LOGGER.error("BeethovenListener: Ungültige oder unvollständige Statusaktualisierung empfangen.");
+            ungueltig.increment();
             return;
         }
 
-        Bestellung bestellung = MozartMockRepo.bestellungen.get(statusAktualisierung.getBestellId());
+        Bestellung bestellung = bestellverwaltung.finde(statusAktualisierung.getBestellId());
 
         if (bestellung == null) {
             LOGGER.error("BeethovenListener: Bestellung mit ID {} nicht gefunden.", statusAktualisierung.getBestellId());
+            unbekannt.increment();
             return;
         }
 
-        try {
-            DeliveryStatus neuerLieferstatus = DeliveryStatus.valueOf(statusAktualisierung.getStatus().toUpperCase());
-            bestellung.setLieferstatus(neuerLieferstatus);
-            LOGGER.info("BeethovenListener: Bestellung mit ID {} aktualisiert. Neuer Status: {}...",
-                    statusAktualisierung.getBestellId(), statusAktualisierung.getStatus());
-        } catch (IllegalArgumentException e) {
-            LOGGER.error("BeethovenListener: Ungültiger Statuswert '{}' für Bestellung mit ID {}. Fehler: {}",
-                    statusAktualisierung.getStatus(), statusAktualisierung.getBestellId(), e.getMessage());
+        DeliveryStatus neuerLieferstatus = statusAktualisierung.getLieferstatus();
+        if (neuerLieferstatus == null) {
+            LOGGER.error("BeethovenListener: Ungültiger Statuswert '{}' für Bestellung mit ID {}.",
+                    statusAktualisierung.getStatus(), statusAktualisierung.getBestellId());
+            ungueltig.increment();
+            return;
+        }
+        bestellverwaltung.aktualisiereLieferstatus(bestellung, neuerLieferstatus);
+        LOGGER.info("BeethovenListener: Bestellung mit ID {} aktualisiert. Neuer Status: {}...",
+                statusAktualisierung.getBestellId(), neuerLieferstatus);
+    }
+
+    /**
+     * Empfängt einen Batch von Statusaktualisierungen und übernimmt ihn in einem Durchgang.
+     * Mehrere Aktualisierungen derselben Bestellung werden zusammengefasst, sodass nur die letzte gültige zählt.
+     * Die Übernahme verteilt der {@link Statusverteiler} nach Bestell-ID auf parallele Spuren, die ihren Teil jeweils
+     * mit einem eigenen Schreibvorgang protokollieren; der Batch gilt erst als verarbeitet, wenn alle Spuren fertig
+     * sind, sodass Aktualisierungen einer Bestellung nie überholt werden.
+     * Ungültige Aktualisierungen und unbekannte Bestellungen werden protokolliert und übersprungen; wirft die
+     * Übernahme eine Ausnahme, wird der ganze Batch nicht bestätigt und erneut zugestellt.
+     * Die Reihenfolge pro Bestellung bleibt nur erhalten, weil {@link RabbitMQConfig#STATUS_BATCH_LISTENER_FABRIK}
+     * genau einen Consumer startet; mehrere Consumer würden Batches gleichzeitig verteilen.
+     *
+     * @param nachrichten Die Statusaktualisierungen mit ihren Headern in Empfangsreihenfolge.
+     * @throws IllegalStateException Wenn der Batch-Modus abgeschaltet ist und es keinen {@link Statusverteiler} gibt.
+     */
+    @RabbitListener(queues = RabbitMQConfig.ECOMMERCE_STATUS_WARTESCHLANGE_NAME,
+            containerFactory = RabbitMQConfig.STATUS_BATCH_LISTENER_FABRIK,
+            messageConverter = "statusNachrichtenKonverter",
+            autoStartup = "${mozart.statusaktualisierungen.batch:false}")
+    public void empfangeBatch(List<Message<BeethovenStatusUpdate>> nachrichten) {
+        if (statusverteiler == null) {
+            throw new IllegalStateException("Batch-Empfang ohne mozart.statusaktualisierungen.batch=true nicht verfügbar.");
+        }
+        long start = System.nanoTime();
+        empfangen.increment(nachrichten.size());
+        List<Span> spans = new ArrayList<>();
+        Map<String, DeliveryStatus> neueLieferstatus = new LinkedHashMap<>();
+        for (Message<BeethovenStatusUpdate> nachricht : nachrichten) {
+            BeethovenStatusUpdate statusAktualisierung = nachricht.getPayload();
+            Span span = starteSpan(nachricht.getHeaders().get(Tracekontext.HEADER, String.class), statusAktualisierung);
+            if (span != null) {
+                spans.add(span);
+            }
+            if (statusAktualisierung.getBestellId() == null) {
+                LOGGER.error("BeethovenListener: Ungültige oder unvollständige Statusaktualisierung empfangen: {}", statusAktualisierung);
+                ungueltig.increment();
+            } else if (statusAktualisierung.getLieferstatus() == null) {
+                LOGGER.error("BeethovenListener: Ungültiger Statuswert '{}' für Bestellung mit ID {}.",
+                        statusAktualisierung.getStatus(), statusAktualisierung.getBestellId());
+                ungueltig.increment();
+            } else {
+                neueLieferstatus.put(statusAktualisierung.getBestellId(), statusAktualisierung.getLieferstatus());
+            }
+        }
+
+        AtomicInteger nichtGefunden = new AtomicInteger();
+        statusverteiler.verteileAlle(neueLieferstatus, teil -> {
+            for (String bestellId : bestellverwaltung.aktualisiereLieferstatusAlle(teil)) {
+                LOGGER.error("BeethovenListener: Bestellung mit ID {} nicht gefunden.", bestellId);
+                nichtGefunden.incrementAndGet();
+            }
+        }).join();
+        unbekannt.increment(nichtGefunden.get());
+        for (Span span : spans) {
+            ablaufverfolgung.beende(span);
         }
+
+        long dauer = System.nanoTime() - start;
+        batchDauer.record(dauer, TimeUnit.NANOSECONDS);
+        batchGroesse.record(nachrichten.size());
+        LOGGER.info("BeethovenListener: Batch mit {} Statusaktualisierungen verarbeitet, {} Bestellungen aktualisiert in {} µs.",
+                nachrichten.size(), neueLieferstatus.size() - nichtGefunden.get(), TimeUnit.NANOSECONDS.toMicros(dauer));
+    }
+
+    /**
+     * Beginnt den Span einer empfangenen Statusaktualisierung im Trace ihres Absenders.
+     *
+     * @param traceparent Der Header {@code traceparent} der Nachricht oder {@code null}.
+     * @param statusAktualisierung Die Statusaktualisierung.
+     * @return Der Span oder {@code null}, wenn die Nachricht keinen gültigen Kontext trägt.
+     */
+    private Span starteSpan(String traceparent, BeethovenStatusUpdate statusAktualisierung) {
+        Tracekontext eltern = Tracekontext.ausTraceparent(traceparent);
+        if (eltern == null) {
+            return null;
+        }
+        Span span = ablaufverfolgung.starte("statusaktualisierung empfangen", eltern);
+        span.setzeDetail(statusAktualisierung.getBestellId());
+        return span;
+    }
+
+    /**
+     * Registriert den Zähler der aus einem Grund übersprungenen Nachrichten.
+     *
+     * @param registry Die Registry.
+     * @param grund Der Grund als Tag.
+     * @return Der Zähler.
+     */
+    private static Counter verworfenZaehler(MeterRegistry registry, String grund) {
+        return Counter.builder("rabbitmq.empfang.verworfen")
+                .description("Wegen ungültiger Daten oder unbekannter Bestellung übersprungene Nachrichten")
+                .tag("warteschlange", RabbitMQConfig.ECOMMERCE_STATUS_WARTESCHLANGE_NAME)
+                .tag("grund", grund)
+                .register(registry);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,274 @@
+package kirschner.flaig.mozart.service;
+
+import java.util.Arrays;
+
+import kirschner.flaig.mozart.config.Span;
+import kirschner.flaig.mozart.config.Tracekontext;
+import kirschner.flaig.mozart.controller.NewBestellungRequestDto;
+
+/**
+ * Sammelt die Schritte einer einzelnen Bestellung mit Zeitpunkt und Detail, statt jeden Schritt sofort zu loggen.
+ * Eine Spur wird von {@link Bestellspuren} ausgeliehen und nach der Ausgabe geleert zurückgegeben; Zeitpunkte und
+ * Details liegen in Feldern fester Größe, sodass das Vermerken keine Objekte erzeugt. Die Details werden erst bei der
+ * Ausgabe formatiert.
+ * <p>
+ * Im asynchronen Pfad wird die Spur auf dem Callback-Thread des gRPC-Aufrufs fortgesetzt; die Übergabe erfolgt über
+ * den Future und ist damit sichtbar, eine Spur wird aber nie von zwei Threads gleichzeitig beschrieben.
+ */
+final class Bestellspur {
+
+    /**
+     * Die Schritte einer Bestellung in der Reihenfolge ihres Auftretens.
+     */
+    enum Schritt {
+        /**
+         * Die Anfrage wurde angenommen; Detail ist die Anfrage selbst.
+         */
+        ANFRAGE("Anfrage"),
+
+        /**
+         * Der Lagerbestand wurde reserviert; Detail ist die Produkt-ID.
+         */
+        LAGER("Lagerbestand reserviert"),
+
+        /**
+         * Beethoven hat geantwortet; Detail ist die vergebene Bestell-ID.
+         */
+        BEETHOVEN("Antwort von Beethoven"),
+
+        /**
+         * Die Bestellung wurde im Repository gespeichert; Detail ist die Bestell-ID.
+         */
+        REPOSITORY("Im Repository gespeichert"),
+
+        /**
+         * Die Aktualisierung für das CRM wurde in die Outbox eingereiht; Detail ist die Bestell-ID.
+         */
+        CRM("In die CRM-Outbox eingereiht"),
+
+        /**
+         * Die Reservierung wurde nach einem Fehler zurückgenommen; Detail ist die Produkt-ID.
+         */
+        FREIGABE("Reservierung zurückgenommen"),
+
+        /**
+         * Die Lieferinformationen wurden erstellt; sie sind das Detail.
+         */
+        ABSCHLUSS("Lieferinformationen");
+
+        /**
+         * Die Bezeichnung in den Detailzeilen.
+         */
+        private final String bezeichnung;
+
+        /**
+         * Konstruktor für einen {@code Schritt}.
+         *
+         * @param bezeichnung Die Bezeichnung in den Detailzeilen.
+         */
+        Schritt(String bezeichnung) {
+            this.bezeichnung = bezeichnung;
+        }
+
+        /**
+         * Gibt die Bezeichnung des Schritts zurück.
+         *
+         * @return Die Bezeichnung.
+         */
+        String getBezeichnung() {
+            return bezeichnung;
+        }
+    }
+
+    /**
+     * Alle Schritte, indiziert mit ihrer Ordinalzahl.
+     */
+    static final Schritt[] SCHRITTE = Schritt.values();
+
+    /**
+     * Markiert einen nicht vermerkten Schritt.
+     */
+    private static final long NICHT_VERMERKT = Long.MIN_VALUE;
+
+    /**
+     * Die Zeitpunkte der Schritte aus {@link System#nanoTime()}.
+     */
+    private final long[] zeitpunkte = new long[SCHRITTE.length];
+
+    /**
+     * Die Details der Schritte, etwa Produkt- oder Bestell-ID.
+     */
+    private final Object[] details = new Object[SCHRITTE.length];
+
+    /**
+     * Die laufende Nummer der Spur, um Detailzeilen einer Bestellung zuzuordnen.
+     */
+    private long nummer;
+
+    /**
+     * Ob alle Schritte auch bei Erfolg ausgegeben werden.
+     */
+    private boolean stichprobe;
+
+    /**
+     * Die Schrittzeiten für den {@code Server-Timing}-Header oder {@code null}.
+     */
+    private Schrittzeiten schrittzeiten;
+
+    /**
+     * Der {@link Span} der Bestellung, dessen Kontext an Beethoven und das CRM weitergegeben wird.
+     */
+    private Span span;
+
+    /**
+     * Erstellt eine leere Spur.
+     */
+    Bestellspur() {
+        Arrays.fill(zeitpunkte, NICHT_VERMERKT);
+    }
+
+    /**
+     * Beginnt die Spur einer Bestellung mit dem Schritt {@link Schritt#ANFRAGE}.
+     *
+     * @param nummer Die laufende Nummer der Spur.
+     * @param anfrage Die Bestellanfrage.
+     * @param stichprobe Ob alle Schritte auch bei Erfolg ausgegeben werden.
+     * @param schrittzeiten Die Schrittzeiten für den {@code Server-Timing}-Header oder {@code null}.
+     * @param span Der laufende {@link Span} der Bestellung.
+     */
+    void beginne(long nummer, NewBestellungRequestDto anfrage, boolean stichprobe, Schrittzeiten schrittzeiten, Span span) {
+        this.nummer = nummer;
+        this.stichprobe = stichprobe;
+        this.schrittzeiten = schrittzeiten;
+        this.span = span;
+        vermerke(Schritt.ANFRAGE, anfrage);
+    }
+
+    /**
+     * Vermerkt einen Schritt mit dem aktuellen Zeitpunkt.
+     *
+     * @param schritt Der Schritt.
+     * @param detail Das Detail des Schritts; wird erst bei der Ausgabe formatiert.
+     */
+    void vermerke(Schritt schritt, Object detail) {
+        zeitpunkte[schritt.ordinal()] = System.nanoTime();
+        details[schritt.ordinal()] = detail;
+    }
+
+    /**
+     * Gibt an, ob ein Schritt vermerkt wurde.
+     *
+     * @param schritt Der Schritt.
+     * @return {@code true}, wenn der Schritt vermerkt wurde.
+     */
+    boolean istVermerkt(Schritt schritt) {
+        return zeitpunkte[schritt.ordinal()] != NICHT_VERMERKT;
+    }
+
+    /**
+     * Gibt das Detail eines Schritts zurück.
+     *
+     * @param schritt Der Schritt.
+     * @return Das Detail oder {@code null}, wenn der Schritt nicht vermerkt wurde.
+     */
+    Object detail(Schritt schritt) {
+        return details[schritt.ordinal()];
+    }
+
+    /**
+     * Gibt die Zeit vom Beginn der Spur bis zu einem Schritt zurück.
+     *
+     * @param schritt Der Schritt.
+     * @return Die Zeit in Mikrosekunden oder -1, wenn der Schritt nicht vermerkt wurde.
+     */
+    long seitBeginnMikros(Schritt schritt) {
+        return istVermerkt(schritt) ? (zeitpunkte[schritt.ordinal()] - zeitpunkte[Schritt.ANFRAGE.ordinal()]) / 1_000 : -1;
+    }
+
+    /**
+     * Gibt die Zeit vom Beginn der Spur bis jetzt zurück.
+     *
+     * @return Die Zeit in Nanosekunden.
+     */
+    long laufzeitNanos() {
+        return System.nanoTime() - zeitpunkte[Schritt.ANFRAGE.ordinal()];
+    }
+
+    /**
+     * Gibt die Dauer eines Schritts seit dem vorherigen zurück.
+     *
+     * @param vorher Der vorherige Schritt.
+     * @param schritt Der Schritt.
+     * @return Die Dauer in Nanosekunden oder -1, wenn einer der Schritte nicht vermerkt wurde.
+     */
+    long dauerNanos(Schritt vorher, Schritt schritt) {
+        if (!istVermerkt(vorher) || !istVermerkt(schritt)) {
+            return -1;
+        }
+        return zeitpunkte[schritt.ordinal()] - zeitpunkte[vorher.ordinal()];
+    }
+
+    /**
+     * Gibt die Anfrage der Bestellung zurück.
+     *
+     * @return Die Bestellanfrage.
+     */
+    NewBestellungRequestDto anfrage() {
+        return (NewBestellungRequestDto) details[Schritt.ANFRAGE.ordinal()];
+    }
+
+    /**
+     * Gibt die laufende Nummer der Spur zurück.
+     *
+     * @return Die Nummer.
+     */
+    long getNummer() {
+        return nummer;
+    }
+
+    /**
+     * Gibt die Schrittzeiten für den {@code Server-Timing}-Header zurück.
+     *
+     * @return Die Schrittzeiten oder {@code null}.
+     */
+    Schrittzeiten schrittzeiten() {
+        return schrittzeiten;
+    }
+
+    /**
+     * Gibt den Span der Bestellung zurück.
+     *
+     * @return Der Span.
+     */
+    Span span() {
+        return span;
+    }
+
+    /**
+     * Gibt den Kontext der Bestellung zurück, der während ihrer Schritte aktiv ist.
+     *
+     * @return Der {@link Tracekontext} des Spans.
+     */
+    Tracekontext kontext() {
+        return span.kontext();
+    }
+
+    /**
+     * Gibt an, ob die Bestellung in der Stichprobe ist.
+     *
+     * @return {@code true}, wenn alle Schritte auch bei Erfolg ausgegeben werden.
+     */
+    boolean istStichprobe() {
+        return stichprobe;
+    }
+
+    /**
+     * Leert die Spur für die nächste Bestellung.
+     */
+    void leere() {
+        Arrays.fill(zeitpunkte, NICHT_VERMERKT);
+        Arrays.fill(details, null);
+        schrittzeiten = null;
+        span = null;
+    }
+}
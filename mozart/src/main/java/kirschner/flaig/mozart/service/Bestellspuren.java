@@ -0,0 +1,306 @@
+package kirschner.flaig.mozart.service;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import kirschner.flaig.mozart.config.Ablaufverfolgung;
+import kirschner.flaig.mozart.config.Span;
+import kirschner.flaig.mozart.controller.NewBestellungRequestDto;
+import kirschner.flaig.mozart.service.Bestellspur.Schritt;
+
+/**
+ * Verwaltet die {@link Bestellspur}en der Einzelbestellungen und gibt sie aus.
+ * Pro Bestellung wird genau eine Zusammenfassung mit den Dauern der Schritte geloggt. Alle Schritte mit ihren Details
+ * werden nur ausgegeben, wenn die Bestellung scheitert (auf ERROR) oder in der Stichprobe liegt (auf INFO); der Anteil
+ * der Stichprobe ist über {@code mozart.bestellspur.stichprobenrate} einstellbar, {@code 1.0} gibt jede Bestellung
+ * vollständig aus.
+ * <p>
+ * Die Spuren werden in einem Pool wiederverwendet; ist er leer, wird eine neue angelegt, ist er voll, wird die Spur
+ * verworfen. Zahlen werden mit {@link Unbox} übergeben, damit die Ausgabe mit wiederverwendbaren Nachrichten keine
+ * Objekte erzeugt.
+ * <p>
+ * Dieselben Dauern werden als Histogramme erfasst: {@code bestellung.schritt.dauer} je Schritt ({@code lager},
+ * {@code beethoven}, {@code repository}, {@code crm}) und {@code bestellung.dauer} je Ergebnis. Die Timer werden
+ * einmal registriert und veröffentlichen Histogramm-Buckets von 1 µs bis 10 s, aus denen Prometheus die Perzentile
+ * über alle Instanzen berechnet; das Erfassen einer Bestellung kostet nur einige atomare Additionen.
+ * <p>
+ * Jede Spur trägt außerdem einen {@link Span} {@code bestellung} als Kind des aktiven Kontexts, etwa aus dem
+ * {@code traceparent} der HTTP-Anfrage; er wird beim Abschluss oder Scheitern beendet.
+ */
+@Service
+public class Bestellspuren {
+
+    /**
+     * Logger für diese Klasse.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(Bestellspuren.class);
+
+    /**
+     * Die Anzahl der im Pool gehaltenen Spuren.
+     */
+    private static final int POOLGROESSE = 256;
+
+    /**
+     * Die kleinste erwartete Dauer, ab der die Histogramm-Buckets beginnen.
+     */
+    private static final Duration MINIMALE_DAUER = Duration.ofNanos(1_000);
+
+    /**
+     * Die größte erwartete Dauer, bis zu der die Histogramm-Buckets reichen.
+     */
+    private static final Duration MAXIMALE_DAUER = Duration.ofSeconds(10);
+
+    /**
+     * Die freien Spuren.
+     */
+    private final ArrayBlockingQueue<Bestellspur> pool = new ArrayBlockingQueue<>(POOLGROESSE);
+
+    /**
+     * Die laufende Nummer der nächsten Spur.
+     */
+    private final AtomicLong naechsteNummer = new AtomicLong();
+
+    /**
+     * Der Anteil der Bestellungen, deren Schritte auch bei Erfolg vollständig ausgegeben werden.
+     */
+    private final double stichprobenrate;
+
+    /**
+     * Misst die Lagerreservierung.
+     */
+    private final Timer lagerDauer;
+
+    /**
+     * Misst den gRPC-Aufruf an Beethoven.
+     */
+    private final Timer beethovenDauer;
+
+    /**
+     * Misst das Speichern im Repository.
+     */
+    private final Timer repositoryDauer;
+
+    /**
+     * Misst das Einreihen in die CRM-Outbox.
+     */
+    private final Timer crmDauer;
+
+    /**
+     * Misst erfolgreiche Bestellungen vom Beginn bis zum Abschluss.
+     */
+    private final Timer erfolgDauer;
+
+    /**
+     * Misst gescheiterte Bestellungen vom Beginn bis zum Scheitern.
+     */
+    private final Timer fehlerDauer;
+
+    /**
+     * Beginnt und beendet die Spans der Bestellungen.
+     */
+    private final Ablaufverfolgung ablaufverfolgung;
+
+    /**
+     * Konstruktor für die {@code Bestellspuren}.
+     *
+     * @param ablaufverfolgung Die {@link Ablaufverfolgung} für die Spans der Bestellungen.
+     * @param registry Die {@link MeterRegistry} für die Schritt-Histogramme.
+     * @param stichprobenrate Der Anteil der vollständig ausgegebenen Bestellungen zwischen 0 und 1.
+     * @throws IllegalArgumentException Wenn die Rate außerhalb von 0 bis 1 liegt.
+     */
+    public Bestellspuren(Ablaufverfolgung ablaufverfolgung, MeterRegistry registry,
+                         @Value("${mozart.bestellspur.stichprobenrate:0.01}") double stichprobenrate) {
+        if (!(stichprobenrate >= 0 && stichprobenrate <= 1)) {
+            throw new IllegalArgumentException("Die Stichprobenrate muss zwischen 0 und 1 liegen: " + stichprobenrate);
+        }
+        this.ablaufverfolgung = ablaufverfolgung;
+        this.stichprobenrate = stichprobenrate;
+        this.lagerDauer = schrittTimer(registry, "lager");
+        this.beethovenDauer = schrittTimer(registry, "beethoven");
+        this.repositoryDauer = schrittTimer(registry, "repository");
+        this.crmDauer = schrittTimer(registry, "crm");
+        this.erfolgDauer = bestellungTimer(registry, "erfolg");
+        this.fehlerDauer = bestellungTimer(registry, "fehler");
+    }
+
+    /**
+     * Beginnt die Spur einer Bestellung und entscheidet, ob sie in der Stichprobe liegt.
+     *
+     * @param anfrage Die Bestellanfrage.
+     * @param schrittzeiten Die bei Erfolg zu füllenden {@link Schrittzeiten} oder {@code null}.
+     * @return Die Spur; sie muss mit {@link #schliesseAb(Bestellspur)} oder {@link #scheitere(Bestellspur, Throwable)}
+     * genau einmal beendet werden.
+     */
+    Bestellspur beginne(NewBestellungRequestDto anfrage, Schrittzeiten schrittzeiten) {
+        Bestellspur spur = pool.poll();
+        if (spur == null) {
+            spur = new Bestellspur();
+        }
+        boolean stichprobe = stichprobenrate >= 1
+                || (stichprobenrate > 0 && ThreadLocalRandom.current().nextDouble() < stichprobenrate);
+        Span span = ablaufverfolgung.starte("bestellung", Ablaufverfolgung.aktueller());
+        spur.beginne(naechsteNummer.incrementAndGet(), anfrage, stichprobe, schrittzeiten, span);
+        return spur;
+    }
+
+    /**
+     * Beendet die Spur einer erfolgreichen Bestellung: erfasst die Dauern, trägt sie in die {@link Schrittzeiten} ein,
+     * beendet den Span und gibt die Zusammenfassung sowie bei einer Stichprobe alle Schritte aus.
+     *
+     * @param spur Die Spur der Bestellung.
+     */
+    void schliesseAb(Bestellspur spur) {
+        long lager = spur.dauerNanos(Schritt.ANFRAGE, Schritt.LAGER);
+        long beethoven = spur.dauerNanos(Schritt.LAGER, Schritt.BEETHOVEN);
+        long repository = spur.dauerNanos(Schritt.BEETHOVEN, Schritt.REPOSITORY);
+        long crm = spur.dauerNanos(Schritt.REPOSITORY, Schritt.CRM);
+        long gesamt = spur.dauerNanos(Schritt.ANFRAGE, Schritt.ABSCHLUSS);
+        erfasse(lagerDauer, lager);
+        erfasse(beethovenDauer, beethoven);
+        erfasse(repositoryDauer, repository);
+        erfasse(crmDauer, crm);
+        erfasse(erfolgDauer, gesamt);
+        if (spur.schrittzeiten() != null) {
+            spur.schrittzeiten().setze(lager, beethoven, repository, crm);
+        }
+        Object bestellId = spur.detail(Schritt.BEETHOVEN);
+        spur.span().setzeDetail(bestellId != null ? bestellId.toString() : null);
+        ablaufverfolgung.beende(spur.span());
+
+        if (spur.istStichprobe()) {
+            gibSchritteAus(spur, Level.INFO);
+        }
+        NewBestellungRequestDto anfrage = spur.anfrage();
+        LOGGER.info("Bestellspuren: Bestellung {} (Spur {}, Produkt {}, Menge {}) in {} µs verarbeitet: Lager {} µs, Beethoven {} µs, Repository {} µs, CRM {} µs.",
+                bestellId, Unbox.box(spur.getNummer()), anfrage.produktId(), menge(anfrage),
+                Unbox.box(mikros(gesamt)), Unbox.box(mikros(lager)), Unbox.box(mikros(beethoven)),
+                Unbox.box(mikros(repository)), Unbox.box(mikros(crm)));
+        gibZurueck(spur);
+    }
+
+    /**
+     * Beendet die Spur und den Span einer gescheiterten Bestellung und gibt alle bis dahin vermerkten Schritte aus.
+     *
+     * @param spur Die Spur der Bestellung.
+     * @param fehler Der Grund des Scheiterns.
+     */
+    void scheitere(Bestellspur spur, Throwable fehler) {
+        long laufzeit = spur.laufzeitNanos();
+        erfasse(fehlerDauer, laufzeit);
+        spur.span().setzeFehler(String.valueOf(fehler.getMessage()));
+        ablaufverfolgung.beende(spur.span());
+        gibSchritteAus(spur, Level.ERROR);
+        NewBestellungRequestDto anfrage = spur.anfrage();
+        LOGGER.error("Bestellspuren: Bestellung (Spur {}, Produkt {}, Menge {}) nach {} µs fehlgeschlagen: {}",
+                Unbox.box(spur.getNummer()), anfrage.produktId(), menge(anfrage),
+                Unbox.box(mikros(laufzeit)), fehler.getMessage());
+        gibZurueck(spur);
+    }
+
+    /**
+     * Gibt alle vermerkten Schritte einer Spur mit ihrem Abstand zum Beginn aus.
+     *
+     * @param spur Die Spur.
+     * @param level Das Log-Level der Zeilen.
+     */
+    private void gibSchritteAus(Bestellspur spur, Level level) {
+        if (!LOGGER.isEnabled(level)) {
+            return;
+        }
+        for (Schritt schritt : Bestellspur.SCHRITTE) {
+            if (spur.istVermerkt(schritt)) {
+                LOGGER.log(level, "Bestellspuren: Spur {} +{} µs {}: {}", Unbox.box(spur.getNummer()),
+                        Unbox.box(spur.seitBeginnMikros(schritt)), schritt.getBezeichnung(), spur.detail(schritt));
+            }
+        }
+    }
+
+    /**
+     * Erfasst eine Dauer, sofern sie gemessen wurde.
+     *
+     * @param timer Der Timer.
+     * @param nanos Die Dauer in Nanosekunden oder -1.
+     */
+    private static void erfasse(Timer timer, long nanos) {
+        if (nanos >= 0) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Gibt die Menge einer Anfrage für die Ausgabe zurück, ohne eine Zeichenkette zu erzeugen.
+     *
+     * @param anfrage Die Anfrage.
+     * @return Die Menge über {@link Unbox} oder {@code null}, wenn die Anfrage keine Menge enthält.
+     */
+    private static Object menge(NewBestellungRequestDto anfrage) {
+        Integer menge = anfrage.menge();
+        return menge == null ? null : Unbox.box(menge.intValue());
+    }
+
+    /**
+     * Rechnet eine Dauer für die Ausgabe in Mikrosekunden um.
+     *
+     * @param nanos Die Dauer in Nanosekunden oder -1.
+     * @return Die Dauer in Mikrosekunden oder -1.
+     */
+    private static long mikros(long nanos) {
+        return nanos < 0 ? -1 : nanos / 1_000;
+    }
+
+    /**
+     * Registriert das Histogramm eines Schritts.
+     *
+     * @param registry Die Registry.
+     * @param schritt Der Name des Schritts als Tag.
+     * @return Der Timer.
+     */
+    private static Timer schrittTimer(MeterRegistry registry, String schritt) {
+        return Timer.builder("bestellung.schritt.dauer")
+                .description("Dauer eines Schritts der Einzelbestellung")
+                .tag("schritt", schritt)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MINIMALE_DAUER)
+                .maximumExpectedValue(MAXIMALE_DAUER)
+                .register(registry);
+    }
+
+    /**
+     * Registriert das Histogramm der gesamten Einzelbestellung.
+     *
+     * @param registry Die Registry.
+     * @param ergebnis Das Ergebnis als Tag.
+     * @return Der Timer.
+     */
+    private static Timer bestellungTimer(MeterRegistry registry, String ergebnis) {
+        return Timer.builder("bestellung.dauer")
+                .description("Dauer einer Einzelbestellung vom Eingang bis zum Abschluss oder Scheitern")
+                .tag("ergebnis", ergebnis)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MINIMALE_DAUER)
+                .maximumExpectedValue(MAXIMALE_DAUER)
+                .register(registry);
+    }
+
+    /**
+     * Leert eine Spur und legt sie zurück in den Pool.
+     *
+     * @param spur Die Spur.
+     */
+    private void gibZurueck(Bestellspur spur) {
+        spur.leere();
+        pool.offer(spur);
+    }
+}
@@ -1,28 +1,49 @@
 package kirschner.flaig.mozart.service;
 
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.springframework.amqp.AmqpException;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import kirschner.flaig.mozart.config.RabbitMQConfig;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import io.grpc.stub.AbstractStub;
+import jakarta.annotation.PreDestroy;
+import kirschner.flaig.mozart.config.Ablaufverfolgung;
+import kirschner.flaig.mozart.config.Ablaufverfolgung.Bereich;
+import kirschner.flaig.mozart.config.Span;
+import kirschner.flaig.mozart.config.Tracekontext;
+import kirschner.flaig.mozart.controller.BestellungBatchErgebnisDto;
 import kirschner.flaig.mozart.controller.NewBestellungRequestDto;
 import kirschner.flaig.mozart.entity.Bestellung;
 import kirschner.flaig.mozart.entity.BestellungDataSchuhmacher;
 import kirschner.flaig.mozart.entity.DeliveryStatus;
+import kirschner.flaig.mozart.entity.Geldbetrag;
 import kirschner.flaig.mozart.entity.Lieferinformationen;
-import kirschner.flaig.mozart.entity.Produktdaten;
+import kirschner.flaig.mozart.grpc.BestellungBatchRequest;
+import kirschner.flaig.mozart.grpc.BestellungBatchResponse;
+import kirschner.flaig.mozart.grpc.BestellungBatchResult;
 import kirschner.flaig.mozart.grpc.BestellungRequest;
 import kirschner.flaig.mozart.grpc.BestellungResponse;
 import kirschner.flaig.mozart.grpc.ErpOrderServiceGrpc;
 import kirschner.flaig.mozart.repository.BestellungBuilder;
 import kirschner.flaig.mozart.repository.LieferinformationenBuilder;
 import kirschner.flaig.mozart.repository.MozartMockRepo;
+import kirschner.flaig.mozart.service.Bestellspur.Schritt;
 import net.devh.boot.grpc.client.inject.GrpcClient;
 
 /**
@@ -30,6 +51,10 @@ import net.devh.boot.grpc.client.inject.GrpcClient;
  * Diese Klasse ist verantwortlich für die Orchestrierung verschiedener Schritte
  * im Bestellprozess, einschließlich der Kommunikation mit externen Diensten (gRPC, RabbitMQ)
  * und der Aktualisierung von Datenbeständen.
+ * Die Schritte einer Einzelbestellung werden in einer {@link Bestellspur} gesammelt und über {@link Bestellspuren}
+ * als eine Zusammenfassung pro Bestellung geloggt.
+ * Während der Schritte ist der Kontext ihres Spans aktiv, sodass der gRPC-Aufruf, die CRM-Nachricht und alle
+ * Logzeilen ihn tragen; im asynchronen Pfad wird er in den Callbacks erneut aktiviert.
  */
 @Service
 public class BestellungService {
@@ -45,73 +70,430 @@ public class BestellungService {
     private ErpOrderServiceGrpc.ErpOrderServiceBlockingStub erpBestellServiceStub;
 
     /**
-     * RabbitTemplate für das Senden von Nachrichten an RabbitMQ.
+     * gRPC-Future-Stub für die nicht-blockierende Kommunikation mit dem Beethoven-ERP-Service.
+     */
+    @GrpcClient("beethoven-service")
+    private ErpOrderServiceGrpc.ErpOrderServiceFutureStub erpBestellServiceFutureStub;
+
+    /**
+     * Optionale Deadline für gRPC-Aufrufe an Beethoven in Millisekunden.
+     * Ein Wert von 0 oder kleiner bedeutet keine Deadline. Gilt für den blockierenden und den asynchronen Pfad gleichermaßen.
      */
-    private final RabbitTemplate rabbitTemplate;
+    @Value("${mozart.grpc.beethoven.deadline-ms:0}")
+    private long grpcDeadlineMillis;
+
+    /**
+     * CRM-Versand, über dessen Outbox die CRM-Aktualisierungen zugestellt werden.
+     */
+    private final CrmVersand crmVersand;
+
+    /**
+     * Lagerverwaltung für das atomare Reservieren und Freigeben von Produktbeständen.
+     */
+    private final Lagerverwaltung lagerverwaltung;
+
+    /**
+     * Bestellverwaltung für das Speichern neuer Bestellungen.
+     */
+    private final Bestellverwaltung bestellverwaltung;
+
+    /**
+     * Die abgeschlossenen und laufenden Bestellungen je {@code Idempotency-Key}.
+     */
+    private final Idempotenzcache<Lieferinformationen> idempotenzcache;
+
+    /**
+     * Die Spuren der Einzelbestellungen für das Logging.
+     */
+    private final Bestellspuren bestellspuren;
+
+    /**
+     * Die Ablaufverfolgung für den Span der Batch-Verarbeitung.
+     */
+    private final Ablaufverfolgung ablaufverfolgung;
+
+    /**
+     * Executor für die Abschluss-Callbacks des asynchronen Pfads. Das Speichern wartet auf das fsync des
+     * Bestellprotokolls und das Einreihen auf die CRM-Outbox; beides darf weder den Transport- noch den
+     * Callback-Thread von gRPC blockieren. Jeder Abschluss läuft daher auf einem eigenen virtuellen Thread.
+     */
+    private final ExecutorService abschlussExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bestellung-abschluss-", 0).factory());
 
     /**
      * Konstruktor für den {@code BestellungService}.
      *
-     * @param rabbitTemplate Das {@link RabbitTemplate} für die RabbitMQ-Kommunikation.
+     * @param crmVersand Der {@link CrmVersand} für die Zustellung der CRM-Aktualisierungen.
+     * @param lagerverwaltung Die {@link Lagerverwaltung} für Lagerreservierungen.
+     * @param bestellverwaltung Die {@link Bestellverwaltung} für das Speichern von Bestellungen.
+     * @param bestellspuren Die {@link Bestellspuren} für das Logging der Einzelbestellungen.
+     * @param ablaufverfolgung Die {@link Ablaufverfolgung} für den Span der Batch-Verarbeitung.
+     * @param idempotenzMaximaleAnzahl Die maximale Anzahl gemerkter Idempotenzschlüssel.
+     * @param idempotenzLebensdauerSekunden Wie lange ein Idempotenzschlüssel gemerkt wird.
      */
     @Autowired
-    public BestellungService(RabbitTemplate rabbitTemplate) {
-        this.rabbitTemplate = rabbitTemplate;
+    public BestellungService(CrmVersand crmVersand, Lagerverwaltung lagerverwaltung, Bestellverwaltung bestellverwaltung,
+                             Bestellspuren bestellspuren, Ablaufverfolgung ablaufverfolgung,
+                             @Value("${mozart.idempotenz.max-eintraege:100000}") int idempotenzMaximaleAnzahl,
+                             @Value("${mozart.idempotenz.lebensdauer-sekunden:86400}") long idempotenzLebensdauerSekunden) {
+        this.crmVersand = crmVersand;
+        this.lagerverwaltung = lagerverwaltung;
+        this.bestellverwaltung = bestellverwaltung;
+        this.bestellspuren = bestellspuren;
+        this.ablaufverfolgung = ablaufverfolgung;
+        this.idempotenzcache = new Idempotenzcache<>(idempotenzMaximaleAnzahl, Duration.ofSeconds(idempotenzLebensdauerSekunden));
+    }
+
+    /**
+     * Schließt den Executor der Abschluss-Callbacks; laufende Abschlüsse werden noch zu Ende geführt.
+     */
+    @PreDestroy
+    public void schliesseAbschlussExecutor() {
+        abschlussExecutor.close();
+    }
+
+    /**
+     * Verarbeitet eine Bestellanfrage höchstens einmal pro Idempotenzschlüssel.
+     * Wiederholt ein Client die Anfrage, erhält er die {@link Lieferinformationen} der ersten Verarbeitung;
+     * gleichzeitige Wiederholungen warten auf die noch laufende Verarbeitung, statt Beethoven erneut aufzurufen.
+     * Der Schlüssel wird an Beethoven weitergegeben, damit auch dort Wiederholungen erkannt werden.
+     * Scheitert die Verarbeitung, wird nichts gemerkt und eine Wiederholung erneut verarbeitet.
+     *
+     * @param bestellAnfrage Das {@link NewBestellungRequestDto} mit den Daten der neuen Bestellung.
+     * @param idempotenzSchluessel Der vom Client gewählte Idempotenzschlüssel.
+     * @param asynchron {@code true} für {@link #processBestellungAsync}, sonst {@link #processBestellung}.
+     * @param schrittzeiten Die {@link Schrittzeiten}, in die eine hier ausgeführte Verarbeitung ihre Dauern einträgt, oder {@code null}.
+     * @return Ein {@link CompletableFuture} mit den {@link Lieferinformationen}.
+     * @throws IllegalArgumentException Bei Validierungsfehlern oder wenn der Schlüssel bereits für eine andere Bestellung verwendet wurde.
+     */
+    public CompletableFuture<Lieferinformationen> processBestellungIdempotent(NewBestellungRequestDto bestellAnfrage, String idempotenzSchluessel,
+                                                                             boolean asynchron, Schrittzeiten schrittzeiten) throws IllegalArgumentException {
+        return idempotenzcache.fuehreAus(idempotenzSchluessel, bestellAnfrage, () -> asynchron
+                ? verarbeiteAsynchron(bestellAnfrage, idempotenzSchluessel, schrittzeiten)
+                : CompletableFuture.completedFuture(verarbeite(bestellAnfrage, idempotenzSchluessel, schrittzeiten)));
     }
 
     /**
      * Verarbeitet eine neue Bestellanfrage.
      * Dieser Prozess beinhaltet die Kommunikation mit einem gRPC-Service, die Aktualisierung
      * des Produktbestands, das Speichern der Bestellung und das Senden einer CRM-Aktualisierung.
+     * Schlägt der gRPC-Aufruf fehl, wird die Lagerreservierung zurückgenommen.
      *
      * @param bestellAnfrage Das {@link NewBestellungRequestDto} mit den Daten der neuen Bestellung.
+     * @param schrittzeiten Die {@link Schrittzeiten}, in die die Dauern der Schritte eingetragen werden, oder {@code null}.
      * @return Die {@link Lieferinformationen} für die verarbeitete Bestellung.
      * @throws IllegalArgumentException Wenn Validierungsfehler auftreten, z.B. nicht genügender Lagerbestand.
      */
-    public Lieferinformationen processBestellung(NewBestellungRequestDto bestellAnfrage) throws IllegalArgumentException {
-        LOGGER.info("BestellungService: Starte processBestellung() mit folgendem Objekt: {}...", bestellAnfrage.toString());
+    public Lieferinformationen processBestellung(NewBestellungRequestDto bestellAnfrage, Schrittzeiten schrittzeiten) throws IllegalArgumentException {
+        return verarbeite(bestellAnfrage, null, schrittzeiten);
+    }
+
+    /**
+     * Verarbeitet eine neue Bestellanfrage blockierend wie {@link #processBestellung}.
+     *
+     * @param bestellAnfrage Das {@link NewBestellungRequestDto} mit den Daten der neuen Bestellung.
+     * @param idempotenzSchluessel Der an Beethoven weiterzugebende Idempotenzschlüssel oder {@code null}.
+     * @param schrittzeiten Die {@link Schrittzeiten} für den {@code Server-Timing}-Header oder {@code null}.
+     * @return Die {@link Lieferinformationen} für die verarbeitete Bestellung.
+     */
+    private Lieferinformationen verarbeite(NewBestellungRequestDto bestellAnfrage, String idempotenzSchluessel, Schrittzeiten schrittzeiten) {
+        Bestellspur spur = bestellspuren.beginne(bestellAnfrage, schrittzeiten);
+        try (Bereich bereich = Ablaufverfolgung.aktiviere(spur.kontext())) {
+            Lieferinformationen lieferinformationen;
+            try {
+                BestellungRequest bestellAnfrageGrpc = erstelleGrpcAnfrage(bestellAnfrage, idempotenzSchluessel);
+
+                int produktIndex = aendereProduktLagerMenge(bestellAnfrage.produktId(), bestellAnfrage.menge());
+                spur.vermerke(Schritt.LAGER, bestellAnfrage.produktId());
+
+                BestellungResponse antwortGrpc;
+                try {
+                    antwortGrpc = mitDeadline(erpBestellServiceStub).bestellungOrder(bestellAnfrageGrpc);
+                } catch (RuntimeException e) {
+                    gibProduktLagerMengeFrei(produktIndex, bestellAnfrage.menge());
+                    spur.vermerke(Schritt.FREIGABE, bestellAnfrage.produktId());
+                    throw e;
+                }
+                lieferinformationen = verarbeiteGrpcAntwort(antwortGrpc, bestellAnfrage, produktIndex, spur);
+            } catch (RuntimeException e) {
+                bestellspuren.scheitere(spur, e);
+                throw e;
+            }
+            bestellspuren.schliesseAb(spur);
+            return lieferinformationen;
+        }
+    }
+
+    /**
+     * Verarbeitet eine neue Bestellanfrage, ohne den aufrufenden Thread während des gRPC-Aufrufs zu blockieren.
+     * Die Lagerprüfung erfolgt synchron; das Einfügen in das Repository und die CRM-Aktualisierung
+     * laufen im Abschluss-Callback des gRPC-Aufrufs, den der {@link #abschlussExecutor} ausführt.
+     *
+     * @param bestellAnfrage Das {@link NewBestellungRequestDto} mit den Daten der neuen Bestellung.
+     * @param schrittzeiten Die {@link Schrittzeiten}, in die die Dauern der Schritte eingetragen werden, oder {@code null}.
+     * @return Ein {@link CompletableFuture}, das mit den {@link Lieferinformationen} abgeschlossen wird,
+     * oder mit derselben Ausnahme scheitert, die der blockierende Pfad werfen würde.
+     * @throws IllegalArgumentException Wenn das Produkt nicht existiert oder der Lagerbestand nicht ausreicht.
+     */
+    public CompletableFuture<Lieferinformationen> processBestellungAsync(NewBestellungRequestDto bestellAnfrage, Schrittzeiten schrittzeiten)
+            throws IllegalArgumentException {
+        return verarbeiteAsynchron(bestellAnfrage, null, schrittzeiten);
+    }
+
+    /**
+     * Verarbeitet eine neue Bestellanfrage nicht-blockierend wie {@link #processBestellungAsync}.
+     *
+     * @param bestellAnfrage Das {@link NewBestellungRequestDto} mit den Daten der neuen Bestellung.
+     * @param idempotenzSchluessel Der an Beethoven weiterzugebende Idempotenzschlüssel oder {@code null}.
+     * @param schrittzeiten Die {@link Schrittzeiten} für den {@code Server-Timing}-Header oder {@code null}.
+     * @return Ein {@link CompletableFuture} mit den {@link Lieferinformationen}.
+     */
+    private CompletableFuture<Lieferinformationen> verarbeiteAsynchron(NewBestellungRequestDto bestellAnfrage, String idempotenzSchluessel,
+                                                                        Schrittzeiten schrittzeiten) {
+        Bestellspur spur = bestellspuren.beginne(bestellAnfrage, schrittzeiten);
+        Tracekontext kontext = spur.kontext();
+        final int produktIndex;
+        ListenableFuture<BestellungResponse> antwortFuture;
+        try (Bereich bereich = Ablaufverfolgung.aktiviere(kontext)) {
+            try {
+                BestellungRequest bestellAnfrageGrpc = erstelleGrpcAnfrage(bestellAnfrage, idempotenzSchluessel);
+
+                produktIndex = aendereProduktLagerMenge(bestellAnfrage.produktId(), bestellAnfrage.menge());
+                spur.vermerke(Schritt.LAGER, bestellAnfrage.produktId());
+
+                try {
+                    antwortFuture = mitDeadline(erpBestellServiceFutureStub).bestellungOrder(bestellAnfrageGrpc);
+                } catch (RuntimeException e) {
+                    gibProduktLagerMengeFrei(produktIndex, bestellAnfrage.menge());
+                    spur.vermerke(Schritt.FREIGABE, bestellAnfrage.produktId());
+                    throw e;
+                }
+            } catch (RuntimeException e) {
+                bestellspuren.scheitere(spur, e);
+                throw e;
+            }
+        }
+
+        CompletableFuture<Lieferinformationen> ergebnis = new CompletableFuture<>();
+        Futures.addCallback(antwortFuture, new FutureCallback<>() {
+            @Override
+            public void onSuccess(BestellungResponse antwortGrpc) {
+                try (Bereich bereich = Ablaufverfolgung.aktiviere(kontext)) {
+                    Lieferinformationen lieferinformationen;
+                    try {
+                        lieferinformationen = verarbeiteGrpcAntwort(antwortGrpc, bestellAnfrage, produktIndex, spur);
+                    } catch (RuntimeException e) {
+                        bestellspuren.scheitere(spur, e);
+                        ergebnis.completeExceptionally(e);
+                        return;
+                    }
+                    bestellspuren.schliesseAb(spur);
+                    ergebnis.complete(lieferinformationen);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable fehler) {
+                try (Bereich bereich = Ablaufverfolgung.aktiviere(kontext)) {
+                    gibProduktLagerMengeFrei(produktIndex, bestellAnfrage.menge());
+                    spur.vermerke(Schritt.FREIGABE, bestellAnfrage.produktId());
+                    bestellspuren.scheitere(spur, fehler);
+                    ergebnis.completeExceptionally(fehler);
+                }
+            }
+        }, abschlussExecutor);
+        return ergebnis;
+    }
+
+    /**
+     * Verarbeitet mehrere Bestellanfragen in einem Durchlauf.
+     * Nach der lokalen Lagerprüfung werden alle gültigen Bestellungen in einem einzigen
+     * {@code BestellungOrderBatch}-Aufruf an Beethoven gesendet. Angenommene Bestellungen werden
+     * gesammelt in das Repository eingefügt und gemeinsam an das CRM gesendet; bei abgelehnten
+     * Bestellungen wird der zuvor abgebuchte Lagerbestand wieder freigegeben. Ergebnisse mit ungültigem
+     * oder doppeltem Index werden ignoriert; Bestellungen, zu denen Beethoven kein Ergebnis liefert,
+     * gelten als abgelehnt.
+     *
+     * @param bestellAnfragen Die einzelnen {@link NewBestellungRequestDto} des Batches.
+     * @return Ein {@link BestellungBatchErgebnisDto} pro Anfrage, in der Reihenfolge der Eingabe.
+     */
+    public List<BestellungBatchErgebnisDto> processBestellungBatch(List<NewBestellungRequestDto> bestellAnfragen) {
+        Span span = ablaufverfolgung.starte("bestellbatch", Ablaufverfolgung.aktueller());
+        try (Bereich bereich = Ablaufverfolgung.aktiviere(span.kontext())) {
+            return verarbeiteBatch(bestellAnfragen, span);
+        } catch (RuntimeException e) {
+            span.setzeFehler(String.valueOf(e.getMessage()));
+            throw e;
+        } finally {
+            ablaufverfolgung.beende(span);
+        }
+    }
+
+    /**
+     * Verarbeitet mehrere Bestellanfragen wie {@link #processBestellungBatch}, während der Kontext des Batch-Spans aktiv ist.
+     *
+     * @param bestellAnfragen Die einzelnen {@link NewBestellungRequestDto} des Batches.
+     * @param span Der {@link Span} des Batches, der die Anzahl der angenommenen Bestellungen als Detail erhält.
+     * @return Ein {@link BestellungBatchErgebnisDto} pro Anfrage, in der Reihenfolge der Eingabe.
+     */
+    private List<BestellungBatchErgebnisDto> verarbeiteBatch(List<NewBestellungRequestDto> bestellAnfragen, Span span) {
+        LOGGER.info("BestellungService: Starte processBestellungBatch() mit {} Bestellungen...", bestellAnfragen.size());
+
+        BestellungBatchErgebnisDto[] ergebnisse = new BestellungBatchErgebnisDto[bestellAnfragen.size()];
+        int[] produktIndizes = new int[bestellAnfragen.size()];
+        List<Integer> gesendeteIndizes = new ArrayList<>(bestellAnfragen.size());
+        BestellungBatchRequest.Builder batchAnfrage = BestellungBatchRequest.newBuilder();
+
+        for (int index = 0; index < bestellAnfragen.size(); index++) {
+            NewBestellungRequestDto bestellAnfrage = bestellAnfragen.get(index);
+            try {
+                produktIndizes[index] = aendereProduktLagerMenge(bestellAnfrage.produktId(), bestellAnfrage.menge());
+                batchAnfrage.addOrders(erstelleGrpcAnfrage(bestellAnfrage, null));
+                gesendeteIndizes.add(index);
+            } catch (IllegalArgumentException e) {
+                ergebnisse[index] = BestellungBatchErgebnisDto.abgelehnt(index, e.getMessage());
+            }
+        }
+
+        int angenommen = 0;
+        if (!gesendeteIndizes.isEmpty()) {
+            BestellungBatchResponse antwortGrpc;
+            try {
+                antwortGrpc = mitDeadline(erpBestellServiceStub).bestellungOrderBatch(batchAnfrage.build());
+            } catch (RuntimeException e) {
+                for (int index : gesendeteIndizes) {
+                    gibProduktLagerMengeFrei(produktIndizes[index], bestellAnfragen.get(index).menge());
+                }
+                LOGGER.error("BestellungService: Batch-gRPC-Aufruf fehlgeschlagen, {} Reservierungen zurückgenommen: {}", gesendeteIndizes.size(), e.getMessage());
+                throw e;
+            }
+            Map<String, Bestellung> neueBestellungen = new HashMap<>();
+            List<BestellungDataSchuhmacher> crmAktualisierungen = new ArrayList<>();
 
-        BestellungRequest bestellAnfrageGrpc = BestellungRequest.newBuilder()
+            boolean[] beantwortet = new boolean[gesendeteIndizes.size()];
+            for (BestellungBatchResult ergebnisGrpc : antwortGrpc.getResultsList()) {
+                int position = ergebnisGrpc.getIndex();
+                if (position < 0 || position >= beantwortet.length || beantwortet[position]) {
+                    LOGGER.warn("BestellungService: Batch-Antwort mit ungültigem oder doppeltem Index {} wird ignoriert...", position);
+                    continue;
+                }
+                beantwortet[position] = true;
+                int index = gesendeteIndizes.get(position);
+                NewBestellungRequestDto bestellAnfrage = bestellAnfragen.get(index);
+                if (!ergebnisGrpc.getAccepted()) {
+                    gibProduktLagerMengeFrei(produktIndizes[index], bestellAnfrage.menge());
+                    ergebnisse[index] = BestellungBatchErgebnisDto.abgelehnt(index, ergebnisGrpc.getErrorMessage());
+                    continue;
+                }
+                BestellungResponse antwort = ergebnisGrpc.getResponse();
+                Bestellung bestellung = erstelleBestellung(antwort, bestellAnfrage);
+                neueBestellungen.put(bestellung.getBestellId(), bestellung);
+                crmAktualisierungen.add(erstelleCrmAktualisierung(bestellung, bestellAnfrage.menge(), produktIndizes[index]));
+                ergebnisse[index] = BestellungBatchErgebnisDto.akzeptiert(index, erstelleLieferinformationen(antwort));
+            }
+            for (int position = 0; position < beantwortet.length; position++) {
+                if (!beantwortet[position]) {
+                    int index = gesendeteIndizes.get(position);
+                    gibProduktLagerMengeFrei(produktIndizes[index], bestellAnfragen.get(index).menge());
+                    ergebnisse[index] = BestellungBatchErgebnisDto.abgelehnt(index, "Keine Antwort von Beethoven für diese Bestellung");
+                }
+            }
+
+            bestellverwaltung.speichereAlle(neueBestellungen.values());
+            sendeCrmAktualisierungsNachrichten(crmAktualisierungen);
+            angenommen = neueBestellungen.size();
+        }
+
+        span.setzeDetail(angenommen + "/" + bestellAnfragen.size());
+        LOGGER.info("BestellungService: Batch verarbeitet. Angenommen: {} von {}...", angenommen, bestellAnfragen.size());
+        return List.of(ergebnisse);
+    }
+
+    /**
+     * Erstellt die gRPC-Anfrage für Beethoven aus der eingehenden Bestellanfrage.
+     *
+     * @param bestellAnfrage Die ursprüngliche {@link NewBestellungRequestDto}.
+     * @param idempotenzSchluessel Der Idempotenzschlüssel oder {@code null}.
+     * @return Die zu sendende {@link BestellungRequest}.
+     */
+    private BestellungRequest erstelleGrpcAnfrage(NewBestellungRequestDto bestellAnfrage, String idempotenzSchluessel) {
+        BestellungRequest.Builder anfrage = BestellungRequest.newBuilder()
                 .setCustomerId(bestellAnfrage.kundenId())
                 .setProductId(bestellAnfrage.produktId())
-                .setQuantity(bestellAnfrage.menge())
-                .build();
+                .setQuantity(bestellAnfrage.menge());
+        if (idempotenzSchluessel != null) {
+            anfrage.setIdempotencyKey(idempotenzSchluessel);
+        }
+        return anfrage.build();
+    }
 
-        aendereProduktLagerMenge(bestellAnfrage.produktId(), bestellAnfrage.menge());
-        LOGGER.info("BestellungService: Produktbestand aktualisiert für Produkt ID: {}...", bestellAnfrage.produktId());
+    /**
+     * Versieht einen gRPC-Stub mit der konfigurierten Deadline, sofern eine gesetzt ist.
+     *
+     * @param stub Der zu konfigurierende Stub.
+     * @param <S> Der konkrete Stub-Typ.
+     * @return Der Stub mit Deadline oder der unveränderte Stub.
+     */
+    private <S extends AbstractStub<S>> S mitDeadline(S stub) {
+        return grpcDeadlineMillis > 0 ? stub.withDeadlineAfter(grpcDeadlineMillis, TimeUnit.MILLISECONDS) : stub;
+    }
 
-        BestellungResponse antwortGrpc = erpBestellServiceStub.bestellungOrder(bestellAnfrageGrpc);
+    /**
+     * Verarbeitet die gRPC-Antwort: fügt die Bestellung in das Repository ein,
+     * sendet die CRM-Aktualisierung und erstellt die {@link Lieferinformationen}.
+     *
+     * @param antwortGrpc Die {@link BestellungResponse} vom gRPC-Service.
+     * @param bestellAnfrage Die ursprüngliche {@link NewBestellungRequestDto}.
+     * @param produktIndex Der Index des bestellten Produkts im Produktkatalog.
+     * @param spur Die {@link Bestellspur}, in der die Schritte vermerkt werden.
+     * @return Die {@link Lieferinformationen} für die verarbeitete Bestellung.
+     */
+    private Lieferinformationen verarbeiteGrpcAntwort(BestellungResponse antwortGrpc, NewBestellungRequestDto bestellAnfrage, int produktIndex,
+                                                      Bestellspur spur) {
+        spur.vermerke(Schritt.BEETHOVEN, antwortGrpc.getOrderId());
         Bestellung bestellung = fuegeBestellungInRepoEin(antwortGrpc, bestellAnfrage);
-        sendeCrmAktualisierungsNachricht(bestellung, bestellAnfrage.menge());
+        spur.vermerke(Schritt.REPOSITORY, bestellung.getBestellId());
+        sendeCrmAktualisierungsNachricht(bestellung, bestellAnfrage.menge(), produktIndex);
+        spur.vermerke(Schritt.CRM, bestellung.getBestellId());
+
+        Lieferinformationen lieferinformationen = erstelleLieferinformationen(antwortGrpc);
+        spur.vermerke(Schritt.ABSCHLUSS, lieferinformationen);
+        return lieferinformationen;
+    }
 
-        Lieferinformationen lieferinformationen = LieferinformationenBuilder.getInstance()
+    /**
+     * Erstellt die {@link Lieferinformationen} aus der gRPC-Antwort.
+     *
+     * @param antwortGrpc Die {@link BestellungResponse} vom gRPC-Service.
+     * @return Die {@link Lieferinformationen} mit Lieferdatum und Lieferstatus.
+     */
+    private Lieferinformationen erstelleLieferinformationen(BestellungResponse antwortGrpc) {
+        return LieferinformationenBuilder.getInstance()
                 .withDeliveryDate(LocalDateTime.parse(antwortGrpc.getDeliveryDate()))
                 .withDeliveryStatus(DeliveryStatus.valueOf(antwortGrpc.getDeliveryStatus().toUpperCase()))
                 .build();
-
-        LOGGER.info("BestellungService: Bestellung erfolgreich verarbeitet. Lieferinformationen: {}...", lieferinformationen.toString());
-        return lieferinformationen;
     }
 
     /**
-     * Ändert die Lagermenge eines Produkts.
+     * Ändert die Lagermenge eines Produkts, indem die Menge atomar über die {@link Lagerverwaltung} reserviert wird.
      *
      * @param produktId Die ID des Produkts, dessen Lagermenge geändert werden soll.
      * @param anzahl Die Anzahl, um die die Lagermenge reduziert wird.
+     * @return Der Index des Produkts im Produktkatalog, der für alle weiteren Schritte verwendet wird.
      * @throws IllegalArgumentException Wenn das Produkt nicht gefunden wird oder der Bestand nicht ausreicht.
      */
-    private void aendereProduktLagerMenge(String produktId, int anzahl) throws IllegalArgumentException {
-        Produktdaten produktDaten = MozartMockRepo.produktdaten.get(produktId);
-        if (produktDaten != null) {
-            int neueMenge = produktDaten.getLagermenge() - anzahl;
-            if (neueMenge < 0) {
-                throw new IllegalArgumentException("Nicht genügend Lagerbestand für Produkt mit ID " + produktId);
-            } else {
-                produktDaten.setLagermenge(neueMenge);
-            }
-        } else {
-            throw new IllegalArgumentException("Produkt mit ID " + produktId + " nicht gefunden.");
-        }
+    private int aendereProduktLagerMenge(String produktId, int anzahl) throws IllegalArgumentException {
+        return lagerverwaltung.reserviere(produktId, anzahl);
+    }
+
+    /**
+     * Gibt eine zuvor abgebuchte Lagermenge eines Produkts wieder frei.
+     *
+     * @param produktIndex Der Index des Produkts im Produktkatalog.
+     * @param anzahl Die Anzahl, um die die Lagermenge erhöht wird.
+     */
+    private void gibProduktLagerMengeFrei(int produktIndex, int anzahl) {
+        lagerverwaltung.gibFrei(produktIndex, anzahl);
     }
 
     /**
@@ -123,8 +505,21 @@ public class BestellungService {
      * @return Die erstellte und gespeicherte {@link Bestellung}.
      */
     private Bestellung fuegeBestellungInRepoEin(BestellungResponse antwortGrpc, NewBestellungRequestDto bestellAnfrage) {
-        LOGGER.info("BestellungService: Erstelle Bestellung mit Order ID: {}...", antwortGrpc.getOrderId());
-        Bestellung bestellung = BestellungBuilder.getInstance()
+        Bestellung bestellung = erstelleBestellung(antwortGrpc, bestellAnfrage);
+        bestellverwaltung.speichere(bestellung);
+        return bestellung;
+    }
+
+    /**
+     * Erstellt eine neue {@link Bestellung} aus der gRPC-Antwort und der ursprünglichen Anfrage,
+     * ohne sie im Repository abzulegen.
+     *
+     * @param antwortGrpc Die {@link BestellungResponse} vom gRPC-Service.
+     * @param bestellAnfrage Die ursprüngliche {@link NewBestellungRequestDto}.
+     * @return Die erstellte {@link Bestellung}.
+     */
+    private Bestellung erstelleBestellung(BestellungResponse antwortGrpc, NewBestellungRequestDto bestellAnfrage) {
+        return BestellungBuilder.getInstance()
                 .withOrderID(antwortGrpc.getOrderId())
                 .withCustomerID(bestellAnfrage.kundenId())
                 .withEmail(bestellAnfrage.email())
@@ -134,57 +529,63 @@ public class BestellungService {
                 .withPaymentMethod(bestellAnfrage.zahlungsmethode())
                 .withOrderDate(LocalDateTime.now())
                 .build();
-        MozartMockRepo.bestellungen.put(antwortGrpc.getOrderId(), bestellung);
-        LOGGER.info("BestellungService: Bestellung erfolgreich in das Repository eingefügt. Order ID: {}...", antwortGrpc.getOrderId());
-        return bestellung;
     }
 
     /**
-     * Sendet eine Aktualisierungsnachricht über die Bestellung an das CRM-System via RabbitMQ.
+     * Reiht eine Aktualisierungsnachricht über die Bestellung zum Versand an das CRM-System ein.
+     * Die Nachricht wird nur dauerhaft in die Outbox geschrieben; gesendet wird sie vom {@link CrmVersand}.
      *
      * @param bestellung Die {@link Bestellung}, für die eine Aktualisierung gesendet werden soll.
      * @param menge Die bestellte Menge, verwendet zur Berechnung des Gesamtbetrags.
+     * @param produktIndex Der Index des bestellten Produkts im Produktkatalog.
      */
-    private void sendeCrmAktualisierungsNachricht(Bestellung bestellung, int menge) {
-        try {
-            LOGGER.info("BestellungService: Erstelle BestellungDataSchuhmacher für Bestellung mit Order ID: {}...", bestellung.getBestellId());
-
-            BigDecimal gesamtbetrag = berechneGesamtbetrag(bestellung.getProduktId(), menge);
-            String anfangsStatus = "Processing";
-
-            BestellungDataSchuhmacher crmAktualisierung = new BestellungDataSchuhmacher(
-                    bestellung.getBestellId(),
-                    bestellung.getKundenId(),
-                    bestellung.getBestelldatum().toLocalDate(),
-                    gesamtbetrag,
-                    anfangsStatus,
-                    bestellung.getEmail(),
-                    bestellung.getAdresse()
-            );
-
-            rabbitTemplate.convertAndSend(RabbitMQConfig.CRM_EXCHANGE_NAME, RabbitMQConfig.CRM_ROUTING_KEY , crmAktualisierung);
-            LOGGER.info("BestellungService: BestellungDataSchuhmacher erfolgreich erstellt und an die CRM-Queue gesendet. Order ID: {}...", bestellung.getBestellId());
-        } catch (AmqpException e) {
-            LOGGER.error("Fehler beim Senden der Nachricht an die CRM-Queue: " + e.getMessage(), e);
-        }
+    private void sendeCrmAktualisierungsNachricht(Bestellung bestellung, int menge, int produktIndex) {
+        crmVersand.einreihen(erstelleCrmAktualisierung(bestellung, menge, produktIndex));
+    }
+
+    /**
+     * Reiht mehrere CRM-Aktualisierungen gemeinsam zum Versand ein; sie teilen sich einen Schreibvorgang in die Outbox.
+     * Jede Aktualisierung bleibt eine eigene Nachricht, damit der CRM-Consumer unverändert bleibt.
+     *
+     * @param crmAktualisierungen Die zu sendenden {@link BestellungDataSchuhmacher}-Objekte.
+     */
+    private void sendeCrmAktualisierungsNachrichten(List<BestellungDataSchuhmacher> crmAktualisierungen) {
+        crmVersand.einreihenAlle(crmAktualisierungen);
+        LOGGER.info("BestellungService: {} CRM-Aktualisierungen in die CRM-Outbox eingereiht...", crmAktualisierungen.size());
+    }
+
+    /**
+     * Erstellt die CRM-Aktualisierung für eine Bestellung.
+     *
+     * @param bestellung Die {@link Bestellung}, für die eine Aktualisierung erstellt werden soll.
+     * @param menge Die bestellte Menge, verwendet zur Berechnung des Gesamtbetrags.
+     * @param produktIndex Der Index des bestellten Produkts im Produktkatalog.
+     * @return Die {@link BestellungDataSchuhmacher}-Nachricht für das CRM.
+     */
+    private BestellungDataSchuhmacher erstelleCrmAktualisierung(Bestellung bestellung, int menge, int produktIndex) {
+        Geldbetrag gesamtbetrag = Geldbetrag.vonCent(berechneGesamtbetrag(produktIndex, menge));
+        String anfangsStatus = "Processing";
+
+        return new BestellungDataSchuhmacher(
+                bestellung.getBestellId(),
+                bestellung.getKundenId(),
+                bestellung.getBestelldatum().toLocalDate(),
+                gesamtbetrag,
+                anfangsStatus,
+                bestellung.getEmail(),
+                bestellung.getAdresse()
+        );
     }
 
     /**
      * Berechnet den Gesamtbetrag für eine bestimmte Produktmenge.
+     * Arbeitet ausschließlich auf den primitiven Arrays des Produktkatalogs und erzeugt keine Objekte.
      *
-     * @param produktId Die ID des Produkts.
+     * @param produktIndex Der Index des Produkts im Produktkatalog.
      * @param menge Die bestellte Menge.
-     * @return Der berechnete Gesamtbetrag als {@link BigDecimal}. Gibt {@link BigDecimal#ZERO} zurück,
-     * wenn das Produkt oder sein Preis nicht gefunden werden kann.
-     */
-    private BigDecimal berechneGesamtbetrag(String produktId, int menge) {
-        Produktdaten produktDaten = MozartMockRepo.produktdaten.get(produktId);
-        if (produktDaten != null && produktDaten.getPreis() != null) {
-            BigDecimal preis = produktDaten.getPreis();
-            return preis.multiply(BigDecimal.valueOf(menge));
-        } else {
-            LOGGER.warn("Produkt mit ID {} hat keinen Preis oder existiert nicht. Gesamtbetrag wird auf 0 gesetzt.", produktId);
-            return BigDecimal.ZERO;
-        }
+     * @return Der berechnete Gesamtbetrag in Cent.
+     */
+    private long berechneGesamtbetrag(int produktIndex, int menge) {
+        return MozartMockRepo.produktkatalog.gesamtbetragInCent(produktIndex, menge);
     }
 }
\ No newline at end of file
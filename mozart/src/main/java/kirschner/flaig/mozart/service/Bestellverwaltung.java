@@ -0,0 +1,295 @@
+package kirschner.flaig.mozart.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import kirschner.flaig.mozart.controller.BestellungSeiteDto;
+import kirschner.flaig.mozart.entity.Bestellung;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+import kirschner.flaig.mozart.repository.Bestellindex;
+import kirschner.flaig.mozart.repository.Bestellprotokoll;
+import kirschner.flaig.mozart.repository.Bestellspeicher;
+import kirschner.flaig.mozart.repository.HeapBestellspeicher;
+import kirschner.flaig.mozart.repository.MozartMockRepo;
+import kirschner.flaig.mozart.repository.OffHeapBestellspeicher;
+
+/**
+ * Service für das Nachschlagen und Speichern von Bestellungen.
+ * Bestellungen liegen in einem {@link Bestellspeicher}: standardmäßig in {@link MozartMockRepo#bestellungen},
+ * mit {@code mozart.bestellungen.speicher=offheap} außerhalb des Heaps im {@link OffHeapBestellspeicher}.
+ * Ist das {@link Bestellprotokoll} aktiviert ({@code mozart.bestellprotokoll.aktiviert=true}), wird jede Neuanlage
+ * und Statusänderung zuerst dauerhaft protokolliert und erst danach im Speicher sichtbar; beim Start werden die
+ * protokollierten Bestellungen wieder in den Speicher geladen.
+ * <p>
+ * Alle Änderungen werden zusätzlich im {@link Bestellindex} nachgeführt, über den Bestellungen nach Kunde,
+ * Lieferstatus und Bestelldatum gesucht werden.
+ */
+@Service
+public class Bestellverwaltung {
+
+    /**
+     * Logger für diese Klasse.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(Bestellverwaltung.class);
+
+    /**
+     * Der Speicher aller Bestellungen.
+     */
+    private final Bestellspeicher bestellspeicher;
+
+    /**
+     * Die Sekundärindizes über alle Bestellungen.
+     */
+    private final Bestellindex bestellindex = new Bestellindex();
+
+    /**
+     * Das Bestellprotokoll oder {@code null}, wenn es deaktiviert ist.
+     */
+    private final Bestellprotokoll bestellprotokoll;
+
+    /**
+     * Konstruktor für die {@code Bestellverwaltung}. Öffnet bei Bedarf das Bestellprotokoll und stellt die Bestellungen daraus wieder her.
+     *
+     * @param speicherArt Die Art des Bestellspeichers: {@code heap} oder {@code offheap}.
+     * @param erwarteteAnzahl Die erwartete Anzahl an Bestellungen für die Anfangsgröße des Off-Heap-Speichers.
+     * @param aktiviert Gibt an, ob Bestellungen dauerhaft protokolliert werden.
+     * @param verzeichnis Das Verzeichnis der Protokollsegmente.
+     * @param segmentGroesseMb Die Größe eines Segments in MiB.
+     * @param synchron Gibt an, ob beim Speichern auf das Schreiben auf die Platte gewartet wird.
+     * @throws IOException Wenn das Bestellprotokoll nicht geöffnet werden kann.
+     * @throws IllegalArgumentException Wenn die Segmentgröße 2 GiB oder mehr beträgt.
+     */
+    public Bestellverwaltung(@Value("${mozart.bestellungen.speicher:heap}") String speicherArt,
+                             @Value("${mozart.bestellungen.offheap.erwartete-anzahl:100000}") int erwarteteAnzahl,
+                             @Value("${mozart.bestellprotokoll.aktiviert:false}") boolean aktiviert,
+                             @Value("${mozart.bestellprotokoll.verzeichnis:data/bestellprotokoll}") String verzeichnis,
+                             @Value("${mozart.bestellprotokoll.segment-groesse-mb:64}") int segmentGroesseMb,
+                             @Value("${mozart.bestellprotokoll.synchron:true}") boolean synchron) throws IOException {
+        this.bestellspeicher = erstelleBestellspeicher(speicherArt, erwarteteAnzahl);
+        MozartMockRepo.bestellungen.values().forEach(bestellindex::indexiere);
+        if (!aktiviert) {
+            this.bestellprotokoll = null;
+            return;
+        }
+        long segmentGroesse = segmentGroesseMb * 1024L * 1024L;
+        if (segmentGroesse > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("mozart.bestellprotokoll.segment-groesse-mb darf höchstens 2047 sein: " + segmentGroesseMb);
+        }
+        this.bestellprotokoll = new Bestellprotokoll(Path.of(verzeichnis), (int) segmentGroesse, synchron);
+        for (Bestellung bestellung : bestellprotokoll.liesAlle().values()) {
+            bestellspeicher.speichere(bestellung);
+            bestellindex.indexiere(bestellung);
+        }
+    }
+
+    /**
+     * Sucht eine Bestellung anhand ihrer ID.
+     *
+     * @param bestellId Die ID der Bestellung.
+     * @return Die Bestellung oder {@code null}, wenn sie nicht existiert.
+     */
+    public Bestellung finde(String bestellId) {
+        return bestellspeicher.finde(bestellId);
+    }
+
+    /**
+     * Speichert eine neue Bestellung.
+     *
+     * @param bestellung Die zu speichernde Bestellung.
+     * @throws UncheckedIOException Wenn die Bestellung nicht protokolliert werden konnte.
+     */
+    public void speichere(Bestellung bestellung) {
+        protokolliere(List.of(bestellung));
+        bestellspeicher.speichere(bestellung);
+        bestellindex.indexiere(bestellung);
+    }
+
+    /**
+     * Speichert mehrere neue Bestellungen; im Protokoll teilen sie sich einen Schreibvorgang auf die Platte.
+     *
+     * @param neueBestellungen Die zu speichernden Bestellungen.
+     * @throws UncheckedIOException Wenn die Bestellungen nicht protokolliert werden konnten.
+     */
+    public void speichereAlle(Collection<Bestellung> neueBestellungen) {
+        protokolliere(neueBestellungen);
+        for (Bestellung bestellung : neueBestellungen) {
+            bestellspeicher.speichere(bestellung);
+            bestellindex.indexiere(bestellung);
+        }
+    }
+
+    /**
+     * Protokolliert den neuen Lieferstatus einer Bestellung und überträgt ihn danach in den Bestellspeicher.
+     * Protokolliert wird eine Kopie mit dem neuen Status; die übergebene Bestellung, im Heap-Speicher das
+     * gespeicherte Objekt selbst, ändert sich erst, wenn die Änderung dauerhaft ist.
+     *
+     * @param bestellung Die zu aktualisierende Bestellung.
+     * @param lieferstatus Der neue Lieferstatus.
+     * @throws UncheckedIOException Wenn die Änderung nicht protokolliert werden konnte; die Bestellung bleibt dann unverändert.
+     */
+    public void aktualisiereLieferstatus(Bestellung bestellung, DeliveryStatus lieferstatus) {
+        Bestellung neuerStand = mitLieferstatus(bestellung, lieferstatus);
+        protokolliere(List.of(neuerStand));
+        bestellspeicher.aktualisiereLieferstatus(bestellung.getBestellId(), lieferstatus);
+        bestellung.setLieferstatus(lieferstatus);
+        bestellindex.indexiere(neuerStand);
+    }
+
+    /**
+     * Setzt den Lieferstatus mehrerer Bestellungen wie {@link #aktualisiereLieferstatus}: Erst werden Kopien mit dem
+     * neuen Status protokolliert, dann die Änderungen sichtbar gemacht. Alle Änderungen eines Aufrufs teilen sich im
+     * Protokoll einen Schreibvorgang auf die Platte.
+     *
+     * @param neueLieferstatus Der neue Lieferstatus je Bestell-ID.
+     * @return Die IDs, zu denen keine Bestellung existiert; sie werden übersprungen.
+     * @throws UncheckedIOException Wenn die Änderungen nicht protokolliert werden konnten; alle Bestellungen bleiben dann unverändert.
+     */
+    public List<String> aktualisiereLieferstatusAlle(Map<String, DeliveryStatus> neueLieferstatus) {
+        List<Bestellung> bestellungen = new ArrayList<>(neueLieferstatus.size());
+        List<Bestellung> neueStaende = new ArrayList<>(neueLieferstatus.size());
+        List<String> unbekannt = new ArrayList<>();
+        for (Map.Entry<String, DeliveryStatus> eintrag : neueLieferstatus.entrySet()) {
+            Bestellung bestellung = bestellspeicher.finde(eintrag.getKey());
+            if (bestellung == null) {
+                unbekannt.add(eintrag.getKey());
+                continue;
+            }
+            bestellungen.add(bestellung);
+            neueStaende.add(mitLieferstatus(bestellung, eintrag.getValue()));
+        }
+        protokolliere(neueStaende);
+        for (int i = 0; i < bestellungen.size(); i++) {
+            Bestellung neuerStand = neueStaende.get(i);
+            bestellspeicher.aktualisiereLieferstatus(neuerStand.getBestellId(), neuerStand.getLieferstatus());
+            bestellungen.get(i).setLieferstatus(neuerStand.getLieferstatus());
+            bestellindex.indexiere(neuerStand);
+        }
+        return unbekannt;
+    }
+
+    /**
+     * Sucht mehrere Bestellungen anhand ihrer IDs. Nicht vorhandene IDs werden übersprungen.
+     *
+     * @param bestellIds Die IDs der Bestellungen.
+     * @return Die gefundenen Bestellungen in der Reihenfolge der IDs.
+     */
+    public List<Bestellung> findeAlle(List<String> bestellIds) {
+        List<Bestellung> gefunden = new ArrayList<>(bestellIds.size());
+        for (String bestellId : bestellIds) {
+            Bestellung bestellung = bestellspeicher.finde(bestellId);
+            if (bestellung != null) {
+                gefunden.add(bestellung);
+            }
+        }
+        return gefunden;
+    }
+
+    /**
+     * Sucht Bestellungen seitenweise über die Sekundärindizes. Alle Kriterien sind optional und werden kombiniert.
+     *
+     * @param kundenId Die Kunden-ID oder {@code null}.
+     * @param lieferstatus Der Lieferstatus oder {@code null}.
+     * @param von Der Beginn des Bestellzeitraums (einschließlich) oder {@code null}.
+     * @param bis Das Ende des Bestellzeitraums (ausschließlich) oder {@code null}.
+     * @param cursor Der Cursor der vorherigen Seite oder {@code null} für die erste Seite.
+     * @param limit Die maximale Anzahl an Bestellungen pro Seite.
+     * @return Die Seite mit den Bestellungen und dem Cursor für die nächste Seite.
+     * @throws IllegalArgumentException Wenn der Cursor ungültig ist.
+     */
+    public BestellungSeiteDto suche(String kundenId, DeliveryStatus lieferstatus, LocalDateTime von, LocalDateTime bis,
+                                    String cursor, int limit) {
+        Bestellindex.Schluessel nach = cursor == null ? null : Bestellindex.Schluessel.ausCursor(cursor);
+        List<Bestellindex.Schluessel> treffer = bestellindex.suche(kundenId, lieferstatus, von, bis, nach, limit);
+
+        boolean weitere = treffer.size() > limit;
+        List<Bestellindex.Schluessel> seite = weitere ? treffer.subList(0, limit) : treffer;
+        List<Bestellung> bestellungenDerSeite = new ArrayList<>(seite.size());
+        for (Bestellindex.Schluessel schluessel : seite) {
+            Bestellung bestellung = bestellspeicher.finde(schluessel.bestellId());
+            if (bestellung != null) {
+                bestellungenDerSeite.add(bestellung);
+            }
+        }
+        String naechsterCursor = weitere ? seite.get(seite.size() - 1).alsCursor() : null;
+        return new BestellungSeiteDto(bestellungenDerSeite, naechsterCursor);
+    }
+
+    /**
+     * Schließt das Bestellprotokoll beim Herunterfahren.
+     *
+     * @throws IOException Wenn das Protokoll nicht geschlossen werden kann.
+     */
+    @PreDestroy
+    public void schliessen() throws IOException {
+        if (bestellprotokoll != null) {
+            LOGGER.info("Bestellverwaltung: Schließe Bestellprotokoll. {} Sätze in {} Flushes geschrieben.",
+                    bestellprotokoll.getAnzahlSaetze(), bestellprotokoll.getAnzahlFlushes());
+            bestellprotokoll.close();
+        }
+    }
+
+    /**
+     * Erstellt den konfigurierten Bestellspeicher. Der Off-Heap-Speicher übernimmt die Beispielbestellungen
+     * aus {@link MozartMockRepo#bestellungen}.
+     *
+     * @param speicherArt Die Art des Bestellspeichers: {@code heap} oder {@code offheap}.
+     * @param erwarteteAnzahl Die erwartete Anzahl an Bestellungen.
+     * @return Der Bestellspeicher.
+     * @throws IllegalArgumentException Wenn die Art unbekannt ist.
+     */
+    private static Bestellspeicher erstelleBestellspeicher(String speicherArt, int erwarteteAnzahl) {
+        switch (speicherArt.toLowerCase()) {
+            case "heap" -> {
+                return new HeapBestellspeicher(MozartMockRepo.bestellungen);
+            }
+            case "offheap" -> {
+                OffHeapBestellspeicher offHeapBestellspeicher = new OffHeapBestellspeicher(erwarteteAnzahl);
+                MozartMockRepo.bestellungen.values().forEach(offHeapBestellspeicher::speichere);
+                LOGGER.info("Bestellverwaltung: Bestellungen werden außerhalb des Heaps gespeichert.");
+                return offHeapBestellspeicher;
+            }
+            default -> throw new IllegalArgumentException("Unbekannter Bestellspeicher: " + speicherArt);
+        }
+    }
+
+    /**
+     * Erstellt eine Kopie einer Bestellung mit einem anderen Lieferstatus.
+     *
+     * @param bestellung Die Bestellung.
+     * @param lieferstatus Der Lieferstatus der Kopie.
+     * @return Die Kopie.
+     */
+    private static Bestellung mitLieferstatus(Bestellung bestellung, DeliveryStatus lieferstatus) {
+        return new Bestellung(bestellung.getBestellId(), bestellung.getKundenId(), bestellung.getEmail(), bestellung.getAdresse(),
+                bestellung.getProduktId(), bestellung.getMenge(), bestellung.getBestelldatum(), lieferstatus,
+                bestellung.getLieferdatum(), bestellung.getZahlungsmethode());
+    }
+
+    /**
+     * Hängt Bestellungen an das Bestellprotokoll an, sofern es aktiviert ist.
+     *
+     * @param zuProtokollieren Die Bestellungen in ihrem aktuellen Zustand.
+     */
+    private void protokolliere(Collection<Bestellung> zuProtokollieren) {
+        if (bestellprotokoll == null || zuProtokollieren.isEmpty()) {
+            return;
+        }
+        try {
+            bestellprotokoll.anhaengenAlle(zuProtokollieren);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Bestellung konnte nicht protokolliert werden.", e);
+        }
+    }
+}
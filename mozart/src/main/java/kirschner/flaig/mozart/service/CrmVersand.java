@@ -0,0 +1,369 @@
+package kirschner.flaig.mozart.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import kirschner.flaig.mozart.config.Ablaufverfolgung;
+import kirschner.flaig.mozart.config.RabbitMQConfig;
+import kirschner.flaig.mozart.config.Span;
+import kirschner.flaig.mozart.config.Tracekontext;
+import kirschner.flaig.mozart.entity.BestellungDataSchuhmacher;
+import kirschner.flaig.mozart.repository.Outbox;
+
+/**
+ * Service für die zuverlässige Zustellung von CRM-Aktualisierungen über eine {@link Outbox}.
+ * <p>
+ * Der Anfrage-Thread hängt die {@link BestellungDataSchuhmacher}-Nachricht nur an die lokale, dauerhafte Outbox an.
+ * Ein eigener Versand-Thread liest die offenen Einträge in Batches, sendet sie über den {@link Nachrichtenversand} an
+ * {@link RabbitMQConfig#CRM_EXCHANGE_NAME} und wartet auf die Publisher Confirms des Brokers. Erst bestätigte
+ * Einträge werden quittiert; bei Fehlern wird derselbe Batch mit exponentiell wachsender Wartezeit erneut gesendet.
+ * Die Zustellung erfolgt damit mindestens einmal; die Bestell-ID wird als Message-ID mitgesendet, damit das CRM
+ * Duplikate erkennen kann.
+ * <p>
+ * Als Metriken stehen {@code crm.outbox.tiefe} (offene Einträge), {@code crm.outbox.verzoegerung} (Alter des
+ * ältesten offenen Eintrags) sowie die Zähler {@code crm.outbox.versendet} und {@code crm.outbox.fehlversuche} bereit.
+ * <p>
+ * Ist beim Einreihen ein {@link Tracekontext} aktiv, wird er als {@code traceparent}-Zeile vor die JSON-Nutzdaten
+ * des Eintrags geschrieben; Einträge ohne diese Zeile beginnen mit {@code &#123;} und bleiben lesbar. Beim Versand wird
+ * je Nachricht ein Span {@code crm versand} als Kind dieses Kontexts begonnen, sein Kontext als Header mitgesendet und
+ * mit der Bestätigung des Brokers beendet.
+ * <p>
+ * Die Outbox liegt als {@code crm-outbox.log} im Verzeichnis {@code mozart.crm-outbox.verzeichnis}. Der Versand-Thread
+ * wird erst nach der Initialisierung gestartet und beim Beenden nicht unterbrochen, sondern über ein Signal geweckt,
+ * damit keine Unterbrechung den Dateikanal der Outbox schließt.
+ */
+@Service
+public class CrmVersand {
+
+    /**
+     * Logger für diese Klasse.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(CrmVersand.class);
+
+    /**
+     * Die Wartezeit vor der ersten Wiederholung in Millisekunden.
+     */
+    private static final long ERSTE_WIEDERHOLUNG_MS = 100;
+
+    /**
+     * Die Länge des {@code traceparent}-Präfixes eines Eintrags einschließlich Zeilenumbruch.
+     */
+    private static final int PRAEFIX_LAENGE = Tracekontext.HEADER_LAENGE + 1;
+
+    /**
+     * Versandschicht für das Senden der CRM-Aktualisierungen mit Publisher Confirms.
+     */
+    private final Nachrichtenversand nachrichtenversand;
+
+    /**
+     * Beginnt und beendet die Spans des Versands.
+     */
+    private final Ablaufverfolgung ablaufverfolgung;
+
+    /**
+     * ObjectMapper für die Nutzdaten der Outbox-Einträge.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Die dauerhafte Outbox der noch nicht bestätigten CRM-Aktualisierungen.
+     */
+    private final Outbox outbox;
+
+    /**
+     * Die maximale Anzahl an Nachrichten pro Batch.
+     */
+    private final int batchGroesse;
+
+    /**
+     * Wie lange auf die Publisher Confirms eines Batches gewartet wird, in Millisekunden.
+     */
+    private final long bestaetigungTimeoutMillis;
+
+    /**
+     * Die maximale Wartezeit zwischen zwei Wiederholungen in Millisekunden.
+     */
+    private final long wiederholungMaxMillis;
+
+    /**
+     * Zählt die vom Broker bestätigten Nachrichten.
+     */
+    private final Counter versendet;
+
+    /**
+     * Zählt die fehlgeschlagenen Versandversuche.
+     */
+    private final Counter fehlversuche;
+
+    /**
+     * Der Thread, der die Outbox abarbeitet; {@code null}, bis {@link #starte()} aufgerufen wurde.
+     */
+    private Thread versandThread;
+
+    /**
+     * Gibt an, ob der Versand beendet wird.
+     */
+    private volatile boolean beendet;
+
+    /**
+     * Weckt den Versand-Thread beim Beenden aus der Wartezeit vor einer Wiederholung.
+     */
+    private final CountDownLatch beendenSignal = new CountDownLatch(1);
+
+    /**
+     * Konstruktor für den {@code CrmVersand}. Öffnet die Outbox und registriert die Metriken.
+     *
+     * @param nachrichtenversand Der {@link Nachrichtenversand} für die RabbitMQ-Kommunikation.
+     * @param ablaufverfolgung Die {@link Ablaufverfolgung} für die Spans des Versands.
+     * @param objectMapper Der {@link ObjectMapper} für die Nutzdaten.
+     * @param registry Die {@link MeterRegistry} für die Outbox-Metriken.
+     * @param verzeichnis Das Verzeichnis der Outbox-Datei.
+     * @param synchron Gibt an, ob beim Anhängen auf das Schreiben auf die Platte gewartet wird.
+     * @param kompaktierungAbMb Die Menge erledigter Sätze in MiB, ab der die Outbox kompaktiert wird.
+     * @param batchGroesse Die maximale Anzahl an Nachrichten pro Batch.
+     * @param bestaetigungTimeoutMillis Wie lange auf die Publisher Confirms gewartet wird.
+     * @param wiederholungMaxMillis Die maximale Wartezeit zwischen zwei Wiederholungen.
+     * @throws IOException Wenn die Outbox nicht geöffnet werden kann.
+     */
+    public CrmVersand(Nachrichtenversand nachrichtenversand, Ablaufverfolgung ablaufverfolgung, ObjectMapper objectMapper, MeterRegistry registry,
+                      @Value("${mozart.crm-outbox.verzeichnis:data/crm-outbox}") String verzeichnis,
+                      @Value("${mozart.crm-outbox.synchron:true}") boolean synchron,
+                      @Value("${mozart.crm-outbox.kompaktierung-ab-mb:16}") int kompaktierungAbMb,
+                      @Value("${mozart.crm-outbox.batch-groesse:100}") int batchGroesse,
+                      @Value("${mozart.crm-outbox.bestaetigung-timeout-ms:5000}") long bestaetigungTimeoutMillis,
+                      @Value("${mozart.crm-outbox.wiederholung-max-ms:30000}") long wiederholungMaxMillis) throws IOException {
+        this.nachrichtenversand = nachrichtenversand;
+        this.ablaufverfolgung = ablaufverfolgung;
+        this.objectMapper = objectMapper;
+        this.outbox = new Outbox(Path.of(verzeichnis).toAbsolutePath().resolve("crm-outbox.log"), synchron, kompaktierungAbMb * 1024L * 1024L);
+        this.batchGroesse = batchGroesse;
+        this.bestaetigungTimeoutMillis = bestaetigungTimeoutMillis;
+        this.wiederholungMaxMillis = wiederholungMaxMillis;
+
+        Gauge.builder("crm.outbox.tiefe", outbox, Outbox::anzahl)
+                .description("Anzahl der noch nicht bestätigten CRM-Aktualisierungen")
+                .register(registry);
+        TimeGauge.builder("crm.outbox.verzoegerung", outbox, TimeUnit.MILLISECONDS, CrmVersand::verzoegerungMillis)
+                .description("Alter der ältesten noch nicht bestätigten CRM-Aktualisierung")
+                .register(registry);
+        this.versendet = Counter.builder("crm.outbox.versendet")
+                .description("Vom Broker bestätigte CRM-Aktualisierungen")
+                .register(registry);
+        this.fehlversuche = Counter.builder("crm.outbox.fehlversuche")
+                .description("Fehlgeschlagene Versandversuche der CRM-Outbox")
+                .register(registry);
+    }
+
+    /**
+     * Startet den Versand-Thread.
+     */
+    @PostConstruct
+    public void starte() {
+        versandThread = Thread.ofPlatform().name("crm-outbox-versand").daemon().start(this::versendeFortlaufend);
+    }
+
+    /**
+     * Reiht eine CRM-Aktualisierung dauerhaft zum Versand ein.
+     *
+     * @param crmAktualisierung Die zu sendende Aktualisierung.
+     * @throws UncheckedIOException Wenn die Aktualisierung nicht in die Outbox geschrieben werden konnte.
+     */
+    public void einreihen(BestellungDataSchuhmacher crmAktualisierung) {
+        einreihenAlle(List.of(crmAktualisierung));
+    }
+
+    /**
+     * Reiht mehrere CRM-Aktualisierungen dauerhaft zum Versand ein; sie teilen sich einen Schreibvorgang auf die Platte.
+     *
+     * @param crmAktualisierungen Die zu sendenden Aktualisierungen.
+     * @throws UncheckedIOException Wenn die Aktualisierungen nicht in die Outbox geschrieben werden konnten.
+     */
+    public void einreihenAlle(List<BestellungDataSchuhmacher> crmAktualisierungen) {
+        if (crmAktualisierungen.isEmpty()) {
+            return;
+        }
+        Tracekontext kontext = Ablaufverfolgung.aktueller();
+        byte[] praefix = kontext == null ? null : (kontext.alsTraceparent() + '\n').getBytes(StandardCharsets.US_ASCII);
+        List<byte[]> nutzdaten = new ArrayList<>(crmAktualisierungen.size());
+        try {
+            for (BestellungDataSchuhmacher crmAktualisierung : crmAktualisierungen) {
+                byte[] json = objectMapper.writeValueAsBytes(crmAktualisierung);
+                if (praefix == null) {
+                    nutzdaten.add(json);
+                } else {
+                    byte[] eintrag = new byte[praefix.length + json.length];
+                    System.arraycopy(praefix, 0, eintrag, 0, praefix.length);
+                    System.arraycopy(json, 0, eintrag, praefix.length, json.length);
+                    nutzdaten.add(eintrag);
+                }
+            }
+            outbox.anhaengenAlle(nutzdaten);
+        } catch (IOException e) {
+            throw new UncheckedIOException("CRM-Aktualisierung konnte nicht in die Outbox geschrieben werden.", e);
+        }
+    }
+
+    /**
+     * Beendet den Versand-Thread und schließt die Outbox. Nicht bestätigte Einträge werden beim nächsten Start gesendet.
+     * Ein laufender Batch darf noch bis zum Ablauf des Bestätigungs-Timeouts quittiert werden.
+     *
+     * @throws IOException Wenn die Outbox nicht geschlossen werden kann.
+     */
+    @PreDestroy
+    public void schliessen() throws IOException {
+        beendet = true;
+        beendenSignal.countDown();
+        if (versandThread != null) {
+            try {
+                versandThread.join(bestaetigungTimeoutMillis + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        LOGGER.info("CrmVersand: Schließe Outbox mit {} offenen Einträgen.", outbox.anzahl());
+        outbox.close();
+    }
+
+    /**
+     * Schleife des Versand-Threads: sendet offene Einträge in Batches, bis der Versand beendet wird.
+     */
+    private void versendeFortlaufend() {
+        long wartezeit = ERSTE_WIEDERHOLUNG_MS;
+        while (!beendet) {
+            try {
+                if (!outbox.warteAufEintraege(1, TimeUnit.SECONDS)) {
+                    continue;
+                }
+                List<Outbox.Eintrag> batch = outbox.naechste(batchGroesse);
+                if (versende(batch)) {
+                    outbox.quittiere(batch);
+                    versendet.increment(batch.size());
+                    wartezeit = ERSTE_WIEDERHOLUNG_MS;
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (beendet) {
+                    return;
+                }
+                LOGGER.error("CrmVersand: Outbox konnte nicht quittiert werden: {}", e.getMessage(), e);
+            }
+            fehlversuche.increment();
+            try {
+                if (beendenSignal.await(wartezeit, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            wartezeit = Math.min(wartezeit * 2, wiederholungMaxMillis);
+        }
+    }
+
+    /**
+     * Sendet einen Batch über einen gemeinsamen Kanal, ohne auf einzelne Bestätigungen zu warten, und wartet
+     * anschließend auf die Bestätigung aller Nachrichten.
+     *
+     * Nicht lesbare Einträge werden protokolliert und übersprungen, damit sie die Outbox nicht blockieren.
+     *
+     * @param batch Die zu sendenden Einträge.
+     * @return {@code true}, wenn der Broker alle Nachrichten bestätigt hat.
+     * @throws InterruptedException Wenn der Thread beim Warten auf die Bestätigungen unterbrochen wird.
+     */
+    private boolean versende(List<Outbox.Eintrag> batch) throws InterruptedException {
+        List<BestellungDataSchuhmacher> crmAktualisierungen = new ArrayList<>(batch.size());
+        Map<BestellungDataSchuhmacher, Span> spans = new IdentityHashMap<>();
+        for (Outbox.Eintrag eintrag : batch) {
+            byte[] nutzdaten = eintrag.nutzdaten();
+            int beginn = hatPraefix(nutzdaten) ? PRAEFIX_LAENGE : 0;
+            try {
+                BestellungDataSchuhmacher crmAktualisierung = objectMapper.readValue(nutzdaten, beginn, nutzdaten.length - beginn,
+                        BestellungDataSchuhmacher.class);
+                crmAktualisierungen.add(crmAktualisierung);
+                Tracekontext eltern = beginn == 0 ? null
+                        : Tracekontext.ausTraceparent(new String(nutzdaten, 0, Tracekontext.HEADER_LAENGE, StandardCharsets.US_ASCII));
+                if (eltern != null) {
+                    Span span = ablaufverfolgung.starte("crm versand", eltern);
+                    span.setzeDetail(crmAktualisierung.getBestellId());
+                    spans.put(crmAktualisierung, span);
+                }
+            } catch (IOException e) {
+                LOGGER.error("CrmVersand: Outbox-Eintrag {} kann nicht gelesen werden und wird verworfen: {}", eintrag.sequenz(), e.getMessage());
+            }
+        }
+        String fehler = null;
+        try {
+            List<CompletableFuture<Void>> bestaetigungen = nachrichtenversand.sendeAlle(RabbitMQConfig.CRM_EXCHANGE_NAME,
+                    RabbitMQConfig.CRM_ROUTING_KEY, crmAktualisierungen, crmAktualisierung -> nachricht -> {
+                        nachricht.getMessageProperties().setMessageId(crmAktualisierung.getBestellId());
+                        Span span = spans.get(crmAktualisierung);
+                        if (span != null) {
+                            nachricht.getMessageProperties().setHeader(Tracekontext.HEADER, span.kontext().alsTraceparent());
+                        }
+                        return nachricht;
+                    });
+            CompletableFuture.allOf(bestaetigungen.toArray(CompletableFuture[]::new)).get(bestaetigungTimeoutMillis, TimeUnit.MILLISECONDS);
+            LOGGER.info("CrmVersand: {} CRM-Aktualisierungen vom Broker bestätigt.", batch.size());
+            return true;
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            fehler = e instanceof ExecutionException ? e.getCause().getMessage() : e.toString();
+            LOGGER.warn("CrmVersand: Versand von {} CRM-Aktualisierungen fehlgeschlagen, wird wiederholt: {}", batch.size(), fehler);
+            return false;
+        } finally {
+            for (Span span : spans.values()) {
+                if (fehler != null) {
+                    span.setzeFehler(fehler);
+                }
+                ablaufverfolgung.beende(span);
+            }
+        }
+    }
+
+    /**
+     * Prüft, ob ein Outbox-Eintrag mit einer {@code traceparent}-Zeile beginnt.
+     *
+     * @param nutzdaten Die Nutzdaten des Eintrags.
+     * @return {@code true}, wenn die ersten Bytes eine {@code traceparent}-Zeile bilden.
+     */
+    private static boolean hatPraefix(byte[] nutzdaten) {
+        return nutzdaten.length > PRAEFIX_LAENGE && nutzdaten[0] != '{' && nutzdaten[PRAEFIX_LAENGE - 1] == '\n';
+    }
+
+    /**
+     * Berechnet das Alter des ältesten offenen Eintrags.
+     *
+     * @param outbox Die Outbox.
+     * @return Das Alter in Millisekunden oder 0, wenn keine Einträge offen sind.
+     */
+    private static double verzoegerungMillis(Outbox outbox) {
+        long aeltester = outbox.aeltesterEintragMillis();
+        return aeltester < 0 ? 0 : System.currentTimeMillis() - aeltester;
+    }
+}
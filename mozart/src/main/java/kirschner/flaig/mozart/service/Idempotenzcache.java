@@ -0,0 +1,183 @@
+package kirschner.flaig.mozart.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Begrenzter, zeitlich ablaufender Cache für idempotente Anfragen.
+ * <p>
+ * Pro Idempotenzschlüssel wird genau eine Ausführung gestartet; gleichzeitige Wiederholungen erhalten dasselbe
+ * {@link CompletableFuture} und warten auf dessen Ergebnis, spätere Wiederholungen erhalten das gespeicherte Ergebnis.
+ * Scheitert die Ausführung, wird der Eintrag entfernt, sodass eine Wiederholung erneut ausgeführt wird.
+ * <p>
+ * Einträge laufen nach der konfigurierten Dauer ab. Wird die maximale Anzahl überschritten, werden die ältesten
+ * abgeschlossenen Einträge verdrängt. Laufende Einträge werden nie verdrängt, sonst würde eine Wiederholung die Anfrage
+ * ein zweites Mal ausführen; der Cache überschreitet die maximale Anzahl daher höchstens um die gerade laufenden
+ * Ausführungen. Ein laufender Eintrag, der älter als die Lebensdauer ist oder vor dem verdrängt werden muss, wird beim
+ * Aufräumen ans Ende der Reihenfolge gestellt, damit eine hängende Ausführung das Aufräumen der übrigen nicht aufhält.
+ *
+ * @param <T> Der Typ des Ergebnisses.
+ */
+public final class Idempotenzcache<T> {
+
+    /**
+     * Die maximale Länge eines Idempotenzschlüssels.
+     */
+    public static final int MAXIMALE_SCHLUESSELLAENGE = 255;
+
+    /**
+     * Ein Cache-Eintrag.
+     *
+     * @param anfrage Die ursprüngliche Anfrage, mit der Wiederholungen verglichen werden.
+     * @param ergebnis Das Ergebnis der Ausführung.
+     * @param erstelltNanos Der Erstellungszeitpunkt aus {@link System#nanoTime()}.
+     */
+    private record Eintrag<T>(Object anfrage, CompletableFuture<T> ergebnis, long erstelltNanos) {
+    }
+
+    /**
+     * Ein Eintrag in der Einfügereihenfolge.
+     *
+     * @param schluessel Der Idempotenzschlüssel.
+     * @param eintrag Der zu diesem Zeitpunkt eingefügte Eintrag.
+     */
+    private record Vormerkung<T>(String schluessel, Eintrag<T> eintrag) {
+    }
+
+    /**
+     * Die Einträge, mit dem Idempotenzschlüssel als Schlüssel.
+     */
+    private final Map<String, Eintrag<T>> eintraege = new ConcurrentHashMap<>();
+
+    /**
+     * Die Einträge in Einfügereihenfolge; da alle gleich lange leben, ist das bis auf ans Ende gestellte laufende Einträge
+     * auch die Ablaufreihenfolge.
+     */
+    private final Queue<Vormerkung<T>> reihenfolge = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Die maximale Anzahl an Einträgen.
+     */
+    private final int maximaleAnzahl;
+
+    /**
+     * Die Lebensdauer eines Eintrags in Nanosekunden.
+     */
+    private final long lebensdauerNanos;
+
+    /**
+     * Erstellt einen leeren Cache.
+     *
+     * @param maximaleAnzahl Die maximale Anzahl an Einträgen.
+     * @param lebensdauer Die Lebensdauer eines Eintrags.
+     */
+    public Idempotenzcache(int maximaleAnzahl, Duration lebensdauer) {
+        this.maximaleAnzahl = maximaleAnzahl;
+        this.lebensdauerNanos = lebensdauer.toNanos();
+    }
+
+    /**
+     * Führt eine Anfrage höchstens einmal pro Idempotenzschlüssel aus.
+     *
+     * @param schluessel Der Idempotenzschlüssel.
+     * @param anfrage Die Anfrage; eine Wiederholung mit demselben Schlüssel muss gleich sein ({@link Object#equals(Object)}).
+     * @param ausfuehrung Startet die Ausführung, falls für den Schlüssel noch kein Eintrag existiert.
+     * @return Das Ergebnis der ersten Ausführung zu diesem Schlüssel.
+     * @throws IllegalArgumentException Wenn der Schlüssel ungültig ist oder bereits für eine andere Anfrage verwendet wurde.
+     */
+    public CompletableFuture<T> fuehreAus(String schluessel, Object anfrage, Supplier<CompletableFuture<T>> ausfuehrung) {
+        if (schluessel.isBlank() || schluessel.length() > MAXIMALE_SCHLUESSELLAENGE) {
+            throw new IllegalArgumentException("Idempotency-Key muss 1 bis " + MAXIMALE_SCHLUESSELLAENGE + " Zeichen lang sein.");
+        }
+        long jetzt = System.nanoTime();
+        Eintrag<T> neu = new Eintrag<>(anfrage, new CompletableFuture<>(), jetzt);
+        Eintrag<T> eintrag = eintraege.compute(schluessel, (k, alt) -> alt == null || istAbgelaufen(alt, jetzt) ? neu : alt);
+
+        if (eintrag != neu) {
+            if (!Objects.equals(eintrag.anfrage(), anfrage)) {
+                throw new IllegalArgumentException("Idempotency-Key " + schluessel + " wurde bereits für eine andere Anfrage verwendet.");
+            }
+            return eintrag.ergebnis();
+        }
+
+        reihenfolge.add(new Vormerkung<>(schluessel, neu));
+        raeumeAuf(jetzt);
+
+        CompletableFuture<T> ausgefuehrt;
+        try {
+            ausgefuehrt = ausfuehrung.get();
+        } catch (RuntimeException e) {
+            eintraege.remove(schluessel, neu);
+            neu.ergebnis().completeExceptionally(e);
+            throw e;
+        }
+        ausgefuehrt.whenComplete((ergebnis, fehler) -> {
+            if (fehler != null) {
+                eintraege.remove(schluessel, neu);
+                neu.ergebnis().completeExceptionally(fehler);
+            } else {
+                neu.ergebnis().complete(ergebnis);
+            }
+        });
+        return neu.ergebnis();
+    }
+
+    /**
+     * Gibt die aktuelle Anzahl an Einträgen zurück.
+     *
+     * @return Die Anzahl.
+     */
+    public int anzahl() {
+        return eintraege.size();
+    }
+
+    /**
+     * Entfernt abgelaufene, ersetzte und bei Überschreitung der maximalen Anzahl die ältesten abgeschlossenen Einträge.
+     * Ein laufender Eintrag beendet das Aufräumen nur, solange er jünger als die Lebensdauer ist und die maximale Anzahl
+     * eingehalten wird; sonst wird er ans Ende gestellt und das Aufräumen dahinter fortgesetzt, bis jeder Eintrag
+     * höchstens einmal übersprungen wurde.
+     *
+     * @param jetzt Der aktuelle Zeitpunkt aus {@link System#nanoTime()}.
+     */
+    private void raeumeAuf(long jetzt) {
+        int uebersprungen = 0;
+        Vormerkung<T> aelteste;
+        while ((aelteste = reihenfolge.peek()) != null) {
+            Eintrag<T> eintrag = aelteste.eintrag();
+            boolean aktuell = eintraege.get(aelteste.schluessel()) == eintrag;
+            if (aktuell && !eintrag.ergebnis().isDone()) {
+                boolean haengt = jetzt - eintrag.erstelltNanos() > lebensdauerNanos;
+                if (!haengt && eintraege.size() <= maximaleAnzahl || uebersprungen++ >= eintraege.size()) {
+                    return;
+                }
+                if (reihenfolge.remove(aelteste)) {
+                    reihenfolge.add(aelteste);
+                }
+                continue;
+            }
+            if (aktuell && !istAbgelaufen(eintrag, jetzt) && eintraege.size() <= maximaleAnzahl) {
+                return;
+            }
+            if (reihenfolge.remove(aelteste)) {
+                eintraege.remove(aelteste.schluessel(), eintrag);
+            }
+        }
+    }
+
+    /**
+     * Prüft, ob ein abgeschlossener Eintrag seine Lebensdauer überschritten hat. Laufende Einträge laufen nicht ab.
+     *
+     * @param eintrag Der Eintrag.
+     * @param jetzt Der aktuelle Zeitpunkt aus {@link System#nanoTime()}.
+     * @return {@code true}, wenn der Eintrag abgeschlossen und abgelaufen ist.
+     */
+    private boolean istAbgelaufen(Eintrag<T> eintrag, long jetzt) {
+        return eintrag.ergebnis().isDone() && jetzt - eintrag.erstelltNanos() > lebensdauerNanos;
+    }
+}
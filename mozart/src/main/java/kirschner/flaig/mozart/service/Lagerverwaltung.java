@@ -0,0 +1,62 @@
+package kirschner.flaig.mozart.service;
+
+import org.springframework.stereotype.Service;
+
+import kirschner.flaig.mozart.repository.MozartMockRepo;
+import kirschner.flaig.mozart.repository.Produktkatalog;
+
+/**
+ * Service für die Reservierung von Lagerbeständen.
+ * Jede Reservierung und Freigabe erfolgt atomar pro Produkt per Compare-and-Set im {@link Produktkatalog};
+ * es gibt keine globale Sperre, sodass Bestellungen verschiedener Produkte sich nicht gegenseitig behindern.
+ * Nach der Reservierung wird mit dem Produktindex weitergearbeitet, um weitere ID-Lookups zu vermeiden.
+ */
+@Service
+public class Lagerverwaltung {
+
+    /**
+     * Der Produktkatalog mit den Lagermengen.
+     */
+    private final Produktkatalog produktkatalog = MozartMockRepo.produktkatalog;
+
+    /**
+     * Reserviert die angegebene Menge eines Produkts.
+     *
+     * @param produktId Die ID des Produkts.
+     * @param anzahl Die zu reservierende Menge.
+     * @return Der Index des Produkts im {@link Produktkatalog}.
+     * @throws IllegalArgumentException Wenn das Produkt nicht gefunden wird oder der Bestand nicht ausreicht.
+     */
+    public int reserviere(String produktId, int anzahl) throws IllegalArgumentException {
+        int produktIndex = produktkatalog.index(produktId);
+        if (produktIndex < 0) {
+            throw new IllegalArgumentException("Produkt mit ID " + produktId + " nicht gefunden.");
+        }
+        if (!produktkatalog.reserviere(produktIndex, anzahl)) {
+            throw new IllegalArgumentException("Nicht genügend Lagerbestand für Produkt mit ID " + produktId);
+        }
+        return produktIndex;
+    }
+
+    /**
+     * Gibt eine zuvor reservierte Menge eines Produkts wieder frei,
+     * z.B. wenn der Beethoven-Aufruf fehlschlägt oder die Bestellung abgelehnt wird.
+     *
+     * @param produktIndex Der Index des Produkts aus {@link #reserviere(String, int)}.
+     * @param anzahl Die freizugebende Menge.
+     */
+    public void gibFrei(int produktIndex, int anzahl) {
+        produktkatalog.gibFrei(produktIndex, anzahl);
+    }
+
+    /**
+     * Gibt die aktuell verfügbare Menge eines Produkts zurück.
+     *
+     * @param produktId Die ID des Produkts.
+     * @return Die verfügbare Menge oder 0, wenn das Produkt nicht existiert.
+     */
+    public int verfuegbareMenge(String produktId) {
+        int produktIndex = produktkatalog.index(produktId);
+        return produktIndex < 0 ? 0 : produktkatalog.lagermenge(produktIndex);
+    }
+}
@@ -0,0 +1,102 @@
+package kirschner.flaig.mozart.service;
+
+/**
+ * Die Dauern der Schritte einer Einzelbestellung für den {@code Server-Timing}-Header der Antwort.
+ * Der Controller legt sie zu Beginn der Anfrage an und übergibt sie dem {@link BestellungService}; nach einer
+ * erfolgreichen Verarbeitung trägt {@link Bestellspuren} die Dauern aus der {@link Bestellspur} ein. Die Gesamtdauer
+ * misst sie selbst ab ihrer Erzeugung, sodass auch Antworten ohne Schritte, etwa Wiederholungen aus dem
+ * Idempotenzcache, eine Gesamtdauer erhalten.
+ * <p>
+ * Im asynchronen Pfad werden die Dauern auf dem Callback-Thread des gRPC-Aufrufs eingetragen und nach dem Abschluss
+ * des Futures gelesen; der Abschluss macht sie sichtbar.
+ */
+public final class Schrittzeiten {
+
+    /**
+     * Markiert einen nicht gemessenen Schritt.
+     */
+    private static final long NICHT_GEMESSEN = -1;
+
+    /**
+     * Der Zeitpunkt der Erzeugung aus {@link System#nanoTime()}.
+     */
+    private final long beginn = System.nanoTime();
+
+    /**
+     * Die Dauer der Lagerreservierung in Nanosekunden.
+     */
+    private long lagerNanos = NICHT_GEMESSEN;
+
+    /**
+     * Die Dauer des gRPC-Aufrufs an Beethoven in Nanosekunden.
+     */
+    private long beethovenNanos = NICHT_GEMESSEN;
+
+    /**
+     * Die Dauer des Speicherns im Repository in Nanosekunden.
+     */
+    private long repositoryNanos = NICHT_GEMESSEN;
+
+    /**
+     * Die Dauer des Einreihens in die CRM-Outbox in Nanosekunden.
+     */
+    private long crmNanos = NICHT_GEMESSEN;
+
+    /**
+     * Trägt die Dauern der Schritte ein.
+     *
+     * @param lagerNanos Die Dauer der Lagerreservierung.
+     * @param beethovenNanos Die Dauer des gRPC-Aufrufs an Beethoven.
+     * @param repositoryNanos Die Dauer des Speicherns im Repository.
+     * @param crmNanos Die Dauer des Einreihens in die CRM-Outbox.
+     */
+    void setze(long lagerNanos, long beethovenNanos, long repositoryNanos, long crmNanos) {
+        this.lagerNanos = lagerNanos;
+        this.beethovenNanos = beethovenNanos;
+        this.repositoryNanos = repositoryNanos;
+        this.crmNanos = crmNanos;
+    }
+
+    /**
+     * Gibt die Dauern als Wert des {@code Server-Timing}-Headers zurück, in Millisekunden mit drei Nachkommastellen.
+     * Nicht gemessene Schritte werden ausgelassen; {@code gesamt} ist die Zeit seit der Erzeugung.
+     *
+     * @return Der Header-Wert, etwa {@code lager;dur=0.004, beethoven;dur=1.873, gesamt;dur=2.051}.
+     */
+    public String alsServerTiming() {
+        long gesamtNanos = System.nanoTime() - beginn;
+        StringBuilder wert = new StringBuilder(128);
+        haengeAn(wert, "lager", lagerNanos);
+        haengeAn(wert, "beethoven", beethovenNanos);
+        haengeAn(wert, "repository", repositoryNanos);
+        haengeAn(wert, "crm", crmNanos);
+        haengeAn(wert, "gesamt", gesamtNanos);
+        return wert.toString();
+    }
+
+    /**
+     * Hängt einen gemessenen Schritt an den Header-Wert an.
+     *
+     * @param wert Der bisherige Header-Wert.
+     * @param name Der Name des Schritts.
+     * @param nanos Die Dauer in Nanosekunden oder {@value #NICHT_GEMESSEN}.
+     */
+    private static void haengeAn(StringBuilder wert, String name, long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        if (!wert.isEmpty()) {
+            wert.append(", ");
+        }
+        long mikros = nanos / 1_000;
+        long bruchteil = mikros % 1_000;
+        wert.append(name).append(";dur=").append(mikros / 1_000).append('.');
+        if (bruchteil < 100) {
+            wert.append('0');
+        }
+        if (bruchteil < 10) {
+            wert.append('0');
+        }
+        wert.append(bruchteil);
+    }
+}
@@ -0,0 +1,272 @@
+package kirschner.flaig.mozart.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Verteilt Statusaktualisierungen nach Bestell-ID auf eine feste Anzahl von Spuren.
+ * <p>
+ * Jede Spur wird von genau einem Thread abgearbeitet, und eine Bestell-ID landet immer auf derselben Spur. Damit
+ * werden Aktualisierungen verschiedener Bestellungen parallel übernommen, Aktualisierungen derselben Bestellung aber
+ * streng in der Reihenfolge, in der sie verteilt wurden – anders als bei mehreren parallelen Consumern der
+ * Warteschlange, bei denen ein {@code SHIPPED} nach einem {@code DELIVERED} übernommen werden könnte.
+ * <p>
+ * Je Spur werden die wartenden Aktualisierungen als {@code statusaktualisierung.spur.tiefe} und die übernommenen als
+ * {@code statusaktualisierung.spur.verarbeitet} erfasst. {@code statusaktualisierung.spur.schiefe} ist das Verhältnis
+ * der meistbelasteten Spur zum Durchschnitt aller Spuren; 1 bedeutet eine gleichmäßige Verteilung.
+ * <p>
+ * Nur der Batch-Empfang des {@link BeethovenListener}s nutzt die Spuren; der Verteiler und seine Threads werden daher
+ * nur mit {@code mozart.statusaktualisierungen.batch=true} angelegt.
+ */
+@Service
+@ConditionalOnProperty(name = "mozart.statusaktualisierungen.batch", havingValue = "true")
+public class Statusverteiler {
+
+    /**
+     * Logger für diese Klasse.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(Statusverteiler.class);
+
+    /**
+     * Die Aufgaben je Spur.
+     */
+    private final List<BlockingQueue<Aufgabe>> spuren;
+
+    /**
+     * Die Threads der Spuren.
+     */
+    private final List<Thread> threads;
+
+    /**
+     * Die verteilten, noch nicht übernommenen Aktualisierungen je Spur.
+     */
+    private final AtomicIntegerArray tiefe;
+
+    /**
+     * Die übernommenen Aktualisierungen je Spur.
+     */
+    private final AtomicLongArray verarbeitet;
+
+    /**
+     * Gibt an, ob der Verteiler beendet wurde und keine Aufgaben mehr annimmt.
+     */
+    private volatile boolean geschlossen;
+
+    /**
+     * Eine verteilte Aufgabe mit dem {@link CompletableFuture}, das sie abschließt.
+     *
+     * @param spur Die Spur.
+     * @param anzahl Die Anzahl der Aktualisierungen, die die Aufgabe übernimmt.
+     * @param ausfuehrung Die eigentliche Übernahme.
+     * @param ergebnis Wird mit der Aufgabe abgeschlossen.
+     */
+    private record Aufgabe(int spur, int anzahl, Runnable ausfuehrung, CompletableFuture<Void> ergebnis) {
+    }
+
+    /**
+     * Konstruktor für den {@code Statusverteiler}. Startet die Threads der Spuren.
+     *
+     * @param anzahlSpuren Die Anzahl der Spuren.
+     * @param registry Die {@link MeterRegistry} für die Spurmetriken.
+     * @throws IllegalArgumentException Wenn die Anzahl der Spuren kleiner als 1 ist.
+     */
+    public Statusverteiler(@Value("${mozart.statusaktualisierungen.spuren:4}") int anzahlSpuren, MeterRegistry registry) {
+        if (anzahlSpuren < 1) {
+            throw new IllegalArgumentException("Die Anzahl der Spuren muss mindestens 1 sein: " + anzahlSpuren);
+        }
+        this.spuren = new ArrayList<>(anzahlSpuren);
+        this.threads = new ArrayList<>(anzahlSpuren);
+        this.tiefe = new AtomicIntegerArray(anzahlSpuren);
+        this.verarbeitet = new AtomicLongArray(anzahlSpuren);
+
+        for (int spur = 0; spur < anzahlSpuren; spur++) {
+            BlockingQueue<Aufgabe> aufgaben = new LinkedBlockingQueue<>();
+            spuren.add(aufgaben);
+            threads.add(Thread.ofPlatform().name("status-spur-" + spur).daemon().start(() -> arbeite(aufgaben)));
+
+            int index = spur;
+            Gauge.builder("statusaktualisierung.spur.tiefe", tiefe, t -> t.get(index))
+                    .description("Verteilte, noch nicht übernommene Statusaktualisierungen der Spur")
+                    .tag("spur", Integer.toString(spur))
+                    .register(registry);
+            Gauge.builder("statusaktualisierung.spur.verarbeitet", verarbeitet, v -> v.get(index))
+                    .description("Übernommene Statusaktualisierungen der Spur")
+                    .tag("spur", Integer.toString(spur))
+                    .register(registry);
+        }
+        Gauge.builder("statusaktualisierung.spur.schiefe", this, Statusverteiler::getSchiefe)
+                .description("Übernommene Statusaktualisierungen der meistbelasteten Spur im Verhältnis zum Durchschnitt")
+                .register(registry);
+    }
+
+    /**
+     * Gibt die Spur einer Bestell-ID zurück.
+     *
+     * @param bestellId Die Bestell-ID.
+     * @return Die Spur zwischen 0 (einschließlich) und der Anzahl der Spuren (ausschließlich).
+     */
+    public int spurFuer(String bestellId) {
+        int hash = bestellId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), spuren.size());
+    }
+
+    /**
+     * Teilt Aktualisierungen nach Spur auf und übergibt jeder betroffenen Spur ihren Teil als eine Aufgabe.
+     * Die Reihenfolge innerhalb eines Teils entspricht der Reihenfolge der übergebenen Map.
+     *
+     * @param aktualisierungen Die Aktualisierungen mit der Bestell-ID als Schlüssel.
+     * @param verarbeitung Übernimmt die Aktualisierungen einer Spur; wird auf dem Thread der Spur ausgeführt.
+     * @param <T> Der Typ der Aktualisierungen.
+     * @return Ein {@link CompletableFuture}, das abgeschlossen wird, wenn alle Spuren ihren Teil übernommen haben,
+     * und scheitert, wenn eine Spur dabei scheitert.
+     */
+    public <T> CompletableFuture<Void> verteileAlle(Map<String, T> aktualisierungen, Consumer<Map<String, T>> verarbeitung) {
+        Map<Integer, Map<String, T>> nachSpur = new HashMap<>();
+        for (Map.Entry<String, T> aktualisierung : aktualisierungen.entrySet()) {
+            nachSpur.computeIfAbsent(spurFuer(aktualisierung.getKey()), spur -> new LinkedHashMap<>())
+                    .put(aktualisierung.getKey(), aktualisierung.getValue());
+        }
+
+        CompletableFuture<?>[] ergebnisse = new CompletableFuture<?>[nachSpur.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Map<String, T>> teil : nachSpur.entrySet()) {
+            ergebnisse[i++] = verteile(teil.getKey(), teil.getValue().size(), () -> verarbeitung.accept(teil.getValue()));
+        }
+        return CompletableFuture.allOf(ergebnisse);
+    }
+
+    /**
+     * Gibt die Anzahl der Spuren zurück.
+     *
+     * @return Die Anzahl.
+     */
+    public int getAnzahlSpuren() {
+        return spuren.size();
+    }
+
+    /**
+     * Gibt die verteilten, noch nicht übernommenen Aktualisierungen einer Spur zurück.
+     *
+     * @param spur Die Spur.
+     * @return Die Anzahl.
+     */
+    public int getTiefe(int spur) {
+        return tiefe.get(spur);
+    }
+
+    /**
+     * Gibt das Verhältnis der übernommenen Aktualisierungen der meistbelasteten Spur zum Durchschnitt aller Spuren zurück.
+     *
+     * @return Die Schiefe; 1 bei gleichmäßiger Verteilung, 0 solange nichts übernommen wurde.
+     */
+    public double getSchiefe() {
+        long summe = 0;
+        long maximum = 0;
+        for (int spur = 0; spur < verarbeitet.length(); spur++) {
+            long anzahl = verarbeitet.get(spur);
+            summe += anzahl;
+            maximum = Math.max(maximum, anzahl);
+        }
+        return summe == 0 ? 0 : maximum * (double) verarbeitet.length() / summe;
+    }
+
+    /**
+     * Beendet die Threads der Spuren beim Herunterfahren. Noch wartende und danach verteilte Aufgaben werden verworfen;
+     * ihre {@link CompletableFuture}s scheitern mit einer {@link CancellationException}, damit niemand ewig auf sie wartet.
+     */
+    @PreDestroy
+    public void schliessen() {
+        geschlossen = true;
+        threads.forEach(Thread::interrupt);
+        List<Aufgabe> verworfen = new ArrayList<>();
+        for (BlockingQueue<Aufgabe> aufgaben : spuren) {
+            aufgaben.drainTo(verworfen);
+        }
+        verworfen.forEach(this::verwirf);
+        if (!verworfen.isEmpty()) {
+            LOGGER.warn("Statusverteiler: {} wartende Aufgaben beim Beenden verworfen.", verworfen.size());
+        }
+    }
+
+    /**
+     * Übergibt einer Spur eine Aufgabe.
+     *
+     * @param spur Die Spur.
+     * @param anzahl Die Anzahl der Aktualisierungen, die die Aufgabe übernimmt.
+     * @param aufgabe Die Aufgabe.
+     * @return Ein {@link CompletableFuture}, das mit der Aufgabe abgeschlossen wird.
+     */
+    private CompletableFuture<Void> verteile(int spur, int anzahl, Runnable aufgabe) {
+        Aufgabe eintrag = new Aufgabe(spur, anzahl, aufgabe, new CompletableFuture<>());
+        tiefe.addAndGet(spur, anzahl);
+        BlockingQueue<Aufgabe> aufgaben = spuren.get(spur);
+        aufgaben.add(eintrag);
+        // Hat schliessen() die Spur schon geleert, nimmt die Aufgabe niemand mehr ab.
+        if (geschlossen && aufgaben.remove(eintrag)) {
+            verwirf(eintrag);
+        }
+        return eintrag.ergebnis();
+    }
+
+    /**
+     * Führt eine Aufgabe aus und schließt ihr {@link CompletableFuture} ab.
+     *
+     * @param aufgabe Die Aufgabe.
+     */
+    private void fuehreAus(Aufgabe aufgabe) {
+        try {
+            aufgabe.ausfuehrung().run();
+            aufgabe.ergebnis().complete(null);
+        } catch (Throwable e) {
+            aufgabe.ergebnis().completeExceptionally(e);
+        } finally {
+            tiefe.addAndGet(aufgabe.spur(), -aufgabe.anzahl());
+            verarbeitet.addAndGet(aufgabe.spur(), aufgabe.anzahl());
+        }
+    }
+
+    /**
+     * Verwirft eine nicht ausgeführte Aufgabe und lässt ihr {@link CompletableFuture} scheitern.
+     *
+     * @param aufgabe Die Aufgabe.
+     */
+    private void verwirf(Aufgabe aufgabe) {
+        tiefe.addAndGet(aufgabe.spur(), -aufgabe.anzahl());
+        aufgabe.ergebnis().completeExceptionally(new CancellationException("Statusverteiler wurde beendet."));
+    }
+
+    /**
+     * Arbeitet die Aufgaben einer Spur nacheinander ab, bis der Thread unterbrochen wird.
+     *
+     * @param aufgaben Die Aufgaben der Spur.
+     */
+    private void arbeite(BlockingQueue<Aufgabe> aufgaben) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                fuehreAus(aufgaben.take());
+            }
+        } catch (InterruptedException e) {
+            LOGGER.info("Statusverteiler: {} beendet.", Thread.currentThread().getName());
+        }
+    }
+}
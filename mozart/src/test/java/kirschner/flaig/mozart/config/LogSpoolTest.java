@@ -0,0 +1,175 @@
+package kirschner.flaig.mozart.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LogSpoolTest {
+
+    /**
+     * Eine kleine Spool-Größe, in die sieben Nachrichten aus {@link #nachricht(int)} passen.
+     */
+    private static final int GROESSE = 256;
+
+    @TempDir
+    Path verzeichnis;
+
+    @Test
+    void liefertNachrichtenNachWiederoeffnenAbDerLesepositionErneut() throws IOException {
+        Path datei = verzeichnis.resolve("spool.dat");
+        try (LogSpool spool = new LogSpool(datei, GROESSE)) {
+            assertThat(spool.schreibe(nachricht(1), 1, false)).isTrue();
+            assertThat(spool.schreibe(nachricht(2), 2, true)).isTrue();
+            assertThat(spool.schreibe(nachricht(3), 3, false)).isTrue();
+            assertThat(text(spool.naechster())).isEqualTo(text(nachricht(1)));
+            spool.bestaetige();
+        }
+        try (LogSpool spool = new LogSpool(datei, GROESSE)) {
+            assertThat(spool.getOffeneEreignisse()).isEqualTo(5);
+            LogSpool.Satz satz = spool.naechster();
+            assertThat(satz.anzahl()).isEqualTo(2);
+            assertThat(satz.komprimiert()).isTrue();
+            assertThat(liesAlle(spool)).containsExactly(text(nachricht(2)), text(nachricht(3)));
+            assertThat(spool.istLeer()).isTrue();
+            assertThat(spool.getOffeneEreignisse()).isZero();
+        }
+    }
+
+    @Test
+    void verschiebtOffeneNachrichtenNachVornWennHintenKeinPlatzIst() throws IOException {
+        try (LogSpool spool = new LogSpool(verzeichnis.resolve("spool.dat"), GROESSE)) {
+            int geschrieben = 0;
+            while (spool.schreibe(nachricht(geschrieben + 1), 1, false)) {
+                geschrieben++;
+            }
+            assertThat(geschrieben).isEqualTo(7);
+
+            for (int i = 0; i < 3; i++) {
+                spool.naechster();
+                spool.bestaetige();
+            }
+            assertThat(spool.schreibe(nachricht(8), 1, false)).isTrue();
+            assertThat(spool.schreibe(nachricht(9), 1, false)).isTrue();
+            assertThat(spool.schreibe(nachricht(10), 1, false)).isTrue();
+            assertThat(spool.schreibe(nachricht(11), 1, false)).isFalse();
+
+            List<String> erwartet = new ArrayList<>();
+            for (int i = 4; i <= 10; i++) {
+                erwartet.add(text(nachricht(i)));
+            }
+            assertThat(liesAlle(spool)).containsExactlyElementsOf(erwartet);
+        }
+    }
+
+    @Test
+    void beginntVorneWennAllesBestaetigtIst() throws IOException {
+        Path datei = verzeichnis.resolve("spool.dat");
+        try (LogSpool spool = new LogSpool(datei, GROESSE)) {
+            for (int runde = 0; runde < 20; runde++) {
+                assertThat(spool.schreibe(nachricht(runde), 1, false)).isTrue();
+                assertThat(liesAlle(spool)).containsExactly(text(nachricht(runde)));
+                assertThat(spool.getBelegung()).isZero();
+            }
+        }
+        try (LogSpool spool = new LogSpool(datei, GROESSE)) {
+            assertThat(spool.istLeer()).isTrue();
+        }
+    }
+
+    @Test
+    void setztAbgebrocheneVerschiebungBeimOeffnenFort() throws IOException {
+        Path datei = verzeichnis.resolve("spool.dat");
+        try (LogSpool spool = new LogSpool(datei, GROESSE)) {
+            for (int i = 1; i <= 7; i++) {
+                spool.schreibe(nachricht(i), 1, false);
+            }
+            for (int i = 0; i < 3; i++) {
+                spool.naechster();
+                spool.bestaetige();
+            }
+        }
+        // Absturz mitten in der Verschiebung nachstellen: Die offenen Sätze beginnen bei 16 + 3 * 33 = 115. Das erste
+        // Stück (so groß wie die Lücke davor) ist kopiert und im Kopf vermerkt, das zweite nur teilweise.
+        int lesePosition = 16 + 3 * 33;
+        int luecke = lesePosition - 16;
+        try (FileChannel kanal = FileChannel.open(datei, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer stueck = ByteBuffer.allocate(luecke);
+            kanal.read(stueck, lesePosition);
+            kanal.write(stueck.flip(), 16);
+            kanal.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 16 + luecke), 12);
+            ByteBuffer teil = ByteBuffer.allocate(20);
+            kanal.read(teil, lesePosition + luecke);
+            kanal.write(teil.flip(), 16 + luecke);
+        }
+        try (LogSpool spool = new LogSpool(datei, GROESSE)) {
+            assertThat(spool.getOffeneEreignisse()).isEqualTo(4);
+            assertThat(spool.schreibe(nachricht(8), 1, false)).isTrue();
+        }
+        try (LogSpool spool = new LogSpool(datei, GROESSE)) {
+            assertThat(liesAlle(spool)).containsExactly(text(nachricht(4)), text(nachricht(5)), text(nachricht(6)),
+                    text(nachricht(7)), text(nachricht(8)));
+        }
+    }
+
+    @Test
+    void verwirftBeschaedigtenSatzAmEnde() throws IOException {
+        Path datei = verzeichnis.resolve("spool.dat");
+        try (LogSpool spool = new LogSpool(datei, GROESSE)) {
+            spool.schreibe(nachricht(1), 1, false);
+            spool.schreibe(nachricht(2), 1, false);
+        }
+        // Ein Byte im Inhalt der zweiten Nachricht kippen: Kopf 16, erster Satz 8 + 5 + 20 Bytes.
+        int zweiterInhalt = 16 + 33 + 8 + 5;
+        try (FileChannel kanal = FileChannel.open(datei, StandardOpenOption.WRITE)) {
+            kanal.write(ByteBuffer.wrap(new byte[] {'#'}), zweiterInhalt);
+        }
+        try (LogSpool spool = new LogSpool(datei, GROESSE)) {
+            assertThat(liesAlle(spool)).containsExactly(text(nachricht(1)));
+            assertThat(spool.schreibe(nachricht(3), 1, false)).isTrue();
+            assertThat(liesAlle(spool)).containsExactly(text(nachricht(3)));
+        }
+    }
+
+    @Test
+    void lehntDateiMitAndererGroesseAb() throws IOException {
+        Path datei = verzeichnis.resolve("spool.dat");
+        new LogSpool(datei, GROESSE).close();
+        assertThatThrownBy(() -> new LogSpool(datei, 2 * GROESSE)).isInstanceOf(IOException.class);
+    }
+
+    /**
+     * Eine Nachricht mit genau 20 Bytes Inhalt.
+     */
+    private static byte[] nachricht(int nummer) {
+        return String.format("nachricht-%010d", nummer).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String text(byte[] inhalt) {
+        return new String(inhalt, StandardCharsets.US_ASCII);
+    }
+
+    private static String text(LogSpool.Satz satz) {
+        return text(satz.inhalt());
+    }
+
+    private static List<String> liesAlle(LogSpool spool) {
+        List<String> gelesen = new ArrayList<>();
+        LogSpool.Satz satz;
+        while ((satz = spool.naechster()) != null) {
+            gelesen.add(text(satz));
+            spool.bestaetige();
+        }
+        return gelesen;
+    }
+}
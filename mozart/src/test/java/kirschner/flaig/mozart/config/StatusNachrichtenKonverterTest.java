@@ -0,0 +1,89 @@
+package kirschner.flaig.mozart.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import kirschner.flaig.mozart.entity.BeethovenStatusUpdate;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+
+class StatusNachrichtenKonverterTest {
+
+    private final StatusNachrichtenKonverter konverter = new StatusNachrichtenKonverter();
+
+    @Test
+    void rundreiseBehaeltBestellIdUndLieferstatus() {
+        for (DeliveryStatus lieferstatus : DeliveryStatus.values()) {
+            BeethovenStatusUpdate gelesen = rundreise(new BeethovenStatusUpdate("ORD-1", lieferstatus.name()));
+            assertThat(gelesen.getBestellId()).isEqualTo("ORD-1");
+            assertThat(gelesen.getStatus()).isEqualTo(lieferstatus.name());
+            assertThat(gelesen.getLieferstatus()).isEqualTo(lieferstatus);
+        }
+    }
+
+    @Test
+    void rundreiseBehaeltSonderzeichen() {
+        String bestellId = "ORD-\"x\"\\y\n\t\u0001-äß-\u20ac";
+        BeethovenStatusUpdate gelesen = rundreise(new BeethovenStatusUpdate(bestellId, "shipped"));
+        assertThat(gelesen.getBestellId()).isEqualTo(bestellId);
+        assertThat(gelesen.getLieferstatus()).isEqualTo(DeliveryStatus.SHIPPED);
+        assertThat(gelesen.getStatus()).isEqualTo("SHIPPED");
+    }
+
+    @Test
+    void rundreiseBehaeltUnbekanntenStatusUndNullwerte() {
+        BeethovenStatusUpdate unbekannt = rundreise(new BeethovenStatusUpdate("ORD-1", "LOST"));
+        assertThat(unbekannt.getStatus()).isEqualTo("LOST");
+        assertThat(unbekannt.getLieferstatus()).isNull();
+
+        BeethovenStatusUpdate leer = rundreise(new BeethovenStatusUpdate(null, null));
+        assertThat(leer.getBestellId()).isNull();
+        assertThat(leer.getStatus()).isNull();
+        assertThat(leer.getLieferstatus()).isNull();
+
+        BeethovenStatusUpdate escaped = lies("{\"bestellId\":\"ORD-1\",\"status\":\"Deliver\\u0065d\"}");
+        assertThat(escaped.getStatus()).isEqualTo("Delivered");
+        assertThat(escaped.getLieferstatus()).isEqualTo(DeliveryStatus.DELIVERED);
+    }
+
+    @Test
+    void liestAusgabeDesJacksonKonvertersUndUeberspringtUnbekannteFelder() {
+        Message nachricht = new Jackson2JsonMessageConverter().toMessage(new BeethovenStatusUpdate("ORD-7", "Processing"), new MessageProperties());
+        BeethovenStatusUpdate gelesen = (BeethovenStatusUpdate) konverter.fromMessage(nachricht);
+        assertThat(gelesen.getBestellId()).isEqualTo("ORD-7");
+        assertThat(gelesen.getLieferstatus()).isEqualTo(DeliveryStatus.PROCESSING);
+
+        BeethovenStatusUpdate mitExtras = lies(" { \"zeit\" : 17, \"meta\": {\"a\": [1, \"}\"]}, \"status\" : \"delivered\" ,"
+                + " \"aktiv\": true, \"bestellId\" : \"ORD-8\" } ");
+        assertThat(mitExtras.getBestellId()).isEqualTo("ORD-8");
+        assertThat(mitExtras.getLieferstatus()).isEqualTo(DeliveryStatus.DELIVERED);
+    }
+
+    @Test
+    void lehntUngueltigesJsonAb() {
+        for (String json : new String[] {"", "[]", "{", "{\"bestellId\":\"ORD-1\"", "{\"bestellId\":\"ORD-1", "{\"bestellId\" \"ORD-1\"}",
+                "{\"bestellId\":nul}", "{\"meta\":{\"a\":1}", "{\"status\":\"\\u00zz\"}", "{\"status\":\"\\u-001\"}",
+                "{\"status\":\"\\u12\"}"}) {
+            assertThatThrownBy(() -> lies(json)).as(json).isInstanceOf(MessageConversionException.class);
+        }
+        assertThatThrownBy(() -> konverter.toMessage("kein Status", new MessageProperties()))
+                .isInstanceOf(MessageConversionException.class);
+    }
+
+    private BeethovenStatusUpdate rundreise(BeethovenStatusUpdate statusAktualisierung) {
+        Message nachricht = konverter.toMessage(statusAktualisierung, new MessageProperties());
+        assertThat(nachricht.getMessageProperties().getContentType()).isEqualTo(MessageProperties.CONTENT_TYPE_JSON);
+        return (BeethovenStatusUpdate) konverter.fromMessage(nachricht);
+    }
+
+    private BeethovenStatusUpdate lies(String json) {
+        return (BeethovenStatusUpdate) konverter.fromMessage(new Message(json.getBytes(StandardCharsets.UTF_8), new MessageProperties()));
+    }
+}
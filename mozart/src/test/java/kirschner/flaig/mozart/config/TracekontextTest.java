@@ -0,0 +1,55 @@
+package kirschner.flaig.mozart.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class TracekontextTest {
+
+    /**
+     * Ein gültiger {@code traceparent} aus der W3C-Spezifikation.
+     */
+    private static final String GUELTIG = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    @Test
+    void liestGueltigenTraceparent() {
+        Tracekontext kontext = Tracekontext.ausTraceparent(GUELTIG);
+        assertThat(kontext.traceId()).isEqualTo("4bf92f3577b34da6a3ce929d0e0e4736");
+        assertThat(kontext.spanId()).isEqualTo("00f067aa0ba902b7");
+        assertThat(kontext.alsTraceparent()).isEqualTo(GUELTIG).hasSize(Tracekontext.HEADER_LAENGE);
+        assertThat(Tracekontext.ausTraceparent(GUELTIG.substring(0, 53) + "00")).isEqualTo(kontext);
+    }
+
+    @Test
+    void verwirftFehlendenOderFalschLangenTraceparent() {
+        assertThat(Tracekontext.ausTraceparent(null)).isNull();
+        assertThat(Tracekontext.ausTraceparent("")).isNull();
+        assertThat(Tracekontext.ausTraceparent(GUELTIG.substring(0, 54))).isNull();
+        assertThat(Tracekontext.ausTraceparent(GUELTIG + "0")).isNull();
+        assertThat(Tracekontext.ausTraceparent(" " + GUELTIG.substring(1))).isNull();
+    }
+
+    @Test
+    void verwirftTraceparentMitFalscherStruktur() {
+        assertThat(Tracekontext.ausTraceparent("01" + GUELTIG.substring(2))).isNull();
+        assertThat(Tracekontext.ausTraceparent("ff" + GUELTIG.substring(2))).isNull();
+        assertThat(Tracekontext.ausTraceparent(ersetze(GUELTIG, 2, '_'))).isNull();
+        assertThat(Tracekontext.ausTraceparent(ersetze(GUELTIG, 35, '_'))).isNull();
+        assertThat(Tracekontext.ausTraceparent(ersetze(GUELTIG, 52, '_'))).isNull();
+    }
+
+    @Test
+    void verwirftUngueltigeIdsUndFlags() {
+        assertThat(Tracekontext.ausTraceparent("00-" + "0".repeat(32) + "-00f067aa0ba902b7-01")).isNull();
+        assertThat(Tracekontext.ausTraceparent("00-4bf92f3577b34da6a3ce929d0e0e4736-" + "0".repeat(16) + "-01")).isNull();
+        assertThat(Tracekontext.ausTraceparent(GUELTIG.toUpperCase())).isNull();
+        assertThat(Tracekontext.ausTraceparent(ersetze(GUELTIG, 10, 'g'))).isNull();
+        assertThat(Tracekontext.ausTraceparent(ersetze(GUELTIG, 40, '-'))).isNull();
+        assertThat(Tracekontext.ausTraceparent(ersetze(GUELTIG, 54, 'x'))).isNull();
+        assertThat(Tracekontext.ausTraceparent(ersetze(GUELTIG, 53, 'ä'))).isNull();
+    }
+
+    private static String ersetze(String text, int index, char zeichen) {
+        return text.substring(0, index) + zeichen + text.substring(index + 1);
+    }
+}
@@ -0,0 +1,85 @@
+package kirschner.flaig.mozart.entity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class GeldbetragTest {
+
+    @Test
+    void parseLiestGanzeUndGebrocheneBetraege() {
+        assertThat(Geldbetrag.parse("29.95").getCent()).isEqualTo(2995L);
+        assertThat(Geldbetrag.parse("29.9").getCent()).isEqualTo(2990L);
+        assertThat(Geldbetrag.parse("29.").getCent()).isEqualTo(2900L);
+        assertThat(Geldbetrag.parse("-3").getCent()).isEqualTo(-300L);
+        assertThat(Geldbetrag.parse("+0.07").getCent()).isEqualTo(7L);
+        assertThat(Geldbetrag.parse(".5").getCent()).isEqualTo(50L);
+    }
+
+    @Test
+    void parseErlaubtNurNullenNachDerZweitenNachkommastelle() {
+        assertThat(Geldbetrag.parse("1.2300").getCent()).isEqualTo(123L);
+        assertThatThrownBy(() -> Geldbetrag.parse("1.234")).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void parseLehntUngueltigeZeichenkettenAb() {
+        for (String text : new String[] {"", "-", ".", "1.2.3", "1,50", "abc", "1e3", " 1"}) {
+            assertThatThrownBy(() -> Geldbetrag.parse(text)).as(text).isInstanceOf(NumberFormatException.class);
+        }
+    }
+
+    @Test
+    void parseErkenntUeberlauf() {
+        assertThatThrownBy(() -> Geldbetrag.parse("92233720368547758.08")).isInstanceOf(ArithmeticException.class);
+        assertThat(Geldbetrag.parse("92233720368547758.07").getCent()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void vonBigDecimalIstExaktOderRundetAusdruecklich() {
+        assertThat(Geldbetrag.von(new BigDecimal("11.98")).getCent()).isEqualTo(1198L);
+        assertThat(Geldbetrag.von(new BigDecimal("11.9800")).getCent()).isEqualTo(1198L);
+        assertThatThrownBy(() -> Geldbetrag.von(new BigDecimal("11.985"))).isInstanceOf(ArithmeticException.class);
+        assertThat(Geldbetrag.von(new BigDecimal("11.985"), RoundingMode.HALF_UP).getCent()).isEqualTo(1199L);
+        assertThat(Geldbetrag.von(new BigDecimal("11.985"), RoundingMode.HALF_EVEN).getCent()).isEqualTo(1198L);
+        assertThat(Geldbetrag.von(new BigDecimal("-11.985"), RoundingMode.HALF_UP).getCent()).isEqualTo(-1199L);
+        assertThat(Geldbetrag.von(new BigDecimal("-0.001"), RoundingMode.FLOOR).getCent()).isEqualTo(-1L);
+    }
+
+    @Test
+    void toStringSchreibtImmerZweiNachkommastellen() {
+        assertThat(Geldbetrag.vonCent(2995L)).hasToString("29.95");
+        assertThat(Geldbetrag.vonCent(5L)).hasToString("0.05");
+        assertThat(Geldbetrag.vonCent(-5L)).hasToString("-0.05");
+        assertThat(Geldbetrag.vonCent(-1234L)).hasToString("-12.34");
+        assertThat(Geldbetrag.NULL).hasToString("0.00");
+        assertThat(Geldbetrag.vonCent(Long.MIN_VALUE)).hasToString("-92233720368547758.08");
+        assertThat(Geldbetrag.vonCent(Long.MIN_VALUE).alsBigDecimal()).isEqualByComparingTo("-92233720368547758.08");
+    }
+
+    @Test
+    void rechnenErkenntUeberlauf() {
+        assertThat(Geldbetrag.vonCent(599L).mal(2).plus(Geldbetrag.vonCent(1L)).minus(Geldbetrag.vonCent(100L)).getCent())
+                .isEqualTo(1099L);
+        assertThatThrownBy(() -> Geldbetrag.vonCent(Long.MAX_VALUE).plus(Geldbetrag.vonCent(1L))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Geldbetrag.vonCent(Long.MAX_VALUE / 2 + 1).mal(2)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void jsonRundreiseBehaeltDenBetrag() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        assertThat(mapper.writeValueAsString(Geldbetrag.vonCent(1198L))).isEqualTo("11.98");
+        assertThat(mapper.readValue("11.98", Geldbetrag.class)).isEqualTo(Geldbetrag.vonCent(1198L));
+        assertThat(mapper.readValue("12", Geldbetrag.class)).isEqualTo(Geldbetrag.vonCent(1200L));
+        assertThat(mapper.readValue("\"0.10\"", Geldbetrag.class)).isEqualTo(Geldbetrag.vonCent(10L));
+        assertThatThrownBy(() -> mapper.readValue("11.985", Geldbetrag.class))
+                .isInstanceOf(JsonMappingException.class);
+    }
+}
@@ -0,0 +1,110 @@
+package kirschner.flaig.mozart.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import kirschner.flaig.mozart.entity.Bestellung;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+import kirschner.flaig.mozart.repository.Bestellindex.Schluessel;
+
+class BestellindexTest {
+
+    /**
+     * Der Beginn der Bestelldaten; jede Bestellung liegt eine Minute nach der vorherigen.
+     */
+    private static final LocalDateTime BEGINN = LocalDateTime.of(2024, 5, 1, 0, 0);
+
+    @Test
+    void blaettertUeberGleichzeitigHinzukommendeUndGeaenderteBestellungen() throws InterruptedException {
+        Bestellindex index = new Bestellindex();
+        int vorhanden = 2_000;
+        for (int i = 0; i < vorhanden; i++) {
+            index.indexiere(bestellung(i, "KUNDE-" + (i % 3), DeliveryStatus.PROCESSING));
+        }
+
+        AtomicBoolean laeuft = new AtomicBoolean(true);
+        Thread schreiber = Thread.ofPlatform().name("bestellindex-test-schreiber").start(() -> {
+            int neu = vorhanden;
+            while (laeuft.get()) {
+                index.indexiere(bestellung(neu++, "KUNDE-0", DeliveryStatus.PROCESSING));
+                // Statuswechsel und erneutes Indizieren unveränderter Bestellungen dürfen keine Lücken reißen.
+                int bestehend = neu % vorhanden;
+                index.indexiere(bestellung(bestehend, "KUNDE-" + (bestehend % 3), DeliveryStatus.PROCESSING));
+                index.indexiere(bestellung(bestehend, "KUNDE-" + (bestehend % 3), DeliveryStatus.SHIPPED));
+                index.indexiere(bestellung(bestehend, "KUNDE-" + (bestehend % 3), DeliveryStatus.PROCESSING));
+            }
+        });
+
+        List<Schluessel> gesehen = new ArrayList<>();
+        try {
+            for (int durchlauf = 0; durchlauf < 20; durchlauf++) {
+                gesehen = blaettere(index, null, null, BEGINN.plusMinutes(vorhanden));
+                assertThat(gesehen).hasSize(vorhanden).isSorted().doesNotHaveDuplicates();
+                assertThat(blaettere(index, "KUNDE-1", null, BEGINN.plusMinutes(vorhanden))).hasSize((vorhanden + 1) / 3);
+            }
+        } finally {
+            laeuft.set(false);
+            schreiber.join();
+        }
+        assertThat(gesehen.get(0).bestellId()).isEqualTo("ORD-0");
+        assertThat(index.anzahl()).isGreaterThan(vorhanden);
+    }
+
+    @Test
+    void suchtNachKundeUndStatusImZeitraum() {
+        Bestellindex index = new Bestellindex();
+        for (int i = 0; i < 10; i++) {
+            index.indexiere(bestellung(i, i % 2 == 0 ? "KUNDE-A" : "KUNDE-B", i < 5 ? DeliveryStatus.PROCESSING : DeliveryStatus.SHIPPED));
+        }
+        index.indexiere(bestellung(2, "KUNDE-A", DeliveryStatus.DELIVERED));
+
+        assertThat(ids(index.suche("KUNDE-A", DeliveryStatus.PROCESSING, null, null, null, 10))).containsExactly("ORD-0", "ORD-4");
+        assertThat(ids(index.suche(null, DeliveryStatus.SHIPPED, BEGINN.plusMinutes(6), BEGINN.plusMinutes(9), null, 10)))
+                .containsExactly("ORD-6", "ORD-7", "ORD-8");
+        assertThat(ids(index.suche(null, DeliveryStatus.DELIVERED, null, null, null, 10))).containsExactly("ORD-2");
+        assertThat(index.suche("KUNDE-UNBEKANNT", null, null, null, null, 10)).isEmpty();
+        assertThat(index.anzahl()).isEqualTo(10);
+    }
+
+    @Test
+    void cursorUeberstehtDieRundreise() {
+        Schluessel schluessel = new Schluessel(BEGINN.plusSeconds(7), "ORD-|äö");
+        assertThat(Schluessel.ausCursor(schluessel.alsCursor())).isEqualTo(schluessel);
+        assertThatThrownBy(() -> Schluessel.ausCursor("kein-cursor")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Liest alle Treffer bis {@code bis} seitenweise mit einer kleinen Seitengröße.
+     */
+    private static List<Schluessel> blaettere(Bestellindex index, String kundenId, DeliveryStatus lieferstatus, LocalDateTime bis) {
+        List<Schluessel> alle = new ArrayList<>();
+        Schluessel nach = null;
+        int limit = 37;
+        while (true) {
+            List<Schluessel> seite = index.suche(kundenId, lieferstatus, null, bis, nach, limit);
+            boolean weitere = seite.size() > limit;
+            List<Schluessel> treffer = weitere ? seite.subList(0, limit) : seite;
+            alle.addAll(treffer);
+            if (!weitere) {
+                return alle;
+            }
+            nach = Schluessel.ausCursor(treffer.get(treffer.size() - 1).alsCursor());
+        }
+    }
+
+    private static List<String> ids(List<Schluessel> treffer) {
+        return treffer.stream().map(Schluessel::bestellId).toList();
+    }
+
+    private static Bestellung bestellung(int nummer, String kundenId, DeliveryStatus lieferstatus) {
+        return new Bestellung("ORD-" + nummer, kundenId, "kunde@example.com", "Musterweg 1", "PROD-MOCK-001", 1,
+                BEGINN.plusMinutes(nummer), lieferstatus, null, "CARD");
+    }
+}
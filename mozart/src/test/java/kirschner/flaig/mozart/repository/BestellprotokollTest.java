@@ -0,0 +1,227 @@
+package kirschner.flaig.mozart.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import kirschner.flaig.mozart.entity.Bestellung;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+
+class BestellprotokollTest {
+
+    /**
+     * Die Größe des Segmentkopfs, nach dem der erste Satz beginnt.
+     */
+    private static final int SEGMENT_KOPF = 8;
+
+    /**
+     * Die Größe des Satzkopfs aus Länge und Prüfsumme.
+     */
+    private static final int SATZ_KOPF = 8;
+
+    @TempDir
+    Path verzeichnis;
+
+    @Test
+    void stelltNeuestenStandJederBestellungWiederHer() throws IOException {
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, 64 * 1024, true)) {
+            protokoll.anhaengen(bestellung("ORD-1", DeliveryStatus.PROCESSING));
+            protokoll.anhaengenAlle(List.of(bestellung("ORD-2", DeliveryStatus.PROCESSING), bestellung("ORD-1", DeliveryStatus.SHIPPED)));
+        }
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, 64 * 1024, true)) {
+            assertThat(protokoll.liesAlle()).containsOnlyKeys("ORD-1", "ORD-2");
+            Bestellung wiederhergestellt = protokoll.lies("ORD-1");
+            assertThat(wiederhergestellt.getLieferstatus()).isEqualTo(DeliveryStatus.SHIPPED);
+            assertThat(wiederhergestellt.getKundenId()).isEqualTo("KUNDE-ORD-1");
+            assertThat(wiederhergestellt.getBestelldatum()).isEqualTo(LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_000_000));
+            assertThat(wiederhergestellt.getLieferdatum()).isNull();
+        }
+    }
+
+    @Test
+    void verwirftAbgeschnittenenSatzAmEndeUndUeberschreibtIhn() throws IOException {
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, 64 * 1024, true)) {
+            protokoll.anhaengen(bestellung("ORD-1", DeliveryStatus.PROCESSING));
+            protokoll.anhaengen(bestellung("ORD-2", DeliveryStatus.PROCESSING));
+        }
+        Path segment = verzeichnis.resolve("bestellungen-00000000.log");
+        int ende = satzAnfang(segment, 2);
+        // Ein halb geschriebener dritter Satz: Länge steht schon, Prüfsumme und Nutzdaten fehlen.
+        schreibeInt(segment, ende, 120);
+
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, 64 * 1024, true)) {
+            assertThat(protokoll.liesAlle()).containsOnlyKeys("ORD-1", "ORD-2");
+            protokoll.anhaengen(bestellung("ORD-3", DeliveryStatus.PROCESSING));
+        }
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, 64 * 1024, true)) {
+            assertThat(protokoll.liesAlle()).containsOnlyKeys("ORD-1", "ORD-2", "ORD-3");
+        }
+    }
+
+    @Test
+    void verwirftSatzMitFalscherPruefsummeAmEnde() throws IOException {
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, 64 * 1024, true)) {
+            protokoll.anhaengen(bestellung("ORD-1", DeliveryStatus.PROCESSING));
+            protokoll.anhaengen(bestellung("ORD-2", DeliveryStatus.PROCESSING));
+        }
+        Path segment = verzeichnis.resolve("bestellungen-00000000.log");
+        int zweiter = satzAnfang(segment, 1);
+        schreibeInt(segment, zweiter + SATZ_KOPF + 4, 0x7FFF_FFFF);
+
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, 64 * 1024, true)) {
+            assertThat(protokoll.liesAlle()).containsOnlyKeys("ORD-1");
+        }
+    }
+
+    @Test
+    void brichtAbWennEinAelteresSegmentBeschaedigtIst() throws IOException {
+        int segmentGroesse = 1024;
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, segmentGroesse, true)) {
+            for (int i = 0; i < 20; i++) {
+                protokoll.anhaengen(bestellung("ORD-" + i, DeliveryStatus.PROCESSING));
+            }
+        }
+        assertThat(verzeichnis.resolve("bestellungen-00000001.log")).exists();
+        Path erstesSegment = verzeichnis.resolve("bestellungen-00000000.log");
+        schreibeInt(erstesSegment, SEGMENT_KOPF + SATZ_KOPF + 4, 0x7FFF_FFFF);
+
+        assertThatThrownBy(() -> new Bestellprotokoll(verzeichnis, segmentGroesse, true))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Segment 0");
+    }
+
+    @Test
+    void verwirftAbgebrochenAngelegtesLetztesSegment() throws IOException {
+        int segmentGroesse = 1024;
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, segmentGroesse, true)) {
+            for (int i = 0; i < 20; i++) {
+                protokoll.anhaengen(bestellung("ORD-" + i, DeliveryStatus.PROCESSING));
+            }
+        }
+        Path letztes;
+        try (Stream<Path> dateien = Files.list(verzeichnis)) {
+            letztes = dateien.sorted().reduce((erste, zweite) -> zweite).orElseThrow();
+        }
+        String naechsterName = String.format("bestellungen-%08d.log",
+                Integer.parseInt(letztes.getFileName().toString().substring(13, 21)) + 1);
+        Path abgebrochen = verzeichnis.resolve(naechsterName);
+
+        // Leer, kürzer als der Kopf, und auf volle Größe gemappt, aber ohne geschriebenen Kopf.
+        for (int groesse : new int[] {0, 4, segmentGroesse}) {
+            Files.write(abgebrochen, new byte[groesse]);
+            try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, segmentGroesse, true)) {
+                assertThat(protokoll.liesAlle()).as("Größe %d", groesse).containsKeys("ORD-0", "ORD-19");
+                for (int i = 0; i < 20; i++) {
+                    protokoll.anhaengen(bestellung("ORD-N" + groesse + "-" + i, DeliveryStatus.PROCESSING));
+                }
+            }
+            assertThat(abgebrochen).exists();
+            try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, segmentGroesse, true)) {
+                assertThat(protokoll.lies("ORD-N" + groesse + "-19")).isNotNull();
+            }
+            try (Stream<Path> dateien = Files.list(verzeichnis)) {
+                for (Path datei : dateien.filter(datei -> datei.compareTo(letztes) > 0).toList()) {
+                    Files.delete(datei);
+                }
+            }
+        }
+    }
+
+    @Test
+    void brichtAbWennEinAelteresSegmentKeinenKopfHat() throws IOException {
+        int segmentGroesse = 1024;
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, segmentGroesse, true)) {
+            for (int i = 0; i < 20; i++) {
+                protokoll.anhaengen(bestellung("ORD-" + i, DeliveryStatus.PROCESSING));
+            }
+        }
+        schreibeInt(verzeichnis.resolve("bestellungen-00000000.log"), 0, 0);
+
+        assertThatThrownBy(() -> new Bestellprotokoll(verzeichnis, segmentGroesse, true))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Ungültiges Segment");
+    }
+
+    @Test
+    void schreibtEinenBatchVollstaendigInsNaechsteSegment() throws IOException {
+        int segmentGroesse = 1024;
+        List<Bestellung> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            batch.add(bestellung("ORD-B" + i, DeliveryStatus.PROCESSING));
+        }
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, segmentGroesse, true)) {
+            for (int i = 0; i < 4; i++) {
+                protokoll.anhaengen(bestellung("ORD-" + i, DeliveryStatus.PROCESSING));
+            }
+            protokoll.anhaengenAlle(batch);
+        }
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, segmentGroesse, true)) {
+            assertThat(protokoll.liesAlle()).hasSize(9);
+        }
+        // Das erste Segment enthält nur die vier Einzelbestellungen, der Batch steht geschlossen im zweiten.
+        Path erstesSegment = verzeichnis.resolve("bestellungen-00000000.log");
+        Path zweitesSegment = verzeichnis.resolve("bestellungen-00000001.log");
+        assertThat(liesInt(erstesSegment, satzAnfang(erstesSegment, 4))).isZero();
+        assertThat(liesInt(zweitesSegment, satzAnfang(zweitesSegment, 5))).isZero();
+    }
+
+    @Test
+    void lehntZuGrossenBatchAbOhneEtwasZuSchreiben() throws IOException {
+        int segmentGroesse = 512;
+        List<Bestellung> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add(bestellung("ORD-" + i, DeliveryStatus.PROCESSING));
+        }
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, segmentGroesse, true)) {
+            assertThatThrownBy(() -> protokoll.anhaengenAlle(batch)).isInstanceOf(IllegalArgumentException.class);
+            assertThat(protokoll.getAnzahlSaetze()).isZero();
+        }
+        try (Bestellprotokoll protokoll = new Bestellprotokoll(verzeichnis, segmentGroesse, true)) {
+            assertThat(protokoll.liesAlle()).isEmpty();
+        }
+    }
+
+    private static Bestellung bestellung(String bestellId, DeliveryStatus lieferstatus) {
+        return new Bestellung(bestellId, "KUNDE-" + bestellId, "kunde@example.com", "Musterweg 1", "PROD-MOCK-001", 2,
+                LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_000_000), lieferstatus, null, "CARD");
+    }
+
+    /**
+     * Bestimmt den Beginn des Satzes mit der gegebenen Nummer, indem die Längen der vorherigen Sätze übersprungen werden.
+     */
+    private static int satzAnfang(Path segment, int nummer) throws IOException {
+        int position = SEGMENT_KOPF;
+        for (int i = 0; i < nummer; i++) {
+            position += SATZ_KOPF + liesInt(segment, position);
+        }
+        return position;
+    }
+
+    private static int liesInt(Path datei, int position) throws IOException {
+        try (FileChannel kanal = FileChannel.open(datei, StandardOpenOption.READ)) {
+            ByteBuffer puffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.BIG_ENDIAN);
+            kanal.read(puffer, position);
+            return puffer.getInt(0);
+        }
+    }
+
+    private static void schreibeInt(Path datei, int position, int wert) throws IOException {
+        try (FileChannel kanal = FileChannel.open(datei, StandardOpenOption.WRITE)) {
+            kanal.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, wert), position);
+        }
+    }
+}
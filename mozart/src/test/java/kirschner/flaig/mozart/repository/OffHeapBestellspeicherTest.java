@@ -0,0 +1,107 @@
+package kirschner.flaig.mozart.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import kirschner.flaig.mozart.entity.Bestellung;
+import kirschner.flaig.mozart.entity.DeliveryStatus;
+
+class OffHeapBestellspeicherTest {
+
+    @Test
+    void unterscheidetBestellIdsMitGleichemHash() {
+        // "Aa" und "BB" haben denselben Hash; alle Kombinationen daraus kollidieren vollständig.
+        List<String> bestellIds = new ArrayList<>();
+        for (int bits = 0; bits < 64; bits++) {
+            StringBuilder bestellId = new StringBuilder("ORD-");
+            for (int stelle = 0; stelle < 6; stelle++) {
+                bestellId.append((bits >> stelle & 1) == 0 ? "Aa" : "BB");
+            }
+            bestellIds.add(bestellId.toString());
+        }
+        assertThat(bestellIds.stream().mapToInt(String::hashCode).distinct()).hasSize(1);
+
+        OffHeapBestellspeicher speicher = new OffHeapBestellspeicher(16);
+        for (int i = 0; i < bestellIds.size(); i++) {
+            speicher.speichere(bestellung(bestellIds.get(i), i + 1));
+        }
+
+        assertThat(speicher.anzahl()).isEqualTo(64);
+        for (int i = 0; i < bestellIds.size(); i++) {
+            Bestellung gefunden = speicher.finde(bestellIds.get(i));
+            assertThat(gefunden.getBestellId()).isEqualTo(bestellIds.get(i));
+            assertThat(gefunden.getMenge()).isEqualTo(i + 1);
+        }
+        assertThat(speicher.finde("ORD-AaAaAaAaAaBa")).isNull();
+    }
+
+    @Test
+    void waechstUeberIndexUndSlotBloeckeHinaus() {
+        OffHeapBestellspeicher speicher = new OffHeapBestellspeicher(1);
+        int anzahl = 70_000;
+        for (int i = 0; i < anzahl; i++) {
+            speicher.speichere(bestellung("ORD-" + i, i));
+        }
+
+        assertThat(speicher.anzahl()).isEqualTo(anzahl);
+        for (int i = 0; i < anzahl; i += 997) {
+            assertThat(speicher.finde("ORD-" + i).getMenge()).isEqualTo(i);
+        }
+        assertThat(speicher.finde("ORD-" + (anzahl - 1)).getKundenId()).isEqualTo("KUNDE-ORD-" + (anzahl - 1));
+        assertThat(speicher.finde("ORD-" + anzahl)).isNull();
+    }
+
+    @Test
+    void ersetztVorhandeneBestellungUndAendertLieferstatus() {
+        OffHeapBestellspeicher speicher = new OffHeapBestellspeicher(16);
+        speicher.speichere(bestellung("ORD-1", 1));
+        Bestellung ersetzt = bestellung("ORD-1", 5);
+        ersetzt.setAdresse("Neue Straße 7");
+        speicher.speichere(ersetzt);
+
+        assertThat(speicher.anzahl()).isEqualTo(1);
+        assertThat(speicher.finde("ORD-1").getMenge()).isEqualTo(5);
+        assertThat(speicher.finde("ORD-1").getAdresse()).isEqualTo("Neue Straße 7");
+
+        assertThat(speicher.aktualisiereLieferstatus("ORD-1", DeliveryStatus.SHIPPED)).isTrue();
+        assertThat(speicher.aktualisiereLieferstatus("ORD-2", DeliveryStatus.SHIPPED)).isFalse();
+        assertThat(speicher.finde("ORD-1").getLieferstatus()).isEqualTo(DeliveryStatus.SHIPPED);
+    }
+
+    @Test
+    void behandeltFehlendeBestellIdWieDerHeapSpeicher() {
+        for (Bestellspeicher speicher : List.of(new OffHeapBestellspeicher(16), new HeapBestellspeicher(new ConcurrentHashMap<>()))) {
+            speicher.speichere(bestellung("ORD-1", 1));
+            assertThat(speicher.finde(null)).as(speicher.getClass().getSimpleName()).isNull();
+            assertThat(speicher.aktualisiereLieferstatus(null, DeliveryStatus.SHIPPED)).as(speicher.getClass().getSimpleName()).isFalse();
+        }
+    }
+
+    @Test
+    void liefertKopienMitFehlendenFeldern() {
+        OffHeapBestellspeicher speicher = new OffHeapBestellspeicher(16);
+        Bestellung bestellung = new Bestellung("ORD-1", null, null, null, "PROD-MOCK-001", 1, null, null, null, null);
+        speicher.speichere(bestellung);
+
+        Bestellung gefunden = speicher.finde("ORD-1");
+        assertThat(gefunden).isNotSameAs(bestellung);
+        assertThat(gefunden.getKundenId()).isNull();
+        assertThat(gefunden.getBestelldatum()).isNull();
+        assertThat(gefunden.getLieferstatus()).isNull();
+        assertThat(gefunden.getProduktId()).isEqualTo("PROD-MOCK-001");
+
+        gefunden.setLieferstatus(DeliveryStatus.DELIVERED);
+        assertThat(speicher.finde("ORD-1").getLieferstatus()).isNull();
+    }
+
+    private static Bestellung bestellung(String bestellId, int menge) {
+        return new Bestellung(bestellId, "KUNDE-" + bestellId, "kunde@example.com", "Musterweg 1", "PROD-MOCK-001", menge,
+                LocalDateTime.of(2024, 5, 1, 12, 30), DeliveryStatus.PROCESSING, LocalDateTime.of(2024, 5, 4, 0, 0), "CARD");
+    }
+}
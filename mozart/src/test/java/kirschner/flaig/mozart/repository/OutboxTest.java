@@ -0,0 +1,111 @@
+package kirschner.flaig.mozart.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutboxTest {
+
+    @TempDir
+    Path verzeichnis;
+
+    @Test
+    void stelltOffeneEintraegeNachQuittungWiederHer() throws IOException {
+        Path datei = verzeichnis.resolve("crm-outbox.log");
+        try (Outbox outbox = new Outbox(datei, true, 1024 * 1024)) {
+            List<Outbox.Eintrag> eintraege = outbox.anhaengenAlle(List.of(daten("eins"), daten("zwei"), daten("drei")));
+            outbox.quittiere(eintraege.subList(0, 2));
+        }
+        try (Outbox outbox = new Outbox(datei, true, 1024 * 1024)) {
+            assertThat(outbox.naechste(10)).extracting(eintrag -> text(eintrag.nutzdaten())).containsExactly("drei");
+            assertThat(outbox.anhaengenAlle(List.of(daten("vier"))).get(0).sequenz()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void bleibtNachUnterbrochenemSchreibenBenutzbar() throws IOException {
+        Path datei = verzeichnis.resolve("crm-outbox.log");
+        try (Outbox outbox = new Outbox(datei, true, 1024 * 1024)) {
+            outbox.anhaengenAlle(List.of(daten("vorher")));
+            Thread.currentThread().interrupt();
+            try {
+                assertThatThrownBy(() -> outbox.anhaengenAlle(List.of(daten("unterbrochen"))))
+                        .isInstanceOf(ClosedByInterruptException.class);
+            } finally {
+                Thread.interrupted();
+            }
+            outbox.anhaengenAlle(List.of(daten("nachher")));
+        }
+        try (Outbox outbox = new Outbox(datei, true, 1024 * 1024)) {
+            assertThat(outbox.naechste(10)).extracting(eintrag -> text(eintrag.nutzdaten())).containsExactly("vorher", "nachher");
+        }
+    }
+
+    @Test
+    void kompaktiertErstWennDieErledigtenSaetzeDieOffenenUebersteigen() throws IOException {
+        Path datei = verzeichnis.resolve("crm-outbox.log");
+        try (Outbox outbox = new Outbox(datei, true, 256)) {
+            List<byte[]> nutzdaten = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                nutzdaten.add(daten("%0100d".formatted(i)));
+            }
+            List<Outbox.Eintrag> eintraege = outbox.anhaengenAlle(nutzdaten);
+            long groesse = Files.size(datei);
+            assertThat(groesse).isGreaterThan(256);
+
+            outbox.quittiere(eintraege.subList(0, 10));
+            assertThat(Files.size(datei)).as("die offenen Einträge überwiegen, keine Kompaktierung").isGreaterThan(groesse);
+
+            int kompaktierungen = 0;
+            groesse = Files.size(datei);
+            for (int i = 10; i < 100; i += 10) {
+                outbox.quittiere(eintraege.subList(i, i + 10));
+                long neueGroesse = Files.size(datei);
+                if (neueGroesse < groesse) {
+                    kompaktierungen++;
+                }
+                groesse = neueGroesse;
+            }
+            assertThat(kompaktierungen).isBetween(1, 5);
+            assertThat(Files.size(datei)).isEqualTo(16);
+            outbox.anhaengenAlle(List.of(daten("danach")));
+        }
+        try (Outbox outbox = new Outbox(datei, true, 256)) {
+            assertThat(outbox.naechste(10)).extracting(eintrag -> text(eintrag.nutzdaten())).containsExactly("danach");
+            assertThat(outbox.anhaengenAlle(List.of(daten("weiter"))).get(0).sequenz()).isEqualTo(102);
+        }
+    }
+
+    @Test
+    void behandeltDateiMitUnvollstaendigemKopfAlsLeer() throws IOException {
+        Path datei = verzeichnis.resolve("crm-outbox.log");
+        for (int laenge : new int[] {0, 7, 15}) {
+            Files.write(datei, new byte[laenge]);
+            try (Outbox outbox = new Outbox(datei, true, 1024 * 1024)) {
+                assertThat(outbox.anzahl()).isZero();
+                outbox.anhaengenAlle(List.of(daten("eins")));
+            }
+            try (Outbox outbox = new Outbox(datei, true, 1024 * 1024)) {
+                assertThat(outbox.naechste(10)).extracting(eintrag -> text(eintrag.nutzdaten())).containsExactly("eins");
+            }
+        }
+    }
+
+    private static byte[] daten(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] daten) {
+        return new String(daten, StandardCharsets.UTF_8);
+    }
+}
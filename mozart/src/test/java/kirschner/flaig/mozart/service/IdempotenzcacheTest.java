@@ -0,0 +1,114 @@
+package kirschner.flaig.mozart.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class IdempotenzcacheTest {
+
+    @Test
+    void liefertBeiWiederholungDasErsteErgebnis() {
+        Idempotenzcache<String> cache = new Idempotenzcache<>(10, Duration.ofMinutes(1));
+        AtomicInteger ausfuehrungen = new AtomicInteger();
+        CompletableFuture<String> laufend = new CompletableFuture<>();
+
+        CompletableFuture<String> erstes = cache.fuehreAus("key-1", "anfrage", () -> {
+            ausfuehrungen.incrementAndGet();
+            return laufend;
+        });
+        CompletableFuture<String> gleichzeitig = cache.fuehreAus("key-1", "anfrage", () -> {
+            ausfuehrungen.incrementAndGet();
+            return CompletableFuture.completedFuture("zweites");
+        });
+        laufend.complete("erstes");
+
+        assertThat(gleichzeitig).isSameAs(erstes);
+        assertThat(cache.fuehreAus("key-1", "anfrage", () -> CompletableFuture.completedFuture("drittes")).join()).isEqualTo("erstes");
+        assertThat(ausfuehrungen).hasValue(1);
+    }
+
+    @Test
+    void lehntAbweichendeAnfrageMitGleichemSchluesselAb() {
+        Idempotenzcache<String> cache = new Idempotenzcache<>(10, Duration.ofMinutes(1));
+        cache.fuehreAus("key-1", "anfrage", () -> CompletableFuture.completedFuture("ergebnis"));
+
+        assertThatThrownBy(() -> cache.fuehreAus("key-1", "andere anfrage", () -> CompletableFuture.completedFuture("x")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("key-1");
+        assertThatThrownBy(() -> cache.fuehreAus(" ", "anfrage", () -> CompletableFuture.completedFuture("x")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> cache.fuehreAus("k".repeat(Idempotenzcache.MAXIMALE_SCHLUESSELLAENGE + 1), "anfrage",
+                () -> CompletableFuture.completedFuture("x"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void merktSichFehlgeschlageneAusfuehrungenNicht() {
+        Idempotenzcache<String> cache = new Idempotenzcache<>(10, Duration.ofMinutes(1));
+
+        CompletableFuture<String> asynchron = cache.fuehreAus("key-1", "anfrage",
+                () -> CompletableFuture.failedFuture(new IllegalStateException("Beethoven nicht erreichbar")));
+        assertThat(asynchron).isCompletedExceptionally();
+        assertThat(cache.anzahl()).isZero();
+
+        assertThatThrownBy(() -> cache.fuehreAus("key-1", "anfrage", () -> {
+            throw new IllegalStateException("sofort gescheitert");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(cache.anzahl()).isZero();
+
+        assertThat(cache.fuehreAus("key-1", "anfrage", () -> CompletableFuture.completedFuture("ergebnis")).join()).isEqualTo("ergebnis");
+    }
+
+    @Test
+    void fuehrtNachAblaufErneutAus() throws InterruptedException {
+        Idempotenzcache<String> cache = new Idempotenzcache<>(10, Duration.ofMillis(1));
+        cache.fuehreAus("key-1", "anfrage", () -> CompletableFuture.completedFuture("alt"));
+        Thread.sleep(5);
+
+        assertThat(cache.fuehreAus("key-1", "andere anfrage", () -> CompletableFuture.completedFuture("neu")).join()).isEqualTo("neu");
+        assertThat(cache.anzahl()).isEqualTo(1);
+    }
+
+    @Test
+    void laufendeEintraegeLaufenNichtAbUndWerdenNichtVerdraengt() throws InterruptedException {
+        Idempotenzcache<String> cache = new Idempotenzcache<>(1, Duration.ofMillis(1));
+        AtomicInteger ausfuehrungen = new AtomicInteger();
+        CompletableFuture<String> laufend = new CompletableFuture<>();
+        CompletableFuture<String> erstes = cache.fuehreAus("key-1", "anfrage", () -> {
+            ausfuehrungen.incrementAndGet();
+            return laufend;
+        });
+        Thread.sleep(5);
+
+        cache.fuehreAus("key-2", "anfrage", () -> CompletableFuture.completedFuture("zwei"));
+        cache.fuehreAus("key-3", "anfrage", () -> CompletableFuture.completedFuture("drei"));
+        assertThat(cache.anzahl()).isGreaterThan(1);
+        assertThat(cache.fuehreAus("key-1", "anfrage", () -> {
+            ausfuehrungen.incrementAndGet();
+            return CompletableFuture.completedFuture("doppelt");
+        })).isSameAs(erstes);
+
+        laufend.complete("eins");
+        cache.fuehreAus("key-4", "anfrage", () -> CompletableFuture.completedFuture("vier"));
+        assertThat(cache.anzahl()).isEqualTo(1);
+        assertThat(ausfuehrungen).hasValue(1);
+    }
+
+    @Test
+    void haengenderEintragHaeltDasAufraeumenNichtAuf() {
+        Idempotenzcache<String> cache = new Idempotenzcache<>(3, Duration.ofMinutes(1));
+        CompletableFuture<String> haengt = cache.fuehreAus("key-0", "anfrage", CompletableFuture::new);
+
+        for (int i = 1; i <= 100; i++) {
+            String ergebnis = "ergebnis-" + i;
+            cache.fuehreAus("key-" + i, "anfrage", () -> CompletableFuture.completedFuture(ergebnis));
+            assertThat(cache.anzahl()).isLessThanOrEqualTo(3);
+        }
+        assertThat(cache.fuehreAus("key-0", "anfrage", () -> CompletableFuture.completedFuture("doppelt"))).isSameAs(haengt);
+        assertThat(cache.fuehreAus("key-100", "anfrage", () -> CompletableFuture.completedFuture("neu")).join()).isEqualTo("ergebnis-100");
+    }
+}
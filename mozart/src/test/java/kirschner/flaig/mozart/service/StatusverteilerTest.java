@@ -0,0 +1,60 @@
+package kirschner.flaig.mozart.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class StatusverteilerTest {
+
+    @Test
+    void uebernimmtAktualisierungenEinerBestellungInReihenfolge() {
+        Statusverteiler verteiler = new Statusverteiler(4, new SimpleMeterRegistry());
+        try {
+            List<String> uebernommen = new ArrayList<>();
+            for (String status : List.of("PROCESSING", "SHIPPED", "DELIVERED")) {
+                verteiler.verteileAlle(Map.of("ORD-1", status), teil -> uebernommen.add(teil.get("ORD-1"))).join();
+            }
+            assertThat(uebernommen).containsExactly("PROCESSING", "SHIPPED", "DELIVERED");
+        } finally {
+            verteiler.schliessen();
+        }
+    }
+
+    @Test
+    void laesstWartendeAufgabenBeimSchliessenScheitern() throws Exception {
+        Statusverteiler verteiler = new Statusverteiler(1, new SimpleMeterRegistry());
+        CountDownLatch laeuft = new CountDownLatch(1);
+        CountDownLatch freigabe = new CountDownLatch(1);
+        CompletableFuture<Void> blockiert = verteiler.verteileAlle(Map.of("ORD-1", "x"), teil -> {
+            laeuft.countDown();
+            try {
+                freigabe.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(laeuft.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Void> wartend = verteiler.verteileAlle(Map.of("ORD-2", "y"), teil -> { });
+
+        verteiler.schliessen();
+
+        assertThatThrownBy(wartend::join).isInstanceOf(CompletionException.class).hasCauseInstanceOf(CancellationException.class);
+        assertThatThrownBy(verteiler.verteileAlle(Map.of("ORD-3", "z"), teil -> { })::join)
+                .isInstanceOf(CompletionException.class).hasCauseInstanceOf(CancellationException.class);
+        freigabe.countDown();
+        blockiert.get(5, TimeUnit.SECONDS);
+        assertThat(verteiler.getTiefe(0)).isZero();
+    }
+}